@@ -0,0 +1,449 @@
+package org.hisp.dhis.common;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact store of numeric values by organisation unit, period, attribute
+ * option combination and item, for data which is fetched in bulk such as the
+ * sample data of predictors and validation rules.
+ * <p>
+ * Each dimension maps its keys to consecutive int indexes. Values are held in
+ * primitive double arrays, one per organisation unit, period and attribute
+ * option combination, indexed by item, and missing values are NaN. This
+ * avoids the boxed values and the hash map entries of nested maps such as
+ * {@link Map4}. Slices are turned into maps only when needed, typically for
+ * one organisation unit at a time.
+ *
+ * @param <O> the organisation unit type.
+ * @param <P> the period type.
+ * @param <I> the item type.
+ */
+public class DataCube<O, P, I>
+{
+    /**
+     * Receives the values of a data cube.
+     */
+    @FunctionalInterface
+    public interface ValueConsumer<O, P, I>
+    {
+        void accept( O orgUnit, P period, String attributeOptionCombo, I item, double value );
+    }
+
+    private final KeyIndex<O> orgUnits = new KeyIndex<>();
+
+    private final KeyIndex<P> periods = new KeyIndex<>();
+
+    private final KeyIndex<String> attributeOptionCombos = new KeyIndex<>();
+
+    private final KeyIndex<I> items = new KeyIndex<>();
+
+    /**
+     * Rows by organisation unit index, then period index.
+     */
+    private Row[][] rows = new Row[16][];
+
+    private int size = 0;
+
+    // -------------------------------------------------------------------------
+    // Write
+    // -------------------------------------------------------------------------
+
+    /**
+     * Sets a value, replacing any existing value. Setting NaN removes the
+     * value.
+     */
+    public void putValue( O orgUnit, P period, String attributeOptionCombo, I item, double value )
+    {
+        if ( Double.isNaN( value ) )
+        {
+            removeValue( orgUnit, period, attributeOptionCombo, item );
+            return;
+        }
+
+        int itemIndex = items.getOrAdd( item );
+
+        double[] values = getOrCreateValues( orgUnit, period, attributeOptionCombo );
+
+        if ( itemIndex >= values.length )
+        {
+            values = growValues( orgUnit, period, attributeOptionCombo, itemIndex );
+        }
+
+        if ( Double.isNaN( values[itemIndex] ) )
+        {
+            size++;
+        }
+
+        values[itemIndex] = value;
+    }
+
+    /**
+     * Adds to a value, treating a missing value as zero.
+     */
+    public void addValue( O orgUnit, P period, String attributeOptionCombo, I item, double value )
+    {
+        double existing = getValue( orgUnit, period, attributeOptionCombo, item );
+
+        putValue( orgUnit, period, attributeOptionCombo, item, Double.isNaN( existing ) ? value : existing + value );
+    }
+
+    /**
+     * Removes a value, if present.
+     */
+    public void removeValue( O orgUnit, P period, String attributeOptionCombo, I item )
+    {
+        double[] values = getValues( orgUnit, period, attributeOptionCombo );
+
+        int itemIndex = items.get( item );
+
+        if ( values != null && itemIndex >= 0 && itemIndex < values.length && !Double.isNaN( values[itemIndex] ) )
+        {
+            values[itemIndex] = Double.NaN;
+            size--;
+        }
+    }
+
+    /**
+     * Sets all values of the given cube in this cube, replacing any existing
+     * values.
+     */
+    public void putAll( DataCube<O, P, I> cube )
+    {
+        cube.forEach( this::putValue );
+    }
+
+    // -------------------------------------------------------------------------
+    // Read
+    // -------------------------------------------------------------------------
+
+    /**
+     * Gets a value, or NaN if missing.
+     */
+    public double getValue( O orgUnit, P period, String attributeOptionCombo, I item )
+    {
+        double[] values = getValues( orgUnit, period, attributeOptionCombo );
+
+        int itemIndex = items.get( item );
+
+        return values == null || itemIndex < 0 || itemIndex >= values.length ? Double.NaN : values[itemIndex];
+    }
+
+    /**
+     * Returns the number of values.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Passes each value to the given consumer, by organisation unit, period,
+     * attribute option combination and item.
+     */
+    public void forEach( ValueConsumer<O, P, I> consumer )
+    {
+        for ( int ou = 0; ou < orgUnits.size(); ou++ )
+        {
+            forEach( ou, consumer );
+        }
+    }
+
+    /**
+     * Passes each value of the given organisation unit to the given consumer.
+     */
+    public void forEach( O orgUnit, ValueConsumer<O, P, I> consumer )
+    {
+        int ou = orgUnits.get( orgUnit );
+
+        if ( ou >= 0 )
+        {
+            forEach( ou, consumer );
+        }
+    }
+
+    /**
+     * Gets the values of an organisation unit by period, attribute option
+     * combination and item. Returns an empty map if there are none. The map
+     * is a copy, so changing it does not change this cube.
+     */
+    public MapMapMap<P, String, I, Double> getSlice( O orgUnit )
+    {
+        MapMapMap<P, String, I, Double> slice = new MapMapMap<>();
+
+        forEach( orgUnit, ( o, p, aoc, item, value ) -> slice.putEntry( p, aoc, item, value ) );
+
+        return slice;
+    }
+
+    /**
+     * Gets the values of an organisation unit and period by attribute option
+     * combination and item. Returns an empty map if there are none. The map
+     * is a copy, so changing it does not change this cube.
+     */
+    public MapMap<String, I, Double> getSlice( O orgUnit, P period )
+    {
+        MapMap<String, I, Double> slice = new MapMap<>();
+
+        Row row = getRow( orgUnits.get( orgUnit ), periods.get( period ) );
+
+        if ( row != null )
+        {
+            for ( int i = 0; i < row.count; i++ )
+            {
+                String aoc = attributeOptionCombos.getKey( row.attributeOptionCombos[i] );
+                double[] values = row.values[i];
+
+                for ( int item = 0; item < values.length; item++ )
+                {
+                    if ( !Double.isNaN( values[item] ) )
+                    {
+                        slice.putEntry( aoc, items.getKey( item ), values[item] );
+                    }
+                }
+            }
+        }
+
+        return slice;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private void forEach( int ou, ValueConsumer<O, P, I> consumer )
+    {
+        Row[] orgUnitRows = rows[ou];
+
+        if ( orgUnitRows == null )
+        {
+            return;
+        }
+
+        O orgUnit = orgUnits.getKey( ou );
+
+        for ( int pe = 0; pe < orgUnitRows.length; pe++ )
+        {
+            Row row = orgUnitRows[pe];
+
+            if ( row == null )
+            {
+                continue;
+            }
+
+            P period = periods.getKey( pe );
+
+            for ( int i = 0; i < row.count; i++ )
+            {
+                String aoc = attributeOptionCombos.getKey( row.attributeOptionCombos[i] );
+                double[] values = row.values[i];
+
+                for ( int item = 0; item < values.length; item++ )
+                {
+                    if ( !Double.isNaN( values[item] ) )
+                    {
+                        consumer.accept( orgUnit, period, aoc, items.getKey( item ), values[item] );
+                    }
+                }
+            }
+        }
+    }
+
+    private Row getRow( int ou, int pe )
+    {
+        if ( ou < 0 || pe < 0 || ou >= rows.length || rows[ou] == null || pe >= rows[ou].length )
+        {
+            return null;
+        }
+
+        return rows[ou][pe];
+    }
+
+    private double[] getValues( O orgUnit, P period, String attributeOptionCombo )
+    {
+        Row row = getRow( orgUnits.get( orgUnit ), periods.get( period ) );
+
+        return row == null ? null : row.get( attributeOptionCombos.get( attributeOptionCombo ) );
+    }
+
+    private double[] getOrCreateValues( O orgUnit, P period, String attributeOptionCombo )
+    {
+        int ou = orgUnits.getOrAdd( orgUnit );
+        int pe = periods.getOrAdd( period );
+        int aoc = attributeOptionCombos.getOrAdd( attributeOptionCombo );
+
+        if ( ou >= rows.length )
+        {
+            rows = Arrays.copyOf( rows, Math.max( ou + 1, rows.length * 2 ) );
+        }
+
+        if ( rows[ou] == null )
+        {
+            rows[ou] = new Row[Math.max( pe + 1, periods.size() )];
+        }
+        else if ( pe >= rows[ou].length )
+        {
+            rows[ou] = Arrays.copyOf( rows[ou], Math.max( pe + 1, periods.size() ) );
+        }
+
+        if ( rows[ou][pe] == null )
+        {
+            rows[ou][pe] = new Row();
+        }
+
+        return rows[ou][pe].getOrCreate( aoc, items.size() );
+    }
+
+    private double[] growValues( O orgUnit, P period, String attributeOptionCombo, int itemIndex )
+    {
+        Row row = getRow( orgUnits.get( orgUnit ), periods.get( period ) );
+
+        return row.grow( attributeOptionCombos.get( attributeOptionCombo ), Math.max( itemIndex + 1, items.size() ) );
+    }
+
+    /**
+     * Values of one organisation unit and period, by attribute option
+     * combination index, then item index. Rows rarely have more than a few
+     * attribute option combinations, so these are searched linearly.
+     */
+    private static class Row
+    {
+        private int[] attributeOptionCombos = new int[1];
+
+        private double[][] values = new double[1][];
+
+        private int count = 0;
+
+        private double[] get( int aoc )
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                if ( attributeOptionCombos[i] == aoc )
+                {
+                    return values[i];
+                }
+            }
+
+            return null;
+        }
+
+        private double[] getOrCreate( int aoc, int itemCount )
+        {
+            double[] existing = get( aoc );
+
+            if ( existing != null )
+            {
+                return existing;
+            }
+
+            if ( count == attributeOptionCombos.length )
+            {
+                attributeOptionCombos = Arrays.copyOf( attributeOptionCombos, count * 2 );
+                values = Arrays.copyOf( values, count * 2 );
+            }
+
+            double[] created = new double[Math.max( itemCount, 1 )];
+            Arrays.fill( created, Double.NaN );
+
+            attributeOptionCombos[count] = aoc;
+            values[count] = created;
+            count++;
+
+            return created;
+        }
+
+        private double[] grow( int aoc, int itemCount )
+        {
+            for ( int i = 0; i < count; i++ )
+            {
+                if ( attributeOptionCombos[i] == aoc )
+                {
+                    int oldLength = values[i].length;
+                    values[i] = Arrays.copyOf( values[i], itemCount );
+                    Arrays.fill( values[i], oldLength, itemCount, Double.NaN );
+
+                    return values[i];
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Maps the keys of a dimension to consecutive indexes.
+     */
+    private static class KeyIndex<K>
+    {
+        private final Map<K, Integer> indexes = new HashMap<>();
+
+        private final List<K> keys = new ArrayList<>();
+
+        private int get( K key )
+        {
+            Integer index = indexes.get( key );
+
+            return index == null ? -1 : index;
+        }
+
+        private int getOrAdd( K key )
+        {
+            Integer index = indexes.get( key );
+
+            if ( index == null )
+            {
+                index = keys.size();
+                indexes.put( key, index );
+                keys.add( key );
+            }
+
+            return index;
+        }
+
+        private K getKey( int index )
+        {
+            return keys.get( index );
+        }
+
+        private int size()
+        {
+            return keys.size();
+        }
+    }
+}
@@ -44,6 +44,10 @@ public class DataAnalysisParams
 
     private String ou;
 
+    private OutlierDetectionAlgorithm algorithm;
+
+    private Integer maxResults;
+
     public DataAnalysisParams()
     {
     }
@@ -113,6 +117,28 @@ public class DataAnalysisParams
         this.ou = ou;
     }
 
+    @JsonProperty
+    public OutlierDetectionAlgorithm getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    public void setAlgorithm( OutlierDetectionAlgorithm algorithm )
+    {
+        this.algorithm = algorithm;
+    }
+
+    @JsonProperty
+    public Integer getMaxResults()
+    {
+        return maxResults;
+    }
+
+    public void setMaxResults( Integer maxResults )
+    {
+        this.maxResults = maxResults;
+    }
+
     @Override
     public String toString()
     {
@@ -122,6 +148,8 @@ public class DataAnalysisParams
             ", ds=" + ds +
             ", standardDeviation=" + standardDeviation +
             ", ou='" + ou + '\'' +
+            ", algorithm=" + algorithm +
+            ", maxResults=" + maxResults +
             '}';
     }
 }
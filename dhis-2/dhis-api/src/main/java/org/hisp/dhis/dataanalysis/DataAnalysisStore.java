@@ -38,6 +38,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * @author Lars Helge Overland
@@ -87,6 +88,27 @@ public interface DataAnalysisStore
     List<DeflatedDataValue> getDeflatedDataValues( DataElement dataElement, CategoryOptionCombo categoryOptionCombo,
         Collection<Period> periods, Map<Integer, Integer> lowerBoundMap, Map<Integer, Integer> upperBoundMap );
 
+    /**
+     * Finds the numeric data values of the given periods which are outliers
+     * compared to the values registered for the same data element, category
+     * option combo and organisation unit since the given date. The measures
+     * and the outliers are computed in a single query, and outliers are
+     * passed to the given consumer as they are read, ordered by descending
+     * score. The min and max of each value are set to its rounded bounds.
+     *
+     * @param dataElements the numeric data elements.
+     * @param periods      the periods to find outliers for.
+     * @param parentPaths  the parent OrganisationUnits' paths.
+     * @param from         the from date for which to include data values in the measures.
+     * @param algorithm    the outlier detection algorithm.
+     * @param threshold    the score above which a data value is an outlier.
+     * @param limit        the maximum number of outliers to find.
+     * @param consumer     the consumer of outliers.
+     */
+    void getOutliers( Collection<DataElement> dataElements, Collection<Period> periods,
+        Collection<String> parentPaths, Date from, OutlierDetectionAlgorithm algorithm, double threshold, int limit,
+        Consumer<DeflatedDataValue> consumer );
+
     /**
      * Returns a collection of DeflatedDataValues which are marked for followup and
      * whose source OrganisationUnit is equal or subordinate to the given OrganisationUnit.
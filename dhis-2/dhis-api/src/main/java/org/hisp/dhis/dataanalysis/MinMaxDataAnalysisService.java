@@ -30,8 +30,10 @@ package org.hisp.dhis.dataanalysis;
 
 import java.util.Collection;
 
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.scheduling.JobConfiguration;
 
 public interface MinMaxDataAnalysisService
     extends DataAnalysisService
@@ -45,4 +47,19 @@ public interface MinMaxDataAnalysisService
      */
     void generateMinMaxValues( OrganisationUnit parent,
         Collection<DataElement> dataElements, Double stdDevFactor );
+
+    /**
+     * Generate min-max values in batches of data elements, notifying progress
+     * for the given job.
+     *
+     * @param parent the parent organisation unit.
+     * @param categoryOptionComboIds the category option combo ids by id of
+     *        the numeric data elements, see
+     *        {@link org.hisp.dhis.minmax.MinMaxDataElementService#getDataSetCategoryOptionComboIds}.
+     * @param stdDevFactor the std dev factor.
+     * @param jobConfiguration the job configuration, can be null.
+     * @return the number of generated min-max values.
+     */
+    int generateMinMaxValues( OrganisationUnit parent,
+        SetMap<Integer, Integer> categoryOptionComboIds, Double stdDevFactor, JobConfiguration jobConfiguration );
 }
@@ -29,6 +29,7 @@ package org.hisp.dhis.minmax;
  */
 
 import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 
@@ -65,4 +66,37 @@ public interface MinMaxDataElementService
     void removeMinMaxDataElements( CategoryOptionCombo optionCombo );
     
     void removeMinMaxDataElements( Collection<DataElement> dataElements, OrganisationUnit parent );
+
+    /**
+     * Gets the ids of the category option combos of the numeric data elements
+     * among the given data elements, by data element id. The data elements
+     * are read by id, so they need not belong to the current session.
+     *
+     * @param dataElements the data elements.
+     * @return the category option combo ids by data element id.
+     */
+    SetMap<Integer, Integer> getCategoryOptionComboIds( Collection<DataElement> dataElements );
+
+    /**
+     * Gets the ids of the category option combos of the numeric data elements
+     * of the given data sets, by data element id.
+     *
+     * @param dataSetUids the data set uids.
+     * @return the category option combo ids by data element id.
+     */
+    SetMap<Integer, Integer> getDataSetCategoryOptionComboIds( Collection<String> dataSetUids );
+
+    /**
+     * Replaces the min-max values of the given data elements for the
+     * organisation units in the hierarchy of the given parent with values
+     * generated from the average and standard deviation of their data values.
+     * The parent is read by id, so it need not belong to the current session.
+     *
+     * @param categoryOptionComboIds the category option combo ids by id of
+     *        the numeric data elements to generate values for.
+     * @param parent the parent organisation unit.
+     * @param stdDevFactor the number of standard deviations from the average.
+     * @return the number of generated min-max values.
+     */
+    int generateMinMaxDataElements( SetMap<Integer, Integer> categoryOptionComboIds, OrganisationUnit parent, double stdDevFactor );
 }
@@ -62,4 +62,30 @@ public interface MinMaxDataElementStore
     void delete( CategoryOptionCombo optionCombo );
     
     void delete( Collection<DataElement> dataElements, OrganisationUnit parent );
+
+    /**
+     * Deletes the min-max values of the data elements with the given ids for
+     * the organisation units in the hierarchy of the given parent.
+     *
+     * @param dataElementIds the ids of the data elements.
+     * @param parent the parent organisation unit.
+     */
+    void deleteByDataElementIds( Collection<Integer> dataElementIds, OrganisationUnit parent );
+
+    /**
+     * Generates min-max values for the given data elements and category
+     * option combos and the organisation units in the hierarchy of the given
+     * parent, based on the average and standard deviation of their data
+     * values. Values are computed and inserted by a single statement, so
+     * existing min-max values must be removed first.
+     *
+     * @param dataElementIds the ids of the data elements, which must be
+     *        numeric.
+     * @param categoryOptionComboIds the ids of the category option combos.
+     * @param parent the parent organisation unit.
+     * @param stdDevFactor the number of standard deviations from the average.
+     * @return the number of generated min-max values.
+     */
+    int generate( Collection<Integer> dataElementIds, Collection<Integer> categoryOptionComboIds,
+        OrganisationUnit parent, double stdDevFactor );
 }
@@ -49,6 +49,7 @@ import org.hisp.dhis.schema.PropertyType;
 import org.hisp.dhis.schema.annotation.Property;
 import org.hisp.dhis.schema.annotation.PropertyRange;
 
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -117,6 +118,22 @@ public class Predictor
      */
     private Set<PredictorGroup> groups = new HashSet<>();
 
+    /**
+     * The time the last successful prediction run started, used to find the
+     * input data changed since then. Not part of the predictor metadata.
+     */
+    private Date lastRun;
+
+    /**
+     * The start date of the output periods of the last successful run.
+     */
+    private Date lastRunStartDate;
+
+    /**
+     * The end date of the output periods of the last successful run.
+     */
+    private Date lastRunEndDate;
+
     // -------------------------------------------------------------------------
     // Constructors
     // -------------------------------------------------------------------------
@@ -294,6 +311,36 @@ public class Predictor
         this.groups = groups;
     }
 
+    public Date getLastRun()
+    {
+        return lastRun;
+    }
+
+    public void setLastRun( Date lastRun )
+    {
+        this.lastRun = lastRun;
+    }
+
+    public Date getLastRunStartDate()
+    {
+        return lastRunStartDate;
+    }
+
+    public void setLastRunStartDate( Date lastRunStartDate )
+    {
+        this.lastRunStartDate = lastRunStartDate;
+    }
+
+    public Date getLastRunEndDate()
+    {
+        return lastRunEndDate;
+    }
+
+    public void setLastRunEndDate( Date lastRunEndDate )
+    {
+        this.lastRunEndDate = lastRunEndDate;
+    }
+
     /**
      * Clears the generator and skipTest expressions.
      */
@@ -28,8 +28,14 @@ package org.hisp.dhis.predictor;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
+import org.hisp.dhis.common.SetMap;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.period.PeriodType;
+
 /**
  * Created by haase on 6/12/16.
  */
@@ -86,6 +92,29 @@ public interface PredictorService
      */
     List<Predictor> getAllPredictors();
 
+    /**
+     * Records the last successful run of a predictor.
+     *
+     * @param predictor the predictor.
+     * @param lastRun the time the run started.
+     * @param startDate the start date of the output periods of the run.
+     * @param endDate the end date of the output periods of the run.
+     */
+    void updateLastRun( Predictor predictor, Date lastRun, Date startDate, Date endDate );
+
+    /**
+     * Gets the dates of data values of the given data elements and period
+     * type which were added, updated or deleted after the given time, by
+     * organisation unit path.
+     *
+     * @param dataElements the data elements.
+     * @param periodType the period type of the data values.
+     * @param since the time after which to look for changes.
+     * @return the dates of changed data by organisation unit path.
+     */
+    SetMap<String, Date> getChangedDataDates( Collection<DataElement> dataElements, PeriodType periodType, Date since );
+
+
     // -------------------------------------------------------------------------
     // Predictor Group
     // -------------------------------------------------------------------------
@@ -28,7 +28,13 @@ package org.hisp.dhis.predictor;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Collection;
+import java.util.Date;
+
 import org.hisp.dhis.common.IdentifiableObjectStore;
+import org.hisp.dhis.common.SetMap;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.period.PeriodType;
 
 /**
  * @author Ken Haase
@@ -37,4 +43,27 @@ public interface PredictorStore
     extends IdentifiableObjectStore<Predictor>
 {
     String ID = PredictorStore.class.getName();
+
+    /**
+     * Records the last successful run of a predictor, without changing the
+     * last updated time of the predictor.
+     *
+     * @param predictor the predictor.
+     * @param lastRun the time the run started.
+     * @param startDate the start date of the output periods of the run.
+     * @param endDate the end date of the output periods of the run.
+     */
+    void updateLastRun( Predictor predictor, Date lastRun, Date startDate, Date endDate );
+
+    /**
+     * Gets the data values of the given data elements and period type which
+     * were added, updated or deleted after the given time. Returns the period
+     * start dates of the changed data values by organisation unit path.
+     *
+     * @param dataElements the data elements.
+     * @param periodType the period type of the data values.
+     * @param since the time after which to look for changes.
+     * @return the dates of changed data by organisation unit path.
+     */
+    SetMap<String, Date> getChangedDataDates( Collection<DataElement> dataElements, PeriodType periodType, Date since );
 }
@@ -124,12 +124,16 @@ public class Preheat
     @SuppressWarnings( "unchecked" )
     public <T extends IdentifiableObject> T get( PreheatIdentifier identifier, Class<? extends IdentifiableObject> klass, String key )
     {
-        if ( !containsKey( identifier, klass, key ) )
+        Map<Class<? extends IdentifiableObject>, Map<String, IdentifiableObject>> classMap = map.get( identifier );
+
+        if ( classMap == null || key == null )
         {
             return null;
         }
 
-        return (T) map.get( identifier ).get( klass ).get( key );
+        Map<String, IdentifiableObject> identifierMap = classMap.get( klass );
+
+        return identifierMap != null ? (T) identifierMap.get( key ) : null;
     }
 
     @SuppressWarnings( "unchecked" )
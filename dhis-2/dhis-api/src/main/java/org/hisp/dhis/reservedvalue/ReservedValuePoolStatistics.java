@@ -0,0 +1,182 @@
+package org.hisp.dhis.reservedvalue;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
+import org.hisp.dhis.common.DxfNamespaces;
+
+import java.util.Date;
+
+/**
+ * Snapshot of the state of a pool of pre-generated values for a single
+ * text pattern key.
+ */
+public class ReservedValuePoolStatistics
+{
+    private String ownerObject;
+
+    private String ownerUid;
+
+    private String key;
+
+    private int depth;
+
+    private long served;
+
+    private long refills;
+
+    private long lastRefillDuration;
+
+    private long averageRefillDuration;
+
+    private long maxRefillDuration;
+
+    private Date lastRefilled;
+
+    public ReservedValuePoolStatistics( String ownerObject, String ownerUid, String key, int depth, long served,
+        long refills, long lastRefillDuration, long averageRefillDuration, long maxRefillDuration, Date lastRefilled )
+    {
+        this.ownerObject = ownerObject;
+        this.ownerUid = ownerUid;
+        this.key = key;
+        this.depth = depth;
+        this.served = served;
+        this.refills = refills;
+        this.lastRefillDuration = lastRefillDuration;
+        this.averageRefillDuration = averageRefillDuration;
+        this.maxRefillDuration = maxRefillDuration;
+        this.lastRefilled = lastRefilled;
+    }
+
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public String getOwnerObject()
+    {
+        return ownerObject;
+    }
+
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public String getOwnerUid()
+    {
+        return ownerUid;
+    }
+
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public String getKey()
+    {
+        return key;
+    }
+
+    /**
+     * Number of pre-checked values currently held by the pool.
+     */
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Number of values handed out from the pool since it was created.
+     */
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public long getServed()
+    {
+        return served;
+    }
+
+    /**
+     * Number of times the pool has been refilled.
+     */
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public long getRefills()
+    {
+        return refills;
+    }
+
+    /**
+     * Duration of the last refill in milliseconds.
+     */
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public long getLastRefillDuration()
+    {
+        return lastRefillDuration;
+    }
+
+    /**
+     * Average duration of all refills in milliseconds.
+     */
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public long getAverageRefillDuration()
+    {
+        return averageRefillDuration;
+    }
+
+    /**
+     * Duration of the slowest refill in milliseconds.
+     */
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public long getMaxRefillDuration()
+    {
+        return maxRefillDuration;
+    }
+
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public Date getLastRefilled()
+    {
+        return lastRefilled;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "{" +
+            "ownerObject='" + ownerObject + '\'' +
+            ", ownerUid='" + ownerUid + '\'' +
+            ", key='" + key + '\'' +
+            ", depth=" + depth +
+            ", served=" + served +
+            ", refills=" + refills +
+            ", lastRefillDuration=" + lastRefillDuration +
+            ", averageRefillDuration=" + averageRefillDuration +
+            ", maxRefillDuration=" + maxRefillDuration +
+            ", lastRefilled=" + lastRefilled +
+            '}';
+    }
+}
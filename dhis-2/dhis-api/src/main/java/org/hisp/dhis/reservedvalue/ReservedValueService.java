@@ -46,4 +46,17 @@ public interface ReservedValueService
     boolean useReservedValue( TextPattern textPattern, String value );
 
     boolean isReserved( TextPattern textPattern, String value );
+
+    /**
+     * Tops up every pool of pre-generated values which has dropped below the
+     * configured low watermark, up to the high watermark. Pools which have not
+     * been used for a day are discarded.
+     */
+    void refillReservedValuePools();
+
+    /**
+     * Returns the current depth and refill statistics of each pool of
+     * pre-generated values.
+     */
+    List<ReservedValuePoolStatistics> getReservedValuePoolStatistics();
 }
@@ -43,6 +43,12 @@ public interface ReservedValueStore
 
     List<ReservedValue> getIfReservedValues( ReservedValue reservedValue, List<String> values );
 
+    /**
+     * Returns the subset of the given values which are neither reserved nor
+     * in use as attribute values. The given list is modified.
+     */
+    List<String> getAvailableValues( ReservedValue reservedValue, List<String> values );
+
     int getNumberOfUsedValues( ReservedValue reservedValue );
 
     void removeExpiredReservations();
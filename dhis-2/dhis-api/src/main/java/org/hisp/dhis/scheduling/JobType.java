@@ -30,6 +30,7 @@ package org.hisp.dhis.scheduling;
 
 import com.google.common.collect.ImmutableMap;
 import org.hisp.dhis.scheduling.parameters.AnalyticsJobParameters;
+import org.hisp.dhis.scheduling.parameters.MinMaxGenerationJobParameters;
 import org.hisp.dhis.scheduling.parameters.MockJobParameters;
 import org.hisp.dhis.scheduling.parameters.MonitoringJobParameters;
 import org.hisp.dhis.scheduling.parameters.PredictorJobParameters;
@@ -72,8 +73,13 @@ public enum JobType
         "predictors", "/api/predictors",
         "predictorGroups", "/api/predictorGroups"
     ) ),
+    MIN_MAX_GENERATION( "minMaxGenerationJob", true, MinMaxGenerationJobParameters.class, ImmutableMap.of(
+        "organisationUnits", "/api/organisationUnits",
+        "dataSets", "/api/dataSets"
+    ) ),
     DATA_SET_NOTIFICATION( "dataSetNotificationJob", false, null, null ),
     REMOVE_EXPIRED_RESERVED_VALUES( "removeExpiredReservedValuesJob", false, null, null ),
+    REFILL_RESERVED_VALUE_POOLS( "refillReservedValuePoolsJob", true, null, null ),
 
     // For tests
     MOCK( "mockJob", false, MockJobParameters.class, null ),
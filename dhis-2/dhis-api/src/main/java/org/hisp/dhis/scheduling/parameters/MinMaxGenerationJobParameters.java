@@ -0,0 +1,120 @@
+package org.hisp.dhis.scheduling.parameters;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hisp.dhis.common.CodeGenerator;
+import org.hisp.dhis.feedback.ErrorCode;
+import org.hisp.dhis.feedback.ErrorReport;
+import org.hisp.dhis.scheduling.JobParameters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MinMaxGenerationJobParameters
+    implements JobParameters
+{
+    private static final long serialVersionUID = 3871620938262318474L;
+
+    @JsonProperty
+    private List<String> organisationUnits = new ArrayList<>();
+
+    @JsonProperty
+    private List<String> dataSets = new ArrayList<>();
+
+    /**
+     * The number of standard deviations from the average, defaults to the
+     * factor of deviation system setting.
+     */
+    @JsonProperty
+    private Double stdDevFactor;
+
+    public MinMaxGenerationJobParameters()
+    {
+    }
+
+    public MinMaxGenerationJobParameters( List<String> organisationUnits, List<String> dataSets, Double stdDevFactor )
+    {
+        this.organisationUnits = organisationUnits;
+        this.dataSets = dataSets;
+        this.stdDevFactor = stdDevFactor;
+    }
+
+    public List<String> getOrganisationUnits()
+    {
+        return organisationUnits;
+    }
+
+    public void setOrganisationUnits( List<String> organisationUnits )
+    {
+        this.organisationUnits = organisationUnits;
+    }
+
+    public List<String> getDataSets()
+    {
+        return dataSets;
+    }
+
+    public void setDataSets( List<String> dataSets )
+    {
+        this.dataSets = dataSets;
+    }
+
+    public Double getStdDevFactor()
+    {
+        return stdDevFactor;
+    }
+
+    public void setStdDevFactor( Double stdDevFactor )
+    {
+        this.stdDevFactor = stdDevFactor;
+    }
+
+    @Override
+    public ErrorReport validate()
+    {
+        ErrorReport errorReport = validateUids( organisationUnits, "organisationUnits" );
+
+        return errorReport != null ? errorReport : validateUids( dataSets, "dataSets" );
+    }
+
+    private ErrorReport validateUids( List<String> uids, String property )
+    {
+        if ( uids == null )
+        {
+            return null;
+        }
+
+        return uids.stream()
+            .filter( uid -> !CodeGenerator.isValidUid( uid ) )
+            .findFirst()
+            .map( uid -> new ErrorReport( this.getClass(), ErrorCode.E4014, uid, property ) )
+            .orElse( null );
+    }
+}
@@ -54,6 +54,13 @@ public class PredictorJobParameters
     @JsonProperty
     private List<String> predictorGroups;
 
+    /**
+     * Whether to recompute only the predictions whose input data changed
+     * since the last successful run of each predictor.
+     */
+    @JsonProperty
+    private boolean incremental;
+
     public PredictorJobParameters()
     {
     }
@@ -106,6 +113,16 @@ public class PredictorJobParameters
         this.predictorGroups = predictorGroups;
     }
 
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    public void setIncremental( boolean incremental )
+    {
+        this.incremental = incremental;
+    }
+
     @Override
     public ErrorReport validate()
     {
@@ -266,4 +266,17 @@ public interface TrackedEntityInstanceService
         Integer relationshipTypeId, Set<TrackedEntityAttributeValue> attributeValues );
 
     List<TrackedEntityInstance> getTrackedEntityInstancesByUid( List<String> uids, User user );
+
+    /**
+     * Initializes the collections of the given tracked entity instances which
+     * are read when exporting them, with one query per collection type.
+     *
+     * @param instances the tracked entity instances.
+     * @param includeEnrollments whether to load program instances.
+     * @param includeEvents whether to load program stage instances.
+     * @param includeRelationships whether to load relationships.
+     * @param includeProgramOwners whether to load program owners.
+     */
+    void loadTrackedEntityInstanceCollections( List<TrackedEntityInstance> instances, boolean includeEnrollments,
+        boolean includeEvents, boolean includeRelationships, boolean includeProgramOwners );
 }
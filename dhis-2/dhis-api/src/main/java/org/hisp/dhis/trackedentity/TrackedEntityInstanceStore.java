@@ -76,4 +76,19 @@ public interface TrackedEntityInstanceStore
     void updateTrackedEntityInstancesSyncTimestamp( List<String> trackedEntityInstanceUIDs, Date lastSynchronized );
 
     List<TrackedEntityInstance> getTrackedEntityInstancesByUid( List<String> uids, User user );
+
+    /**
+     * Initializes the collections of the given tracked entity instances which
+     * are read when exporting them. Each collection type is loaded for all
+     * instances with one query, instead of one query per instance and
+     * collection when the collections are walked lazily.
+     *
+     * @param instances the tracked entity instances.
+     * @param includeEnrollments whether to load program instances and their comments.
+     * @param includeEvents whether to load program stage instances and their comments.
+     * @param includeRelationships whether to load relationship items and relationships.
+     * @param includeProgramOwners whether to load program owners.
+     */
+    void loadCollections( List<TrackedEntityInstance> instances, boolean includeEnrollments, boolean includeEvents,
+        boolean includeRelationships, boolean includeProgramOwners );
 }
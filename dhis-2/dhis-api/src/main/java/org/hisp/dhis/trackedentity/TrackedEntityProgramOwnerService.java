@@ -28,9 +28,13 @@ package org.hisp.dhis.trackedentity;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Collection;
 import java.util.List;
+
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.program.Program;
+import org.hisp.dhis.user.User;
 
 /**
  * @author Ameen Mohamed
@@ -167,4 +171,14 @@ public interface TrackedEntityProgramOwnerService
      */
     void createTrackedEntityProgramOwner( TrackedEntityInstance entityInstance, Program program, OrganisationUnit ou );
 
+    /**
+     * Get the programs the user has ownership access to for each of the given
+     * teis, evaluated in a single query.
+     * 
+     * @param user The user.
+     * @param teiUids The tracked entity instance uids.
+     * @param programUids The program uids.
+     * @return the accessible program uids keyed by tracked entity instance uid.
+     */
+    SetMap<String, String> getOwnershipAccess( User user, Collection<String> teiUids, Collection<String> programUids );
 }
@@ -29,6 +29,10 @@ package org.hisp.dhis.trackedentity;
  */
 
 import org.hisp.dhis.common.GenericStore;
+import org.hisp.dhis.common.SetMap;
+import org.hisp.dhis.user.User;
+
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -63,4 +67,15 @@ public interface TrackedEntityProgramOwnerStore extends GenericStore<TrackedEnti
      * @return matching tracked entity program owner entities.
      */
     List<TrackedEntityProgramOwner> getTrackedEntityProgramOwners( List<Integer> teiIds, int programId );
+
+    /**
+     * Get the programs the user has ownership access to for each of the given
+     * teis, evaluated in the database against the owner org units.
+     * 
+     * @param user The user.
+     * @param teiUids The tracked entity instance uids.
+     * @param programUids The program uids.
+     * @return the accessible program uids keyed by tracked entity instance uid.
+     */
+    SetMap<String, String> getOwnershipAccess( User user, Collection<String> teiUids, Collection<String> programUids );
 }
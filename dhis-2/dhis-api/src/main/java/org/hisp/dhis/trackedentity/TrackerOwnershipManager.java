@@ -28,6 +28,9 @@ package org.hisp.dhis.trackedentity;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Collection;
+
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.program.Program;
 import org.hisp.dhis.user.User;
@@ -41,6 +44,8 @@ public interface TrackerOwnershipManager
     
     public static final String PROGRAM_ACCESS_CLOSED = "PROGRAM_ACCESS_CLOSED";
 
+    public static final int TEMPORARY_OWNERSHIP_VALIDITY_IN_HOURS = 3;
+
     /**
      * @param teiUid the tracked entity instance uid
      * @param programUid the prorgram uid
@@ -103,6 +108,19 @@ public interface TrackerOwnershipManager
      */
     boolean hasAccess( User user, String teiUid, String programUid );
 
+    /**
+     * Check ownership access for every combination of the given tracked
+     * entity instances and programs in a single query, resolving the owner
+     * organisation units in the database instead of per instance.
+     * 
+     * @param user The user with which access has to be checked for.
+     * @param teiUids the tracked entity instance uids
+     * @param programUids the program uids
+     * @return the uids of the programs the user has access to, keyed by
+     *         tracked entity instance uid.
+     */
+    SetMap<String, String> getOwnershipAccess( User user, Collection<String> teiUids, Collection<String> programUids );
+
     /**
      * Grant temporary ownership for a user for a specific tei-program
      * combination
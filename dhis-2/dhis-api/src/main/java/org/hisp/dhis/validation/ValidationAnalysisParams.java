@@ -32,6 +32,7 @@ import com.google.common.collect.ImmutableSet;
 import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.period.Period;
+import org.hisp.dhis.scheduling.JobConfiguration;
 
 import java.util.Collection;
 
@@ -73,6 +74,10 @@ public final class ValidationAnalysisParams
 
     private int dayInPeriod = -1;
 
+    private boolean incremental = false;
+
+    private JobConfiguration jobConfiguration;
+
     /**
      * Gets the rules selected for analysis
      *
@@ -168,6 +173,28 @@ public final class ValidationAnalysisParams
         return maxResults;
     }
 
+    /**
+     * Gets whether the analysis should only validate the data which changed since the last complete run of
+     * each rule. Rules which have not been run, or have been updated since, are always validated.
+     *
+     * @return true if the analysis is incremental, false if not.
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    /**
+     * Gets the job which runs the analysis, if any. Progress is reported to this job, and it is cancelled
+     * when the job is stopped.
+     *
+     * @return the job configuration, or null.
+     */
+    public JobConfiguration getJobConfiguration()
+    {
+        return jobConfiguration;
+    }
+
     public static class Builder
     {
         private ValidationAnalysisParams params;
@@ -255,6 +282,30 @@ public final class ValidationAnalysisParams
             return this;
         }
 
+        /**
+         * If set to true, only the data which changed since the last complete run of each rule will be validated
+         *
+         * @param incremental true if the analysis should be incremental, false if not.
+         * @return the updated builder object
+         */
+        public Builder withIncremental( boolean incremental )
+        {
+            this.params.incremental = incremental;
+            return this;
+        }
+
+        /**
+         * Sets the job which runs the analysis, to report progress to
+         *
+         * @param jobConfiguration the job configuration.
+         * @return the updated builder object
+         */
+        public Builder withJobConfiguration( JobConfiguration jobConfiguration )
+        {
+            this.params.jobConfiguration = jobConfiguration;
+            return this;
+        }
+
         /**
          * Returns the params object
          * @return the final ValidationAnalysisParams object.
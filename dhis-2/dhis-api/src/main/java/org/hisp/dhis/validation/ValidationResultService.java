@@ -47,6 +47,17 @@ public interface ValidationResultService
      */
     void saveValidationResults( Collection<ValidationResult> validationResults );
 
+    /**
+     * Saves the given ValidationResults which do not already exist for the
+     * same validation rule, period, organisation unit, attribute option combo
+     * and day in period. Existing results are detected by the database, so
+     * they need not be loaded beforehand.
+     *
+     * @param validationResults a collection of validation results.
+     * @return the validation results which were saved.
+     */
+    List<ValidationResult> saveNewValidationResults( Collection<ValidationResult> validationResults );
+
     /**
      * Returns a list of all existing ValidationResults.
      * 
@@ -52,4 +52,14 @@ public interface ValidationResultStore
 
     List<ValidationResult> getValidationResults( OrganisationUnit orgUnit,
         boolean includeOrgUnitDescendants, Collection<ValidationRule> validationRules, Collection<Period> periods );
+
+    /**
+     * Inserts the given validation results unless a result for the same rule,
+     * period, organisation unit, attribute option combo and day in period
+     * exists. Periods must be persisted.
+     *
+     * @param validationResults the validation results.
+     * @return the validation results which were inserted.
+     */
+    List<ValidationResult> saveIfNotExists( Collection<ValidationResult> validationResults );
 }
@@ -45,6 +45,7 @@ import org.hisp.dhis.schema.annotation.Property;
 import org.hisp.dhis.schema.annotation.PropertyRange;
 import org.hisp.dhis.validation.notification.ValidationNotificationTemplate;
 
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -111,6 +112,23 @@ public class ValidationRule
      */
     private Set<ValidationNotificationTemplate> notificationTemplates = new HashSet<>();
 
+    /**
+     * The time the last complete validation run with persisted results
+     * started, used to find the data changed since then. Not part of the
+     * validation rule metadata.
+     */
+    private Date lastRun;
+
+    /**
+     * The start date of the periods of the last complete validation run.
+     */
+    private Date lastRunStartDate;
+
+    /**
+     * The end date of the periods of the last complete validation run.
+     */
+    private Date lastRunEndDate;
+
     // -------------------------------------------------------------------------
     // Constructors
     // -------------------------------------------------------------------------
@@ -346,4 +364,34 @@ public class ValidationRule
     {
         this.organisationUnitLevels = organisationUnitLevels;
     }
+
+    public Date getLastRun()
+    {
+        return lastRun;
+    }
+
+    public void setLastRun( Date lastRun )
+    {
+        this.lastRun = lastRun;
+    }
+
+    public Date getLastRunStartDate()
+    {
+        return lastRunStartDate;
+    }
+
+    public void setLastRunStartDate( Date lastRunStartDate )
+    {
+        this.lastRunStartDate = lastRunStartDate;
+    }
+
+    public Date getLastRunEndDate()
+    {
+        return lastRunEndDate;
+    }
+
+    public void setLastRunEndDate( Date lastRunEndDate )
+    {
+        this.lastRunEndDate = lastRunEndDate;
+    }
 }
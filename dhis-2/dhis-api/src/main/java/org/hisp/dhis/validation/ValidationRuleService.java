@@ -32,6 +32,7 @@ import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataset.DataSet;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
@@ -130,6 +131,17 @@ public interface ValidationRuleService
      */
     List<ValidationRule> getValidationRulesWithNotificationTemplates();
 
+    /**
+     * Records the last complete validation run of the given rules, used by
+     * incremental validation to find the data which changed since.
+     *
+     * @param validationRules the validation rules.
+     * @param lastRun the time the run started.
+     * @param startDate the start date of the periods of the run.
+     * @param endDate the end date of the periods of the run.
+     */
+    void updateLastRun( Collection<ValidationRule> validationRules, Date lastRun, Date startDate, Date endDate );
+
     // -------------------------------------------------------------------------
     // ValidationRuleGroup
     // -------------------------------------------------------------------------
@@ -28,6 +28,8 @@ package org.hisp.dhis.validation;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import org.hisp.dhis.common.IdentifiableObjectStore;
@@ -53,4 +55,15 @@ public interface ValidationRuleStore
      * @return a List of ValidationRules.
      */
     List<ValidationRule> getValidationRulesWithNotificationTemplates();
+
+    /**
+     * Records the last complete validation run of the given rules, without
+     * changing the last updated time of the rules.
+     *
+     * @param validationRules the validation rules.
+     * @param lastRun the time the run started.
+     * @param startDate the start date of the periods of the run.
+     * @param endDate the end date of the periods of the run.
+     */
+    void updateLastRun( Collection<ValidationRule> validationRules, Date lastRun, Date startDate, Date endDate );
 }
@@ -0,0 +1,224 @@
+package org.hisp.dhis.common;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.IntegrationTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+public class DataCubeTest
+{
+    private static final Log log = LogFactory.getLog( DataCubeTest.class );
+
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void testPutGetValue()
+    {
+        DataCube<Integer, String, String> cube = new DataCube<>();
+
+        cube.putValue( 1, "201801", "aocA", "deA", 10d );
+        cube.putValue( 1, "201801", "aocA", "deB", 20d );
+        cube.putValue( 1, "201802", "aocB", "deA", 30d );
+        cube.putValue( 2, "201801", "aocA", "deA", 40d );
+        cube.putValue( 1, "201801", "aocA", "deA", 50d );
+
+        assertEquals( 4, cube.size() );
+        assertEquals( 50d, cube.getValue( 1, "201801", "aocA", "deA" ), DELTA );
+        assertEquals( 20d, cube.getValue( 1, "201801", "aocA", "deB" ), DELTA );
+        assertEquals( 30d, cube.getValue( 1, "201802", "aocB", "deA" ), DELTA );
+        assertEquals( 40d, cube.getValue( 2, "201801", "aocA", "deA" ), DELTA );
+        assertTrue( Double.isNaN( cube.getValue( 2, "201802", "aocA", "deA" ) ) );
+        assertTrue( Double.isNaN( cube.getValue( 3, "201801", "aocA", "deA" ) ) );
+        assertTrue( Double.isNaN( cube.getValue( 1, "201801", "aocB", "deB" ) ) );
+    }
+
+    @Test
+    public void testAddRemoveValue()
+    {
+        DataCube<Integer, String, String> cube = new DataCube<>();
+
+        cube.addValue( 1, "201801", "aocA", "deA", 10d );
+        cube.addValue( 1, "201801", "aocA", "deA", 5d );
+        cube.addValue( 1, "201801", "aocA", "deB", 2d );
+
+        assertEquals( 15d, cube.getValue( 1, "201801", "aocA", "deA" ), DELTA );
+        assertEquals( 2, cube.size() );
+
+        cube.removeValue( 1, "201801", "aocA", "deA" );
+        cube.putValue( 1, "201801", "aocA", "deB", Double.NaN );
+
+        assertTrue( Double.isNaN( cube.getValue( 1, "201801", "aocA", "deA" ) ) );
+        assertTrue( cube.isEmpty() );
+    }
+
+    @Test
+    public void testPutAll()
+    {
+        DataCube<Integer, String, String> cubeA = new DataCube<>();
+        DataCube<Integer, String, String> cubeB = new DataCube<>();
+
+        cubeA.putValue( 1, "201801", "aocA", "deA", 10d );
+        cubeA.putValue( 1, "201801", "aocA", "deB", 20d );
+        cubeB.putValue( 1, "201801", "aocA", "deB", 25d );
+        cubeB.putValue( 2, "201803", "aocC", "deC", 30d );
+
+        cubeA.putAll( cubeB );
+
+        assertEquals( 3, cubeA.size() );
+        assertEquals( 10d, cubeA.getValue( 1, "201801", "aocA", "deA" ), DELTA );
+        assertEquals( 25d, cubeA.getValue( 1, "201801", "aocA", "deB" ), DELTA );
+        assertEquals( 30d, cubeA.getValue( 2, "201803", "aocC", "deC" ), DELTA );
+    }
+
+    @Test
+    public void testGetSlice()
+    {
+        DataCube<Integer, String, String> cube = new DataCube<>();
+
+        cube.putValue( 1, "201801", "aocA", "deA", 10d );
+        cube.putValue( 1, "201801", "aocB", "deA", 20d );
+        cube.putValue( 1, "201802", "aocA", "deB", 30d );
+        cube.putValue( 2, "201801", "aocA", "deA", 40d );
+
+        MapMapMap<String, String, String, Double> slice = cube.getSlice( 1 );
+
+        assertEquals( 2, slice.size() );
+        assertEquals( 10d, slice.get( "201801" ).get( "aocA" ).get( "deA" ), DELTA );
+        assertEquals( 20d, slice.get( "201801" ).get( "aocB" ).get( "deA" ), DELTA );
+        assertEquals( 30d, slice.get( "201802" ).get( "aocA" ).get( "deB" ), DELTA );
+
+        MapMap<String, String, Double> periodSlice = cube.getSlice( 2, "201801" );
+
+        assertEquals( 1, periodSlice.size() );
+        assertEquals( 40d, periodSlice.get( "aocA" ).get( "deA" ), DELTA );
+
+        assertTrue( cube.getSlice( 3 ).isEmpty() );
+        assertTrue( cube.getSlice( 2, "201802" ).isEmpty() );
+    }
+
+    @Test
+    public void testForEach()
+    {
+        DataCube<Integer, String, String> cube = new DataCube<>();
+
+        cube.putValue( 1, "201801", "aocA", "deA", 10d );
+        cube.putValue( 1, "201802", "aocA", "deB", 30d );
+        cube.putValue( 2, "201801", "aocA", "deA", 40d );
+
+        List<Double> values = new ArrayList<>();
+
+        cube.forEach( ( ou, pe, aoc, item, value ) -> values.add( value ) );
+
+        assertEquals( 3, values.size() );
+
+        values.clear();
+
+        cube.forEach( 2, ( ou, pe, aoc, item, value ) -> values.add( value ) );
+
+        assertEquals( 1, values.size() );
+        assertEquals( 40d, values.get( 0 ), DELTA );
+        assertFalse( cube.isEmpty() );
+    }
+
+    /**
+     * Compares the memory used and the time taken by a cube and by nested
+     * maps holding the same values. Run with the integration profile.
+     */
+    @Test
+    @Category( IntegrationTest.class )
+    public void benchmarkMemoryAndThroughput()
+    {
+        int orgUnits = 2000;
+        int periods = 12;
+        int items = 50;
+
+        Runtime runtime = Runtime.getRuntime();
+
+        System.gc();
+        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
+        long time = System.nanoTime();
+
+        DataCube<Integer, Integer, Integer> cube = new DataCube<>();
+
+        for ( int ou = 0; ou < orgUnits; ou++ )
+        {
+            for ( int pe = 0; pe < periods; pe++ )
+            {
+                for ( int item = 0; item < items; item++ )
+                {
+                    cube.putValue( ou, pe, "aoc", item, item );
+                }
+            }
+        }
+
+        System.gc();
+        long cubeMemory = runtime.totalMemory() - runtime.freeMemory() - memoryBefore;
+        long cubeTime = System.nanoTime() - time;
+
+        memoryBefore = runtime.totalMemory() - runtime.freeMemory();
+        time = System.nanoTime();
+
+        MapMapMap<Integer, Integer, String, MapMap<String, Integer, Double>> maps = new MapMapMap<>();
+
+        for ( int ou = 0; ou < orgUnits; ou++ )
+        {
+            for ( int pe = 0; pe < periods; pe++ )
+            {
+                MapMap<String, Integer, Double> values = new MapMap<>();
+
+                for ( int item = 0; item < items; item++ )
+                {
+                    values.putEntry( "aoc", item, (double) item );
+                }
+
+                maps.putEntry( ou, pe, "aoc", values );
+            }
+        }
+
+        System.gc();
+        long mapMemory = runtime.totalMemory() - runtime.freeMemory() - memoryBefore;
+        long mapTime = System.nanoTime() - time;
+
+        assertEquals( orgUnits * periods * items, cube.size() );
+        assertEquals( orgUnits, maps.size() );
+
+        log.info( "Cube: " + cube.size() + " values, " + ( cubeMemory / 1024 ) + " KB, " + ( cubeTime / 1000000 ) + " ms" );
+        log.info( "Maps: " + maps.size() + " org units, " + ( mapMemory / 1024 ) + " KB, " + ( mapTime / 1000000 ) + " ms" );
+    }
+}
@@ -0,0 +1,275 @@
+package org.hisp.dhis.dataapproval;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Approvals of one workflow and period, for answering approval state queries
+ * without SQL. Approvals are held by organisation unit uid in compact int
+ * arrays, holding the organisation unit id followed by the attribute option
+ * combo id, approval level id and accepted flag of each approval.
+ * <p>
+ * The index does not hold the hierarchy. Ancestors are looked up by the uids
+ * of the current organisation unit path, so moving organisation units does
+ * not invalidate the index.
+ * <p>
+ * Instances are not changed once loaded. When approvals change, the index is
+ * invalidated and loaded again. This way instances can be shared between
+ * threads and held in a distributed cache.
+ */
+public class DataApprovalIndex
+    implements Serializable
+{
+    private static final int ENTRY_SIZE = 3;
+
+    private static final String PATH_SEPARATOR = "/";
+
+    private final Map<String, int[]> approvals;
+
+    public DataApprovalIndex()
+    {
+        this.approvals = new HashMap<>();
+    }
+
+    // -------------------------------------------------------------------------
+    // Load
+    // -------------------------------------------------------------------------
+
+    /**
+     * Adds an approval while loading the index. Must not be called once the
+     * index is shared.
+     *
+     * @param orgUnitUid the organisation unit uid.
+     * @param orgUnitId the organisation unit id.
+     * @param aocId the attribute option combo id.
+     * @param levelId the approval level id.
+     * @param accepted whether the approval is accepted.
+     */
+    public void addApproval( String orgUnitUid, int orgUnitId, int aocId, int levelId, boolean accepted )
+    {
+        approvals.put( orgUnitUid, withEntry( approvals.get( orgUnitUid ), orgUnitId, aocId, levelId, accepted ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Query
+    // -------------------------------------------------------------------------
+
+    /**
+     * Indicates whether the given approval exists.
+     */
+    public boolean isApproved( String orgUnitUid, int aocId, int levelId )
+    {
+        return indexOf( approvals.get( orgUnitUid ), aocId, levelId ) != -1;
+    }
+
+    /**
+     * Gets the highest approval of an attribute option combo among the given
+     * organisation units. The highest approval has the lowest level number.
+     * For the same level, approvals which are not accepted come first.
+     *
+     * @param orgUnitUids the organisation unit uids.
+     * @param aocId the attribute option combo id.
+     * @param levelFilter the approval level ids to consider, or null for all.
+     * @param levelOf returns the level number of an approval level id.
+     * @return the highest approval, or null if there is none.
+     */
+    public Approval getHighestApproval( Collection<String> orgUnitUids, int aocId, IntPredicate levelFilter,
+        IntUnaryOperator levelOf )
+    {
+        Approval highest = null;
+
+        for ( String orgUnitUid : orgUnitUids )
+        {
+            int[] entries = approvals.get( orgUnitUid );
+
+            if ( entries == null )
+            {
+                continue;
+            }
+
+            for ( int i = 1; i < entries.length; i += ENTRY_SIZE )
+            {
+                if ( entries[i] != aocId || ( levelFilter != null && !levelFilter.test( entries[i + 1] ) ) )
+                {
+                    continue;
+                }
+
+                Approval approval = new Approval( entries[0], entries[i + 1], levelOf.applyAsInt( entries[i + 1] ),
+                    entries[i + 2] == 1 );
+
+                if ( highest == null || approval.isHigherThan( highest ) )
+                {
+                    highest = approval;
+                }
+            }
+        }
+
+        return highest;
+    }
+
+    /**
+     * Returns the number of approvals in this index.
+     */
+    public int size()
+    {
+        return approvals.values().stream().mapToInt( e -> e.length / ENTRY_SIZE ).sum();
+    }
+
+    /**
+     * Returns the uids of the organisation unit of the given path and of all
+     * its ancestors, such as "a", "b" and "c" for "/a/b/c".
+     */
+    public static List<String> getPathUids( String path )
+    {
+        return Arrays.stream( path.split( PATH_SEPARATOR ) )
+            .filter( uid -> !uid.isEmpty() )
+            .collect( Collectors.toList() );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private static int indexOf( int[] entries, int aocId, int levelId )
+    {
+        if ( entries != null )
+        {
+            for ( int i = 1; i < entries.length; i += ENTRY_SIZE )
+            {
+                if ( entries[i] == aocId && entries[i + 1] == levelId )
+                {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    private static int[] withEntry( int[] entries, int orgUnitId, int aocId, int levelId, boolean accepted )
+    {
+        int index = indexOf( entries, aocId, levelId );
+
+        int[] changed;
+
+        if ( index != -1 )
+        {
+            changed = Arrays.copyOf( entries, entries.length );
+        }
+        else if ( entries != null )
+        {
+            index = entries.length;
+            changed = Arrays.copyOf( entries, entries.length + ENTRY_SIZE );
+        }
+        else
+        {
+            index = 1;
+            changed = new int[1 + ENTRY_SIZE];
+        }
+
+        changed[0] = orgUnitId;
+        changed[index] = aocId;
+        changed[index + 1] = levelId;
+        changed[index + 2] = accepted ? 1 : 0;
+
+        return changed;
+    }
+
+    // -------------------------------------------------------------------------
+    // Approval
+    // -------------------------------------------------------------------------
+
+    /**
+     * An approval found in the index.
+     */
+    public static class Approval
+    {
+        private final int orgUnitId;
+
+        private final int levelId;
+
+        private final int level;
+
+        private final boolean accepted;
+
+        public Approval( int orgUnitId, int levelId, int level, boolean accepted )
+        {
+            this.orgUnitId = orgUnitId;
+            this.levelId = levelId;
+            this.level = level;
+            this.accepted = accepted;
+        }
+
+        private boolean isHigherThan( Approval other )
+        {
+            if ( level != other.level )
+            {
+                return level < other.level;
+            }
+
+            if ( accepted != other.accepted )
+            {
+                return !accepted;
+            }
+
+            // Organisation unit ids compare as text, as in the approval query
+
+            return String.valueOf( orgUnitId ).compareTo( String.valueOf( other.orgUnitId ) ) < 0;
+        }
+
+        public int getOrgUnitId()
+        {
+            return orgUnitId;
+        }
+
+        public int getLevelId()
+        {
+            return levelId;
+        }
+
+        public int getLevel()
+        {
+            return level;
+        }
+
+        public boolean isAccepted()
+        {
+            return accepted;
+        }
+    }
+}
@@ -38,10 +38,14 @@ import static org.hisp.dhis.dataapproval.DataApprovalState.UNAPPROVED_WAITING;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
@@ -60,6 +64,7 @@ import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.common.IdentifiableObjectUtils;
 import org.hisp.dhis.commons.util.SystemUtils;
 import org.hisp.dhis.dataapproval.DataApproval;
+import org.hisp.dhis.dataapproval.DataApprovalIndex;
 import org.hisp.dhis.dataapproval.DataApprovalLevel;
 import org.hisp.dhis.dataapproval.DataApprovalLevelService;
 import org.hisp.dhis.dataapproval.DataApprovalState;
@@ -78,6 +83,8 @@ import org.hisp.dhis.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * @author Jim Grace
@@ -88,12 +95,22 @@ public class HibernateDataApprovalStore
 {
     private static final Log log = LogFactory.getLog( HibernateDataApprovalStore.class );
 
-    private static final int MAX_APPROVAL_LEVEL = 100000000;
+    /**
+     * Index key standing for the approvals of all workflows and periods.
+     */
+    private static final String ALL_INDEX_KEYS = "*";
 
-    private static final String SQL_CONCAT = "-";
-    private static final String SQL_CAT = StatementBuilder.QUOTE + SQL_CONCAT + StatementBuilder.QUOTE;
+    /**
+     * Approvals by workflow and period, loaded lazily and invalidated when
+     * approvals of the workflow and period change.
+     */
+    private Cache<DataApprovalIndex> APPROVAL_INDEX_CACHE;
 
-    private Cache<Boolean> IS_APPROVED_CACHE;
+    /**
+     * Incremented on every invalidation, so that an index loaded while
+     * approvals changed is not put into the cache.
+     */
+    private final AtomicLong indexGeneration = new AtomicLong();
 
     @Autowired
     private CacheProvider cacheProvider;
@@ -104,10 +121,10 @@ public class HibernateDataApprovalStore
     @PostConstruct
     public void init()
     {
-        IS_APPROVED_CACHE = cacheProvider.newCacheBuilder( Boolean.class )
-            .forRegion( "isDataApproved" )
+        APPROVAL_INDEX_CACHE = cacheProvider.newCacheBuilder( DataApprovalIndex.class )
+            .forRegion( "dataApprovalIndex" )
             .expireAfterAccess( 12, TimeUnit.HOURS )
-            .withMaximumSize( SystemUtils.isTestRun(env.getActiveProfiles()) ? 0 : 20000 ).build();
+            .withMaximumSize( SystemUtils.isTestRun(env.getActiveProfiles()) ? 0 : 2000 ).build();
     }
 
     // -------------------------------------------------------------------------
@@ -159,42 +176,42 @@ public class HibernateDataApprovalStore
     @Override
     public void addDataApproval( DataApproval dataApproval )
     {
-        IS_APPROVED_CACHE.invalidateAll();
-
         dataApproval.setPeriod( periodService.reloadPeriod( dataApproval.getPeriod() ) );
 
         save( dataApproval );
+
+        invalidateIndex( dataApproval );
     }
 
     @Override
     public void updateDataApproval( DataApproval dataApproval )
     {
-        IS_APPROVED_CACHE.invalidateAll();
-
         dataApproval.setPeriod( periodService.reloadPeriod( dataApproval.getPeriod() ) );
 
         update( dataApproval );
+
+        invalidateIndex( dataApproval );
     }
 
     @Override
     public void deleteDataApproval( DataApproval dataApproval )
     {
-        IS_APPROVED_CACHE.invalidateAll();
-
         dataApproval.setPeriod( periodService.reloadPeriod( dataApproval.getPeriod() ) );
 
         delete( dataApproval );
+
+        invalidateIndex( dataApproval );
     }
 
     @Override
     public void deleteDataApprovals( OrganisationUnit organisationUnit )
     {
-        IS_APPROVED_CACHE.invalidateAll();
-
         String hql = "delete from DataApproval d where d.organisationUnit = :unit";
 
         getSession().createQuery( hql ).
             setParameter( "unit", organisationUnit ).executeUpdate();
+
+        invalidateAllIndexes();
     }
 
     @Override
@@ -239,24 +256,160 @@ public class HibernateDataApprovalStore
     @Override
     public boolean dataApprovalExists( DataApproval dataApproval )
     {
-        return IS_APPROVED_CACHE.get( dataApproval.getCacheKey(), key -> dataApprovalExistsInternal( dataApproval ) ).orElse( false );
+        Period storedPeriod = periodService.reloadPeriod( dataApproval.getPeriod() );
+
+        return getIndex( dataApproval.getWorkflow().getId(), storedPeriod.getId() ).isApproved(
+            dataApproval.getOrganisationUnit().getUid(), dataApproval.getAttributeOptionCombo().getId(),
+            dataApproval.getDataApprovalLevel().getId() );
     }
 
-    private boolean dataApprovalExistsInternal( DataApproval dataApproval )
+    /**
+     * Gets the approvals of a workflow and period, loading them if needed.
+     *
+     * @param workflowId the workflow id.
+     * @param periodId the period id.
+     * @return the approvals.
+     */
+    private DataApprovalIndex getIndex( int workflowId, int periodId )
     {
-        Period storedPeriod = periodService.reloadPeriod( dataApproval.getPeriod() );
+        String key = getIndexKey( workflowId, periodId );
+
+        // approvals changed by the current transaction are not visible to others, so they are never cached
+
+        Set<String> changedKeys = getChangedIndexKeys();
+
+        if ( changedKeys.contains( key ) || changedKeys.contains( ALL_INDEX_KEYS ) )
+        {
+            return loadIndex( workflowId, periodId );
+        }
+
+        Optional<DataApprovalIndex> cached = APPROVAL_INDEX_CACHE.getIfPresent( key );
 
-        String sql =
-            "select dataapprovalid " +
-            "from dataapproval " +
-            "where dataapprovallevelid = " + dataApproval.getDataApprovalLevel().getId() + " " +
-            "and workflowid = " + dataApproval.getWorkflow().getId() + " " +
-            "and periodid  = " + storedPeriod.getId() + " " +
-            "and organisationunitid = " + dataApproval.getOrganisationUnit().getId() + " " +
-            "and attributeoptioncomboid = " + dataApproval.getAttributeOptionCombo().getId() + " " +
-            "limit 1";
-
-        return jdbcTemplate.queryForList( sql ).size() > 0;
+        if ( cached.isPresent() )
+        {
+            return cached.get();
+        }
+
+        long generation = indexGeneration.get();
+
+        DataApprovalIndex index = loadIndex( workflowId, periodId );
+
+        synchronized ( indexGeneration )
+        {
+            if ( generation == indexGeneration.get() )
+            {
+                APPROVAL_INDEX_CACHE.put( key, index );
+            }
+        }
+
+        return index;
+    }
+
+    private DataApprovalIndex loadIndex( int workflowId, int periodId )
+    {
+        // approvals of the current session must be visible to the query below
+
+        getSession().flush();
+
+        final String sql =
+            "select o.uid, da.organisationunitid, da.attributeoptioncomboid, da.dataapprovallevelid, da.accepted " +
+            "from dataapproval da " +
+            "join organisationunit o on o.organisationunitid = da.organisationunitid " +
+            "where da.workflowid = " + workflowId + " " +
+            "and da.periodid = " + periodId;
+
+        DataApprovalIndex index = new DataApprovalIndex();
+
+        jdbcTemplate.query( sql, rs -> {
+            index.addApproval( rs.getString( 1 ), rs.getInt( 2 ), rs.getInt( 3 ), rs.getInt( 4 ), rs.getBoolean( 5 ) );
+        } );
+
+        log.debug( "Loaded " + index.size() + " approvals of workflow " + workflowId + ", period " + periodId );
+
+        return index;
+    }
+
+    /**
+     * Invalidates the approvals of the workflow and period of the given
+     * approval. Within a transaction the approvals are invalidated again when
+     * the transaction completes, since other transactions may have loaded
+     * them before the change was committed, and are read from the database
+     * by the current transaction until then.
+     *
+     * @param dataApproval the changed approval.
+     */
+    private void invalidateIndex( DataApproval dataApproval )
+    {
+        invalidateIndex( getIndexKey( dataApproval.getWorkflow().getId(), dataApproval.getPeriod().getId() ) );
+    }
+
+    /**
+     * Invalidates the approvals of all workflows and periods, as
+     * {@link #invalidateIndex(DataApproval)} does for one.
+     */
+    private void invalidateAllIndexes()
+    {
+        invalidateIndex( ALL_INDEX_KEYS );
+    }
+
+    private void invalidateIndex( String key )
+    {
+        invalidateCachedIndex( key );
+
+        if ( TransactionSynchronizationManager.isSynchronizationActive() )
+        {
+            Set<String> changedKeys = getChangedIndexKeys();
+
+            if ( changedKeys.isEmpty() )
+            {
+                TransactionSynchronizationManager.bindResource( this, changedKeys );
+                TransactionSynchronizationManager.registerSynchronization( new TransactionSynchronizationAdapter()
+                {
+                    @Override
+                    public void afterCompletion( int status )
+                    {
+                        TransactionSynchronizationManager.unbindResourceIfPossible( HibernateDataApprovalStore.this );
+
+                        changedKeys.forEach( HibernateDataApprovalStore.this::invalidateCachedIndex );
+                    }
+                } );
+            }
+
+            changedKeys.add( key );
+        }
+    }
+
+    private void invalidateCachedIndex( String key )
+    {
+        synchronized ( indexGeneration )
+        {
+            indexGeneration.incrementAndGet();
+
+            if ( ALL_INDEX_KEYS.equals( key ) )
+            {
+                APPROVAL_INDEX_CACHE.invalidateAll();
+            }
+            else
+            {
+                APPROVAL_INDEX_CACHE.invalidate( key );
+            }
+        }
+    }
+
+    /**
+     * Gets the keys of the approvals changed by the current transaction.
+     */
+    @SuppressWarnings( "unchecked" )
+    private Set<String> getChangedIndexKeys()
+    {
+        Set<String> changedKeys = (Set<String>) TransactionSynchronizationManager.getResource( this );
+
+        return changedKeys != null ? changedKeys : new HashSet<>();
+    }
+
+    private String getIndexKey( int workflowId, int periodId )
+    {
+        return workflowId + "-" + periodId;
     }
 
     @Override
@@ -404,33 +557,11 @@ public class HibernateDataApprovalStore
             userOrgUnitRestrictions += " )";
         }
 
-        String highestApprovedOrgUnitJoin = "";
-        String highestApprovedOrgUnitCompare;
         String orgUnitIds = "";
 
         if ( orgUnits != null )
         {
             orgUnitIds = StringUtils.join( IdentifiableObjectUtils.getIdentifiers( orgUnits ), "," );
-
-            highestApprovedOrgUnitCompare = "da.organisationunitid in (" + orgUnitIds + ") ";
-        }
-        else
-        {
-            highestApprovedOrgUnitJoin = "join organisationunit dao on dao.organisationunitid = da.organisationunitid ";
-
-            highestApprovedOrgUnitCompare = statementBuilder.position( "dao.uid", "o.path" ) + " <> 0";
-        }
-
-        String userApprovalLevelRestrictions = "";
-
-        if ( !isSuperUser && userApprovalLevels.size() != approvalLevels.size() )
-        {
-            for ( DataApprovalLevel dal : userApprovalLevels )
-            {
-                userApprovalLevelRestrictions += ( userApprovalLevelRestrictions.length() == 0 ?
-                    " and dal.dataapprovallevelid in ( " : ", " ) + dal.getId();
-            }
-            userApprovalLevelRestrictions += " ) ";
         }
 
         String approvedAboveSubquery = "false"; // Not approved above if this is the highest (lowest number) approval orgUnit level.
@@ -478,15 +609,7 @@ public class HibernateDataApprovalStore
 
         final String sql =
             "select coc.uid as cocuid, o.uid as ouuid, o.name as ouname, " +
-            "(select min(" + statementBuilder.concatenate( MAX_APPROVAL_LEVEL + " + dal.level", SQL_CAT, "da.accepted", SQL_CAT, "da.organisationunitid" ) + ") " +
-                "from dataapproval da " +
-                "join dataapprovallevel dal on dal.dataapprovallevelid = da.dataapprovallevelid " +
-                highestApprovedOrgUnitJoin +
-                "where da.workflowid = " + workflow.getId() + " " +
-                "and da.periodid = " + getWorkflowPeriodId( workflow, endDate ) + " " +
-                "and da.attributeoptioncomboid = cocco.categoryoptioncomboid " +
-                "and " + highestApprovedOrgUnitCompare + userApprovalLevelRestrictions +
-            ") as highest_approved, " +
+            "cocco.categoryoptioncomboid as cocid, o.path as oupath, " +
             readyBelowSubquery + " as ready_below, " +
             approvedAboveSubquery + " as approved_above " +
             "from categoryoptioncombo coc " +
@@ -527,6 +650,23 @@ public class HibernateDataApprovalStore
 
         Map<Integer, DataApprovalLevel> levelMap = dataApprovalLevelService.getDataApprovalLevelMap();
 
+        Map<Integer, Integer> levelIdMap = levelMap.values().stream()
+            .collect( Collectors.toMap( DataApprovalLevel::getId, DataApprovalLevel::getLevel ) );
+
+        // The highest approval of each row is found among the approvals of the
+        // workflow period held in memory, in the given organisation units, or
+        // else in the organisation unit of the row and its ancestors
+
+        DataApprovalIndex index = getIndex( workflow.getId(), getWorkflowPeriodId( workflow, endDate ) );
+
+        Set<Integer> userLevelIds = !isSuperUser && userApprovalLevels.size() != approvalLevels.size() ?
+            userApprovalLevels.stream().map( DataApprovalLevel::getId ).collect( Collectors.toSet() ) : null;
+
+        IntPredicate levelFilter = userLevelIds == null ? null : userLevelIds::contains;
+
+        List<String> orgUnitUids = orgUnits == null ? null :
+            orgUnits.stream().map( OrganisationUnit::getUid ).collect( Collectors.toList() );
+
         List<DataApprovalStatus> statusList = new ArrayList<>();
 
         while ( rowSet.next() )
@@ -534,14 +674,18 @@ public class HibernateDataApprovalStore
             final String aocUid = rowSet.getString( 1 );
             final String ouUid = rowSet.getString( 2 );
             final String ouName = rowSet.getString( 3 );
-            final String highestApproved = rowSet.getString( 4 );
-            final boolean readyBelow = rowSet.getBoolean( 5 );
-            boolean approvedAbove = rowSet.getBoolean( 6 );
-
-            final String[] approved = highestApproved == null ? null : highestApproved.split( SQL_CONCAT );
-            final int level = approved == null ? 0 : Integer.parseInt( approved[ 0 ] ) - MAX_APPROVAL_LEVEL;
-            final boolean accepted = approved == null ? false : approved[ 1 ].substring( 0, 1 ).equalsIgnoreCase( "t" );
-            final int approvedOrgUnitId = approved == null ? 0 : Integer.parseInt( approved[ 2 ] );
+            final int aocId = rowSet.getInt( 4 );
+            final String ouPath = rowSet.getString( 5 );
+            final boolean readyBelow = rowSet.getBoolean( 6 );
+            boolean approvedAbove = rowSet.getBoolean( 7 );
+
+            final DataApprovalIndex.Approval approved = index.getHighestApproval(
+                orgUnitUids != null ? orgUnitUids : DataApprovalIndex.getPathUids( ouPath ),
+                aocId, levelFilter, levelId -> levelIdMap.getOrDefault( levelId, 0 ) );
+
+            final int level = approved == null ? 0 : approved.getLevel();
+            final boolean accepted = approved == null ? false : approved.isAccepted();
+            final int approvedOrgUnitId = approved == null ? 0 : approved.getOrgUnitId();
 
             DataApprovalLevel approvedLevel = ( level == 0 ? null : levelMap.get( level ) ); // null if not approved
             DataApprovalLevel actionLevel = ( approvedLevel == null ? lowestApprovalLevelForOrgUnit : approvedLevel );
@@ -394,6 +394,11 @@ public class HibernateDataValueStore extends HibernateGenericStore<DataValue>
                 where += sqlHelper.whereAnd() + "p.startdate >= '" + DateUtils.getMediumDateString( params.getStartDate() ) + "'"
                     + " and p.enddate <= '" + DateUtils.getMediumDateString( params.getStartDate() ) + "'";
             }
+            else if ( params.hasIncludedDateRange() )
+            {
+                where += sqlHelper.whereAnd() + "p.startdate <= '" + DateUtils.getMediumDateString( params.getIncludedEndDate() ) + "'"
+                    + " and p.enddate >= '" + DateUtils.getMediumDateString( params.getIncludedDate() ) + "'";
+            }
             else if ( params.hasIncludedDate() )
             {
                 where += sqlHelper.whereAnd() + "p.startdate <= '" + DateUtils.getMediumDateString( params.getIncludedDate() ) + "'"
@@ -448,7 +453,7 @@ public class HibernateDataValueStore extends HibernateGenericStore<DataValue>
 
         if ( params.hasLastUpdated() )
         {
-            where += sqlHelper.whereAnd() + "dv.lastupdated >= " + DateUtils.getMediumDateString( params.getLastUpdated() );
+            where += sqlHelper.whereAnd() + "dv.lastupdated >= '" + DateUtils.getLongDateString( params.getLastUpdated() ) + "'";
         }
 
         if ( !params.isIncludeDeleted() )
@@ -29,8 +29,13 @@ package org.hisp.dhis.predictor;
  */
 
 import org.hisp.dhis.common.IdentifiableObjectStore;
+import org.hisp.dhis.common.SetMap;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.period.PeriodType;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -91,6 +96,18 @@ public class DefaultPredictorService
         return predictorStore.getAll();
     }
 
+    @Override
+    public void updateLastRun( Predictor predictor, Date lastRun, Date startDate, Date endDate )
+    {
+        predictorStore.updateLastRun( predictor, lastRun, startDate, endDate );
+    }
+
+    @Override
+    public SetMap<String, Date> getChangedDataDates( Collection<DataElement> dataElements, PeriodType periodType, Date since )
+    {
+        return predictorStore.getChangedDataDates( dataElements, periodType, since );
+    }
+
     // -------------------------------------------------------------------------
     // Predictor group
     // -------------------------------------------------------------------------
@@ -28,8 +28,17 @@ package org.hisp.dhis.predictor.hibernate;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import static org.hisp.dhis.common.IdentifiableObjectUtils.getIdentifiers;
+import static org.hisp.dhis.commons.util.TextUtils.getCommaDelimitedString;
+
+import java.util.Collection;
+import java.util.Date;
+
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.common.hibernate.HibernateIdentifiableObjectStore;
+import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.period.PeriodService;
+import org.hisp.dhis.period.PeriodType;
 import org.hisp.dhis.predictor.Predictor;
 import org.hisp.dhis.predictor.PredictorStore;
 
@@ -70,4 +79,45 @@ public class HibernatePredictorStore
 
         super.save( predictor );
     }
+
+    @Override
+    public void updateLastRun( Predictor predictor, Date lastRun, Date startDate, Date endDate )
+    {
+        String hql = "update Predictor set lastRun = :lastRun, lastRunStartDate = :startDate, lastRunEndDate = :endDate where id = :id";
+
+        getSession().createQuery( hql )
+            .setParameter( "lastRun", lastRun )
+            .setParameter( "startDate", startDate )
+            .setParameter( "endDate", endDate )
+            .setParameter( "id", predictor.getId() )
+            .executeUpdate();
+
+        predictor.setLastRun( lastRun );
+        predictor.setLastRunStartDate( startDate );
+        predictor.setLastRunEndDate( endDate );
+    }
+
+    @Override
+    public SetMap<String, Date> getChangedDataDates( Collection<DataElement> dataElements, PeriodType periodType, Date since )
+    {
+        SetMap<String, Date> changes = new SetMap<>();
+
+        if ( !dataElements.isEmpty() )
+        {
+            String sql =
+                "select distinct ou.path, pe.startdate " +
+                "from datavalue dv " +
+                "inner join period pe on dv.periodid = pe.periodid " +
+                "inner join organisationunit ou on dv.sourceid = ou.organisationunitid " +
+                "where dv.dataelementid in (" + getCommaDelimitedString( getIdentifiers( dataElements ) ) + ") " +
+                "and pe.periodtypeid = " + periodType.getId() + " " +
+                "and dv.lastupdated > ?";
+
+            jdbcTemplate.query( sql, rs -> {
+                changes.putValue( rs.getString( 1 ), rs.getDate( 2 ) );
+            }, since );
+        }
+
+        return changes;
+    }
 }
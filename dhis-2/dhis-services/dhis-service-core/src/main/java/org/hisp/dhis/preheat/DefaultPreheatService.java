@@ -57,6 +57,7 @@ import org.hisp.dhis.query.Restrictions;
 import org.hisp.dhis.schema.MergeParams;
 import org.hisp.dhis.schema.MergeService;
 import org.hisp.dhis.schema.Property;
+import org.hisp.dhis.schema.PropertyAccessor;
 import org.hisp.dhis.schema.PropertyType;
 import org.hisp.dhis.schema.Schema;
 import org.hisp.dhis.schema.SchemaService;
@@ -78,6 +79,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -88,6 +90,14 @@ public class DefaultPreheatService implements PreheatService
 {
     private static final Log log = LogFactory.getLog( DefaultPreheatService.class );
 
+    private static final int QUERY_CHUNK_SIZE = 20000;
+
+    /**
+     * Owned and persisted reference properties mapped by class, schemas are static
+     * so these only need to be resolved once per class.
+     */
+    private final Map<Class<?>, List<Property>> referencePropertiesCache = new ConcurrentHashMap<>();
+
     @Autowired
     private SchemaService schemaService;
 
@@ -177,55 +187,39 @@ public class DefaultPreheatService implements PreheatService
             Map<Class<? extends IdentifiableObject>, Set<String>> uidMap = references.get( PreheatIdentifier.UID );
             Map<Class<? extends IdentifiableObject>, Set<String>> codeMap = references.get( PreheatIdentifier.CODE );
 
-            if ( uidMap != null && (PreheatIdentifier.UID == params.getPreheatIdentifier() || PreheatIdentifier.AUTO == params.getPreheatIdentifier()) )
+            // all objects of the imported classes are needed for the uniqueness checks anyway, so
+            // references to those classes are resolved from these lists instead of being queried again
+            Map<Class<? extends IdentifiableObject>, List<IdentifiableObject>> loadedObjects = new HashMap<>();
+
+            for ( Class<? extends IdentifiableObject> klass : klasses )
             {
-                for ( Class<? extends IdentifiableObject> klass : uidMap.keySet() )
-                {
-                    List<List<String>> identifiers = Lists.partition( Lists.newArrayList( uidMap.get( klass ) ), 20000 );
+                Query query = Query.from( schemaService.getDynamicSchema( klass ) );
+                query.setUser( preheat.getUser() );
+                List<IdentifiableObject> objects = new ArrayList<>( queryService.query( query ) );
 
-                    if ( !identifiers.isEmpty() )
-                    {
-                        for ( List<String> ids : identifiers )
-                        {
-                            Query query = Query.from( schemaService.getDynamicSchema( klass ) );
-                            query.setUser( preheat.getUser() );
-                            query.add( Restrictions.in( "id", ids ) );
-                            List<? extends IdentifiableObject> objects = queryService.query( query );
-                            preheat.put( PreheatIdentifier.UID, objects );
-                        }
-                    }
+                loadedObjects.put( klass, objects );
+
+                if ( !objects.isEmpty() )
+                {
+                    uniqueCollectionMap.put( klass, objects );
                 }
             }
 
-            if ( codeMap != null && (PreheatIdentifier.CODE == params.getPreheatIdentifier() || PreheatIdentifier.AUTO == params.getPreheatIdentifier()) )
+            if ( uidMap != null && (PreheatIdentifier.UID == params.getPreheatIdentifier() || PreheatIdentifier.AUTO == params.getPreheatIdentifier()) )
             {
-                for ( Class<? extends IdentifiableObject> klass : codeMap.keySet() )
+                for ( Class<? extends IdentifiableObject> klass : uidMap.keySet() )
                 {
-                    List<List<String>> identifiers = Lists.partition( Lists.newArrayList( codeMap.get( klass ) ), 20000 );
-
-                    if ( !identifiers.isEmpty() )
-                    {
-                        for ( List<String> ids : identifiers )
-                        {
-                            Query query = Query.from( schemaService.getDynamicSchema( klass ) );
-                            query.setUser( preheat.getUser() );
-                            query.add( Restrictions.in( "code", ids ) );
-                            List<? extends IdentifiableObject> objects = queryService.query( query );
-                            preheat.put( PreheatIdentifier.CODE, objects );
-                        }
-                    }
+                    preheat.put( PreheatIdentifier.UID, getReferencedObjects( klass, PreheatIdentifier.UID, uidMap.get( klass ),
+                        loadedObjects.get( klass ), preheat.getUser() ) );
                 }
             }
 
-            for ( Class<? extends IdentifiableObject> klass : klasses )
+            if ( codeMap != null && (PreheatIdentifier.CODE == params.getPreheatIdentifier() || PreheatIdentifier.AUTO == params.getPreheatIdentifier()) )
             {
-                Query query = Query.from( schemaService.getDynamicSchema( klass ) );
-                query.setUser( preheat.getUser() );
-                List<? extends IdentifiableObject> objects = queryService.query( query );
-
-                if ( !objects.isEmpty() )
+                for ( Class<? extends IdentifiableObject> klass : codeMap.keySet() )
                 {
-                    uniqueCollectionMap.put( klass, new ArrayList<>( objects ) );
+                    preheat.put( PreheatIdentifier.CODE, getReferencedObjects( klass, PreheatIdentifier.CODE, codeMap.get( klass ),
+                        loadedObjects.get( klass ), preheat.getUser() ) );
                 }
             }
         }
@@ -489,10 +483,7 @@ public class DefaultPreheatService implements PreheatService
         for ( Class<?> klass : targets.keySet() )
         {
             Schema schema = schemaService.getDynamicSchema( klass );
-
-            List<Property> referenceProperties = schema.getProperties().stream()
-                .filter( p -> p.isPersisted() && p.isOwner() && (PropertyType.REFERENCE == p.getPropertyType() || PropertyType.REFERENCE == p.getItemPropertyType()) )
-                .collect( Collectors.toList() );
+            List<Property> referenceProperties = getReferenceProperties( klass );
 
             for ( Object object : targets.get( klass ) )
             {
@@ -515,7 +506,7 @@ public class DefaultPreheatService implements PreheatService
                         if ( !uidMap.containsKey( itemKlass ) ) uidMap.put( itemKlass, new HashSet<>() );
                         if ( !codeMap.containsKey( itemKlass ) ) codeMap.put( itemKlass, new HashSet<>() );
 
-                        Object reference = ReflectionUtils.invokeMethod( object, p.getGetterMethod() );
+                        Object reference = PropertyAccessor.getValue( object, p );
 
                         if ( reference != null )
                         {
@@ -525,7 +516,7 @@ public class DefaultPreheatService implements PreheatService
                     }
                     else
                     {
-                        Collection<IdentifiableObject> reference = ReflectionUtils.invokeMethod( object, p.getGetterMethod() );
+                        Collection<IdentifiableObject> reference = PropertyAccessor.getValue( object, p );
                         reference.forEach( identifiableObject -> addIdentifiers( map, identifiableObject ) );
 
                         if ( DataElementOperand.class.isAssignableFrom( p.getItemKlass() ) )
@@ -670,9 +661,7 @@ public class DefaultPreheatService implements PreheatService
                 continue;
             }
 
-            List<Property> properties = schema.getProperties().stream()
-                .filter( p -> p.isPersisted() && p.isOwner() && (PropertyType.REFERENCE == p.getPropertyType() || PropertyType.REFERENCE == p.getItemPropertyType()) )
-                .collect( Collectors.toList() );
+            List<Property> properties = getReferenceProperties( objectClass );
 
             List<IdentifiableObject> identifiableObjects = (List<IdentifiableObject>) targets.get( objectClass );
             Map<String, Map<String, Object>> refMap = new HashMap<>();
@@ -686,7 +675,7 @@ public class DefaultPreheatService implements PreheatService
                 {
                     if ( !p.isCollection() )
                     {
-                        IdentifiableObject reference = ReflectionUtils.invokeMethod( object, p.getGetterMethod() );
+                        IdentifiableObject reference = PropertyAccessor.getValue( object, p );
 
                         if ( reference != null )
                         {
@@ -704,7 +693,7 @@ public class DefaultPreheatService implements PreheatService
                     else
                     {
                         Collection<IdentifiableObject> refObjects = ReflectionUtils.newCollectionInstance( p.getKlass() );
-                        Collection<IdentifiableObject> references = ReflectionUtils.invokeMethod( object, p.getGetterMethod() );
+                        Collection<IdentifiableObject> references = PropertyAccessor.getValue( object, p );
 
                         if ( references != null )
                         {
@@ -774,7 +763,7 @@ public class DefaultPreheatService implements PreheatService
                         list.addAll( targets.get( property.getItemKlass() ) );
                     }
 
-                    objects.forEach( o -> list.addAll( ReflectionUtils.invokeMethod( o, property.getGetterMethod() ) ) );
+                    objects.forEach( o -> list.addAll( PropertyAccessor.getValue( o, property ) ) );
                     targets.put( property.getItemKlass(), list );
                 }
                 else
@@ -786,7 +775,7 @@ public class DefaultPreheatService implements PreheatService
                         list.addAll( targets.get( property.getKlass() ) );
                     }
 
-                    objects.forEach( o -> list.add( ReflectionUtils.invokeMethod( o, property.getGetterMethod() ) ) );
+                    objects.forEach( o -> list.add( PropertyAccessor.getValue( o, property ) ) );
                     targets.put( property.getKlass(), list );
                 }
             }
@@ -821,11 +810,7 @@ public class DefaultPreheatService implements PreheatService
             return;
         }
 
-        Schema schema = schemaService.getDynamicSchema( object.getClass() );
-
-        List<Property> properties = schema.getProperties().stream()
-            .filter( p -> p.isPersisted() && p.isOwner() && (PropertyType.REFERENCE == p.getPropertyType() || PropertyType.REFERENCE == p.getItemPropertyType()) )
-            .collect( Collectors.toList() );
+        List<Property> properties = getReferenceProperties( object.getClass() );
 
         for ( Property property : properties )
         {
@@ -836,24 +821,24 @@ public class DefaultPreheatService implements PreheatService
 
             if ( !property.isCollection() )
             {
-                IdentifiableObject refObject = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+                IdentifiableObject refObject = PropertyAccessor.getValue( object, property );
                 IdentifiableObject ref = getPersistedObject( preheat, identifier, refObject );
 
                 ref = connectDefaults( preheat, property, object, refObject, ref );
 
                 if ( ref != null && ref.getId() == 0 )
                 {
-                    ReflectionUtils.invokeMethod( object, property.getSetterMethod(), (Object) null );
+                    PropertyAccessor.setValue( object, property, null );
                 }
                 else
                 {
-                    ReflectionUtils.invokeMethod( object, property.getSetterMethod(), ref );
+                    PropertyAccessor.setValue( object, property, ref );
                 }
             }
             else
             {
                 Collection<IdentifiableObject> objects = ReflectionUtils.newCollectionInstance( property.getKlass() );
-                Collection<IdentifiableObject> refObjects = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+                Collection<IdentifiableObject> refObjects = PropertyAccessor.getValue( object, property );
 
                 for ( IdentifiableObject refObject : refObjects )
                 {
@@ -861,7 +846,7 @@ public class DefaultPreheatService implements PreheatService
                     if ( ref != null && ref.getId() != 0 ) objects.add( ref );
                 }
 
-                ReflectionUtils.invokeMethod( object, property.getSetterMethod(), objects );
+                PropertyAccessor.setValue( object, property, objects );
             }
         }
     }
@@ -881,6 +866,42 @@ public class DefaultPreheatService implements PreheatService
     // Utility Methods
     //-----------------------------------------------------------------------------------
 
+    private List<Property> getReferenceProperties( Class<?> klass )
+    {
+        return referencePropertiesCache.computeIfAbsent( klass, k -> schemaService.getDynamicSchema( k ).getProperties().stream()
+            .filter( p -> p.isPersisted() && p.isOwner() && (PropertyType.REFERENCE == p.getPropertyType() || PropertyType.REFERENCE == p.getItemPropertyType()) )
+            .collect( Collectors.toList() ) );
+    }
+
+    /**
+     * Returns the objects of the given class matching the given identifiers. If all objects
+     * of the class have already been loaded they are matched in memory, otherwise they are
+     * queried in chunks of {@link #QUERY_CHUNK_SIZE} identifiers.
+     */
+    private List<IdentifiableObject> getReferencedObjects( Class<? extends IdentifiableObject> klass, PreheatIdentifier identifier,
+        Set<String> keys, List<IdentifiableObject> loadedObjects, User user )
+    {
+        if ( loadedObjects != null )
+        {
+            return loadedObjects.stream()
+                .filter( object -> keys.contains( identifier.getIdentifier( object ) ) )
+                .collect( Collectors.toList() );
+        }
+
+        List<IdentifiableObject> objects = new ArrayList<>();
+        String property = PreheatIdentifier.UID == identifier ? "id" : "code";
+
+        for ( List<String> ids : Lists.partition( new ArrayList<>( keys ), QUERY_CHUNK_SIZE ) )
+        {
+            Query query = Query.from( schemaService.getDynamicSchema( klass ) );
+            query.setUser( user );
+            query.add( Restrictions.in( property, ids ) );
+            objects.addAll( queryService.query( query ) );
+        }
+
+        return objects;
+    }
+
     private IdentifiableObject connectDefaults( Preheat preheat, Property property, Object object,
         IdentifiableObject refObject, IdentifiableObject ref )
     {
@@ -940,7 +961,7 @@ public class DefaultPreheatService implements PreheatService
             uniqueProperties.forEach( property ->
             {
                 if ( !map.containsKey( property.getName() ) ) map.put( property.getName(), new HashMap<>() );
-                Object value = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+                Object value = PropertyAccessor.getValue( object, property );
                 if ( value != null ) map.get( property.getName() ).put( value, object.getUid() );
             } );
         }
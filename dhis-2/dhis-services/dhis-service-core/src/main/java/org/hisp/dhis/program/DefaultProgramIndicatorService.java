@@ -30,13 +30,19 @@ package org.hisp.dhis.program;
 
 import static org.apache.commons.lang3.StringUtils.trim;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.api.util.DateUtils;
 import org.hisp.dhis.common.IdentifiableObjectStore;
 import org.hisp.dhis.commons.sqlfunc.ConditionalSqlFunction;
@@ -58,9 +64,12 @@ import org.hisp.dhis.jdbc.StatementBuilder;
 import org.hisp.dhis.system.util.ValidationUtils;
 import org.hisp.dhis.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.trackedentity.TrackedEntityAttributeService;
+import org.hisp.dhis.util.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.collect.ImmutableMap;
 
 /**
@@ -69,6 +78,7 @@ import com.google.common.collect.ImmutableMap;
 public class DefaultProgramIndicatorService
     implements ProgramIndicatorService
 {
+    private static final Log log = LogFactory.getLog( DefaultProgramIndicatorService.class );
 
     private static final Map<String, SqlFunction> SQL_FUNC_MAP = ImmutableMap.<String, SqlFunction> builder()
         .put( ZeroIfNegativeSqlFunction.KEY, new ZeroIfNegativeSqlFunction() )
@@ -164,6 +174,23 @@ public class DefaultProgramIndicatorService
     @Autowired
     private I18nManager i18nManager;
 
+    /**
+     * Cache for compiled analytics SQL templates, see {@link ProgramIndicatorSqlTemplate}.
+     */
+    private final Cache<String, ProgramIndicatorSqlTemplate> analyticsSqlTemplateCache = Caffeine.newBuilder()
+        .expireAfterAccess( 12, TimeUnit.HOURS )
+        .maximumSize( 10000 )
+        .recordStats()
+        .build();
+
+    /**
+     * Number of renders of analytics SQL templates and their total time in
+     * microseconds, reported together with the template cache stats.
+     */
+    private final LongAdder analyticsSqlRenderCount = new LongAdder();
+
+    private final LongAdder analyticsSqlRenderTime = new LongAdder();
+
     // -------------------------------------------------------------------------
     // ProgramIndicatorService implementation
     // -------------------------------------------------------------------------
@@ -293,20 +320,87 @@ public class DefaultProgramIndicatorService
             return null;
         }
 
+        ProgramIndicatorSqlTemplate template = getAnalyticsSqlTemplate( expression, programIndicator, ignoreMissingValues );
+
+        Timer timer = new Timer().start().disablePrint();
+
+        String sql = template.render( programIndicator, startDate, endDate );
+
+        long renderTime = timer.getSplitTime();
+
+        analyticsSqlRenderCount.increment();
+        analyticsSqlRenderTime.add( renderTime );
+
+        if ( log.isDebugEnabled() )
+        {
+            log.debug( String.format( "Rendered analytics SQL for program indicator: '%s', time: %d micros, %s",
+                programIndicator.getUid(), renderTime, getAnalyticsSqlRenderStats() ) );
+        }
+
+        return sql;
+    }
+
+    private String getAnalyticsSqlRenderStats()
+    {
+        long count = analyticsSqlRenderCount.sum();
+
+        return String.format( "renders: %d, average render time: %d micros",
+            count, count > 0 ? analyticsSqlRenderTime.sum() / count : 0 );
+    }
+
+    /**
+     * Returns the compiled analytics SQL template for the given expression and
+     * program indicator. Templates are cached per program indicator and last
+     * updated timestamp, so that regex substitution and metadata lookups happen
+     * once per program indicator version rather than once per query.
+     */
+    private ProgramIndicatorSqlTemplate getAnalyticsSqlTemplate( String expression, ProgramIndicator programIndicator,
+        boolean ignoreMissingValues )
+    {
+        if ( programIndicator.getUid() == null || programIndicator.getLastUpdated() == null )
+        {
+            return compileAnalyticsSql( expression, programIndicator, ignoreMissingValues );
+        }
+
+        String cacheKey = programIndicator.getUid() + "-" + programIndicator.getLastUpdated().getTime() + "-" +
+            programIndicator.getAnalyticsType() + "-" + ignoreMissingValues + "-" + expression;
+
+        return analyticsSqlTemplateCache.get( cacheKey,
+            key -> compileAnalyticsSql( expression, programIndicator, ignoreMissingValues ) );
+    }
+
+    private ProgramIndicatorSqlTemplate compileAnalyticsSql( String expression, ProgramIndicator programIndicator,
+        boolean ignoreMissingValues )
+    {
+        Timer timer = new Timer().start().disablePrint();
+
+        ProgramIndicatorSqlTemplate template = new ProgramIndicatorSqlTemplate();
+
         String sqlExpression = TextUtils.removeNewlines( expression );
 
-        sqlExpression = getSubstitutedVariablesForAnalyticsSql( sqlExpression, programIndicator, startDate, endDate );
+        sqlExpression = getSubstitutedVariablesForAnalyticsSql( sqlExpression, programIndicator, template );
+
+        sqlExpression = getSubstitutedFunctionsAnalyticsSql( sqlExpression, ignoreMissingValues, programIndicator, template );
 
-        sqlExpression = getSubstitutedFunctionsAnalyticsSql( sqlExpression, false, programIndicator, startDate, endDate );
+        sqlExpression = getSubstitutedElementsAnalyticsSql( sqlExpression, ignoreMissingValues, programIndicator, template );
 
-        sqlExpression = getSubstitutedElementsAnalyticsSql( sqlExpression, ignoreMissingValues, programIndicator, startDate,
-            endDate );
+        template.compile( sqlExpression );
 
-        return sqlExpression;
+        log.debug( String.format( "Compiled analytics SQL for program indicator: '%s', static: %b, time: %d ms, cache: %s, %s",
+            programIndicator.getUid(), template.isStatic(), timer.getTimeInMs(), analyticsSqlTemplateCache.stats(),
+            getAnalyticsSqlRenderStats() ) );
+
+        return template;
     }
 
+    /**
+     * Substitutes program indicator functions. Functions of type
+     * {@link ProgramIndicatorFunction} depend on the reporting period and are
+     * added as fragments, which are evaluated with their arguments and then
+     * substituted for elements on render.
+     */
     private String getSubstitutedFunctionsAnalyticsSql( String expression, boolean ignoreMissingValues,
-        ProgramIndicator programIndicator, Date reportingStartDate, Date reportingEndDate )
+        ProgramIndicator programIndicator, ProgramIndicatorSqlTemplate template )
     {
         if ( expression == null )
         {
@@ -326,13 +420,32 @@ public class DefaultProgramIndicatorService
             {
                 String result = "";
                 
-                String[] args = arguments.split( ProgramIndicator.ARGS_SPLIT );
+                final String[] args = arguments.split( ProgramIndicator.ARGS_SPLIT );
 
                 ProgramIndicatorFunction piFunction = PI_FUNC_MAP.get( func );
                 
                 if ( piFunction != null )
                 {
-                    result = piFunction.evaluate( programIndicator, statementBuilder, reportingStartDate, reportingEndDate, args );
+                    List<List<Object>> compiledArgs = Arrays.stream( args )
+                        .map( template::compileText )
+                        .collect( Collectors.toList() );
+
+                    result = template.addFragment( ( t, pi, startDate, endDate ) -> {
+                        String[] renderedArgs = new String[args.length];
+
+                        for ( int i = 0; i < args.length; i++ )
+                        {
+                            renderedArgs[i] = t.render( compiledArgs.get( i ), pi, startDate, endDate );
+                        }
+
+                        String sql = piFunction.evaluate( pi, statementBuilder, startDate, endDate, renderedArgs );
+
+                        ProgramIndicatorSqlTemplate functionTemplate = new ProgramIndicatorSqlTemplate();
+
+                        return functionTemplate
+                            .compile( getSubstitutedElementsAnalyticsSql( sql, ignoreMissingValues, pi, functionTemplate ) )
+                            .render( pi, startDate, endDate );
+                    } );
                 }
                 else
                 {
@@ -343,7 +456,7 @@ public class DefaultProgramIndicatorService
                         for ( int i = 0; i < args.length; i++ )
                         {
                             String arg = getSubstitutedElementsAnalyticsSql( trim( args[i] ), false, programIndicator,
-                                reportingStartDate, reportingEndDate );
+                                template );
                             args[i] = arg;
                         }
                         
@@ -363,7 +476,7 @@ public class DefaultProgramIndicatorService
     }
 
     private String getSubstitutedVariablesForAnalyticsSql( String expression, ProgramIndicator programIndicator,
-        Date startDate, Date endDate )
+        ProgramIndicatorSqlTemplate template )
     {
         if ( expression == null )
         {
@@ -378,7 +491,7 @@ public class DefaultProgramIndicatorService
         {
             String var = matcher.group( 1 );
 
-            String sql = getVariableAsSql( var, expression, programIndicator.getAnalyticsType(), startDate, endDate );
+            String sql = getVariableAsSql( var, expression, programIndicator.getAnalyticsType(), template );
 
             if ( sql != null )
             {
@@ -390,7 +503,7 @@ public class DefaultProgramIndicatorService
     }
 
     private String getSubstitutedElementsAnalyticsSql( String expression, boolean ignoreMissingValues,
-        ProgramIndicator programIndicator, Date startDate, Date endDate )
+        ProgramIndicator programIndicator, ProgramIndicatorSqlTemplate template )
     {
         if ( expression == null )
         {
@@ -416,7 +529,16 @@ public class DefaultProgramIndicatorService
 
                 if ( ProgramIndicator.KEY_DATAELEMENT.equals( key ) )
                 {
-                    columnName = statementBuilder.getProgramIndicatorDataValueSelectSql( el1, el2, startDate, endDate, programIndicator );
+                    if ( AnalyticsType.ENROLLMENT == programIndicator.getAnalyticsType() )
+                    {
+                        columnName = template.addFragment( ( t, pi, startDate, endDate ) ->
+                            statementBuilder.getProgramIndicatorDataValueSelectSql( el1, el2, startDate, endDate, pi ) );
+                    }
+                    else
+                    // Event data values do not depend on the reporting period
+                    {
+                        columnName = statementBuilder.getProgramIndicatorDataValueSelectSql( el1, el2, null, null, programIndicator );
+                    }
                 }
                 else
                 // ProgramIndicator.KEY_ATTRIBUTE
@@ -445,7 +567,14 @@ public class DefaultProgramIndicatorService
 
                 if ( constant != null )
                 {
-                    matcher.appendReplacement( buffer, String.valueOf( constant.getValue() ) );
+                    // Constant values can change without the program indicator being updated
+
+                    final String match = matcher.group();
+
+                    matcher.appendReplacement( buffer, template.addFragment( ( t, pi, startDate, endDate ) -> {
+                        Constant current = constantService.getConstant( el1 );
+                        return current != null ? String.valueOf( current.getValue() ) : match;
+                    } ) );
                 }
             }
         }
@@ -636,8 +765,8 @@ public class DefaultProgramIndicatorService
      * @param expression the program indicator expression.
      * @return a SQL select clause.
      */
-    private String getVariableAsSql( String var, String expression, AnalyticsType analyticsType, Date startDate,
-        Date endDate )
+    private String getVariableAsSql( String var, String expression, AnalyticsType analyticsType,
+        ProgramIndicatorSqlTemplate template )
     {
         final String dbl = statementBuilder.getDoubleColumnType();
 
@@ -645,7 +774,7 @@ public class DefaultProgramIndicatorService
 
         if ( ProgramIndicator.VAR_CURRENT_DATE.equals( var ) )
         {
-            return "'" + DateUtils.getLongDateString() + "'";
+            return "'" + template.addFragment( ( t, pi, startDate, endDate ) -> DateUtils.getLongDateString() ) + "'";
         }
         else if ( ProgramIndicator.VAR_VALUE_COUNT.equals( var ) )
         {
@@ -698,11 +827,11 @@ public class DefaultProgramIndicatorService
         }
         else if ( ProgramIndicator.VAR_ANALYTICS_PERIOD_START.equals( var ) )
         {
-            return "'" + DateUtils.getSqlDateString( startDate ) + "'";
+            return "'" + template.addFragment( ( t, pi, startDate, endDate ) -> DateUtils.getSqlDateString( startDate ) ) + "'";
         }
         else if ( ProgramIndicator.VAR_ANALYTICS_PERIOD_END.equals( var ) )
         {
-            return "'" + DateUtils.getSqlDateString( endDate ) + "'";
+            return "'" + template.addFragment( ( t, pi, startDate, endDate ) -> DateUtils.getSqlDateString( endDate ) ) + "'";
         }
 
         return variableColumnName;
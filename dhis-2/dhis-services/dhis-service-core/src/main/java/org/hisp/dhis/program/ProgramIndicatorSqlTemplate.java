@@ -0,0 +1,204 @@
+package org.hisp.dhis.program;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Analytics SQL for a program indicator expression or filter which has been
+ * compiled once. All parts which do not depend on the reporting period are
+ * resolved at compile time. Parts which do, like the reporting start and end
+ * dates, event boundaries and program indicator functions, are kept as
+ * placeholders which are filled in when the template is rendered.
+ */
+class ProgramIndicatorSqlTemplate
+{
+    private static final char PLACEHOLDER_MARKER = '\u001F';
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile( "\\x1F(\\d+)\\x1F" );
+
+    /**
+     * A part of the SQL which is rendered for each reporting period.
+     */
+    @FunctionalInterface
+    interface Fragment
+    {
+        String render( ProgramIndicatorSqlTemplate template, ProgramIndicator programIndicator,
+            Date reportingStartDate, Date reportingEndDate );
+    }
+
+    private final List<Fragment> fragments = new ArrayList<>();
+
+    /**
+     * Compiled parts, either {@link String} literals or {@link Fragment}s.
+     */
+    private final List<Object> parts = new ArrayList<>();
+
+    // -------------------------------------------------------------------------
+    // Compile
+    // -------------------------------------------------------------------------
+
+    /**
+     * Registers the given fragment and returns the placeholder to insert into
+     * the SQL in its place. Placeholders do not match any of the program
+     * indicator expression patterns.
+     *
+     * @param fragment the fragment.
+     * @return the placeholder.
+     */
+    String addFragment( Fragment fragment )
+    {
+        fragments.add( fragment );
+
+        return PLACEHOLDER_MARKER + String.valueOf( fragments.size() - 1 ) + PLACEHOLDER_MARKER;
+    }
+
+    /**
+     * Splits the given SQL containing placeholders into literal parts and
+     * fragments.
+     *
+     * @param sql the SQL with placeholders.
+     * @return this template.
+     */
+    ProgramIndicatorSqlTemplate compile( String sql )
+    {
+        parts.clear();
+        parts.addAll( split( sql ) );
+
+        return this;
+    }
+
+    /**
+     * Splits the given text containing placeholders of this template, typically
+     * an argument of a program indicator function, into literal parts and
+     * fragments so that it can be rendered without scanning the text again.
+     * The fragments of the placeholders must already be registered.
+     *
+     * @param text the text with placeholders.
+     * @return the compiled parts, to be rendered with
+     *         {@link #render(List, ProgramIndicator, Date, Date)}.
+     */
+    List<Object> compileText( String text )
+    {
+        return Collections.unmodifiableList( split( text ) );
+    }
+
+    private List<Object> split( String sql )
+    {
+        List<Object> splitParts = new ArrayList<>();
+
+        if ( sql == null )
+        {
+            return splitParts;
+        }
+
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher( sql );
+
+        int position = 0;
+
+        while ( matcher.find() )
+        {
+            if ( matcher.start() > position )
+            {
+                splitParts.add( sql.substring( position, matcher.start() ) );
+            }
+
+            splitParts.add( fragments.get( Integer.parseInt( matcher.group( 1 ) ) ) );
+
+            position = matcher.end();
+        }
+
+        if ( position < sql.length() )
+        {
+            splitParts.add( sql.substring( position ) );
+        }
+
+        return splitParts;
+    }
+
+    // -------------------------------------------------------------------------
+    // Render
+    // -------------------------------------------------------------------------
+
+    /**
+     * Renders the compiled SQL for the given reporting period.
+     *
+     * @param programIndicator the program indicator.
+     * @param reportingStartDate the reporting start date.
+     * @param reportingEndDate the reporting end date.
+     * @return the SQL.
+     */
+    String render( ProgramIndicator programIndicator, Date reportingStartDate, Date reportingEndDate )
+    {
+        return render( parts, programIndicator, reportingStartDate, reportingEndDate );
+    }
+
+    /**
+     * Renders text compiled with {@link #compileText(String)} for the given
+     * reporting period.
+     *
+     * @param textParts the compiled parts of the text.
+     * @param programIndicator the program indicator.
+     * @param reportingStartDate the reporting start date.
+     * @param reportingEndDate the reporting end date.
+     * @return the text with placeholders replaced.
+     */
+    String render( List<Object> textParts, ProgramIndicator programIndicator, Date reportingStartDate,
+        Date reportingEndDate )
+    {
+        StringBuilder sql = new StringBuilder();
+
+        for ( Object part : textParts )
+        {
+            if ( part instanceof Fragment )
+            {
+                sql.append( ( (Fragment) part ).render( this, programIndicator, reportingStartDate, reportingEndDate ) );
+            }
+            else
+            {
+                sql.append( (String) part );
+            }
+        }
+
+        return sql.toString();
+    }
+
+    /**
+     * Indicates whether the compiled SQL is the same for any reporting period.
+     */
+    boolean isStatic()
+    {
+        return parts.stream().noneMatch( part -> part instanceof Fragment );
+    }
+}
@@ -34,8 +34,12 @@ import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
+import org.hibernate.sql.JoinType;
+import org.hibernate.type.StringType;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.hibernate.InternalHibernateGenericStore;
+import org.hisp.dhis.query.operators.LikeOperator;
+import org.hisp.dhis.query.planner.QueryPath;
 import org.hisp.dhis.query.planner.QueryPlan;
 import org.hisp.dhis.query.planner.QueryPlanner;
 import org.hisp.dhis.schema.Schema;
@@ -43,6 +47,7 @@ import org.hisp.dhis.user.CurrentUserService;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -168,7 +173,11 @@ public class CriteriaQueryEngine<T extends IdentifiableObject>
             addCriterion( junction, criterion );
         }
 
-        query.getAliases().forEach( alias -> detachedCriteria.createAlias( alias, alias ) );
+        // parent associations need their alias before any nested association can refer to it, outer joins
+        // keep objects without the association for restrictions in other branches of a disjunction
+        query.getAliases().stream()
+            .sorted( Comparator.comparing( ( String alias ) -> alias.split( "\\." ).length ).thenComparing( alias -> alias ) )
+            .forEach( alias -> detachedCriteria.createAlias( alias, QueryPath.getAliasName( alias ), JoinType.LEFT_OUTER_JOIN ) );
 
         return detachedCriteria.setProjection(
             Projections.distinct( Projections.id() )
@@ -238,7 +247,7 @@ public class CriteriaQueryEngine<T extends IdentifiableObject>
 
             for ( org.hisp.dhis.query.Criterion c : ((Junction) criterion).getCriterions() )
             {
-                addJunction( junction, c );
+                addJunction( j, c );
             }
         }
     }
@@ -263,9 +272,43 @@ public class CriteriaQueryEngine<T extends IdentifiableObject>
             return null;
         }
 
+        if ( restriction.getQueryPath().isTranslated() )
+        {
+            return getTranslatedCriterion( restriction );
+        }
+
         return restriction.getOperator().getHibernateCriterion( restriction.getQueryPath() );
     }
 
+    /**
+     * Matches equal and like restrictions against the translated value of the property,
+     * falling back to the persisted value when no translation exists for the locale.
+     */
+    private Criterion getTranslatedCriterion( Restriction restriction )
+    {
+        QueryPath queryPath = restriction.getQueryPath();
+        String value = String.valueOf( restriction.getOperator().getArgs().get( 0 ) );
+        String sql = JpaQueryUtils.generateTranslatedPropertySql( queryPath.getProperty() );
+        org.hibernate.type.Type[] types = new org.hibernate.type.Type[]{ StringType.INSTANCE, StringType.INSTANCE };
+
+        if ( LikeOperator.class.isInstance( restriction.getOperator() ) )
+        {
+            LikeOperator operator = (LikeOperator) restriction.getOperator();
+            String pattern = operator.getMatchMode().toMatchString( value.replace( "%", "\\%" ) );
+
+            if ( operator.isCaseSensitive() )
+            {
+                return Restrictions.sqlRestriction( sql + " like ?",
+                    new Object[]{ queryPath.getLocale().toString(), pattern }, types );
+            }
+
+            return Restrictions.sqlRestriction( "lower(" + sql + ") like ?",
+                new Object[]{ queryPath.getLocale().toString(), pattern.toLowerCase() }, types );
+        }
+
+        return Restrictions.sqlRestriction( sql + " = ?", new Object[]{ queryPath.getLocale().toString(), value }, types );
+    }
+
     public org.hibernate.criterion.Order getHibernateOrder( Order order )
     {
         if ( order == null || order.getProperty() == null || !order.getProperty().isPersisted() || !order.getProperty().isSimple() )
@@ -130,6 +130,11 @@ public class DefaultQueryService
 
         QueryPlan queryPlan = queryPlanner.planQuery( query );
 
+        if ( log.isDebugEnabled() )
+        {
+            log.debug( "Query plan for " + query.getSchema().getKlass().getSimpleName() + ": " + queryPlan.getTrace() );
+        }
+
         Query pQuery = queryPlan.getPersistedQuery();
         Query npQuery = queryPlan.getNonPersistedQuery();
 
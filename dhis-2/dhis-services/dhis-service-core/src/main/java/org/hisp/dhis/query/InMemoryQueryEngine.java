@@ -29,21 +29,45 @@ package org.hisp.dhis.query;
  */
 
 import com.google.common.collect.Lists;
+import org.apache.commons.lang.StringUtils;
 import org.hisp.dhis.common.BaseIdentifiableObject;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.common.PagerUtils;
 import org.hisp.dhis.hibernate.HibernateUtils;
+import org.hisp.dhis.query.operators.BetweenOperator;
+import org.hisp.dhis.query.operators.EmptyOperator;
+import org.hisp.dhis.query.operators.EqualOperator;
+import org.hisp.dhis.query.operators.GreaterEqualOperator;
+import org.hisp.dhis.query.operators.GreaterThanOperator;
+import org.hisp.dhis.query.operators.InOperator;
+import org.hisp.dhis.query.operators.LessEqualOperator;
+import org.hisp.dhis.query.operators.LessThanOperator;
+import org.hisp.dhis.query.operators.LikeOperator;
+import org.hisp.dhis.query.operators.NotEqualOperator;
+import org.hisp.dhis.query.operators.NotInOperator;
+import org.hisp.dhis.query.operators.NotLikeOperator;
+import org.hisp.dhis.query.operators.NotNullOperator;
+import org.hisp.dhis.query.operators.NotTokenOperator;
+import org.hisp.dhis.query.operators.NullOperator;
+import org.hisp.dhis.query.operators.Operator;
+import org.hisp.dhis.query.operators.TokenOperator;
 import org.hisp.dhis.schema.Property;
+import org.hisp.dhis.schema.PropertyAccessor;
 import org.hisp.dhis.schema.Schema;
 import org.hisp.dhis.schema.SchemaService;
 import org.hisp.dhis.security.acl.AclService;
-import org.hisp.dhis.system.util.ReflectionUtils;
 import org.hisp.dhis.user.CurrentUserService;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -104,9 +128,16 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
     @SuppressWarnings( "unchecked" )
     private List<T> runQuery( Query query )
     {
-        return query.getObjects().stream()
-            .filter( object -> test( query, (T) object ) )
-            .map( object -> (T) object )
+        List<T> objects = new ArrayList<>( (List<T>) query.getObjects() );
+        Map<String, PathValues> pathValues = new HashMap<>();
+
+        BitSet candidates = new BitSet( objects.size() );
+        candidates.set( 0, objects.size() );
+
+        BitSet matches = test( query, objects, pathValues, candidates );
+
+        return matches.stream()
+            .mapToObj( objects::get )
             .collect( Collectors.toList() );
     }
 
@@ -128,123 +159,163 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
         return sorted;
     }
 
-    private boolean test( Query query, T object )
+    private BitSet test( Query query, List<T> objects, Map<String, PathValues> pathValues, BitSet candidates )
     {
-        List<Boolean> testResults = new ArrayList<>();
-
-        for ( Criterion criterion : query.getCriterions() )
+        if ( query.getRootJunctionType() == Junction.Type.OR )
         {
-            Boolean testResult = false;
+            BitSet matches = new BitSet();
 
-            // normal Restriction, just assume Conjunction
-            if ( Restriction.class.isInstance( criterion ) )
-            {
-                Restriction restriction = (Restriction) criterion;
-                testResult = testAnd( query, object, Lists.newArrayList( restriction ) );
-            }
-            else if ( Conjunction.class.isInstance( criterion ) )
-            {
-                Conjunction conjunction = (Conjunction) criterion;
-                testResult = testAnd( query, object, conjunction.getCriterions() );
-            }
-            else if ( Disjunction.class.isInstance( criterion ) )
+            for ( Criterion criterion : query.getCriterions() )
             {
-                Disjunction disjunction = (Disjunction) criterion;
-                testResult = testOr( query, object, disjunction.getCriterions() );
+                BitSet remaining = (BitSet) candidates.clone();
+                remaining.andNot( matches );
+
+                matches.or( testCriterion( query, objects, pathValues, criterion, remaining ) );
             }
 
-            testResults.add( testResult );
+            return matches;
         }
 
-        if ( query.getRootJunctionType() == Junction.Type.OR )
+        BitSet matches = candidates;
+
+        for ( Criterion criterion : query.getCriterions() )
         {
-            return testResults.contains( Boolean.TRUE );
+            matches = testCriterion( query, objects, pathValues, criterion, matches );
         }
 
-        return !testResults.contains( Boolean.FALSE );
+        return matches;
     }
 
-    private boolean testAnd( Query query, T object, List<Criterion> criterions )
+    private BitSet testCriterion( Query query, List<T> objects, Map<String, PathValues> pathValues, Criterion criterion, BitSet candidates )
     {
-        for ( Criterion criterion : criterions )
+        // normal Restriction, just assume Conjunction
+        if ( Restriction.class.isInstance( criterion ) )
         {
-            if ( Restriction.class.isInstance( criterion ) )
-            {
-                Restriction restriction = (Restriction) criterion;
-                Object value = getValue( query, object, restriction.getPath() );
+            return testAnd( query, objects, pathValues, Lists.newArrayList( criterion ), candidates );
+        }
+        else if ( Conjunction.class.isInstance( criterion ) )
+        {
+            return testAnd( query, objects, pathValues, ((Conjunction) criterion).getCriterions(), candidates );
+        }
+        else if ( Disjunction.class.isInstance( criterion ) )
+        {
+            return testOr( query, objects, pathValues, ((Disjunction) criterion).getCriterions(), candidates );
+        }
 
-                if ( !Collection.class.isInstance( value ) )
-                {
-                    if ( !restriction.getOperator().test( value ) )
-                    {
-                        return false;
-                    }
-                }
-                else
-                {
-                    Collection<?> collection = (Collection<?>) value;
+        return new BitSet();
+    }
 
-                    for ( Object item : collection )
-                    {
-                        if ( restriction.getOperator().test( item ) )
-                        {
-                            return true;
-                        }
-                    }
+    /**
+     * Evaluates the restrictions starting from the most selective one, so that
+     * the following restrictions only read the values of the remaining objects.
+     */
+    private BitSet testAnd( Query query, List<T> objects, Map<String, PathValues> pathValues, List<Criterion> criterions, BitSet candidates )
+    {
+        List<Restriction> restrictions = criterions.stream()
+            .filter( Restriction.class::isInstance )
+            .map( Restriction.class::cast )
+            .sorted( Comparator.comparingInt( InMemoryQueryEngine::getSelectivityRank )
+                .thenComparingInt( restriction -> StringUtils.countMatches( restriction.getPath(), "." ) ) )
+            .collect( Collectors.toList() );
 
-                    return false;
-                }
+        BitSet matches = candidates;
+
+        for ( Restriction restriction : restrictions )
+        {
+            if ( matches.isEmpty() )
+            {
+                break;
             }
+
+            matches = testRestriction( query, objects, pathValues, restriction, matches );
         }
 
-        return true;
+        return matches;
     }
 
-    private boolean testOr( Query query, T object, List<Criterion> criterions )
+    private BitSet testOr( Query query, List<T> objects, Map<String, PathValues> pathValues, List<Criterion> criterions, BitSet candidates )
     {
+        BitSet matches = new BitSet();
+
         for ( Criterion criterion : criterions )
         {
             if ( Restriction.class.isInstance( criterion ) )
             {
-                Restriction restriction = (Restriction) criterion;
-                Object value = getValue( query, object, restriction.getPath() );
+                BitSet remaining = (BitSet) candidates.clone();
+                remaining.andNot( matches );
 
-                if ( !Collection.class.isInstance( value ) )
+                if ( remaining.isEmpty() )
                 {
-                    if ( restriction.getOperator().test( value ) )
-                    {
-                        return true;
-                    }
+                    break;
                 }
-                else
-                {
-                    Collection<?> collection = (Collection<?>) value;
 
-                    for ( Object item : collection )
-                    {
-                        if ( restriction.getOperator().test( item ) )
-                        {
-                            return true;
-                        }
-                    }
-                }
+                matches.or( testRestriction( query, objects, pathValues, (Restriction) criterion, remaining ) );
             }
         }
 
-        return false;
+        return matches;
     }
 
-    @SuppressWarnings( "unchecked" )
-    private Object getValue( Query query, Object object, String path )
+    /**
+     * Indexes the values of the restriction path for the candidate objects and
+     * returns the candidates matching the restriction. A value which is a
+     * collection matches if any of its items matches.
+     */
+    private BitSet testRestriction( Query query, List<T> objects, Map<String, PathValues> pathValues, Restriction restriction, BitSet candidates )
     {
-        String[] paths = path.split( "\\." );
-        Schema currentSchema = query.getSchema();
+        PathValues values = pathValues.computeIfAbsent( restriction.getPath(),
+            path -> new PathValues( getProperties( query, path ), objects.size() ) );
 
-        if ( path.contains( "access" ) && query.getSchema().isIdentifiableObject() )
+        ValueIndex index = new ValueIndex();
+
+        for ( int i = candidates.nextSetBit( 0 ); i >= 0; i = candidates.nextSetBit( i + 1 ) )
         {
-            ((BaseIdentifiableObject) object).setAccess( aclService.getAccess( (T) object, query.getUser() ) );
+            if ( values.values[i] == PathValues.NOT_LOADED )
+            {
+                values.values[i] = getValue( query, objects.get( i ), restriction.getPath(), values.properties );
+            }
+
+            index.add( i, values.values[i] );
         }
 
+        return index.match( restriction.getOperator() );
+    }
+
+    /**
+     * Ranks restrictions by how many objects they are expected to match, with
+     * the most selective ones first.
+     */
+    private static int getSelectivityRank( Restriction restriction )
+    {
+        Operator operator = restriction.getOperator();
+
+        if ( operator instanceof NotEqualOperator || operator instanceof NotInOperator || operator instanceof NotLikeOperator ||
+            operator instanceof NotTokenOperator || operator instanceof NotNullOperator )
+        {
+            return 4;
+        }
+        else if ( operator instanceof EqualOperator || operator instanceof InOperator )
+        {
+            return 0;
+        }
+        else if ( operator instanceof BetweenOperator || operator instanceof LikeOperator || operator instanceof TokenOperator )
+        {
+            return 1;
+        }
+        else if ( operator instanceof NullOperator || operator instanceof EmptyOperator )
+        {
+            return 3;
+        }
+
+        return 2;
+    }
+
+    private Property[] getProperties( Query query, String path )
+    {
+        String[] paths = path.split( "\\." );
+        Property[] properties = new Property[paths.length];
+        Schema currentSchema = query.getSchema();
+
         for ( int i = 0; i < paths.length; i++ )
         {
             Property property = currentSchema.getProperty( paths[i] );
@@ -263,6 +334,24 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
                 currentSchema = schemaService.getDynamicSchema( property.getKlass() );
             }
 
+            properties[i] = property;
+        }
+
+        return properties;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private Object getValue( Query query, Object object, String path, Property[] properties )
+    {
+        if ( path.contains( "access" ) && query.getSchema().isIdentifiableObject() )
+        {
+            ((BaseIdentifiableObject) object).setAccess( aclService.getAccess( (T) object, query.getUser() ) );
+        }
+
+        for ( int i = 0; i < properties.length; i++ )
+        {
+            Property property = properties[i];
+
             object = collect( object, property );
 
             if ( path.contains( "access" ) && property.isIdentifiableObject() )
@@ -280,7 +369,7 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
                 }
             }
 
-            if ( i == (paths.length - 1) )
+            if ( i == (properties.length - 1) )
             {
                 if ( property.isCollection() )
                 {
@@ -322,6 +411,160 @@ public class InMemoryQueryEngine<T extends IdentifiableObject>
             return items;
         }
 
-        return ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+        return PropertyAccessor.getValue( object, property );
+    }
+
+    /**
+     * Values of a path for the objects of a query, loaded when first needed.
+     */
+    private static final class PathValues
+    {
+        private static final Object NOT_LOADED = new Object();
+
+        private final Property[] properties;
+
+        private final Object[] values;
+
+        PathValues( Property[] properties, int size )
+        {
+            this.properties = properties;
+            this.values = new Object[size];
+
+            Arrays.fill( values, NOT_LOADED );
+        }
+    }
+
+    /**
+     * Transient index of the values of a path. Values of simple types are held
+     * in a hash index per value class, so that a restriction is tested once per
+     * distinct value, and range restrictions on sortable values are resolved
+     * by binary search over the sorted distinct values. Other values are tested
+     * one by one.
+     */
+    private static final class ValueIndex
+    {
+        private final BitSet nulls = new BitSet();
+
+        private final Map<Class<?>, Map<Object, BitSet>> hashIndex = new HashMap<>();
+
+        private final List<Object> otherValues = new ArrayList<>();
+
+        private final List<Integer> otherPositions = new ArrayList<>();
+
+        void add( int position, Object value )
+        {
+            if ( Collection.class.isInstance( value ) )
+            {
+                for ( Object item : (Collection<?>) value )
+                {
+                    addValue( position, item );
+                }
+            }
+            else
+            {
+                addValue( position, value );
+            }
+        }
+
+        private void addValue( int position, Object value )
+        {
+            if ( value == null )
+            {
+                nulls.set( position );
+            }
+            else if ( value instanceof String || value instanceof Boolean || value instanceof Number ||
+                value instanceof Enum || value instanceof Date )
+            {
+                hashIndex.computeIfAbsent( value.getClass(), klass -> new HashMap<>() )
+                    .computeIfAbsent( value, key -> new BitSet() ).set( position );
+            }
+            else
+            {
+                otherValues.add( value );
+                otherPositions.add( position );
+            }
+        }
+
+        BitSet match( Operator operator )
+        {
+            BitSet matches = new BitSet();
+
+            if ( !nulls.isEmpty() && operator.test( null ) )
+            {
+                matches.or( nulls );
+            }
+
+            for ( Map.Entry<Class<?>, Map<Object, BitSet>> entry : hashIndex.entrySet() )
+            {
+                if ( isRangeOperator( operator ) && isSortable( entry.getKey() ) )
+                {
+                    matchSorted( operator, entry.getValue(), matches );
+                }
+                else
+                {
+                    entry.getValue().forEach( ( value, positions ) ->
+                    {
+                        if ( operator.test( value ) )
+                        {
+                            matches.or( positions );
+                        }
+                    } );
+                }
+            }
+
+            for ( int i = 0; i < otherValues.size(); i++ )
+            {
+                if ( operator.test( otherValues.get( i ) ) )
+                {
+                    matches.set( otherPositions.get( i ) );
+                }
+            }
+
+            return matches;
+        }
+
+        /**
+         * Range operators compare values of these classes by their natural
+         * order, so they match a contiguous range of the sorted values.
+         */
+        @SuppressWarnings( "unchecked" )
+        private void matchSorted( Operator operator, Map<Object, BitSet> index, BitSet matches )
+        {
+            List<Object> values = new ArrayList<>( index.keySet() );
+            values.sort( ( o1, o2 ) -> ((Comparable<Object>) o1).compareTo( o2 ) );
+
+            boolean matchesUpper = operator instanceof GreaterThanOperator || operator instanceof GreaterEqualOperator;
+
+            int low = 0;
+            int high = values.size();
+
+            while ( low < high )
+            {
+                int mid = (low + high) >>> 1;
+
+                if ( operator.test( values.get( mid ) ) == matchesUpper )
+                {
+                    high = mid;
+                }
+                else
+                {
+                    low = mid + 1;
+                }
+            }
+
+            List<Object> matching = matchesUpper ? values.subList( low, values.size() ) : values.subList( 0, low );
+            matching.forEach( value -> matches.or( index.get( value ) ) );
+        }
+
+        private static boolean isRangeOperator( Operator operator )
+        {
+            return operator instanceof GreaterThanOperator || operator instanceof GreaterEqualOperator ||
+                operator instanceof LessThanOperator || operator instanceof LessEqualOperator;
+        }
+
+        private static boolean isSortable( Class<?> klass )
+        {
+            return String.class.equals( klass ) || Integer.class.equals( klass ) || Date.class.isAssignableFrom( klass );
+        }
     }
 }
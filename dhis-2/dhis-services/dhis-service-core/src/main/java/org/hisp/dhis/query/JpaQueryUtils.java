@@ -190,5 +190,21 @@ public class JpaQueryUtils
         }
     }
 
+    /**
+     * Generate a native SQL expression for the translated value of a property, reading the
+     * jsonb translations column of the Criteria root and falling back to the property column
+     * if no (non empty) translation exists. The locale is left as the first query parameter.
+     * Example: coalesce( (select ... where t.value ->> 'locale' = ? ...), {alias}.name )
+     *
+     * @param property Persisted and translatable property, i.e. name or shortName
+     * @return SQL expression, for use in Hibernate sqlRestriction
+     */
+    public static String generateTranslatedPropertySql( Property property )
+    {
+        return "coalesce( (select t.value ->> 'value' from jsonb_array_elements( {alias}.translations ) as t " +
+            "where t.value ->> 'locale' = ? and t.value ->> 'property' = '" + property.getTranslationKey().name() + "' " +
+            "and t.value ->> 'value' <> '' limit 1), {alias}." + property.getFieldName().toLowerCase() + " )";
+    }
+
 
 }
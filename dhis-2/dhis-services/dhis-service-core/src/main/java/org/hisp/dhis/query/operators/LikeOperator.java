@@ -58,6 +58,16 @@ public class LikeOperator extends Operator
         this.matchMode = getMatchMode( matchMode );
     }
 
+    public boolean isCaseSensitive()
+    {
+        return caseSensitive;
+    }
+
+    public MatchMode getMatchMode()
+    {
+        return matchMode;
+    }
+
     @Override
     public Criterion getHibernateCriterion( QueryPath queryPath )
     {
@@ -28,15 +28,29 @@ package org.hisp.dhis.query.planner;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.google.common.collect.ImmutableMap;
+import org.hisp.dhis.common.UserContext;
 import org.hisp.dhis.query.Conjunction;
 import org.hisp.dhis.query.Criterion;
 import org.hisp.dhis.query.Disjunction;
 import org.hisp.dhis.query.Junction;
 import org.hisp.dhis.query.Query;
 import org.hisp.dhis.query.Restriction;
+import org.hisp.dhis.query.operators.BetweenOperator;
+import org.hisp.dhis.query.operators.EqualOperator;
+import org.hisp.dhis.query.operators.GreaterEqualOperator;
+import org.hisp.dhis.query.operators.GreaterThanOperator;
+import org.hisp.dhis.query.operators.InOperator;
+import org.hisp.dhis.query.operators.LessEqualOperator;
+import org.hisp.dhis.query.operators.LessThanOperator;
+import org.hisp.dhis.query.operators.LikeOperator;
+import org.hisp.dhis.query.operators.NotNullOperator;
+import org.hisp.dhis.query.operators.Operator;
 import org.hisp.dhis.schema.Property;
 import org.hisp.dhis.schema.Schema;
 import org.hisp.dhis.schema.SchemaService;
+import org.hisp.dhis.user.UserSettingKey;
+import org.hisp.quick.StatementDialect;
 
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
@@ -44,17 +58,45 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * @author Morten Olav Hansen <mortenoh@gmail.com>
  */
 public class DefaultQueryPlanner implements QueryPlanner
 {
+    /**
+     * Non persisted display properties which can be resolved from translations
+     * of the persisted property they default to.
+     */
+    private static final Map<String, String> TRANSLATED_PROPERTIES = ImmutableMap.of(
+        "displayName", "name",
+        "displayShortName", "shortName" );
+
+    /**
+     * Operators that keep their meaning when the property is reached through
+     * joins, i.e. they never match when the joined object is missing.
+     */
+    private static final List<Class<? extends Operator>> JOIN_OPERATORS = Arrays.asList(
+        EqualOperator.class, InOperator.class, LikeOperator.class, BetweenOperator.class, NotNullOperator.class,
+        GreaterThanOperator.class, GreaterEqualOperator.class, LessThanOperator.class, LessEqualOperator.class );
+
+    /**
+     * Operators that can compare collection sizes through joins.
+     */
+    private static final List<Class<? extends Operator>> COLLECTION_SIZE_OPERATORS = Arrays.asList(
+        EqualOperator.class, GreaterThanOperator.class, GreaterEqualOperator.class,
+        LessThanOperator.class, LessEqualOperator.class );
+
     private final SchemaService schemaService;
 
-    public DefaultQueryPlanner( SchemaService schemaService )
+    private final StatementDialect statementDialect;
+
+    public DefaultQueryPlanner( SchemaService schemaService, StatementDialect statementDialect )
     {
         this.schemaService = schemaService;
+        this.statementDialect = statementDialect;
     }
 
     @Override
@@ -66,18 +108,23 @@ public class DefaultQueryPlanner implements QueryPlanner
     @Override
     public QueryPlan planQuery( Query query, boolean persistedOnly )
     {
+        List<String> trace = new ArrayList<>();
+
         if ( Junction.Type.OR == query.getRootJunctionType() && !persistedOnly )
         {
+            trace.add( "in-memory: " + query.getCriterions() + " (root junction is OR)" );
+
             return new QueryPlan(
                 Query.from( query.getSchema() ).setPlannedQuery( true ),
-                Query.from( query ).setPlannedQuery( true )
+                Query.from( query ).setPlannedQuery( true ),
+                trace
             );
         }
 
         Query npQuery = Query.from( query )
             .setUser( query.getUser() ).setPlannedQuery( true );
 
-        Query pQuery = getQuery( npQuery, persistedOnly )
+        Query pQuery = getQuery( npQuery, persistedOnly, trace )
             .setUser( query.getUser() ).setPlannedQuery( true );
 
         // if there are any non persisted criterions left, we leave the paging to the in-memory engine
@@ -91,7 +138,7 @@ public class DefaultQueryPlanner implements QueryPlanner
             pQuery.setMaxResults( npQuery.getMaxResults() );
         }
 
-        return new QueryPlan( pQuery, npQuery );
+        return new QueryPlan( pQuery, npQuery, trace );
     }
 
     @Override
@@ -100,6 +147,7 @@ public class DefaultQueryPlanner implements QueryPlanner
         Schema curSchema = schema;
         Property curProperty = null;
         boolean persisted = true;
+        boolean collectionAlias = false;
         List<String> alias = new ArrayList<>();
         String[] pathComponents = path.split( "\\." );
 
@@ -125,13 +173,14 @@ public class DefaultQueryPlanner implements QueryPlanner
 
             if ( (!curProperty.isSimple() && idx == pathComponents.length - 1) )
             {
-                return new QueryPath( curProperty, persisted, alias.toArray( new String[]{} ) );
+                return new QueryPath( curProperty, persisted, alias.toArray( new String[]{} ), collectionAlias );
             }
 
             if ( curProperty.isCollection() )
             {
                 curSchema = schemaService.getDynamicSchema( curProperty.getItemKlass() );
                 alias.add( curProperty.getFieldName() );
+                collectionAlias = true;
             }
             else if ( !curProperty.isSimple() )
             {
@@ -140,11 +189,11 @@ public class DefaultQueryPlanner implements QueryPlanner
             }
             else
             {
-                return new QueryPath( curProperty, persisted, alias.toArray( new String[]{} ) );
+                return new QueryPath( curProperty, persisted, alias.toArray( new String[]{} ), collectionAlias );
             }
         }
 
-        return new QueryPath( curProperty, persisted, alias.toArray( new String[]{} ) );
+        return new QueryPath( curProperty, persisted, alias.toArray( new String[]{} ), collectionAlias );
     }
 
     public Path getQueryPath( Root root, Schema schema, String path )
@@ -198,7 +247,7 @@ public class DefaultQueryPlanner implements QueryPlanner
      * @param query Query
      * @return Query instance
      */
-    private Query getQuery( Query query, boolean persistedOnly )
+    private Query getQuery( Query query, boolean persistedOnly, List<String> trace )
     {
         Query pQuery = Query.from( query.getSchema(), query.getRootJunctionType() );
         Iterator<Criterion> iterator = query.getCriterions().iterator();
@@ -209,7 +258,7 @@ public class DefaultQueryPlanner implements QueryPlanner
 
             if ( Junction.class.isInstance( criterion ) )
             {
-                Junction junction = handleJunction( pQuery, (Junction) criterion, persistedOnly );
+                Junction junction = handleJunction( pQuery, (Junction) criterion, persistedOnly, trace );
 
                 if ( !junction.getCriterions().isEmpty() )
                 {
@@ -225,14 +274,16 @@ public class DefaultQueryPlanner implements QueryPlanner
             else if ( Restriction.class.isInstance( criterion ) )
             {
                 Restriction restriction = (Restriction) criterion;
-                restriction.setQueryPath( getQueryPath( query.getSchema(), restriction.getPath() ) );
+                String inMemoryReason = planRestriction( query.getSchema(), restriction, false );
 
-                if ( restriction.getQueryPath().isPersisted() && !restriction.getQueryPath().haveAlias() )
+                if ( inMemoryReason == null )
                 {
-                    pQuery.getAliases().addAll( Arrays.asList( ((Restriction) criterion).getQueryPath().getAlias() ) );
+                    pQuery.getAliases().addAll( Arrays.asList( restriction.getQueryPath().getAssociationPaths() ) );
                     pQuery.getCriterions().add( criterion );
                     iterator.remove();
                 }
+
+                trace( trace, restriction, inMemoryReason );
             }
         }
 
@@ -245,7 +296,7 @@ public class DefaultQueryPlanner implements QueryPlanner
         return pQuery;
     }
 
-    private Junction handleJunction( Query query, Junction queryJunction, boolean persistedOnly )
+    private Junction handleJunction( Query query, Junction queryJunction, boolean persistedOnly, List<String> trace )
     {
         Iterator<org.hisp.dhis.query.Criterion> iterator = queryJunction.getCriterions().iterator();
         Junction criteriaJunction = Disjunction.class.isInstance( queryJunction ) ?
@@ -257,7 +308,7 @@ public class DefaultQueryPlanner implements QueryPlanner
 
             if ( Junction.class.isInstance( criterion ) )
             {
-                Junction junction = handleJunction( query, (Junction) criterion, persistedOnly );
+                Junction junction = handleJunction( query, (Junction) criterion, persistedOnly, trace );
 
                 if ( !junction.getCriterions().isEmpty() )
                 {
@@ -273,11 +324,11 @@ public class DefaultQueryPlanner implements QueryPlanner
             else if ( Restriction.class.isInstance( criterion ) )
             {
                 Restriction restriction = (Restriction) criterion;
-                restriction.setQueryPath( getQueryPath( query.getSchema(), restriction.getPath() ) );
+                String inMemoryReason = planRestriction( query.getSchema(), restriction, true );
 
-                if ( restriction.getQueryPath().isPersisted() && !restriction.getQueryPath().haveAlias( 1 ) )
+                if ( inMemoryReason == null )
                 {
-                    criteriaJunction.getAliases().addAll( Arrays.asList( ((Restriction) criterion).getQueryPath().getAlias() ) );
+                    criteriaJunction.getAliases().addAll( Arrays.asList( restriction.getQueryPath().getAssociationPaths() ) );
                     criteriaJunction.getCriterions().add( criterion );
                     iterator.remove();
                 }
@@ -286,9 +337,118 @@ public class DefaultQueryPlanner implements QueryPlanner
                     throw new RuntimeException( "Path " + restriction.getQueryPath().getPath() +
                         " is not fully persisted, unable to build persisted only query plan." );
                 }
+
+                trace( trace, restriction, inMemoryReason );
             }
         }
 
         return criteriaJunction;
     }
+
+    /**
+     * Resolves the query path of a restriction and checks if the restriction can be
+     * handled by the database.
+     *
+     * @param schema      Schema of query root
+     * @param restriction Restriction to plan
+     * @param junction    True if restriction is part of a nested junction
+     * @return null if restriction can be pushed down, otherwise reason for keeping it in-memory
+     */
+    private String planRestriction( Schema schema, Restriction restriction, boolean junction )
+    {
+        QueryPath queryPath = getQueryPath( schema, restriction.getPath() );
+        Operator operator = restriction.getOperator();
+        restriction.setQueryPath( queryPath );
+
+        if ( !queryPath.isPersisted() )
+        {
+            QueryPath translatedPath = getTranslatedQueryPath( schema, queryPath, operator );
+
+            if ( translatedPath == null )
+            {
+                return "not persisted";
+            }
+
+            restriction.setQueryPath( translatedPath );
+            return null;
+        }
+
+        // single level joins inside junctions have always been handled by the database
+        if ( !queryPath.haveAlias() || (junction && !queryPath.haveAlias( 1 )) )
+        {
+            return null;
+        }
+
+        // restrictions on the same collection would all have to match a single joined row
+        if ( queryPath.isCollectionAlias() )
+        {
+            return "path joins a collection";
+        }
+
+        if ( operator == null || !JOIN_OPERATORS.contains( operator.getClass() ) )
+        {
+            return "operator " + operator + " is not supported across joins";
+        }
+
+        if ( queryPath.getProperty().isCollection() && !COLLECTION_SIZE_OPERATORS.contains( operator.getClass() ) )
+        {
+            return "operator " + operator + " can not compare collection size across joins";
+        }
+
+        return null;
+    }
+
+    /**
+     * Maps a display property (displayName, displayShortName) to the persisted property it is
+     * based on. Without a database locale the display property is the persisted value, with a locale
+     * set equal and like restrictions are matched against the translation of the property
+     * (PostgreSQL only).
+     *
+     * @return Query path to use, or null if the restriction can't be resolved by the database
+     */
+    private QueryPath getTranslatedQueryPath( Schema schema, QueryPath queryPath, Operator operator )
+    {
+        String propertyName = TRANSLATED_PROPERTIES.get( queryPath.getProperty().getName() );
+
+        if ( propertyName == null || queryPath.haveAlias() || !schema.isTranslatable() || operator == null )
+        {
+            return null;
+        }
+
+        Property property = schema.getProperty( propertyName );
+
+        if ( property == null || !property.isPersisted() )
+        {
+            return null;
+        }
+
+        Locale locale = UserContext.getUserSetting( UserSettingKey.DB_LOCALE, Locale.class );
+
+        if ( locale == null )
+        {
+            return new QueryPath( property, true );
+        }
+
+        // translations are stored as jsonb, which can only be queried on PostgreSQL
+        if ( StatementDialect.POSTGRESQL == statementDialect &&
+            (EqualOperator.class == operator.getClass() || LikeOperator.class == operator.getClass()) )
+        {
+            return new QueryPath( property, locale );
+        }
+
+        return null;
+    }
+
+    private void trace( List<String> trace, Restriction restriction, String inMemoryReason )
+    {
+        if ( inMemoryReason == null )
+        {
+            trace.add( "database: " + restriction + " on " + restriction.getQueryPath().getPath() +
+                (restriction.getQueryPath().isTranslated() ? " translated to " + restriction.getQueryPath().getLocale() : "") );
+        }
+        else
+        {
+            trace.add( "in-memory: " + restriction + " (" + inMemoryReason + ")" );
+        }
+    }
 }
@@ -33,6 +33,7 @@ import com.google.common.base.MoreObjects;
 import org.hisp.dhis.schema.Property;
 
 import java.util.Arrays;
+import java.util.Locale;
 
 /**
  * @author Morten Olav Hansen <mortenoh@gmail.com>
@@ -45,6 +46,17 @@ public class QueryPath
 
     private String[] alias = new String[]{};
 
+    /**
+     * True if any of the associations leading up to the property is a collection.
+     */
+    private boolean collectionAlias;
+
+    /**
+     * Locale the property value should be translated into, if null the property
+     * is matched against its persisted value.
+     */
+    private Locale locale;
+
     private static final Joiner PATH_JOINER = Joiner.on( "." );
 
     public QueryPath( Property property, boolean persisted )
@@ -59,6 +71,18 @@ public class QueryPath
         this.alias = alias;
     }
 
+    public QueryPath( Property property, boolean persisted, String[] alias, boolean collectionAlias )
+    {
+        this( property, persisted, alias );
+        this.collectionAlias = collectionAlias;
+    }
+
+    public QueryPath( Property property, Locale locale )
+    {
+        this( property, true );
+        this.locale = locale;
+    }
+
     public Property getProperty()
     {
         return property;
@@ -66,7 +90,7 @@ public class QueryPath
 
     public String getPath()
     {
-        return haveAlias() ? PATH_JOINER.join( alias ) + "." + property.getFieldName() : property.getFieldName();
+        return haveAlias() ? getAliasName( alias.length - 1 ) + "." + property.getFieldName() : property.getFieldName();
     }
 
     public boolean isPersisted()
@@ -89,6 +113,51 @@ public class QueryPath
         return alias != null && alias.length > n;
     }
 
+    /**
+     * Association paths needed to reach the property, one per join level. The first
+     * level is relative to the root entity, every following level is relative to the
+     * alias of the level before it, i.e. [categoryCombo, categoryCombo.categories].
+     */
+    public String[] getAssociationPaths()
+    {
+        String[] paths = new String[haveAlias() ? alias.length : 0];
+
+        for ( int idx = 0; idx < paths.length; idx++ )
+        {
+            paths[idx] = PATH_JOINER.join( Arrays.copyOfRange( alias, 0, idx + 1 ) );
+        }
+
+        return paths;
+    }
+
+    /**
+     * Criteria alias name for a given association path.
+     */
+    public static String getAliasName( String associationPath )
+    {
+        return associationPath.replace( '.', '_' );
+    }
+
+    public boolean isCollectionAlias()
+    {
+        return collectionAlias;
+    }
+
+    public Locale getLocale()
+    {
+        return locale;
+    }
+
+    public boolean isTranslated()
+    {
+        return locale != null;
+    }
+
+    private String getAliasName( int level )
+    {
+        return getAliasName( PATH_JOINER.join( Arrays.copyOfRange( alias, 0, level + 1 ) ) );
+    }
+
     @Override
     public String toString()
     {
@@ -97,6 +166,7 @@ public class QueryPath
             .add( "path", getPath() )
             .add( "persisted", persisted )
             .add( "alias", Arrays.toString( alias ) )
+            .add( "locale", locale )
             .toString();
     }
 }
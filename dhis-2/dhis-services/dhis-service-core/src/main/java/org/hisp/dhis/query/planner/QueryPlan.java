@@ -32,6 +32,9 @@ import org.hisp.dhis.query.Query;
 import org.hisp.dhis.schema.Schema;
 import org.hisp.dhis.user.User;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author Morten Olav Hansen <mortenoh@gmail.com>
  */
@@ -41,10 +44,22 @@ public class QueryPlan
 
     private final Query nonPersistedQuery;
 
+    /**
+     * Planner decisions for diagnostics, one entry per restriction telling if it
+     * was pushed down to the database or left to the in-memory engine (and why).
+     */
+    private final List<String> trace;
+
     public QueryPlan( Query persistedQuery, Query nonPersistedQuery )
+    {
+        this( persistedQuery, nonPersistedQuery, new ArrayList<>() );
+    }
+
+    public QueryPlan( Query persistedQuery, Query nonPersistedQuery, List<String> trace )
     {
         this.persistedQuery = persistedQuery;
         this.nonPersistedQuery = nonPersistedQuery;
+        this.trace = trace;
     }
 
     public Query getPersistedQuery()
@@ -57,6 +72,11 @@ public class QueryPlan
         return nonPersistedQuery;
     }
 
+    public List<String> getTrace()
+    {
+        return trace;
+    }
+
     public Schema getSchema()
     {
         if ( persistedQuery != null )
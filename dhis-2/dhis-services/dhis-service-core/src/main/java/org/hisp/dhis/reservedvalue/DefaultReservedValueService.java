@@ -32,6 +32,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
 import org.hisp.dhis.textpattern.TextPattern;
 import org.hisp.dhis.textpattern.TextPatternGenerationException;
 import org.hisp.dhis.textpattern.TextPatternMethod;
@@ -46,6 +48,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -59,6 +63,8 @@ public class DefaultReservedValueService
 
     private static final long GENERATION_TIMEOUT = (1000 * 30); // 30 sec
 
+    private static final long POOL_IDLE_TIMEOUT = (1000 * 60 * 60 * 24); // 24 hours
+
     @Autowired
     private TextPatternService textPatternService;
 
@@ -68,6 +74,16 @@ public class DefaultReservedValueService
     @Autowired
     private SequentialNumberCounterStore sequentialNumberCounterStore;
 
+    @Autowired
+    private DhisConfigurationProvider config;
+
+    /**
+     * Pools of pre-generated values for RANDOM patterns, keyed by owner and
+     * resolved pattern key. Pools are registered on first reservation and
+     * filled by {@link #refillReservedValuePools()}.
+     */
+    private final Map<String, ReservedValuePool> pools = new ConcurrentHashMap<>();
+
     private final Log log = LogFactory.getLog( DefaultReservedValueService.class );
 
     @Override
@@ -106,9 +122,19 @@ public class DefaultReservedValueService
             return reservedValueStore.reserveValues( reservedValue, Lists.newArrayList( key ) );
         }
 
+        if ( generatedSegment != null && TextPatternMethod.RANDOM.equals( generatedSegment.getMethod() ) && isPoolEnabled() )
+        {
+            List<String> pooledValues = getPool( textPattern, values, key, valueKey ).take( numberOfReservations );
+
+            if ( !pooledValues.isEmpty() )
+            {
+                resultList.addAll( reservedValueStore.reserveValues( reservedValue, pooledValues ) );
+            }
+        }
+
         List<String> usedGeneratedValues = new ArrayList<>();
 
-        int numberOfValuesLeftToGenerate = numberOfReservations;
+        int numberOfValuesLeftToGenerate = numberOfReservations - resultList.size();
 
         try
         {
@@ -170,8 +196,111 @@ public class DefaultReservedValueService
         return reservedValueStore.isReserved( textPattern.getOwnerObject().name(), textPattern.getOwnerUid(), value );
     }
 
+    @Override
+    public void refillReservedValuePools()
+    {
+        long idleLimit = System.currentTimeMillis() - POOL_IDLE_TIMEOUT;
+
+        pools.values().removeIf( pool -> pool.isIdleSince( idleLimit ) );
+
+        int lowWatermark = getWatermark( ConfigurationKey.RESERVED_VALUE_POOL_LOW_WATERMARK );
+        int highWatermark = getWatermark( ConfigurationKey.RESERVED_VALUE_POOL_HIGH_WATERMARK );
+
+        for ( ReservedValuePool pool : pools.values() )
+        {
+            if ( pool.getDepth() < lowWatermark )
+            {
+                refillPool( pool, highWatermark );
+            }
+        }
+    }
+
+    @Override
+    public List<ReservedValuePoolStatistics> getReservedValuePoolStatistics()
+    {
+        return pools.values().stream()
+            .map( ReservedValuePool::getStatistics )
+            .collect( Collectors.toList() );
+    }
+
     // Helper methods
 
+    private boolean isPoolEnabled()
+    {
+        return getWatermark( ConfigurationKey.RESERVED_VALUE_POOL_HIGH_WATERMARK ) > 0;
+    }
+
+    private int getWatermark( ConfigurationKey key )
+    {
+        return Integer.parseInt( config.getProperty( key ) );
+    }
+
+    private ReservedValuePool getPool( TextPattern textPattern, Map<String, String> values, String key, String valueKey )
+    {
+        String poolKey = textPattern.getOwnerObject().name() + ":" + textPattern.getOwnerUid() + ":" + key;
+
+        return pools.computeIfAbsent( poolKey, k -> new ReservedValuePool( textPattern, values, key, valueKey ) );
+    }
+
+    /**
+     * Generates values for the pool until it reaches the given watermark.
+     * Candidates are checked against existing reservations and attribute
+     * values in one query per generation round.
+     */
+    private void refillPool( ReservedValuePool pool, int highWatermark )
+    {
+        long startTime = System.currentTimeMillis();
+        int attemptsLeft = 10;
+
+        TextPattern textPattern = pool.getTextPattern();
+        TextPatternSegment generatedSegment = getGeneratedSegment( textPattern );
+
+        ReservedValue reservedValue = new ReservedValue( textPattern.getOwnerObject().name(), textPattern.getOwnerUid(),
+            pool.getKey(),
+            pool.getValueKey(),
+            null );
+
+        Set<String> knownValues = pool.getValues();
+
+        List<String> candidates = new ArrayList<>();
+
+        int numberOfValuesNeeded = highWatermark - pool.getDepth();
+
+        try
+        {
+            while ( attemptsLeft-- > 0 && candidates.size() < numberOfValuesNeeded )
+            {
+                List<String> resolvedPatterns = new ArrayList<>();
+
+                for ( String generatedValue : generateValues( textPattern, pool.getKey(), numberOfValuesNeeded - candidates.size() ) )
+                {
+                    String resolvedPattern = textPatternService.resolvePattern( textPattern,
+                        ImmutableMap.<String, String>builder()
+                            .putAll( pool.getResolveValues() )
+                            .put( generatedSegment.getMethod().name(), generatedValue )
+                            .build() );
+
+                    if ( knownValues.add( resolvedPattern ) )
+                    {
+                        resolvedPatterns.add( resolvedPattern );
+                    }
+                }
+
+                if ( !resolvedPatterns.isEmpty() )
+                {
+                    candidates.addAll( reservedValueStore.getAvailableValues( reservedValue, resolvedPatterns ) );
+                }
+            }
+        }
+        catch ( TextPatternGenerationException ex )
+        {
+            log.warn( String.format( "Could not refill reserved value pool for %s with uid %s: %s",
+                textPattern.getOwnerObject().name(), textPattern.getOwnerUid(), ex.getMessage() ) );
+        }
+
+        pool.offer( candidates, System.currentTimeMillis() - startTime );
+    }
+
     private TextPatternSegment getGeneratedSegment( TextPattern textPattern )
     {
         return textPattern.getSegments()
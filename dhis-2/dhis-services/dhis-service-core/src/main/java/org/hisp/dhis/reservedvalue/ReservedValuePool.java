@@ -0,0 +1,162 @@
+package org.hisp.dhis.reservedvalue;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.ImmutableMap;
+import org.hisp.dhis.textpattern.TextPattern;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of pre-generated values for a single resolved text pattern key. Values
+ * in the pool have been checked against existing reservations and attribute
+ * values when they were generated, but are not reserved until they are handed
+ * out, so the store must still verify them when reserving.
+ */
+class ReservedValuePool
+{
+    private final TextPattern textPattern;
+
+    private final Map<String, String> values;
+
+    private final String key;
+
+    private final String valueKey;
+
+    private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong served = new AtomicLong();
+
+    private final AtomicLong refills = new AtomicLong();
+
+    private final AtomicLong totalRefillDuration = new AtomicLong();
+
+    private final AtomicLong maxRefillDuration = new AtomicLong();
+
+    private volatile long lastRefillDuration;
+
+    private volatile Date lastRefilled;
+
+    private volatile long lastAccessed = System.currentTimeMillis();
+
+    ReservedValuePool( TextPattern textPattern, Map<String, String> values, String key, String valueKey )
+    {
+        this.textPattern = textPattern;
+        this.values = ImmutableMap.copyOf( values );
+        this.key = key;
+        this.valueKey = valueKey;
+    }
+
+    /**
+     * Removes and returns up to the given number of values from the pool.
+     */
+    List<String> take( int numberOfValues )
+    {
+        lastAccessed = System.currentTimeMillis();
+
+        List<String> taken = new ArrayList<>( numberOfValues );
+        queue.drainTo( taken, numberOfValues );
+        served.addAndGet( taken.size() );
+
+        return taken;
+    }
+
+    /**
+     * Adds the given values to the pool, skipping values already present.
+     */
+    void offer( List<String> candidates, long refillDuration )
+    {
+        Set<String> present = new HashSet<>( queue );
+
+        candidates.stream()
+            .filter( present::add )
+            .forEach( queue::offer );
+
+        refills.incrementAndGet();
+        totalRefillDuration.addAndGet( refillDuration );
+        maxRefillDuration.accumulateAndGet( refillDuration, Math::max );
+
+        lastRefillDuration = refillDuration;
+        lastRefilled = new Date();
+    }
+
+    /**
+     * Returns a copy of the values currently in the pool.
+     */
+    Set<String> getValues()
+    {
+        return new HashSet<>( queue );
+    }
+
+    int getDepth()
+    {
+        return queue.size();
+    }
+
+    boolean isIdleSince( long timestamp )
+    {
+        return lastAccessed < timestamp;
+    }
+
+    TextPattern getTextPattern()
+    {
+        return textPattern;
+    }
+
+    Map<String, String> getResolveValues()
+    {
+        return values;
+    }
+
+    String getKey()
+    {
+        return key;
+    }
+
+    String getValueKey()
+    {
+        return valueKey;
+    }
+
+    ReservedValuePoolStatistics getStatistics()
+    {
+        long refillCount = refills.get();
+
+        return new ReservedValuePoolStatistics( textPattern.getOwnerObject().name(), textPattern.getOwnerUid(), key,
+            queue.size(), served.get(), refillCount, lastRefillDuration,
+            refillCount > 0 ? totalRefillDuration.get() / refillCount : 0, maxRefillDuration.get(), lastRefilled );
+    }
+}
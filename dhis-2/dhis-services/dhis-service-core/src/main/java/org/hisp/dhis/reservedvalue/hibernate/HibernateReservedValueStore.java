@@ -65,7 +65,7 @@ public class HibernateReservedValueStore
         BatchHandler<ReservedValue> batchHandler = batchHandlerFactory
             .createBatchHandler( ReservedValueBatchHandler.class ).init();
 
-        List<String> availableValues = getIfAvailable( reservedValue, values );
+        List<String> availableValues = getAvailableValues( reservedValue, values );
 
         List<ReservedValue> toAdd = new ArrayList<>();
 
@@ -105,6 +105,31 @@ public class HibernateReservedValueStore
             .getResultList();
     }
 
+    @Override
+    public List<String> getAvailableValues( ReservedValue reservedValue, List<String> values )
+    {
+        values.removeAll( getIfReservedValues( reservedValue, values ).stream()
+            .map( ReservedValue::getValue )
+            .collect( Collectors.toList() ) );
+
+        // All values supplied is unavailable
+        if ( values.isEmpty() )
+        {
+            return values;
+        }
+
+        if ( Objects.valueOf( reservedValue.getOwnerObject() ).equals( TRACKEDENTITYATTRIBUTE ) )
+        {
+            values.removeAll( getSqlQuery(
+                "SELECT value FROM trackedentityattributevalue WHERE trackedentityattributeid = (SELECT trackedentityattributeid FROM trackedentityattribute WHERE uid = ?1) AND value IN ?2" )
+                .setParameter( 1, reservedValue.getOwnerUid() )
+                .setParameter( 2, values )
+                .list() );
+        }
+
+        return values;
+    }
+
     @Override
     public int getNumberOfUsedValues( ReservedValue reservedValue )
     {
@@ -171,31 +196,4 @@ public class HibernateReservedValueStore
             .getResultList()
             .isEmpty();
     }
-
-    // Helper methods
-
-    private List<String> getIfAvailable( ReservedValue reservedValue, List<String> values )
-    {
-        values.removeAll( getIfReservedValues( reservedValue, values ).stream()
-            .map( ReservedValue::getValue )
-            .collect( Collectors.toList() ) );
-
-        // All values supplied is unavailable
-        if ( values.isEmpty() )
-        {
-            return values;
-        }
-
-        if ( Objects.valueOf( reservedValue.getOwnerObject() ).equals( TRACKEDENTITYATTRIBUTE ) )
-        {
-            values.removeAll( getSqlQuery(
-                "SELECT value FROM trackedentityattributevalue WHERE trackedentityattributeid = (SELECT trackedentityattributeid FROM trackedentityattribute WHERE uid = ?1) AND value IN ?2" )
-                .setParameter( 1, reservedValue.getOwnerUid() )
-                .setParameter( 2, values )
-                .list() );
-        }
-
-        return values;
-
-    }
 }
@@ -60,6 +60,7 @@ public class SchedulerStart extends AbstractStartupRoutine
     private static final Log log = LogFactory.getLog( SchedulerStart.class );
 
     private final String CRON_HOURLY = "0 0 * ? * *";
+    private final String CRON_EVERY_5_MINUTES = "0 0/5 * ? * *";
     private final String CRON_DAILY_2AM = "0 0 2 ? * *";
     private final String CRON_DAILY_7AM = "0 0 7 ? * *";
     private final String LEADER_JOB_CRON_FORMAT = "0 0/%s * * * *";
@@ -69,6 +70,7 @@ public class SchedulerStart extends AbstractStartupRoutine
     private final String DEFAULT_CREDENTIALS_EXPIRY_ALERT = "Credentials expiry alert";
     private final String DEFAULT_DATA_SET_NOTIFICATION = "Dataset notification";
     private final String DEFAULT_REMOVE_EXPIRED_RESERVED_VALUES = "Remove expired reserved values";
+    private final String DEFAULT_REFILL_RESERVED_VALUE_POOLS = "Refill reserved value pools";
     private final String DEFAULT_LEADER_ELECTION = "Leader election in cluster";
 
     @Autowired
@@ -206,6 +208,15 @@ public class SchedulerStart extends AbstractStartupRoutine
             addAndScheduleJob( removeExpiredReservedValues );
         }
 
+        if ( verifyNoJobExist( DEFAULT_REFILL_RESERVED_VALUE_POOLS, jobConfigurations ) )
+        {
+            // Pools are held in memory on each node, so every node refills its own
+            JobConfiguration refillReservedValuePools = new JobConfiguration( DEFAULT_REFILL_RESERVED_VALUE_POOLS,
+                REFILL_RESERVED_VALUE_POOLS, CRON_EVERY_5_MINUTES, null, false, true );
+            refillReservedValuePools.setLeaderOnlyJob( false );
+            addAndScheduleJob( refillReservedValuePools );
+        }
+
         if ( verifyNoJobExist( DEFAULT_LEADER_ELECTION, jobConfigurations ) && "true".equalsIgnoreCase( redisEnabled ) )
         {
             JobConfiguration leaderElectionJobConfiguration = new JobConfiguration( DEFAULT_LEADER_ELECTION,
@@ -47,6 +47,7 @@ import static org.hisp.dhis.trackedentity.TrackedEntityInstanceQueryParams.TRACK
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -68,6 +69,7 @@ import org.hisp.dhis.common.Pager;
 import org.hisp.dhis.common.QueryFilter;
 import org.hisp.dhis.common.QueryItem;
 import org.hisp.dhis.common.QueryOperator;
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.common.ValueType;
 import org.hisp.dhis.event.EventStatus;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
@@ -268,18 +270,19 @@ public class DefaultTrackedEntityInstanceService
 
         Set<String> tes = new HashSet<>();
 
+        boolean checkOwnership = user != null && !user.isSuper() && params.hasProgram() &&
+            (params.getProgram().getAccessLevel().equals( AccessLevel.PROTECTED ) ||
+                params.getProgram().getAccessLevel().equals( AccessLevel.CLOSED ));
+
+        SetMap<String, String> ownershipAccess = checkOwnership ? trackerOwnershipAccessManager.getOwnershipAccess( user,
+            entities.stream().map( entity -> entity.get( TRACKED_ENTITY_INSTANCE_ID ) ).collect( Collectors.toSet() ),
+            Collections.singleton( params.getProgram().getUid() ) ) : null;
+
         for ( Map<String, String> entity : entities )
         {
-            if ( user != null && !user.isSuper() && params.hasProgram() &&
-                (params.getProgram().getAccessLevel().equals( AccessLevel.PROTECTED ) ||
-                    params.getProgram().getAccessLevel().equals( AccessLevel.CLOSED )) )
+            if ( checkOwnership && !ownershipAccess.containsKey( entity.get( TRACKED_ENTITY_INSTANCE_ID ) ) )
             {
-                TrackedEntityInstance tei = trackedEntityInstanceStore.getByUid( entity.get( TRACKED_ENTITY_INSTANCE_ID ) );
-
-                if ( !trackerOwnershipAccessManager.hasAccess( user, tei, params.getProgram() ) )
-                {
-                    continue;
-                }
+                continue;
             }
 
             grid.addRow();
@@ -862,6 +865,13 @@ public class DefaultTrackedEntityInstanceService
         return trackedEntityInstanceStore.getTrackedEntityInstancesByUid( uids, user );
     }
 
+    @Override
+    public void loadTrackedEntityInstanceCollections( List<TrackedEntityInstance> instances, boolean includeEnrollments,
+        boolean includeEvents, boolean includeRelationships, boolean includeProgramOwners )
+    {
+        trackedEntityInstanceStore.loadCollections( instances, includeEnrollments, includeEvents, includeRelationships, includeProgramOwners );
+    }
+
     @Override
     public void updateTrackedEntityInstance( TrackedEntityInstance instance )
     {
@@ -28,6 +28,7 @@ package org.hisp.dhis.trackedentity;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.program.Program;
@@ -36,6 +37,7 @@ import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -313,4 +315,9 @@ public class DefaultTrackedEntityProgramOwnerService implements TrackedEntityPro
         return trackedEntityProgramOwnerStore.getTrackedEntityProgramOwners( teiIds, program.getId() );
     }
 
+    @Override
+    public SetMap<String, String> getOwnershipAccess( User user, Collection<String> teiUids, Collection<String> programUids )
+    {
+        return trackedEntityProgramOwnerStore.getOwnershipAccess( user, teiUids, programUids );
+    }
 }
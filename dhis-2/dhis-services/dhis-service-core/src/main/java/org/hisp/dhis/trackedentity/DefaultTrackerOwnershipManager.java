@@ -28,6 +28,8 @@ package org.hisp.dhis.trackedentity;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -37,6 +39,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.cache.Cache;
 import org.hisp.dhis.cache.CacheProvider;
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.program.Program;
@@ -57,8 +60,6 @@ public class DefaultTrackerOwnershipManager implements TrackerOwnershipManager
 {
     private static final String COLON = ":";
 
-    private static final int TEMPORARY_OWNERSHIP_VALIDITY_IN_HOURS = 3;
-
     private static final Log log = LogFactory.getLog( DefaultTrackerOwnershipManager.class );
 
     // -------------------------------------------------------------------------
@@ -288,6 +289,19 @@ public class DefaultTrackerOwnershipManager implements TrackerOwnershipManager
         return hasAccess( user, entityInstance, program );
     }
 
+    @Override
+    public SetMap<String, String> getOwnershipAccess( User user, Collection<String> teiUids, Collection<String> programUids )
+    {
+        if ( user == null || user.isSuper() )
+        {
+            SetMap<String, String> access = new SetMap<>();
+            teiUids.forEach( teiUid -> access.putValues( teiUid, new HashSet<>( programUids ) ) );
+            return access;
+        }
+
+        return trackedEntityProgramOwnerService.getOwnershipAccess( user, teiUids, programUids );
+    }
+
     // -------------------------------------------------------------------------
     // Private Helper Methods
     // -------------------------------------------------------------------------
@@ -0,0 +1,175 @@
+package org.hisp.dhis.trackedentity;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.api.util.DateUtils;
+import org.hisp.dhis.common.AccessLevel;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.program.Program;
+import org.hisp.dhis.program.ProgramType;
+import org.hisp.dhis.user.User;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds SQL predicates which evaluate tracker ownership access in the
+ * database, so that lists of tracked entity instances and events can be
+ * filtered in the query instead of checking each row in Java.
+ * <p>
+ * The owner of a tracked entity instance for a program is the organisation
+ * unit in trackedentityprogramowner, falling back to the registration
+ * organisation unit. Open and audited programs are matched against the search
+ * organisation units of the user, protected and closed programs against the
+ * capture organisation units. Temporary ownership is granted through a
+ * program temporary ownership audit entry newer than
+ * {@link TrackerOwnershipManager#TEMPORARY_OWNERSHIP_VALIDITY_IN_HOURS}.
+ */
+public class TrackerOwnershipSqlUtils
+{
+    private static final String OPEN_ACCESS_LEVELS = "'" + AccessLevel.OPEN.name() + "', '" + AccessLevel.AUDITED.name() + "'";
+
+    /**
+     * Returns a SQL predicate which is true when the given user has ownership
+     * access to the tracked entity instance and program referenced by the
+     * given column expressions. Rows with no tracked entity instance, programs
+     * without registration, super users and internal processes (null user)
+     * always pass.
+     *
+     * @param user the user, can be null.
+     * @param teiIdColumn the column holding the tracked entity instance id.
+     * @param programIdColumn the column holding the program id.
+     * @return a SQL predicate wrapped in parentheses.
+     */
+    public static String getOwnershipAccessClause( User user, String teiIdColumn, String programIdColumn )
+    {
+        if ( user == null || user.isSuper() )
+        {
+            return "(true)";
+        }
+
+        return "(" + teiIdColumn + " is null " +
+            "or exists (select 1 from program op " +
+            "inner join trackedentityinstance ot on ot.trackedentityinstanceid = " + teiIdColumn + " " +
+            "left join trackedentityprogramowner opo on opo.trackedentityinstanceid = ot.trackedentityinstanceid and opo.programid = op.programid " +
+            "inner join organisationunit oou on oou.organisationunitid = coalesce(opo.organisationunitid, ot.organisationunitid) " +
+            "where op.programid = " + programIdColumn + " " +
+            "and (op.type = '" + ProgramType.WITHOUT_REGISTRATION.name() + "' " +
+            "or (coalesce(op.accesslevel, '" + AccessLevel.OPEN.name() + "') in (" + OPEN_ACCESS_LEVELS + ") " +
+            "and oou.path like any (" + getPathPatternArray( user.getTeiSearchOrganisationUnitsWithFallback() ) + ")) " +
+            "or (coalesce(op.accesslevel, '" + AccessLevel.OPEN.name() + "') not in (" + OPEN_ACCESS_LEVELS + ") " +
+            "and oou.path like any (" + getPathPatternArray( user.getOrganisationUnits() ) + ")))) " +
+            "or exists (select 1 from programtempownershipaudit opta " +
+            "where opta.trackedentityinstanceid = " + teiIdColumn + " " +
+            "and opta.programid = " + programIdColumn + " " +
+            "and opta.accessedby = '" + escape( user.getUsername() ) + "' " +
+            "and opta.created >= '" + DateUtils.getLongDateString( getTemporaryOwnershipStart() ) + "'))";
+    }
+
+    /**
+     * Returns an HQL predicate equivalent to
+     * {@link #getOwnershipAccessClause(User, String, String)} for a single
+     * known program, for use in HQL queries on tracked entity instances.
+     *
+     * @param user the user, can be null.
+     * @param teiAlias the alias of the tracked entity instance in the query.
+     * @param program the program.
+     * @return an HQL predicate wrapped in parentheses.
+     */
+    public static String getOwnershipAccessHql( User user, String teiAlias, Program program )
+    {
+        if ( user == null || user.isSuper() || program.isWithoutRegistration() )
+        {
+            return "(1 = 1)";
+        }
+
+        boolean searchScope = program.isOpen() || program.isAudited();
+
+        Set<OrganisationUnit> organisationUnits = searchScope ?
+            user.getTeiSearchOrganisationUnitsWithFallback() : user.getOrganisationUnits();
+
+        String ownerExists = "from TrackedEntityProgramOwner tepo where tepo.entityInstance = " + teiAlias +
+            " and tepo.program.id = " + program.getId();
+
+        String hql = "(exists (" + ownerExists + " and " + getPathLikeHql( "tepo.organisationUnit.path", organisationUnits ) + ") " +
+            "or (not exists (" + ownerExists + ") and " + getPathLikeHql( teiAlias + ".organisationUnit.path", organisationUnits ) + ")";
+
+        if ( !searchScope )
+        {
+            hql += " or exists (from ProgramTempOwnershipAudit pta where pta.entityInstance = " + teiAlias +
+                " and pta.program.id = " + program.getId() +
+                " and pta.accessedBy = '" + escape( user.getUsername() ) + "'" +
+                " and pta.created >= '" + DateUtils.getLongDateString( getTemporaryOwnershipStart() ) + "')";
+        }
+
+        return hql + ")";
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private static String getPathPatternArray( Set<OrganisationUnit> organisationUnits )
+    {
+        if ( organisationUnits == null || organisationUnits.isEmpty() )
+        {
+            return "array[]::text[]";
+        }
+
+        return "array[" + organisationUnits.stream()
+            .map( ou -> "'" + ou.getPath() + "%'" )
+            .collect( Collectors.joining( "," ) ) + "]";
+    }
+
+    private static String getPathLikeHql( String pathProperty, Set<OrganisationUnit> organisationUnits )
+    {
+        if ( organisationUnits == null || organisationUnits.isEmpty() )
+        {
+            return "(1 = 0)";
+        }
+
+        return "(" + organisationUnits.stream()
+            .map( ou -> pathProperty + " like '" + ou.getPath() + "%'" )
+            .collect( Collectors.joining( " or " ) ) + ")";
+    }
+
+    private static Date getTemporaryOwnershipStart()
+    {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add( Calendar.HOUR_OF_DAY, -TrackerOwnershipManager.TEMPORARY_OWNERSHIP_VALIDITY_IN_HOURS );
+        return calendar.getTime();
+    }
+
+    private static String escape( String value )
+    {
+        return value != null ? value.replace( "'", "''" ) : null;
+    }
+}
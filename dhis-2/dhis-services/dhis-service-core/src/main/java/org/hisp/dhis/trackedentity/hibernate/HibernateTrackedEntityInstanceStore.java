@@ -55,11 +55,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -77,6 +79,7 @@ import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.trackedentity.TrackedEntityInstance;
 import org.hisp.dhis.trackedentity.TrackedEntityInstanceQueryParams;
 import org.hisp.dhis.trackedentity.TrackedEntityInstanceStore;
+import org.hisp.dhis.trackedentity.TrackerOwnershipSqlUtils;
 import org.hisp.dhis.user.User;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.transaction.annotation.Transactional;
@@ -91,6 +94,15 @@ public class HibernateTrackedEntityInstanceStore
 {
     private static final Log log = LogFactory.getLog( HibernateTrackedEntityInstanceStore.class );
 
+    /**
+     * Maximum number of instance identifiers bound to a single collection query.
+     */
+    private static final int COLLECTION_LOAD_PARTITION_SIZE = 1000;
+
+    private static final String RELATIONSHIP_FETCH = "left join fetch ri.relationship r " +
+        "left join fetch r.from rf left join fetch rf.trackedEntityInstance left join fetch rf.programInstance left join fetch rf.programStageInstance " +
+        "left join fetch r.to rt left join fetch rt.trackedEntityInstance left join fetch rt.programInstance left join fetch rt.programStageInstance ";
+
     // -------------------------------------------------------------------------
     // Dependencies
     // -------------------------------------------------------------------------
@@ -194,6 +206,9 @@ public class HibernateTrackedEntityInstanceStore
                 hql += hlp.whereAnd() + "pi.deleted is false ";
             }
 
+            // Ownership is resolved in the query so that pages are not thinned out afterwards
+
+            hql += hlp.whereAnd() + TrackerOwnershipSqlUtils.getOwnershipAccessHql( params.getUser(), "tei", params.getProgram() ) + " ";
         }
 
         //If it is a sync job that runs the query, fetch only TEAVs that are supposed to be synchronized
@@ -709,6 +724,65 @@ public class HibernateTrackedEntityInstanceStore
             .list();
     }
 
+    @Override
+    public void loadCollections( List<TrackedEntityInstance> instances, boolean includeEnrollments, boolean includeEvents,
+        boolean includeRelationships, boolean includeProgramOwners )
+    {
+        if ( instances == null || instances.isEmpty() )
+        {
+            return;
+        }
+
+        // Each query fetches a single collection, as fetching several bags in
+        // one query is not supported and would multiply the rows returned.
+        // Instances are already in the session, so fetched collections are
+        // attached to them and walking them later issues no further queries.
+        // Results are discarded, so duplicate rows need not be removed.
+
+        List<String> hqls = new ArrayList<>();
+
+        hqls.add( "select tei from TrackedEntityInstance tei left join fetch tei.trackedEntityAttributeValues where tei.id in (:ids)" );
+
+        if ( includeProgramOwners )
+        {
+            hqls.add( "select tei from TrackedEntityInstance tei left join fetch tei.programOwners where tei.id in (:ids)" );
+        }
+
+        if ( includeRelationships )
+        {
+            hqls.add( "select tei from TrackedEntityInstance tei left join fetch tei.relationshipItems ri " + RELATIONSHIP_FETCH + "where tei.id in (:ids)" );
+        }
+
+        if ( includeEnrollments )
+        {
+            hqls.add( "select tei from TrackedEntityInstance tei left join fetch tei.programInstances where tei.id in (:ids)" );
+            hqls.add( "select pi from ProgramInstance pi left join fetch pi.comments where pi.entityInstance.id in (:ids)" );
+
+            if ( includeRelationships )
+            {
+                hqls.add( "select pi from ProgramInstance pi left join fetch pi.relationshipItems ri " + RELATIONSHIP_FETCH + "where pi.entityInstance.id in (:ids)" );
+            }
+
+            if ( includeEvents )
+            {
+                hqls.add( "select pi from ProgramInstance pi left join fetch pi.programStageInstances where pi.entityInstance.id in (:ids)" );
+                hqls.add( "select psi from ProgramStageInstance psi left join fetch psi.comments where psi.programInstance.entityInstance.id in (:ids)" );
+            }
+        }
+
+        List<Integer> ids = instances.stream().map( TrackedEntityInstance::getId ).collect( Collectors.toList() );
+
+        for ( List<Integer> partition : Lists.partition( ids, COLLECTION_LOAD_PARTITION_SIZE ) )
+        {
+            for ( String hql : hqls )
+            {
+                getSession().createQuery( hql ).setParameterList( "ids", partition ).list();
+            }
+        }
+
+        log.debug( "Loaded collections for " + instances.size() + " tracked entity instances with " + hqls.size() + " queries per partition" );
+    }
+
     @Override
     protected void preProcessPredicates( CriteriaBuilder builder, List<Function<Root<TrackedEntityInstance>, Predicate>> predicates )
     {
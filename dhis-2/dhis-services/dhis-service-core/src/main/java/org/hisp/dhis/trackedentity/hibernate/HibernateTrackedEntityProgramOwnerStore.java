@@ -1,7 +1,5 @@
 package org.hisp.dhis.trackedentity.hibernate;
 
-import java.util.List;
-
 /*
  * Copyright (c) 2004-2018, University of Oslo
  * All rights reserved.
@@ -30,16 +28,29 @@ import java.util.List;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.google.common.collect.Lists;
 import org.hibernate.query.Query;
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.hibernate.HibernateGenericStore;
 import org.hisp.dhis.trackedentity.TrackedEntityProgramOwner;
 import org.hisp.dhis.trackedentity.TrackedEntityProgramOwnerStore;
+import org.hisp.dhis.trackedentity.TrackerOwnershipSqlUtils;
+import org.hisp.dhis.user.User;
+import org.springframework.jdbc.support.rowset.SqlRowSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hisp.dhis.commons.util.TextUtils.getQuotedCommaDelimitedString;
 
 /**
  * @author Ameen Mohamed
  */
 public class HibernateTrackedEntityProgramOwnerStore extends HibernateGenericStore<TrackedEntityProgramOwner> implements TrackedEntityProgramOwnerStore
 {
+    private static final int TEI_PAGE_SIZE = 10000;
+
     @Override
     public TrackedEntityProgramOwner getTrackedEntityProgramOwner( int teiId, int programId )
     {
@@ -68,4 +79,33 @@ public class HibernateTrackedEntityProgramOwnerStore extends HibernateGenericSto
         return q.list();
     }
 
+    @Override
+    public SetMap<String, String> getOwnershipAccess( User user, Collection<String> teiUids, Collection<String> programUids )
+    {
+        SetMap<String, String> access = new SetMap<>();
+
+        if ( teiUids.isEmpty() || programUids.isEmpty() )
+        {
+            return access;
+        }
+
+        for ( List<String> teiUidPage : Lists.partition( new ArrayList<>( teiUids ), TEI_PAGE_SIZE ) )
+        {
+            String sql = "select tei.uid as tei_uid, p.uid as p_uid " +
+                "from trackedentityinstance tei " +
+                "cross join program p " +
+                "where tei.uid in (" + getQuotedCommaDelimitedString( teiUidPage ) + ") " +
+                "and p.uid in (" + getQuotedCommaDelimitedString( programUids ) + ") " +
+                "and " + TrackerOwnershipSqlUtils.getOwnershipAccessClause( user, "tei.trackedentityinstanceid", "p.programid" );
+
+            SqlRowSet rowSet = jdbcTemplate.queryForRowSet( sql );
+
+            while ( rowSet.next() )
+            {
+                access.putValue( rowSet.getString( "tei_uid" ), rowSet.getString( "p_uid" ) );
+            }
+        }
+
+        return access;
+    }
 }
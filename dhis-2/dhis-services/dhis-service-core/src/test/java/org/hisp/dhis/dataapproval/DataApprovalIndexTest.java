@@ -0,0 +1,120 @@
+package org.hisp.dhis.dataapproval;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.hisp.dhis.dataapproval.DataApprovalIndex.Approval;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class DataApprovalIndexTest
+{
+    // Approval level ids 10, 20 and 30 have level numbers 1, 2 and 3
+
+    private static int levelOf( int levelId )
+    {
+        return levelId / 10;
+    }
+
+    @Test
+    public void testGetPathUids()
+    {
+        assertEquals( Lists.newArrayList( "a", "b", "c" ), DataApprovalIndex.getPathUids( "/a/b/c" ) );
+        assertEquals( Lists.newArrayList( "a" ), DataApprovalIndex.getPathUids( "/a" ) );
+    }
+
+    @Test
+    public void testAddApproval()
+    {
+        DataApprovalIndex index = new DataApprovalIndex();
+        index.addApproval( "b", 2, 7, 20, false );
+
+        assertTrue( index.isApproved( "b", 7, 20 ) );
+        assertFalse( index.isApproved( "b", 7, 10 ) );
+        assertFalse( index.isApproved( "b", 8, 20 ) );
+
+        index.addApproval( "b", 2, 7, 20, true );
+        index.addApproval( "b", 2, 8, 20, false );
+
+        assertEquals( 2, index.size() );
+        assertTrue( index.getHighestApproval( Lists.newArrayList( "b" ), 7, null, DataApprovalIndexTest::levelOf ).isAccepted() );
+    }
+
+    @Test
+    public void testGetHighestApproval()
+    {
+        DataApprovalIndex index = new DataApprovalIndex();
+        index.addApproval( "a", 1, 7, 10, false );
+        index.addApproval( "b", 2, 7, 20, true );
+        index.addApproval( "c", 3, 7, 30, false );
+        index.addApproval( "c", 3, 8, 30, false );
+
+        Approval approval = index.getHighestApproval( DataApprovalIndex.getPathUids( "/a/b/c" ), 7, null,
+            DataApprovalIndexTest::levelOf );
+
+        assertEquals( 1, approval.getOrgUnitId() );
+        assertEquals( 10, approval.getLevelId() );
+        assertEquals( 1, approval.getLevel() );
+
+        approval = index.getHighestApproval( DataApprovalIndex.getPathUids( "/a/b/c" ), 7, id -> id != 10,
+            DataApprovalIndexTest::levelOf );
+
+        assertEquals( 2, approval.getOrgUnitId() );
+        assertTrue( approval.isAccepted() );
+
+        approval = index.getHighestApproval( DataApprovalIndex.getPathUids( "/a/b/c" ), 8, null,
+            DataApprovalIndexTest::levelOf );
+
+        assertEquals( 3, approval.getOrgUnitId() );
+
+        assertNull( index.getHighestApproval( DataApprovalIndex.getPathUids( "/a/d" ), 8, null,
+            DataApprovalIndexTest::levelOf ) );
+    }
+
+    @Test
+    public void testGetHighestApprovalAfterMove()
+    {
+        DataApprovalIndex index = new DataApprovalIndex();
+        index.addApproval( "b", 2, 7, 20, true );
+        index.addApproval( "c", 3, 7, 30, false );
+
+        // c moved from /a/b/c to /x/c is no longer approved above by b
+
+        Approval approval = index.getHighestApproval( DataApprovalIndex.getPathUids( "/x/c" ), 7, null,
+            DataApprovalIndexTest::levelOf );
+
+        assertEquals( 3, approval.getOrgUnitId() );
+        assertEquals( 3, approval.getLevel() );
+    }
+}
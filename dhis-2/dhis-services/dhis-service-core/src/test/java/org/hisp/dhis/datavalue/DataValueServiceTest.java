@@ -35,6 +35,7 @@ import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
 import org.hisp.dhis.period.Period;
@@ -62,6 +63,9 @@ public class DataValueServiceTest
 
     @Autowired
     private OrganisationUnitService organisationUnitService;
+
+    @Autowired
+    private DbmsManager dbmsManager;
     
     // -------------------------------------------------------------------------
     // Supporting data
@@ -474,4 +478,25 @@ public class DataValueServiceTest
         assertEquals( 1, dataValueService.getDataValues(  sourceB,  periodA, Lists.newArrayList( dataElementA ), optionCombo ).size() );
         assertEquals( 1, dataValueService.getDataValues(  sourceA,  periodA, Lists.newArrayList( dataElementA, dataElementB ), optionCombo ).size() );
     }
+
+    @Test
+    public void testGetDeflatedDataValuesIncludedDateRange()
+    {
+        dataValueService.addDataValue( new DataValue( dataElementA, periodA, sourceA, optionCombo, optionCombo, "1" ) );
+        dataValueService.addDataValue( new DataValue( dataElementA, periodB, sourceA, optionCombo, optionCombo, "2" ) );
+        dataValueService.addDataValue( new DataValue( dataElementA, periodC, sourceA, optionCombo, optionCombo, "3" ) );
+
+        dbmsManager.flushSession();
+
+        DataExportParams params = new DataExportParams()
+            .setDataElements( Sets.newHashSet( dataElementA ) )
+            .setOrganisationUnits( Sets.newHashSet( sourceA ) )
+            .setIncludedDate( getDay( 5 ) );
+
+        assertEquals( 1, dataValueService.getDeflatedDataValues( params ).size() );
+
+        params.setIncludedDate( getDay( 7 ) ).setIncludedEndDate( getDay( 8 ) );
+
+        assertEquals( 2, dataValueService.getDeflatedDataValues( params ).size() );
+    }
 }
@@ -423,6 +423,39 @@ public class PreheatServiceTest
         assertTrue( preheat.containsKey( PreheatIdentifier.CODE, User.class, user.getCode() ) );
     }
 
+    @Test
+    public void testPreheatReferenceAUTOImportedClass()
+    {
+        DataElement de1 = createDataElement( 'A' );
+        DataElement de2 = createDataElement( 'B' );
+        DataElement de3 = createDataElement( 'C' );
+
+        manager.save( de1 );
+        manager.save( de2 );
+        manager.save( de3 );
+
+        DataElementGroup dataElementGroup = new DataElementGroup( "DataElementGroupA" );
+        dataElementGroup.setAutoFields();
+        dataElementGroup.addDataElement( de2 );
+
+        PreheatParams params = new PreheatParams();
+        params.setPreheatIdentifier( PreheatIdentifier.AUTO );
+        params.setPreheatMode( PreheatMode.REFERENCE );
+
+        params.getObjects().put( DataElement.class, Lists.newArrayList( de1 ) );
+        params.getObjects().put( DataElementGroup.class, Lists.newArrayList( dataElementGroup ) );
+
+        preheatService.validate( params );
+        Preheat preheat = preheatService.preheat( params );
+
+        assertTrue( preheat.containsKey( PreheatIdentifier.UID, DataElement.class, de1.getUid() ) );
+        assertTrue( preheat.containsKey( PreheatIdentifier.UID, DataElement.class, de2.getUid() ) );
+        assertFalse( preheat.containsKey( PreheatIdentifier.UID, DataElement.class, de3.getUid() ) );
+        assertTrue( preheat.containsKey( PreheatIdentifier.CODE, DataElement.class, de2.getCode() ) );
+        assertFalse( preheat.containsKey( PreheatIdentifier.CODE, DataElement.class, de3.getCode() ) );
+        assertEquals( 3, preheat.getUniquenessMap().get( DataElement.class ).get( "code" ).size() );
+    }
+
     @Test
     public void testPreheatReferenceWithScanUID()
     {
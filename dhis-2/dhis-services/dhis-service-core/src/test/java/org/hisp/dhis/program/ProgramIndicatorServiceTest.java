@@ -608,6 +608,23 @@ public class ProgramIndicatorServiceTest
         assertEquals( expected, actual );
     }
 
+    @Test
+    public void testGetAnalyticsSqlRenderedPerReportingPeriod()
+    {
+        String filter = "d2:yearsBetween(V{enrollment_date}, V{analytics_period_start}) < 1 " +
+            "and V{analytics_period_end} > V{enrollment_date}";
+        ProgramIndicator programIndicator = createProgramIndicator( 'X', programA, filter, null );
+
+        String expectedA = "(date_part('year',age(cast( '2016-01-01' as date), cast(enrollmentdate as date)))) < 1 " +
+            "and '2016-12-31' > enrollmentdate";
+        String expectedB = "(date_part('year',age(cast( '2017-01-01' as date), cast(enrollmentdate as date)))) < 1 " +
+            "and '2017-12-31' > enrollmentdate";
+
+        assertEquals( expectedA, programIndicatorService.getAnalyticsSQl( filter, programIndicator, true, DateUtils.parseDate( "2016-01-01" ), DateUtils.parseDate( "2016-12-31" ) ) );
+        assertEquals( expectedB, programIndicatorService.getAnalyticsSQl( filter, programIndicator, true, DateUtils.parseDate( "2017-01-01" ), DateUtils.parseDate( "2017-12-31" ) ) );
+        assertEquals( expectedA, programIndicatorService.getAnalyticsSQl( filter, programIndicator, true, DateUtils.parseDate( "2016-01-01" ), DateUtils.parseDate( "2016-12-31" ) ) );
+    }
+
     @Test
     public void testDateFunctionsWithProgramStageDateArguments()
     {
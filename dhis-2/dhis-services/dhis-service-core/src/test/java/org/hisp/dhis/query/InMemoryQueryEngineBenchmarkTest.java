@@ -0,0 +1,202 @@
+package org.hisp.dhis.query;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.DhisSpringTest;
+import org.hisp.dhis.IntegrationTest;
+import org.hisp.dhis.common.IdentifiableObject;
+import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementDomain;
+import org.hisp.dhis.schema.Schema;
+import org.hisp.dhis.schema.SchemaService;
+import org.hisp.dhis.system.util.ReflectionUtils;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of the in-memory query engine for common filter patterns of the
+ * metadata API. Compares the engine with testing every restriction against
+ * every object, which also verifies the results. Run with the integration
+ * profile.
+ */
+@Category( IntegrationTest.class )
+public class InMemoryQueryEngineBenchmarkTest
+    extends DhisSpringTest
+{
+    private static final Log log = LogFactory.getLog( InMemoryQueryEngineBenchmarkTest.class );
+
+    private static final int OBJECTS = 20000;
+
+    private static final int WARMUP_RUNS = 5;
+
+    private static final int RUNS = 20;
+
+    private static final ValueType[] VALUE_TYPES = { ValueType.NUMBER, ValueType.INTEGER, ValueType.TEXT, ValueType.BOOLEAN };
+
+    @Autowired
+    private SchemaService schemaService;
+
+    @Autowired
+    private QueryService queryService;
+
+    @Autowired
+    private InMemoryQueryEngine<? extends IdentifiableObject> queryEngine;
+
+    @Test
+    public void benchmarkFilters()
+    {
+        List<DataElement> dataElements = createDataElements();
+
+        benchmark( dataElements, Junction.Type.AND, "id:eq:de000012345" );
+        benchmark( dataElements, Junction.Type.AND, "id:in:[de000000001,de000010001,de000019999]" );
+        benchmark( dataElements, Junction.Type.AND, "valueType:eq:NUMBER" );
+        benchmark( dataElements, Junction.Type.AND, "name:ilike:element 1999" );
+        benchmark( dataElements, Junction.Type.AND, "name:like:DataElement0", "domainType:eq:TRACKER" );
+        benchmark( dataElements, Junction.Type.AND, "code:!null", "valueType:eq:TEXT" );
+        benchmark( dataElements, Junction.Type.AND, "created:gt:2018-01-01", "valueType:!eq:BOOLEAN" );
+        benchmark( dataElements, Junction.Type.AND, "name:ge:DataElement15000", "name:lt:DataElement16000" );
+        benchmark( dataElements, Junction.Type.OR, "id:eq:de000000042", "name:$like:DataElement1999" );
+        benchmark( dataElements, Junction.Type.AND, "displayName:token:element 123" );
+    }
+
+    private void benchmark( List<DataElement> dataElements, Junction.Type rootJunction, String... filters )
+    {
+        Schema schema = schemaService.getDynamicSchema( DataElement.class );
+        List<String> filterList = Arrays.asList( filters );
+
+        List<String> expected = null;
+        List<String> actual = null;
+
+        for ( int i = 0; i < WARMUP_RUNS; i++ )
+        {
+            expected = getUids( testEachObject( getQuery( filterList, rootJunction ), dataElements, schema ) );
+            actual = getUids( queryEngine.query( getQuery( filterList, rootJunction ).setObjects( dataElements ) ) );
+        }
+
+        assertEquals( expected, actual );
+
+        long eachObjectTime = 0;
+        long engineTime = 0;
+
+        for ( int i = 0; i < RUNS; i++ )
+        {
+            Query query = getQuery( filterList, rootJunction );
+
+            long start = System.nanoTime();
+            testEachObject( query, dataElements, schema );
+            eachObjectTime += System.nanoTime() - start;
+
+            query = getQuery( filterList, rootJunction ).setObjects( dataElements );
+
+            start = System.nanoTime();
+            queryEngine.query( query );
+            engineTime += System.nanoTime() - start;
+        }
+
+        log.info( String.format( "%-75s matches: %5d, each object: %8.3f ms, engine: %8.3f ms", rootJunction + " " + filterList,
+            actual.size(), eachObjectTime / RUNS / 1e6, engineTime / RUNS / 1e6 ) );
+    }
+
+    private Query getQuery( List<String> filters, Junction.Type rootJunction )
+    {
+        return queryService.getQueryFromUrl( DataElement.class, filters, new ArrayList<>(), rootJunction );
+    }
+
+    /**
+     * Tests each restriction of the query against each object, reading the
+     * values reflectively.
+     */
+    private List<DataElement> testEachObject( Query query, List<DataElement> dataElements, Schema schema )
+    {
+        List<DataElement> matches = new ArrayList<>();
+
+        for ( DataElement dataElement : dataElements )
+        {
+            boolean or = query.getRootJunctionType() == Junction.Type.OR;
+            boolean match = !or;
+
+            for ( Criterion criterion : query.getCriterions() )
+            {
+                Restriction restriction = (Restriction) criterion;
+                Object value = ReflectionUtils.invokeMethod( dataElement, schema.getProperty( restriction.getPath() ).getGetterMethod() );
+                boolean result = restriction.getOperator().test( value );
+
+                if ( result == or )
+                {
+                    match = or;
+                    break;
+                }
+            }
+
+            if ( match )
+            {
+                matches.add( dataElement );
+            }
+        }
+
+        return matches;
+    }
+
+    private List<DataElement> createDataElements()
+    {
+        List<DataElement> dataElements = new ArrayList<>();
+        long created = new Date().getTime();
+
+        for ( int i = 0; i < OBJECTS; i++ )
+        {
+            DataElement dataElement = createDataElement( 'A' );
+            dataElement.setUid( String.format( "de%09d", i ) );
+            dataElement.setName( String.format( "DataElement%05d", i ) );
+            dataElement.setCode( i % 2 == 0 ? String.format( "DE_%05d", i ) : null );
+            dataElement.setValueType( VALUE_TYPES[i % VALUE_TYPES.length] );
+            dataElement.setDomainType( i % 3 == 0 ? DataElementDomain.TRACKER : DataElementDomain.AGGREGATE );
+            dataElement.setCreated( new Date( created - i * 3600000L ) );
+            dataElements.add( dataElement );
+        }
+
+        return dataElements;
+    }
+
+    private List<String> getUids( List<? extends IdentifiableObject> objects )
+    {
+        return objects.stream().map( IdentifiableObject::getUid ).collect( Collectors.toList() );
+    }
+}
@@ -569,6 +569,76 @@ public class InMemoryQueryEngineTest
         queryEngine.query( query );
     }
 
+    @Test
+    public void testCollectionConjunction()
+    {
+        Query query = Query.from( schemaService.getDynamicSchema( DataElementGroup.class ) );
+        query.setObjects( dataElementGroups );
+
+        Conjunction conjunction = query.conjunction();
+        conjunction.add( Restrictions.eq( "dataElements.id", "deabcdefghA" ) );
+        conjunction.add( Restrictions.eq( "name", "DataElementGroupB" ) );
+        query.add( conjunction );
+
+        assertEquals( 0, queryEngine.query( query ).size() );
+
+        query = Query.from( schemaService.getDynamicSchema( DataElementGroup.class ) );
+        query.setObjects( dataElementGroups );
+
+        conjunction = query.conjunction();
+        conjunction.add( Restrictions.eq( "dataElements.id", "deabcdefghA" ) );
+        conjunction.add( Restrictions.eq( "name", "DataElementGroupA" ) );
+        query.add( conjunction );
+
+        List<? extends IdentifiableObject> objects = queryEngine.query( query );
+
+        assertEquals( 1, objects.size() );
+        assertEquals( "abcdefghijA", objects.get( 0 ).getUid() );
+    }
+
+    @Test
+    public void testRangeQueriesOnManyObjects()
+    {
+        List<DataElement> manyDataElements = new ArrayList<>();
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            DataElement dataElement = createDataElement( 'X' );
+            dataElement.setUid( String.format( "de%09d", i ) );
+            dataElement.setName( String.format( "DataElement%04d", i ) );
+            dataElement.setValueType( i % 2 == 0 ? ValueType.NUMBER : ValueType.TEXT );
+            dataElement.setCreated( Year.parseYear( String.valueOf( 1900 + i % 100 ) ).getStart() );
+            manyDataElements.add( dataElement );
+        }
+
+        Query query = Query.from( schemaService.getDynamicSchema( DataElement.class ) );
+        query.setObjects( manyDataElements );
+        query.add( Restrictions.ge( "name", "DataElement0900" ) );
+        query.add( Restrictions.eq( "valueType", "NUMBER" ) );
+
+        List<? extends IdentifiableObject> objects = queryEngine.query( query );
+
+        assertEquals( 50, objects.size() );
+        assertEquals( "de000000900", objects.get( 0 ).getUid() );
+
+        query = Query.from( schemaService.getDynamicSchema( DataElement.class ) );
+        query.setObjects( manyDataElements );
+        query.add( Restrictions.lt( "created", Year.parseYear( "1910" ).getStart() ) );
+
+        assertEquals( 100, queryEngine.query( query ).size() );
+
+        query = Query.from( schemaService.getDynamicSchema( DataElement.class ), Junction.Type.OR );
+        query.setObjects( manyDataElements );
+        query.add( Restrictions.gt( "name", "DataElement0997" ) );
+        query.add( Restrictions.le( "name", "DataElement0001" ) );
+
+        objects = queryEngine.query( query );
+
+        assertEquals( 4, objects.size() );
+        assertTrue( collectionContainsUid( objects, "de000000000" ) );
+        assertTrue( collectionContainsUid( objects, "de000000999" ) );
+    }
+
     @Test
     public void testCollectionEqSize()
     {
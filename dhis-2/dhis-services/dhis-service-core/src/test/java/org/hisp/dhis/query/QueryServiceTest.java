@@ -30,12 +30,15 @@ package org.hisp.dhis.query;
 
 import com.google.common.collect.Lists;
 import org.hisp.dhis.DhisSpringTest;
+import org.hisp.dhis.category.CategoryCombo;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.common.ValueType;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataelement.DataElementGroup;
 import org.hisp.dhis.query.operators.MatchMode;
+import org.hisp.dhis.query.planner.QueryPlan;
+import org.hisp.dhis.query.planner.QueryPlanner;
 import org.hisp.dhis.schema.Schema;
 import org.hisp.dhis.schema.SchemaService;
 import org.jfree.data.time.Year;
@@ -65,6 +68,9 @@ public class QueryServiceTest
     @Autowired
     private IdentifiableObjectManager identifiableObjectManager;
 
+    @Autowired
+    private QueryPlanner queryPlanner;
+
     @Before
     public void createDataElements()
     {
@@ -643,6 +649,86 @@ public class QueryServiceTest
         assertEquals( 1, objects.size() );
     }
 
+    @Test
+    public void testNestedJunctionInDisjunction()
+    {
+        Query query = Query.from( schemaService.getDynamicSchema( DataElement.class ), Junction.Type.AND );
+
+        Disjunction disjunction = query.addDisjunction();
+        Conjunction conjunction = query.conjunction();
+        conjunction.add( Restrictions.eq( "name", "DataElementA" ) );
+        conjunction.add( Restrictions.eq( "valueType", "NUMBER" ) );
+        disjunction.add( conjunction );
+        disjunction.add( Restrictions.eq( "name", "DataElementB" ) );
+
+        List<? extends IdentifiableObject> objects = queryService.query( query );
+
+        assertEquals( 2, objects.size() );
+        assertTrue( collectionContainsUid( objects, "deabcdefghA" ) );
+        assertTrue( collectionContainsUid( objects, "deabcdefghB" ) );
+    }
+
+    @Test
+    public void testManyToOneJoinPushedToDatabase()
+    {
+        CategoryCombo categoryCombo = createCategoryCombo( 'A' );
+        identifiableObjectManager.save( categoryCombo );
+
+        DataElement dataElementA = identifiableObjectManager.get( DataElement.class, "deabcdefghA" );
+        DataElement dataElementB = identifiableObjectManager.get( DataElement.class, "deabcdefghB" );
+        dataElementA.setCategoryCombo( categoryCombo );
+        dataElementB.setCategoryCombo( categoryCombo );
+        identifiableObjectManager.update( dataElementA );
+        identifiableObjectManager.update( dataElementB );
+
+        Query query = Query.from( schemaService.getDynamicSchema( DataElement.class ) );
+        query.add( Restrictions.eq( "categoryCombo.name", "CategoryComboA" ) );
+        query.add( Restrictions.eq( "categoryCombo.categories", 0 ) );
+
+        QueryPlan queryPlan = queryPlanner.planQuery( Query.from( query ) );
+        assertEquals( 2, queryPlan.getPersistedQuery().getCriterions().size() );
+        assertTrue( queryPlan.getNonPersistedQuery().getCriterions().isEmpty() );
+        assertTrue( queryPlan.getPersistedQuery().getAliases().contains( "categoryCombo" ) );
+
+        List<? extends IdentifiableObject> objects = queryService.query( query );
+
+        assertEquals( 2, objects.size() );
+        assertTrue( collectionContainsUid( objects, "deabcdefghA" ) );
+        assertTrue( collectionContainsUid( objects, "deabcdefghB" ) );
+    }
+
+    @Test
+    public void testCollectionJoinKeptInMemory()
+    {
+        Query query = Query.from( schemaService.getDynamicSchema( DataElementGroup.class ) );
+        query.add( Restrictions.eq( "dataElements.id", "deabcdefghA" ) );
+        query.add( Restrictions.eq( "name", "DataElementGroupA" ) );
+
+        QueryPlan queryPlan = queryPlanner.planQuery( Query.from( query ) );
+
+        assertEquals( 1, queryPlan.getPersistedQuery().getCriterions().size() );
+        assertEquals( 1, queryPlan.getNonPersistedQuery().getCriterions().size() );
+        assertEquals( 2, queryPlan.getTrace().size() );
+        assertTrue( queryPlan.getTrace().get( 0 ).startsWith( "in-memory" ) );
+        assertTrue( queryPlan.getTrace().get( 1 ).startsWith( "database" ) );
+    }
+
+    @Test
+    public void testDisplayNamePushedToDatabase()
+    {
+        Query query = Query.from( schemaService.getDynamicSchema( DataElement.class ) );
+        query.add( Restrictions.ilike( "displayName", "elementa", MatchMode.END ) );
+
+        QueryPlan queryPlan = queryPlanner.planQuery( Query.from( query ) );
+        assertEquals( 1, queryPlan.getPersistedQuery().getCriterions().size() );
+        assertTrue( queryPlan.getNonPersistedQuery().getCriterions().isEmpty() );
+
+        List<? extends IdentifiableObject> objects = queryService.query( query );
+
+        assertEquals( 1, objects.size() );
+        assertEquals( "deabcdefghA", objects.get( 0 ).getUid() );
+    }
+
     private boolean collectionContainsUid( Collection<? extends IdentifiableObject> collection, String uid )
     {
         for ( IdentifiableObject identifiableObject : collection )
@@ -282,8 +282,38 @@ public class DefaultReservedValueServiceTest
         assertEquals( 0, reservedValueStore.getCount() );
     }
 
+    @Test
+    public void testReserveRandomValuesFromRefilledPool()
+        throws Exception
+    {
+        reservedValueService.reserve( simpleRandomTextPattern, 3, new HashMap<>(), future );
+        reservedValueService.refillReservedValuePools();
+
+        int depth = getPoolDepth( simpleRandomTextPattern );
+
+        assertTrue( depth > 0 );
+        assertTrue( reservedValueService.getReservedValuePoolStatistics().stream()
+            .filter( statistics -> statistics.getOwnerUid().equals( simpleRandomTextPattern.getOwnerUid() ) )
+            .allMatch( statistics -> statistics.getRefills() == 1 && statistics.getLastRefilled() != null
+                && statistics.getMaxRefillDuration() >= statistics.getAverageRefillDuration() ) );
+
+        List<ReservedValue> res = reservedValueService.reserve( simpleRandomTextPattern, 3, new HashMap<>(), future );
+
+        assertEquals( 3, res.size() );
+        assertEquals( depth - 3, getPoolDepth( simpleRandomTextPattern ) );
+        assertEquals( 6, reservedValueStore.getCount() );
+    }
+
     // Helpers
 
+    private int getPoolDepth( TextPattern textPattern )
+    {
+        return reservedValueService.getReservedValuePoolStatistics().stream()
+            .filter( statistics -> statistics.getOwnerUid().equals( textPattern.getOwnerUid() ) )
+            .mapToInt( ReservedValuePoolStatistics::getDepth )
+            .sum();
+    }
+
     private static TextPattern createTextPattern( IdentifiableObject owner, String pattern )
     {
         try
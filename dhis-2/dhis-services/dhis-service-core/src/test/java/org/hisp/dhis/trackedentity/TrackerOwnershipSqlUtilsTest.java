@@ -0,0 +1,295 @@
+package org.hisp.dhis.trackedentity;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.hisp.dhis.IntegrationTestBase;
+import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.common.AccessLevel;
+import org.hisp.dhis.common.SetMap;
+import org.hisp.dhis.mock.MockCurrentUserService;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.program.Program;
+import org.hisp.dhis.program.ProgramInstance;
+import org.hisp.dhis.program.ProgramInstanceService;
+import org.hisp.dhis.program.ProgramService;
+import org.hisp.dhis.program.ProgramStage;
+import org.hisp.dhis.program.ProgramStageInstance;
+import org.hisp.dhis.program.ProgramStageInstanceService;
+import org.hisp.dhis.program.ProgramStageService;
+import org.hisp.dhis.program.ProgramTempOwnershipAudit;
+import org.hisp.dhis.program.ProgramTempOwnershipAuditService;
+import org.hisp.dhis.user.User;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Tests that the ownership predicates of {@link TrackerOwnershipSqlUtils}
+ * give the same access as {@link TrackerOwnershipManager#hasAccess}, which
+ * checks each tracked entity instance in Java. The SQL predicate uses
+ * PostgreSQL arrays, so the test runs against PostgreSQL.
+ */
+public class TrackerOwnershipSqlUtilsTest
+    extends IntegrationTestBase
+{
+    @Autowired
+    private TrackerOwnershipManager trackerOwnershipManager;
+
+    @Autowired
+    private TrackedEntityInstanceService entityInstanceService;
+
+    @Autowired
+    private TrackedEntityInstanceStore entityInstanceStore;
+
+    @Autowired
+    private OrganisationUnitService organisationUnitService;
+
+    @Autowired
+    private ProgramService programService;
+
+    @Autowired
+    private ProgramStageService programStageService;
+
+    @Autowired
+    private ProgramInstanceService programInstanceService;
+
+    @Autowired
+    private ProgramStageInstanceService programStageInstanceService;
+
+    @Autowired
+    private ProgramTempOwnershipAuditService programTempOwnershipAuditService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Program openProgram;
+
+    private Program protectedProgram;
+
+    private List<TrackedEntityInstance> entityInstances = new ArrayList<>();
+
+    private Map<String, ProgramStageInstance> events = new HashMap<>();
+
+    private User user;
+
+    @Override
+    public void setUpTest()
+    {
+        OrganisationUnit organisationUnitA = createOrganisationUnit( 'A' );
+        OrganisationUnit organisationUnitB = createOrganisationUnit( 'B' );
+        OrganisationUnit organisationUnitC = createOrganisationUnit( 'C' );
+        OrganisationUnit organisationUnitD = createOrganisationUnit( 'D', organisationUnitA );
+
+        organisationUnitService.addOrganisationUnit( organisationUnitA );
+        organisationUnitService.addOrganisationUnit( organisationUnitB );
+        organisationUnitService.addOrganisationUnit( organisationUnitC );
+        organisationUnitService.addOrganisationUnit( organisationUnitD );
+
+        // Capture scope A, search scope A and B, C is outside of both
+
+        user = new MockCurrentUserService( false, newHashSet( organisationUnitA ), newHashSet( organisationUnitA ) ).getCurrentUser();
+        user.setTeiSearchOrganisationUnits( newHashSet( organisationUnitA, organisationUnitB ) );
+
+        openProgram = createProgram( 'O' );
+        openProgram.setAccessLevel( AccessLevel.OPEN );
+        programService.addProgram( openProgram );
+
+        protectedProgram = createProgram( 'P' );
+        protectedProgram.setAccessLevel( AccessLevel.PROTECTED );
+        programService.addProgram( protectedProgram );
+
+        TrackedEntityInstance inCapture = addEntityInstance( 'D', organisationUnitD );
+        addEntityInstance( 'B', organisationUnitB );
+        addEntityInstance( 'C', organisationUnitC );
+        TrackedEntityInstance ownedInCapture = addEntityInstance( 'O', organisationUnitC );
+        TrackedEntityInstance ownedOutside = addEntityInstance( 'M', organisationUnitA );
+        TrackedEntityInstance temporary = addEntityInstance( 'T', organisationUnitC );
+        TrackedEntityInstance expired = addEntityInstance( 'E', organisationUnitC );
+
+        for ( Program program : newHashSet( openProgram, protectedProgram ) )
+        {
+            ProgramStage programStage = createProgramStage( program.getName().charAt( program.getName().length() - 1 ), program );
+            programStageService.saveProgramStage( programStage );
+
+            for ( TrackedEntityInstance entityInstance : entityInstances )
+            {
+                addEvent( entityInstance, program, programStage );
+            }
+        }
+
+        // Owner organisation units which differ from the registration organisation unit
+
+        trackerOwnershipManager.assignOwnership( ownedInCapture, protectedProgram, organisationUnitA, true, true );
+        trackerOwnershipManager.assignOwnership( ownedOutside, protectedProgram, organisationUnitC, true, true );
+        trackerOwnershipManager.assignOwnership( ownedOutside, openProgram, organisationUnitC, true, true );
+
+        // Temporary ownership granted now and granted before the validity period
+
+        trackerOwnershipManager.grantTemporaryOwnership( temporary, protectedProgram, user, "test" );
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.add( Calendar.HOUR_OF_DAY, -( TrackerOwnershipManager.TEMPORARY_OWNERSHIP_VALIDITY_IN_HOURS + 1 ) );
+
+        ProgramTempOwnershipAudit expiredAudit = new ProgramTempOwnershipAudit( protectedProgram, expired, "test", user.getUsername() );
+        expiredAudit.setCreated( calendar.getTime() );
+        programTempOwnershipAuditService.addProgramTempOwnershipAudit( expiredAudit );
+
+        // Sanity check of the states set up above against the Java checks
+
+        assertEquals( newHashSet( inCapture.getUid(), uid( 'B' ) ), getExpected( openProgram ) );
+        assertEquals( newHashSet( inCapture.getUid(), ownedInCapture.getUid(), temporary.getUid() ), getExpected( protectedProgram ) );
+    }
+
+    @Override
+    public boolean emptyDatabaseAfterTest()
+    {
+        return true;
+    }
+
+    @Test
+    public void testGetOwnershipAccess()
+    {
+        Set<String> teiUids = entityInstances.stream().map( TrackedEntityInstance::getUid ).collect( Collectors.toSet() );
+
+        SetMap<String, String> expected = new SetMap<>();
+
+        for ( Program program : newHashSet( openProgram, protectedProgram ) )
+        {
+            getExpected( program ).forEach( teiUid -> expected.putValue( teiUid, program.getUid() ) );
+        }
+
+        assertEquals( expected, trackerOwnershipManager.getOwnershipAccess( user, teiUids,
+            newHashSet( openProgram.getUid(), protectedProgram.getUid() ) ) );
+    }
+
+    @Test
+    public void testTrackedEntityInstanceQuery()
+    {
+        for ( Program program : newHashSet( openProgram, protectedProgram ) )
+        {
+            TrackedEntityInstanceQueryParams params = new TrackedEntityInstanceQueryParams();
+            params.setProgram( program );
+            params.setUser( user );
+
+            Set<String> actual = entityInstanceStore.getTrackedEntityInstances( params ).stream()
+                .map( TrackedEntityInstance::getUid ).collect( Collectors.toSet() );
+
+            assertEquals( program.getName(), getExpected( program ), actual );
+        }
+    }
+
+    @Test
+    public void testEventQuery()
+    {
+        // Events are filtered on the program instance columns, as in the event store
+
+        String sql = "select psi.uid from programstageinstance psi " +
+            "inner join programinstance pi on pi.programinstanceid = psi.programinstanceid " +
+            "where " + TrackerOwnershipSqlUtils.getOwnershipAccessClause( user, "pi.trackedentityinstanceid", "pi.programid" );
+
+        Set<String> actual = new HashSet<>( jdbcTemplate.queryForList( sql, String.class ) );
+
+        Set<String> expected = events.entrySet().stream()
+            .filter( event -> trackerOwnershipManager.hasAccess( user, event.getValue().getProgramInstance().getEntityInstance(),
+                event.getValue().getProgramInstance().getProgram() ) )
+            .map( Map.Entry::getKey )
+            .collect( Collectors.toSet() );
+
+        assertEquals( 5, expected.size() );
+        assertEquals( expected, actual );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Gets the uids of the tracked entity instances which the user can access
+     * in the given program according to the Java checks.
+     */
+    private Set<String> getExpected( Program program )
+    {
+        return entityInstances.stream()
+            .filter( entityInstance -> trackerOwnershipManager.hasAccess( user, entityInstance, program ) )
+            .map( TrackedEntityInstance::getUid )
+            .collect( Collectors.toSet() );
+    }
+
+    private TrackedEntityInstance addEntityInstance( char uniqueChar, OrganisationUnit organisationUnit )
+    {
+        TrackedEntityInstance entityInstance = createTrackedEntityInstance( uniqueChar, organisationUnit );
+        entityInstance.setUid( uid( uniqueChar ) );
+        entityInstanceService.addTrackedEntityInstance( entityInstance );
+        entityInstances.add( entityInstance );
+
+        return entityInstance;
+    }
+
+    private void addEvent( TrackedEntityInstance entityInstance, Program program, ProgramStage programStage )
+    {
+        Date date = new Date();
+
+        ProgramInstance programInstance = new ProgramInstance( date, date, entityInstance, program );
+        programInstance.setAutoFields();
+        programInstance.setOrganisationUnit( entityInstance.getOrganisationUnit() );
+        programInstanceService.addProgramInstance( programInstance );
+
+        ProgramStageInstance programStageInstance = new ProgramStageInstance( programInstance, programStage );
+        programStageInstance.setAutoFields();
+        programStageInstance.setDueDate( date );
+        programStageInstance.setExecutionDate( date );
+        programStageInstance.setOrganisationUnit( entityInstance.getOrganisationUnit() );
+        programStageInstance.setAttributeOptionCombo( categoryService.getDefaultCategoryOptionCombo() );
+        programStageInstanceService.addProgramStageInstance( programStageInstance );
+
+        events.put( programStageInstance.getUid(), programStageInstance );
+    }
+
+    private static String uid( char uniqueChar )
+    {
+        return "TeiUid0000" + uniqueChar;
+    }
+}
@@ -127,6 +127,12 @@ public class DefaultTrackerAccessManager implements TrackerAccessManager
 
     @Override
     public List<String> canRead( User user, TrackedEntityInstance trackedEntityInstance, Program program )
+    {
+        return canRead( user, trackedEntityInstance, program, false );
+    }
+
+    @Override
+    public List<String> canRead( User user, TrackedEntityInstance trackedEntityInstance, Program program, boolean skipOwnershipCheck )
     {
         List<String> errors = new ArrayList<>();
 
@@ -148,7 +154,7 @@ public class DefaultTrackerAccessManager implements TrackerAccessManager
             errors.add( "User has no data read access to tracked entity: " + trackedEntityType.getUid() );
         }
 
-        if ( !ownershipAccessManager.hasAccess( user, trackedEntityInstance, program ) )
+        if ( !skipOwnershipCheck && !ownershipAccessManager.hasAccess( user, trackedEntityInstance, program ) )
         {
             errors.add( TrackerOwnershipManager.OWNERSHIP_ACCESS_DENIED );
         }
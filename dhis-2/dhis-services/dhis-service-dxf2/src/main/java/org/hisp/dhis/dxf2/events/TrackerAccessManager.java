@@ -35,6 +35,7 @@ import org.hisp.dhis.program.ProgramInstance;
 import org.hisp.dhis.program.ProgramStageInstance;
 import org.hisp.dhis.relationship.Relationship;
 import org.hisp.dhis.trackedentity.TrackedEntityInstance;
+import org.hisp.dhis.trackedentity.TrackerOwnershipManager;
 import org.hisp.dhis.user.User;
 
 import java.util.List;
@@ -50,6 +51,18 @@ public interface TrackerAccessManager
 
     List<String> canRead( User user, TrackedEntityInstance trackedEntityInstance, Program program );
 
+    /**
+     * Checks read access to the tracked entity instance in the given program.
+     *
+     * @param user User validated for read access
+     * @param trackedEntityInstance TrackedEntityInstance to check
+     * @param program Program to check
+     * @param skipOwnershipCheck whether to skip the ownership check, for callers which
+     *        have resolved ownership in bulk through {@link TrackerOwnershipManager#getOwnershipAccess}
+     * @return Empty list if read access allowed, list of errors otherwise.
+     */
+    List<String> canRead( User user, TrackedEntityInstance trackedEntityInstance, Program program, boolean skipOwnershipCheck );
+
     List<String> canWrite( User user, TrackedEntityInstance trackedEntityInstance, Program program );
 
     List<String> canRead( User user, ProgramInstance programInstance );
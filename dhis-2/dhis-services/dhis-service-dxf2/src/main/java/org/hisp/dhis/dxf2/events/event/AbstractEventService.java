@@ -59,6 +59,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
@@ -624,26 +625,33 @@ public abstract class AbstractEventService
             events.setPager( pager );
         }
 
-        List<Event> eventList = eventStore.getEvents( params, organisationUnits, Collections.emptyMap() );
+        // Ownership access is filtered in the event query
 
-        User user = currentUserService.getCurrentUser();
+        events.getEvents().addAll( eventStore.getEvents( params, organisationUnits, Collections.emptyMap() ) );
+
+        events.setNextPageToken( params.getNextPageToken() );
+
+        return events;
+    }
 
-        for ( Event event : eventList )
+    @Override
+    public void streamEvents( EventSearchParams params, Consumer<Event> consumer )
+    {
+        validate( params );
+
+        List<OrganisationUnit> organisationUnits = getOrganisationUnits( params );
+
+        if ( !params.isPaging() && !params.isSkipPaging() )
         {
-            if ( trackerOwnershipAccessManager.hasAccess( user, event.getTrackedEntityInstance(), event.getProgram() ) )
-            {
-                events.getEvents().add( event );
-            }
+            params.setDefaultPaging();
         }
 
-        return events;
+        eventStore.streamEvents( params, organisationUnits, Collections.emptyMap(), consumer );
     }
 
     @Override
     public Grid getEventsGrid( EventSearchParams params )
     {
-        User user = currentUserService.getCurrentUser();
-
         if ( params.getProgramStage() == null || params.getProgramStage().getProgram() == null )
         {
             throw new IllegalQueryException( "Program stage can not be null" );
@@ -715,19 +723,6 @@ public abstract class AbstractEventService
         {
             grid.addRow();
 
-            if ( params.getProgramStage().getProgram().isRegistration() && user != null || !user.isSuper() )
-            {
-                ProgramInstance enrollment = programInstanceService.getProgramInstance( event.get( EVENT_ENROLLMENT_ID ) );
-
-                if ( enrollment != null && enrollment.getEntityInstance() != null )
-                {
-                    if ( !trackerOwnershipAccessManager.hasAccess( user, enrollment.getEntityInstance(), params.getProgramStage().getProgram() ) )
-                    {
-                        continue;
-                    }
-                }
-            }
-
             for ( String col : STATIC_EVENT_COLUMNS )
             {
                 grid.addValue( event.get( col ) );
@@ -824,19 +819,11 @@ public abstract class AbstractEventService
     {
         List<OrganisationUnit> organisationUnits = getOrganisationUnits( params );
 
-        User user = currentUserService.getCurrentUser();
-
         EventRows eventRows = new EventRows();
 
-        List<EventRow> eventRowList = eventStore.getEventRows( params, organisationUnits );
+        // Ownership access is filtered in the event query
 
-        for ( EventRow eventRow : eventRowList )
-        {
-            if ( trackerOwnershipAccessManager.hasAccess( user, eventRow.getTrackedEntityInstance(), eventRow.getProgram() ) )
-            {
-                eventRows.getEventRows().add( eventRow );
-            }
-        }
+        eventRows.getEventRows().addAll( eventStore.getEventRows( params, organisationUnits ) );
 
         return eventRows;
     }
@@ -1982,6 +1969,17 @@ public abstract class AbstractEventService
             violation = "At least one of the following query parameters are required: orgUnit, program, trackedEntityInstance or event";
         }
 
+        if ( params.isKeysetPaging() && ( ( params.getOrders() != null && !params.getOrders().isEmpty() ) ||
+            ( params.getGridOrders() != null && !params.getGridOrders().isEmpty() ) ) )
+        {
+            violation = "Keyset paging can not be combined with order, events are ordered by last updated";
+        }
+
+        if ( params.isKeysetPaging() && params.isSkipPaging() )
+        {
+            violation = "Keyset paging can not be combined with skip paging";
+        }
+
         if ( violation != null )
         {
             log.warn( "Validation failed: " + violation );
@@ -0,0 +1,138 @@
+package org.hisp.dhis.dxf2.events.event;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+import org.hisp.dhis.common.IllegalQueryException;
+
+/**
+ * Continuation token for keyset paging of events. Holds the sort key of the
+ * last row of a page, which is the last updated timestamp, the event id and
+ * the attribute category option id. The category option is part of the key
+ * since the event query returns one row per attribute category option.
+ * <p>
+ * The timestamp keeps its full database precision, as rounding it to
+ * milliseconds would make rows updated within the same millisecond appear on
+ * two pages or on none.
+ */
+public class EventPageToken
+{
+    private static final String SEPARATOR = ";";
+
+    private final Timestamp lastUpdated;
+
+    private final int eventId;
+
+    private final int categoryOptionId;
+
+    public EventPageToken( Timestamp lastUpdated, int eventId, int categoryOptionId )
+    {
+        this.lastUpdated = lastUpdated;
+        this.eventId = eventId;
+        this.categoryOptionId = categoryOptionId;
+    }
+
+    // -------------------------------------------------------------------------
+    // Logic
+    // -------------------------------------------------------------------------
+
+    /**
+     * Encodes this token as an URL safe string.
+     */
+    public String encode()
+    {
+        String token = lastUpdated.toString() + SEPARATOR + eventId + SEPARATOR + categoryOptionId;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString( token.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Decodes the given token.
+     *
+     * @param token the encoded token.
+     * @return an {@link EventPageToken}.
+     * @throws IllegalQueryException if the token is not valid.
+     */
+    public static EventPageToken decode( String token )
+        throws IllegalQueryException
+    {
+        try
+        {
+            String[] parts = new String( Base64.getUrlDecoder().decode( token ), StandardCharsets.UTF_8 ).split( SEPARATOR );
+
+            if ( parts.length != 3 )
+            {
+                throw new IllegalQueryException( "Page token is not valid: " + token );
+            }
+
+            return new EventPageToken( Timestamp.valueOf( parts[0] ), Integer.parseInt( parts[1] ), Integer.parseInt( parts[2] ) );
+        }
+        catch ( IllegalArgumentException ex )
+        {
+            throw new IllegalQueryException( "Page token is not valid: " + token );
+        }
+    }
+
+    /**
+     * Returns the SQL condition which selects the rows after this token. Values
+     * are validated on decode, so no escaping is required.
+     *
+     * @param lastUpdatedColumn the last updated column.
+     * @param eventIdColumn the event id column.
+     * @param categoryOptionIdColumn the attribute category option id column.
+     * @return a SQL condition.
+     */
+    public String getAfterCondition( String lastUpdatedColumn, String eventIdColumn, String categoryOptionIdColumn )
+    {
+        return "(" + lastUpdatedColumn + ", " + eventIdColumn + ", " + categoryOptionIdColumn + ") < ('" +
+            lastUpdated.toString() + "', " + eventId + ", " + categoryOptionId + ")";
+    }
+
+    // -------------------------------------------------------------------------
+    // Getters
+    // -------------------------------------------------------------------------
+
+    public Timestamp getLastUpdated()
+    {
+        return lastUpdated;
+    }
+
+    public int getEventId()
+    {
+        return eventId;
+    }
+
+    public int getCategoryOptionId()
+    {
+        return categoryOptionId;
+    }
+}
@@ -119,6 +119,28 @@ public class EventSearchParams
 
     private boolean skipPaging;
 
+    /**
+     * Indicates whether to page on the last updated timestamp and event id
+     * using a continuation token instead of page number and offset.
+     */
+    private boolean keysetPaging;
+
+    /**
+     * Continuation token for keyset paging, as returned with the previous page.
+     */
+    private String pageToken;
+
+    /**
+     * Continuation token for the page after the one returned by the query,
+     * set by the event store when keyset paging and more rows may exist.
+     */
+    private String nextPageToken;
+
+    /**
+     * Indicates whether to use the query planner estimate for total counts.
+     */
+    private boolean approximateCount;
+
     private List<Order> orders;
 
     private List<String> gridOrders;
@@ -179,6 +201,15 @@ public class EventSearchParams
         return (getPageWithDefault() - 1) * getPageSizeWithDefault();
     }
 
+    /**
+     * Indicates whether keyset paging is used, either explicitly or implicitly
+     * by providing a continuation token.
+     */
+    public boolean isKeysetPaging()
+    {
+        return keysetPaging || pageToken != null;
+    }
+
     /**
      * Sets paging properties to default values.
      */
@@ -552,6 +583,41 @@ public class EventSearchParams
         return accessiblePrograms != null && accessibleProgramStages != null;
     }
 
+    public void setKeysetPaging( boolean keysetPaging )
+    {
+        this.keysetPaging = keysetPaging;
+    }
+
+    public String getPageToken()
+    {
+        return pageToken;
+    }
+
+    public void setPageToken( String pageToken )
+    {
+        this.pageToken = pageToken;
+    }
+
+    public String getNextPageToken()
+    {
+        return nextPageToken;
+    }
+
+    public void setNextPageToken( String nextPageToken )
+    {
+        this.nextPageToken = nextPageToken;
+    }
+
+    public boolean isApproximateCount()
+    {
+        return approximateCount;
+    }
+
+    public void setApproximateCount( boolean approximateCount )
+    {
+        this.approximateCount = approximateCount;
+    }
+
     public boolean isSynchronizationQuery()
     {
         return synchronizationQuery;
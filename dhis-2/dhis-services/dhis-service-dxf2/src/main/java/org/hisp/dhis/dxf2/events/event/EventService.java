@@ -34,6 +34,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.common.Grid;
@@ -60,6 +61,15 @@ public interface EventService
 
     Events getEvents( EventSearchParams params );
 
+    /**
+     * Passes each event matching the given params to the given consumer as it
+     * is read from the database.
+     *
+     * @param params the event search params.
+     * @param consumer the consumer of events.
+     */
+    void streamEvents( EventSearchParams params, Consumer<Event> consumer );
+
     EventRows getEventRows( EventSearchParams params );
 
     EventSearchParams getFromUrl( String program, String programStage, ProgramStatus programStatus, Boolean followUp, String orgUnit,
@@ -31,6 +31,7 @@ package org.hisp.dhis.dxf2.events.event;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.hisp.dhis.dxf2.events.report.EventRow;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
@@ -42,6 +43,14 @@ public interface EventStore
 {
     List<Event> getEvents( EventSearchParams params, List<OrganisationUnit> organisationUnits, Map<String, Set<String>> psdesWithSkipSyncTrue );
 
+    /**
+     * Reads events matching the given params with a server side cursor and
+     * passes each event to the given consumer, without holding the full
+     * result in memory. Must be invoked within a transaction.
+     */
+    void streamEvents( EventSearchParams params, List<OrganisationUnit> organisationUnits,
+        Map<String, Set<String>> psdesWithSkipSyncTrue, Consumer<Event> consumer );
+
     List<Map<String, String>> getEventsGrid( EventSearchParams params, List<OrganisationUnit> organisationUnits );
 
     List<EventRow> getEventRows( EventSearchParams params, List<OrganisationUnit> organisationUnits );
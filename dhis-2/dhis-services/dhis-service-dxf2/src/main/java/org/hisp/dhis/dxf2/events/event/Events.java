@@ -56,6 +56,8 @@ public class Events
     private Map<Object, Object> metaData;
 
     private Pager pager;
+
+    private String nextPageToken;
     
     public Events()
     {
@@ -124,6 +126,18 @@ public class Events
         this.pager = pager;
     }
 
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public String getNextPageToken()
+    {
+        return nextPageToken;
+    }
+
+    public void setNextPageToken( String nextPageToken )
+    {
+        this.nextPageToken = nextPageToken;
+    }
+
     @Override
     public String toString()
     {
@@ -55,6 +55,8 @@ import static org.hisp.dhis.dxf2.events.event.EventSearchParams.EVENT_STATUS_ID;
 import static org.hisp.dhis.dxf2.events.event.EventSearchParams.EVENT_STORED_BY_ID;
 
 import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -62,6 +64,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.annotation.Resource;
@@ -93,14 +96,18 @@ import org.hisp.dhis.program.ProgramType;
 import org.hisp.dhis.query.Order;
 import org.hisp.dhis.render.DefaultRenderService;
 import org.hisp.dhis.security.acl.AccessStringHelper;
+import org.hisp.dhis.trackedentity.TrackerOwnershipSqlUtils;
 import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
 import org.hisp.dhis.util.ObjectUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.rowset.ResultSetWrappingSqlRowSet;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.google.common.collect.ImmutableMap;
 import com.vividsolutions.jts.geom.Geometry;
@@ -115,6 +122,11 @@ public class JdbcEventStore
 {
     private static final Log log = LogFactory.getLog( JdbcEventStore.class );
 
+    /**
+     * Number of rows fetched per round trip when streaming events.
+     */
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     private static final Map<String, String> QUERY_PARAM_COL_MAP = ImmutableMap.<String, String>builder()
         .put( "event", "psi_uid" ).put( "program", "p_uid" ).put( "programStage", "ps_uid" )
         .put( "enrollment", "pi_uid" ).put( "enrollmentStatus", "pi_status" ).put( "orgUnit", "ou_uid" )
@@ -147,22 +159,12 @@ public class JdbcEventStore
     // EventStore implementation
     // -------------------------------------------------------------------------
 
-    @SuppressWarnings( "unchecked" )
     @Override
     public List<Event> getEvents( EventSearchParams params, List<OrganisationUnit> organisationUnits, Map<String, Set<String>> psdesWithSkipSyncTrue )
     {
         User user = currentUserService.getCurrentUser();
 
-        boolean isSuperUser = isSuper( user );
-
-        if ( !isSuperUser )
-        {
-            params.setAccessiblePrograms( manager.getDataReadAll( Program.class )
-                .stream().map( Program::getUid ).collect( Collectors.toSet() ) );
-
-            params.setAccessibleProgramStages( manager.getDataReadAll( ProgramStage.class )
-                .stream().map( ProgramStage::getUid ).collect( Collectors.toSet() ) );
-        }
+        setAccessiblePrograms( params, user );
 
         List<Event> events = new ArrayList<>();
 
@@ -172,6 +174,46 @@ public class JdbcEventStore
 
         log.debug( "Event query SQL: " + sql );
 
+        readEvents( rowSet, params, user, psdesWithSkipSyncTrue, events::add );
+
+        return events;
+    }
+
+    @Override
+    public void streamEvents( EventSearchParams params, List<OrganisationUnit> organisationUnits,
+        Map<String, Set<String>> psdesWithSkipSyncTrue, Consumer<Event> consumer )
+    {
+        User user = currentUserService.getCurrentUser();
+
+        setAccessiblePrograms( params, user );
+
+        String sql = buildSql( params, organisationUnits, user );
+
+        log.debug( "Event stream query SQL: " + sql );
+
+        // Forward only result set with fetch size makes the driver use a server side cursor within the transaction
+
+        jdbcTemplate.query( connection -> {
+            PreparedStatement statement = connection.prepareStatement( sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY );
+            statement.setFetchSize( STREAM_FETCH_SIZE );
+            return statement;
+        }, (ResultSetExtractor<Void>) resultSet -> {
+            readEvents( new ResultSetWrappingSqlRowSet( resultSet ), params, user, psdesWithSkipSyncTrue, consumer );
+            return null;
+        } );
+    }
+
+    /**
+     * Reads events from the given row set and passes each event to the given
+     * consumer. When keyset paging, sets the continuation token for the next
+     * page on the given params if the page is full.
+     */
+    @SuppressWarnings( "unchecked" )
+    private void readEvents( SqlRowSet rowSet, EventSearchParams params, User user,
+        Map<String, Set<String>> psdesWithSkipSyncTrue, Consumer<Event> consumer )
+    {
+        boolean isSuperUser = isSuper( user );
+
         Event event = new Event();
 
         event.setEvent( "not_valid" );
@@ -180,8 +222,21 @@ public class JdbcEventStore
 
         IdSchemes idSchemes = ObjectUtils.firstNonNull( params.getIdSchemes(), new IdSchemes() );
 
+        boolean filterOptionSize = params.getCategoryOptionCombo() == null && !isSuperUser;
+
+        Set<String> pageRows = new HashSet<>();
+
+        EventPageToken lastRow = null;
+
         while ( rowSet.next() )
         {
+            if ( params.isKeysetPaging() && rowSet.getString( "psi_uid" ) != null )
+            {
+                lastRow = getLastRow( rowSet, lastRow );
+
+                pageRows.add( rowSet.getInt( "psi_id" ) + "-" + rowSet.getInt( "cocco_categoryoptionid" ) );
+            }
+
             if ( rowSet.getString( "psi_uid" ) == null || (params.getCategoryOptionCombo() == null && !isSuperUser && !userHasAccess( rowSet )) )
             {
                 continue;
@@ -248,8 +303,6 @@ public class JdbcEventStore
                 }
             }
 
-            events.add( event );
-
             if ( !org.springframework.util.StringUtils.isEmpty( rowSet.getString( "psi_eventdatavalues" ) ) )
             {
                 Set<EventDataValue> eventDataValues = convertEventDataValueJsonIntoSet( rowSet.getString( "psi_eventdatavalues" ) );
@@ -286,14 +339,38 @@ public class JdbcEventStore
                 event.getNotes().add( note );
                 notes.add( rowSet.getString( "psinote_id" ) );
             }
+
+            if ( !filterOptionSize || ( event.getAttributeCategoryOptions() != null &&
+                splitToArray( event.getAttributeCategoryOptions(), TextUtils.SEMICOLON ).size() == event.getOptionSize() ) )
+            {
+                consumer.accept( event );
+            }
         }
 
-        if ( params.getCategoryOptionCombo() == null && !isSuper( user ) )
+        if ( params.isKeysetPaging() )
         {
-            return events.stream().filter( ev -> ev.getAttributeCategoryOptions() != null && splitToArray( ev.getAttributeCategoryOptions(), TextUtils.SEMICOLON ).size() == ev.getOptionSize() ).collect( Collectors.toList() );
+            boolean fullPage = params.isPaging() && pageRows.size() >= params.getPageSizeWithDefault();
+
+            params.setNextPageToken( fullPage && lastRow != null ? lastRow.encode() : null );
         }
+    }
 
-        return events;
+    /**
+     * Returns the sort key of the current row if it comes after the given last
+     * row. Rows of an event are ordered by event only, so the lowest category
+     * option id of the last event is the last row of the page.
+     */
+    private EventPageToken getLastRow( SqlRowSet rowSet, EventPageToken lastRow )
+    {
+        int eventId = rowSet.getInt( "psi_id" );
+        int categoryOptionId = rowSet.getInt( "cocco_categoryoptionid" );
+
+        if ( lastRow != null && lastRow.getEventId() == eventId && lastRow.getCategoryOptionId() <= categoryOptionId )
+        {
+            return lastRow;
+        }
+
+        return new EventPageToken( rowSet.getTimestamp( "psi_lastupdated" ), eventId, categoryOptionId );
     }
 
     @Override
@@ -451,16 +528,7 @@ public class JdbcEventStore
     {
         User user = currentUserService.getCurrentUser();
 
-        boolean isSuperUser = isSuper( user );
-
-        if ( !isSuperUser )
-        {
-            params.setAccessiblePrograms( manager.getDataReadAll( Program.class )
-                .stream().map( Program::getUid ).collect( Collectors.toSet() ) );
-
-            params.setAccessibleProgramStages( manager.getDataReadAll( ProgramStage.class )
-                .stream().map( ProgramStage::getUid ).collect( Collectors.toSet() ) );
-        }
+        setAccessiblePrograms( params, user );
 
         String sql;
 
@@ -470,7 +538,18 @@ public class JdbcEventStore
         }
         else
         {
-            sql = getEventSelectQuery( params, organisationUnits, user );
+            sql = getEventSelectQuery( params, organisationUnits, user, false );
+        }
+
+        if ( params.isApproximateCount() )
+        {
+            Integer estimate = getEstimatedCount( sql.replaceFirst( "order .*? (desc|asc)", "" )
+                .replaceFirst( "limit \\d+ offset \\d+", "" ) );
+
+            if ( estimate != null )
+            {
+                return estimate;
+            }
         }
 
         sql = sql.replaceFirst( "select .*? from", "select count(*) from" );
@@ -484,6 +563,32 @@ public class JdbcEventStore
         return jdbcTemplate.queryForObject( sql, Integer.class );
     }
 
+    /**
+     * Returns the row count estimated by the query planner for the given
+     * query, or null if the estimate could not be read. Avoids executing the
+     * query, which for large tables is about as expensive as fetching all
+     * pages.
+     */
+    private Integer getEstimatedCount( String sql )
+    {
+        String plan = jdbcTemplate.queryForObject( "explain (format json) " + sql, String.class );
+
+        log.debug( "Event query count estimate plan: " + plan );
+
+        try
+        {
+            JsonNode rows = DefaultRenderService.getJsonMapper().readTree( plan ).path( 0 ).path( "Plan" ).path( "Plan Rows" );
+
+            return rows.isNumber() ? rows.asInt() : null;
+        }
+        catch ( IOException ex )
+        {
+            log.warn( "Could not read event query plan estimate, falling back to exact count", ex );
+
+            return null;
+        }
+    }
+
     private DataValue convertEventDataValueIntoDtoDataValue( EventDataValue eventDataValue ) {
         DataValue dataValue = new DataValue();
         dataValue.setCreated( DateUtils.getIso8601NoTz( eventDataValue.getCreated() ) );
@@ -558,9 +663,9 @@ public class JdbcEventStore
     {
         String sql = "select * from (";
 
-        sql += getEventSelectQuery( params, organisationUnits, user );
+        sql += getEventSelectQuery( params, organisationUnits, user, params.isKeysetPaging() );
 
-        sql += getOrderQuery( params );
+        sql += params.isKeysetPaging() ? getKeysetOrderQuery( true ) : getOrderQuery( params );
 
         sql += getEventPagingQuery( params );
 
@@ -577,12 +682,16 @@ public class JdbcEventStore
 
         sql += ") as cm on event.psi_id=cm.psic_id ";
 
-        sql += getOrderQuery( params );
+        sql += params.isKeysetPaging() ? getKeysetOrderQuery( false ) : getOrderQuery( params );
 
         return sql;
     }
 
-    private String getEventSelectQuery( EventSearchParams params, List<OrganisationUnit> organisationUnits, User user )
+    /**
+     * @param keysetPaging whether to restrict to rows after the page token.
+     */
+    private String getEventSelectQuery( EventSearchParams params, List<OrganisationUnit> organisationUnits, User user,
+        boolean keysetPaging )
     {
         List<Integer> orgUnitIds = getIdentifiers( organisationUnits );
 
@@ -797,11 +906,22 @@ public class JdbcEventStore
             sql += hlp.whereAnd() + " (ps.uid in (" + getQuotedCommaDelimitedString( params.getAccessibleProgramStages() ) + ")) ";
         }
 
+        if ( !isSuper( user ) )
+        {
+            sql += hlp.whereAnd() + " " + TrackerOwnershipSqlUtils.getOwnershipAccessClause( user, "pi.trackedentityinstanceid", "pi.programid" ) + " ";
+        }
+
         if ( params.isSynchronizationQuery() )
         {
             sql += hlp.whereAnd() + " psi.lastupdated > psi.lastsynchronized ";
         }
 
+        if ( keysetPaging && params.getPageToken() != null )
+        {
+            sql += hlp.whereAnd() + " " + EventPageToken.decode( params.getPageToken() )
+                .getAfterCondition( "psi.lastupdated", "psi.programstageinstanceid", "cocco.categoryoptionid" ) + " ";
+        }
+
         return sql;
     }
 
@@ -962,6 +1082,13 @@ public class JdbcEventStore
             sql += hlp.whereAnd() + " (psi.uid in (" + getQuotedCommaDelimitedString( params.getEvents() ) + ")) ";
         }
 
+        User user = currentUserService.getCurrentUser();
+
+        if ( !isSuper( user ) )
+        {
+            sql += hlp.whereAnd() + " " + TrackerOwnershipSqlUtils.getOwnershipAccessClause( user, "pi.trackedentityinstanceid", "pi.programid" ) + " ";
+        }
+
         return sql;
     }
 
@@ -1000,7 +1127,7 @@ public class JdbcEventStore
 
         if ( params.isPaging() )
         {
-            sql += "limit " + params.getPageSizeWithDefault() + " offset " + params.getOffset() + " ";
+            sql += "limit " + params.getPageSizeWithDefault() + ( params.isKeysetPaging() ? " " : " offset " + params.getOffset() + " " );
         }
 
         return sql;
@@ -1108,6 +1235,25 @@ public class JdbcEventStore
         }
     }
 
+    /**
+     * Order for keyset paging, which must match the continuation token. The
+     * inner event query orders by column since the category option alias is
+     * not unique, the outer query only needs to keep rows of events together.
+     *
+     * @param inner whether the order is for the inner event query.
+     */
+    private String getKeysetOrderQuery( boolean inner )
+    {
+        if ( inner )
+        {
+            return "order by psi.lastupdated desc, psi.programstageinstanceid desc, cocco.categoryoptionid desc ";
+        }
+        else
+        {
+            return "order by psi_lastupdated desc, psi_id desc ";
+        }
+    }
+
     private String getAttributeValueQuery()
     {
         String sql = "select pav.trackedentityinstanceid as pav_id, pav.created as pav_created, pav.lastupdated as pav_lastupdated, "
@@ -1118,6 +1264,18 @@ public class JdbcEventStore
         return sql;
     }
 
+    private void setAccessiblePrograms( EventSearchParams params, User user )
+    {
+        if ( !isSuper( user ) )
+        {
+            params.setAccessiblePrograms( manager.getDataReadAll( Program.class )
+                .stream().map( Program::getUid ).collect( Collectors.toSet() ) );
+
+            params.setAccessibleProgramStages( manager.getDataReadAll( ProgramStage.class )
+                .stream().map( ProgramStage::getUid ).collect( Collectors.toSet() ) );
+        }
+    }
+
     private boolean isSuper( User user )
     {
         return user == null || user.isSuper();
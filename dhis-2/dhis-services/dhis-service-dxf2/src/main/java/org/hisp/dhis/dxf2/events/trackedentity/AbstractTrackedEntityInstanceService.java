@@ -33,6 +33,7 @@ import static org.hisp.dhis.system.notification.NotificationLevel.ERROR;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
@@ -47,7 +48,9 @@ import org.hisp.dhis.api.util.DateUtils;
 import org.hisp.dhis.common.CodeGenerator;
 import org.hisp.dhis.common.IdSchemes;
 import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.IdentifiableObjectUtils;
 import org.hisp.dhis.common.IllegalQueryException;
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.commons.collection.CachingMap;
 import org.hisp.dhis.commons.util.DebugUtils;
 import org.hisp.dhis.dbms.DbmsManager;
@@ -185,6 +188,12 @@ public abstract class AbstractTrackedEntityInstanceService
         List<org.hisp.dhis.trackedentity.TrackedEntityInstance> daoTEIs = teiService
             .getTrackedEntityInstances( queryParams, skipAccessValidation );
 
+        // Collections are loaded for the whole page up front, one query per
+        // collection type, and the instances are then assembled in memory
+
+        teiService.loadTrackedEntityInstanceCollections( daoTEIs, params.isIncludeEnrollments(), params.isIncludeEvents(),
+            params.isIncludeRelationships(), params.isIncludeProgramOwners() );
+
         List<TrackedEntityInstance> dtoTeis = new ArrayList<>();
         User user = currentUserService.getCurrentUser();
 
@@ -199,6 +208,9 @@ public abstract class AbstractTrackedEntityInstanceService
         {
             List<Program> programs = manager.getAll( Program.class );
 
+            SetMap<String, String> ownershipAccess = trackerOwnershipAccessManager.getOwnershipAccess( user,
+                IdentifiableObjectUtils.getUids( daoTEIs ), IdentifiableObjectUtils.getUids( programs ) );
+
             for ( org.hisp.dhis.trackedentity.TrackedEntityInstance daoTrackedEntityInstance : daoTEIs )
             {
                 attributes = new HashSet<>( trackedEntityTypeAttributes );
@@ -206,10 +218,12 @@ public abstract class AbstractTrackedEntityInstanceService
                 // check if user can read the TEI
                 if ( trackerAccessManager.canRead( user, daoTrackedEntityInstance ).isEmpty() )
                 {
+                    Set<String> ownedPrograms = ownershipAccess.getOrDefault( daoTrackedEntityInstance.getUid(), new HashSet<>() );
+
                     // pick only those program attributes that user is the owner
                     for ( Program program : programs )
                     {
-                        if ( trackerOwnershipAccessManager.hasAccess( user, daoTrackedEntityInstance, program ) )
+                        if ( ownedPrograms.contains( program.getUid() ) )
                         {
                             attributes.addAll( program.getTrackedEntityAttributes() );
                         }
@@ -228,9 +242,19 @@ public abstract class AbstractTrackedEntityInstanceService
                 attributes.addAll( new HashSet<>( queryParams.getProgram().getTrackedEntityAttributes() ) );
             }
 
+            // Ownership is resolved for the whole page in one query instead of per instance
+
+            SetMap<String, String> ownershipAccess = queryParams.hasProgram() ? trackerOwnershipAccessManager.getOwnershipAccess( user,
+                IdentifiableObjectUtils.getUids( daoTEIs ), Collections.singleton( queryParams.getProgram().getUid() ) ) : null;
+
             for ( org.hisp.dhis.trackedentity.TrackedEntityInstance daoTrackedEntityInstance : daoTEIs )
             {
-                if ( trackerAccessManager.canRead( user, daoTrackedEntityInstance, queryParams.getProgram() ).isEmpty() )
+                if ( ownershipAccess != null && !ownershipAccess.containsKey( daoTrackedEntityInstance.getUid() ) )
+                {
+                    continue;
+                }
+
+                if ( trackerAccessManager.canRead( user, daoTrackedEntityInstance, queryParams.getProgram(), true ).isEmpty() )
                 {
                     dtoTeis.add( getTei( daoTrackedEntityInstance, attributes, params, user ) );
                 }
@@ -40,6 +40,8 @@ import org.hisp.dhis.chart.Chart;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.common.InterpretableObject;
 import org.hisp.dhis.common.SetMap;
+import org.hisp.dhis.common.UserContext;
+import org.hisp.dhis.commons.util.SystemUtils;
 import org.hisp.dhis.commons.timer.SystemTimer;
 import org.hisp.dhis.commons.timer.Timer;
 import org.hisp.dhis.dashboard.Dashboard;
@@ -65,10 +67,12 @@ import org.hisp.dhis.legend.Legend;
 import org.hisp.dhis.legend.LegendSet;
 import org.hisp.dhis.logging.LoggingManager;
 import org.hisp.dhis.mapping.MapView;
+import org.hisp.dhis.node.Node;
 import org.hisp.dhis.node.NodeUtils;
 import org.hisp.dhis.node.config.InclusionStrategy;
 import org.hisp.dhis.node.types.CollectionNode;
 import org.hisp.dhis.node.types.ComplexNode;
+import org.hisp.dhis.node.types.DeferredCollectionNode;
 import org.hisp.dhis.node.types.RootNode;
 import org.hisp.dhis.node.types.SimpleNode;
 import org.hisp.dhis.option.Option;
@@ -96,14 +100,29 @@ import org.hisp.dhis.system.SystemService;
 import org.hisp.dhis.trackedentity.TrackedEntityAttribute;
 import org.hisp.dhis.trackedentity.TrackedEntityType;
 import org.hisp.dhis.user.CurrentUserService;
+import org.hisp.dhis.user.User;
+import org.hisp.dhis.user.UserService;
+import org.hisp.dhis.user.UserSettingKey;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * @author Morten Olav Hansen <mortenoh@gmail.com>
@@ -113,6 +132,8 @@ public class DefaultMetadataExportService implements MetadataExportService
 {
     private static final LoggingManager.Logger log = LoggingManager.createLogger( DefaultMetadataExportService.class );
 
+    private static final int MAX_EXPORT_THREADS = 4;
+
     @Autowired
     private SchemaService schemaService;
 
@@ -134,49 +155,48 @@ public class DefaultMetadataExportService implements MetadataExportService
     @Autowired
     private SystemService systemService;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Loads the sections of streamed exports, shared by all exports.
+     */
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init()
+    {
+        AtomicInteger threadIndex = new AtomicInteger();
+
+        executor = Executors.newFixedThreadPool( getThreadPoolSize(), runnable -> {
+            Thread thread = new Thread( runnable, "metadata-export-" + threadIndex.getAndIncrement() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
     @Override
-    @SuppressWarnings( "unchecked" )
     public Map<Class<? extends IdentifiableObject>, List<? extends IdentifiableObject>> getMetadata( MetadataExportParams params )
     {
         Timer timer = new SystemTimer().start();
         Map<Class<? extends IdentifiableObject>, List<? extends IdentifiableObject>> metadata = new HashMap<>();
 
-        if ( params.getUser() == null )
-        {
-            params.setUser( currentUserService.getCurrentUser() );
-        }
-
-        if ( params.getClasses().isEmpty() )
-        {
-            schemaService.getMetadataSchemas().stream().filter( Schema::isIdentifiableObject )
-                .forEach( schema -> params.getClasses().add( (Class<? extends IdentifiableObject>) schema.getKlass() ) );
-        }
+        prepareParams( params );
 
         log.info( "(" + params.getUsername() + ") Export:Start" );
 
         for ( Class<? extends IdentifiableObject> klass : params.getClasses() )
         {
-            Query query;
-
-            if ( params.getQuery( klass ) != null )
-            {
-                query = params.getQuery( klass );
-            }
-            else
-            {
-                OrderParams orderParams = new OrderParams( Sets.newHashSet( params.getDefaultOrder() ) );
-                query = queryService.getQueryFromUrl( klass, params.getDefaultFilter(), orderParams.getOrders( schemaService.getDynamicSchema( klass ) ) );
-            }
-
-            if ( query.getUser() == null )
-            {
-                query.setUser( params.getUser() );
-            }
-
-            query.setDefaultOrder();
-            query.setDefaults( params.getDefaults() );
-
-            List<? extends IdentifiableObject> objects = queryService.query( query );
+            List<? extends IdentifiableObject> objects = queryObjects( params, klass, params.getUser() );
 
             if ( !objects.isEmpty() )
             {
@@ -193,16 +213,7 @@ public class DefaultMetadataExportService implements MetadataExportService
     @Override
     public RootNode getMetadataAsNode( MetadataExportParams params )
     {
-        RootNode rootNode = NodeUtils.createMetadata();
-        rootNode.getConfig().setInclusionStrategy( params.getInclusionStrategy() );
-
-        SystemInfo systemInfo = systemService.getSystemInfo();
-
-        ComplexNode system = rootNode.addChild( new ComplexNode( "system" ) );
-        system.addChild( new SimpleNode( "id", systemInfo.getSystemId() ) );
-        system.addChild( new SimpleNode( "rev", systemInfo.getRevision() ) );
-        system.addChild( new SimpleNode( "version", systemInfo.getVersion() ) );
-        system.addChild( new SimpleNode( "date", systemInfo.getServerDate() ) );
+        RootNode rootNode = createRootNode( params );
 
         Map<Class<? extends IdentifiableObject>, List<? extends IdentifiableObject>> metadata = getMetadata( params );
 
@@ -222,6 +233,69 @@ public class DefaultMetadataExportService implements MetadataExportService
         return rootNode;
     }
 
+    @Override
+    public RootNode getMetadataAsStreamingNode( MetadataExportParams params )
+    {
+        RootNode rootNode = createRootNode( params );
+
+        prepareParams( params );
+
+        String username = params.getUsername();
+        int userId = params.getUser().getId();
+
+        List<Class<? extends IdentifiableObject>> classes = params.getClasses().stream()
+            .sorted( Comparator.comparing( Class::getSimpleName ) )
+            .collect( Collectors.toList() );
+
+        log.info( "(" + username + ") Export:Start streaming " + classes.size() + " types" );
+
+        // Each type is loaded and filtered in its own read-only transaction,
+        // in the security and user context of the caller
+
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate( transactionTemplate.getTransactionManager() );
+        readOnlyTransaction.setReadOnly( true );
+
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        User contextUser = UserContext.getUser();
+        Serializable dbLocale = UserContext.getUserSetting( UserSettingKey.DB_LOCALE );
+
+        List<Callable<List<Node>>> sections = new ArrayList<>();
+
+        for ( Class<? extends IdentifiableObject> klass : classes )
+        {
+            sections.add( () -> {
+                SecurityContextHolder.setContext( securityContext );
+                UserContext.setUser( contextUser );
+                UserContext.setUserSetting( UserSettingKey.DB_LOCALE, dbLocale );
+
+                try
+                {
+                    return readOnlyTransaction.execute( status -> getSection( params, klass, userId, username ) );
+                }
+                finally
+                {
+                    UserContext.reset();
+                    SecurityContextHolder.clearContext();
+                }
+            } );
+        }
+
+        MetadataExportPipeline pipeline = new MetadataExportPipeline( sections, executor, getThreadPoolSize() );
+
+        for ( int i = 0; i < classes.size(); i++ )
+        {
+            final int index = i;
+
+            Schema schema = schemaService.getDynamicSchema( classes.get( i ) );
+
+            CollectionNode collectionNode = rootNode.addChild(
+                new DeferredCollectionNode( schema.getCollectionName(), () -> pipeline.getSection( index ) ) );
+            collectionNode.setNamespace( schema.getNamespace() );
+        }
+
+        return rootNode;
+    }
+
     @Override
     public void validate( MetadataExportParams params )
     {
@@ -858,6 +932,90 @@ public class DefaultMetadataExportService implements MetadataExportService
         return metadata;
     }
 
+    @SuppressWarnings( "unchecked" )
+    private void prepareParams( MetadataExportParams params )
+    {
+        if ( params.getUser() == null )
+        {
+            params.setUser( currentUserService.getCurrentUser() );
+        }
+
+        if ( params.getClasses().isEmpty() )
+        {
+            schemaService.getMetadataSchemas().stream().filter( Schema::isIdentifiableObject )
+                .forEach( schema -> params.getClasses().add( (Class<? extends IdentifiableObject>) schema.getKlass() ) );
+        }
+    }
+
+    private RootNode createRootNode( MetadataExportParams params )
+    {
+        RootNode rootNode = NodeUtils.createMetadata();
+        rootNode.getConfig().setInclusionStrategy( params.getInclusionStrategy() );
+
+        SystemInfo systemInfo = systemService.getSystemInfo();
+
+        ComplexNode system = rootNode.addChild( new ComplexNode( "system" ) );
+        system.addChild( new SimpleNode( "id", systemInfo.getSystemId() ) );
+        system.addChild( new SimpleNode( "rev", systemInfo.getRevision() ) );
+        system.addChild( new SimpleNode( "version", systemInfo.getVersion() ) );
+        system.addChild( new SimpleNode( "date", systemInfo.getServerDate() ) );
+
+        return rootNode;
+    }
+
+    private List<? extends IdentifiableObject> queryObjects( MetadataExportParams params, Class<? extends IdentifiableObject> klass, User user )
+    {
+        Query query;
+
+        if ( params.getQuery( klass ) != null )
+        {
+            query = params.getQuery( klass );
+        }
+        else
+        {
+            OrderParams orderParams = new OrderParams( Sets.newHashSet( params.getDefaultOrder() ) );
+            query = queryService.getQueryFromUrl( klass, params.getDefaultFilter(), orderParams.getOrders( schemaService.getDynamicSchema( klass ) ) );
+        }
+
+        if ( query.getUser() == null )
+        {
+            query.setUser( user );
+        }
+
+        query.setDefaultOrder();
+        query.setDefaults( params.getDefaults() );
+
+        return queryService.query( query );
+    }
+
+    /**
+     * Loads the objects of the given type and builds their nodes. The user is
+     * loaded again as the section is built in a session of its own.
+     */
+    private List<Node> getSection( MetadataExportParams params, Class<? extends IdentifiableObject> klass, int userId, String username )
+    {
+        User user = userService.getUser( userId );
+
+        List<? extends IdentifiableObject> objects = queryObjects( params, klass, user );
+
+        if ( objects.isEmpty() )
+        {
+            return new ArrayList<>();
+        }
+
+        log.info( "(" + username + ") Exported " + objects.size() + " objects of type " + klass.getSimpleName() );
+
+        FieldFilterParams fieldFilterParams = new FieldFilterParams( objects, params.getFields( klass ), params.getDefaults(), params.getSkipSharing() );
+        fieldFilterParams.setUser( user );
+
+        return fieldFilterService.toCollectionNode( klass, fieldFilterParams ).getChildren();
+    }
+
+    private int getThreadPoolSize()
+    {
+        return Math.max( 1, Math.min( SystemUtils.getCpuCores() - 1, MAX_EXPORT_THREADS ) );
+    }
+
     private <T extends Enum<T>> T getEnumWithDefault( Class<T> enumKlass, Map<String, List<String>> parameters, String key, T defaultValue )
     {
         if ( parameters == null || parameters.get( key ) == null || parameters.get( key ).isEmpty() )
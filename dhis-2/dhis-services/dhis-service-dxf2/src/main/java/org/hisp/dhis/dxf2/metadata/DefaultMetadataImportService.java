@@ -31,6 +31,7 @@ package org.hisp.dhis.dxf2.metadata;
 import com.google.api.client.util.Lists;
 import com.google.common.base.Enums;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.hisp.dhis.common.BaseIdentifiableObject;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.common.IdentifiableObjectManager;
@@ -209,6 +210,7 @@ public class DefaultMetadataImportService implements MetadataImportService
         params.setSkipSharing( getBooleanWithDefault( parameters, "skipSharing", false ) );
         params.setSkipTranslation( getBooleanWithDefault( parameters, "skipTranslation", false ) );
         params.setSkipValidation( getBooleanWithDefault( parameters, "skipValidation", false ) );
+        params.setFailFast( getBooleanWithDefault( parameters, "failFast", false ) );
         params.setUserOverrideMode( getEnumWithDefault( UserOverrideMode.class, parameters, "userOverrideMode", UserOverrideMode.NONE ) );
         params.setImportMode( getEnumWithDefault( ObjectBundleMode.class, parameters, "importMode", ObjectBundleMode.COMMIT ) );
         params.setPreheatMode( getEnumWithDefault( PreheatMode.class, parameters, "preheatMode", PreheatMode.REFERENCE ) );
@@ -217,6 +219,7 @@ public class DefaultMetadataImportService implements MetadataImportService
         params.setAtomicMode( getEnumWithDefault( AtomicMode.class, parameters, "atomicMode", AtomicMode.ALL ) );
         params.setMergeMode( getEnumWithDefault( MergeMode.class, parameters, "mergeMode", MergeMode.REPLACE ) );
         params.setFlushMode( getEnumWithDefault( FlushMode.class, parameters, "flushMode", FlushMode.AUTO ) );
+        params.setBatchSize( getIntWithDefault( parameters, "batchSize", params.getBatchSize() ) );
         params.setImportReportMode( getEnumWithDefault( ImportReportMode.class, parameters, "importReportMode", ImportReportMode.ERRORS ) );
         params.setFirstRowIsHeader( getBooleanWithDefault( parameters, "firstRowIsHeader", true ) );
 
@@ -266,6 +269,18 @@ public class DefaultMetadataImportService implements MetadataImportService
         return "true".equals( value.toLowerCase() );
     }
 
+    private int getIntWithDefault( Map<String, List<String>> parameters, String key, int defaultValue )
+    {
+        if ( parameters == null || parameters.get( key ) == null || parameters.get( key ).isEmpty() )
+        {
+            return defaultValue;
+        }
+
+        int value = NumberUtils.toInt( String.valueOf( parameters.get( key ).get( 0 ) ), defaultValue );
+
+        return value > 0 ? value : defaultValue;
+    }
+
     private <T extends Enum<T>> T getEnumWithDefault( Class<T> enumKlass, Map<String, List<String>> parameters, String key, T defaultValue )
     {
         if ( parameters == null || parameters.get( key ) == null || parameters.get( key ).isEmpty() )
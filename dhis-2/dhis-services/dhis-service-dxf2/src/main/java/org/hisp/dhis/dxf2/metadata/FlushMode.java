@@ -42,4 +42,10 @@ public enum FlushMode
      * Let the importer decide the flushing.
      */
     AUTO,
+
+    /**
+     * Flush in batches of the import batch size, with JDBC batching of the
+     * statements of each batch. Intended for large imports.
+     */
+    BATCH,
 }
@@ -0,0 +1,117 @@
+package org.hisp.dhis.dxf2.metadata;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.node.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Loads the sections of a metadata export on an executor while the export
+ * is being written. Sections are submitted in the order they are written,
+ * and only a fixed number of sections ahead of the one being written are
+ * loaded, so that a few sections are held in memory at a time instead of
+ * the whole export.
+ * <p>
+ * The executor is shared by all exports and is not shut down by the
+ * pipeline, so that the number of threads loading sections is bounded
+ * regardless of how many exports run at the same time.
+ */
+class MetadataExportPipeline
+{
+    private final List<Callable<List<Node>>> sections;
+
+    private final List<Future<List<Node>>> futures = new ArrayList<>();
+
+    private final ExecutorService executor;
+
+    private final int aheadCount;
+
+    /**
+     * @param sections the tasks which load and build each section.
+     * @param executor the shared executor which loads the sections.
+     * @param aheadCount the number of sections loaded ahead of the one being
+     *        written.
+     */
+    MetadataExportPipeline( List<Callable<List<Node>>> sections, ExecutorService executor, int aheadCount )
+    {
+        this.sections = sections;
+        this.executor = executor;
+        this.aheadCount = aheadCount;
+
+        submit( aheadCount );
+    }
+
+    /**
+     * Waits for the section with the given index and submits the sections
+     * following it. The pipeline does not keep the section once returned.
+     *
+     * @param index the index of the section.
+     * @return the nodes of the section.
+     */
+    List<Node> getSection( int index )
+    {
+        Future<List<Node>> future;
+
+        synchronized ( this )
+        {
+            submit( index + 1 + aheadCount );
+
+            future = futures.set( index, null );
+        }
+
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException( "Metadata export was interrupted", ex );
+        }
+        catch ( ExecutionException ex )
+        {
+            throw new RuntimeException( "Metadata export failed", ex.getCause() );
+        }
+    }
+
+    private void submit( int count )
+    {
+        while ( futures.size() < Math.min( count, sections.size() ) )
+        {
+            futures.add( executor.submit( sections.get( futures.size() ) ) );
+        }
+    }
+}
@@ -56,6 +56,18 @@ public interface MetadataExportService
      */
     RootNode getMetadataAsNode( MetadataExportParams params );
 
+    /**
+     * Returns same result as getMetadataAsNode, but each object type is loaded
+     * in its own read-only transaction on a bounded pool of threads while the
+     * returned node is being serialized. Types are written in order of their
+     * class name, and the objects of a type are released once written.
+     *
+     * @param params Export parameters
+     * @return RootNode instance with children which are loaded when serialized
+     */
+    RootNode getMetadataAsStreamingNode( MetadataExportParams params );
+
+
     /**
      * Validates the import params. Not currently implemented.
      *
@@ -110,6 +110,11 @@ public class MetadataImportParams
      */
     private FlushMode flushMode = FlushMode.AUTO;
 
+    /**
+     * Number of objects to write per flush when flushing in batches.
+     */
+    private int batchSize = 500;
+
     /**
      * Decides how much to report back to the user (errors only, or a more full per object report).
      */
@@ -130,6 +135,11 @@ public class MetadataImportParams
      */
     private boolean skipValidation;
 
+    /**
+     * Stop validating at the first error when the atomic mode is ALL, since nothing is imported then anyway.
+     */
+    private boolean failFast;
+
     /**
      * Name of file that was used for import (if available).
      */
@@ -296,6 +306,19 @@ public class MetadataImportParams
         return this;
     }
 
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public MetadataImportParams setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+        return this;
+    }
+
     public ImportReportMode getImportReportMode()
     {
         return importReportMode;
@@ -346,6 +369,19 @@ public class MetadataImportParams
         return this;
     }
 
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public boolean isFailFast()
+    {
+        return failFast;
+    }
+
+    public MetadataImportParams setFailFast( boolean failFast )
+    {
+        this.failFast = failFast;
+        return this;
+    }
+
     @JsonProperty
     @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
     public String getFilename()
@@ -481,6 +517,7 @@ public class MetadataImportParams
         params.setSkipSharing( skipSharing );
         params.setSkipTranslation( skipTranslation );
         params.setSkipValidation( skipValidation );
+        params.setFailFast( failFast );
         params.setJobId( id );
         params.setImportStrategy( importStrategy );
         params.setAtomicMode( atomicMode );
@@ -490,6 +527,7 @@ public class MetadataImportParams
         params.setObjectBundleMode( importMode );
         params.setMergeMode( mergeMode );
         params.setFlushMode( flushMode );
+        params.setBatchSize( batchSize );
         params.setImportReportMode( importReportMode );
 
         return params;
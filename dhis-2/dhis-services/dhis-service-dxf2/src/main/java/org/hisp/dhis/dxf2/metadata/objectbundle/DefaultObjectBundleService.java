@@ -28,6 +28,7 @@ package org.hisp.dhis.dxf2.metadata.objectbundle;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.google.common.collect.Lists;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hisp.dhis.cache.HibernateCacheManager;
@@ -38,6 +39,8 @@ import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.common.IdentifiableObjectUtils;
 import org.hisp.dhis.common.MergeMode;
 import org.hisp.dhis.common.MetadataObject;
+import org.hisp.dhis.commons.timer.SystemTimer;
+import org.hisp.dhis.commons.timer.Timer;
 import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.deletedobject.DeletedObjectQuery;
 import org.hisp.dhis.deletedobject.DeletedObjectService;
@@ -67,10 +70,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * @author Morten Olav Hansen <mortenoh@gmail.com>
@@ -160,11 +165,37 @@ public class DefaultObjectBundleService implements ObjectBundleService
         List<Class<? extends IdentifiableObject>> klasses = getSortedClasses( bundle );
         Session session = sessionFactory.getCurrentSession();
 
+        if ( FlushMode.BATCH == bundle.getFlushMode() )
+        {
+            session.setJdbcBatchSize( bundle.getBatchSize() );
+        }
+
+        try
+        {
+            commit( session, klasses, typeReports, bundle );
+        }
+        finally
+        {
+            session.setJdbcBatchSize( null );
+        }
+
+        dbmsManager.clearSession();
+        cacheManager.clearCache();
+        bundle.setObjectBundleStatus( ObjectBundleStatus.COMMITTED );
+
+        return commitReport;
+    }
+
+    //-----------------------------------------------------------------------------------
+    // Utility Methods
+    //-----------------------------------------------------------------------------------
+
+    private void commit( Session session, List<Class<? extends IdentifiableObject>> klasses, Map<Class<?>, TypeReport> typeReports, ObjectBundle bundle )
+    {
         objectBundleHooks.forEach( hook -> hook.preCommit( bundle ) );
 
         for ( Class<? extends IdentifiableObject> klass : klasses )
         {
-
             List<IdentifiableObject> nonPersistedObjects = bundle.getObjects( klass, false );
             List<IdentifiableObject> persistedObjects = bundle.getObjects( klass, true );
 
@@ -200,18 +231,8 @@ public class DefaultObjectBundleService implements ObjectBundleService
         {
             objectBundleHooks.forEach( hook -> hook.postCommit( bundle ) );
         }
-
-        dbmsManager.clearSession();
-        cacheManager.clearCache();
-        bundle.setObjectBundleStatus( ObjectBundleStatus.COMMITTED );
-
-        return commitReport;
     }
 
-    //-----------------------------------------------------------------------------------
-    // Utility Methods
-    //-----------------------------------------------------------------------------------
-
     private TypeReport handleCreates( Session session, Class<? extends IdentifiableObject> klass, List<IdentifiableObject> objects, ObjectBundle bundle )
     {
         TypeReport typeReport = new TypeReport( klass );
@@ -231,9 +252,10 @@ public class DefaultObjectBundleService implements ObjectBundleService
             notifier.notify( bundle.getJobId(), message );
         }
 
-        objects.forEach( object -> objectBundleHooks.forEach( hook -> {
-            hook.preCreate( object, bundle );
-        } ) );
+        Timer timer = new SystemTimer().start();
+        List<List<IdentifiableObject>> batches = getBatches( objects, bundle );
+
+        batches.forEach( batch -> objectBundleHooks.forEach( hook -> hook.preCreateBatch( batch, bundle ) ) );
 
         session.flush();
 
@@ -295,14 +317,14 @@ public class DefaultObjectBundleService implements ObjectBundleService
                 }
             }
 
-            if ( FlushMode.OBJECT == bundle.getFlushMode() ) session.flush();
+            flush( session, idx, bundle );
         }
 
         session.flush();
 
-        objects.forEach( object -> objectBundleHooks.forEach( hook -> {
-            hook.postCreate( object, bundle );
-        } ) );
+        batches.forEach( batch -> objectBundleHooks.forEach( hook -> hook.postCreateBatch( batch, bundle ) ) );
+
+        logThroughput( "Created", klass, objects.size(), timer, bundle );
 
         return typeReport;
     }
@@ -326,11 +348,10 @@ public class DefaultObjectBundleService implements ObjectBundleService
             notifier.notify( bundle.getJobId(), message );
         }
 
-        objects.forEach( object ->
-        {
-            IdentifiableObject persistedObject = bundle.getPreheat().get( bundle.getPreheatIdentifier(), object );
-            objectBundleHooks.forEach( hook -> hook.preUpdate( object, persistedObject, bundle ) );
-        } );
+        Timer timer = new SystemTimer().start();
+        List<List<IdentifiableObject>> batches = getBatches( objects, bundle );
+
+        batches.forEach( batch -> objectBundleHooks.forEach( hook -> hook.preUpdateBatch( batch, bundle ) ) );
 
         session.flush();
 
@@ -406,17 +427,22 @@ public class DefaultObjectBundleService implements ObjectBundleService
                 }
             }
 
-            if ( FlushMode.OBJECT == bundle.getFlushMode() ) session.flush();
+            flush( session, idx, bundle );
         }
 
         session.flush();
 
-        objects.forEach( object ->
+        batches.forEach( batch ->
         {
-            IdentifiableObject persistedObject = bundle.getPreheat().get( bundle.getPreheatIdentifier(), object );
-            objectBundleHooks.forEach( hook -> hook.postUpdate( persistedObject, bundle ) );
+            List<IdentifiableObject> persistedObjects = batch.stream()
+                .map( object -> bundle.getPreheat().get( bundle.getPreheatIdentifier(), object ) )
+                .collect( Collectors.toList() );
+
+            objectBundleHooks.forEach( hook -> hook.postUpdateBatch( persistedObjects, bundle ) );
         } );
 
+        logThroughput( "Updated", klass, objects.size(), timer, bundle );
+
         return typeReport;
     }
 
@@ -492,12 +518,42 @@ public class DefaultObjectBundleService implements ObjectBundleService
                 }
             }
 
-            if ( FlushMode.OBJECT == bundle.getFlushMode() ) session.flush();
+            flush( session, idx, bundle );
         }
 
         return typeReport;
     }
 
+    /**
+     * Splits the objects of a type into batches of the bundle batch size when
+     * flushing in batches, otherwise returns all objects as one batch.
+     */
+    private List<List<IdentifiableObject>> getBatches( List<IdentifiableObject> objects, ObjectBundle bundle )
+    {
+        return FlushMode.BATCH == bundle.getFlushMode() ? Lists.partition( objects, bundle.getBatchSize() ) : Collections.singletonList( objects );
+    }
+
+    /**
+     * Flushes after the object with the given index has been written, if
+     * required by the flush mode of the bundle. The session is not cleared,
+     * as the preheat still refers to the persisted objects.
+     */
+    private void flush( Session session, int idx, ObjectBundle bundle )
+    {
+        if ( FlushMode.OBJECT == bundle.getFlushMode() || ( FlushMode.BATCH == bundle.getFlushMode() && (idx + 1) % bundle.getBatchSize() == 0 ) )
+        {
+            session.flush();
+        }
+    }
+
+    private void logThroughput( String action, Class<? extends IdentifiableObject> klass, int count, Timer timer, ObjectBundle bundle )
+    {
+        double seconds = Math.max( timer.duration() / 1_000_000_000d, 0.001 );
+
+        log.info( String.format( "(%s) %s %d object(s) of type %s in %s, %.0f objects per second",
+            bundle.getUsername(), action, count, klass.getSimpleName(), timer.toString(), count / seconds ) );
+    }
+
     @SuppressWarnings( "unchecked" )
     private List<Class<? extends IdentifiableObject>> getSortedClasses( ObjectBundle bundle )
     {
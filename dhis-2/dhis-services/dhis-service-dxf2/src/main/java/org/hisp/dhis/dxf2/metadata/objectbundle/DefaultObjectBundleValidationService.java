@@ -28,14 +28,17 @@ package org.hisp.dhis.dxf2.metadata.objectbundle;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
 import org.hisp.dhis.attribute.Attribute;
 import org.hisp.dhis.attribute.AttributeValue;
 import org.hisp.dhis.common.EmbeddedObject;
 import org.hisp.dhis.common.IdentifiableObject;
 import org.hisp.dhis.common.IdentifiableObjectUtils;
+import org.hisp.dhis.common.UserContext;
 import org.hisp.dhis.commons.timer.SystemTimer;
 import org.hisp.dhis.commons.timer.Timer;
+import org.hisp.dhis.commons.util.SystemUtils;
 import org.hisp.dhis.dxf2.metadata.AtomicMode;
 import org.hisp.dhis.dxf2.metadata.objectbundle.feedback.ObjectBundleValidationReport;
 import org.hisp.dhis.feedback.ErrorCode;
@@ -59,18 +62,29 @@ import org.hisp.dhis.system.util.ReflectionUtils;
 import org.hisp.dhis.user.User;
 import org.hisp.dhis.user.UserCredentials;
 import org.hisp.dhis.user.UserService;
+import org.hisp.dhis.user.UserSettingKey;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -82,6 +96,13 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
 {
     private static final LoggingManager.Logger log = LoggingManager.createLogger( DefaultObjectBundleValidationService.class );
 
+    /**
+     * Number of objects per chunk when validating objects of a class in parallel.
+     */
+    private static final int VALIDATION_CHUNK_SIZE = 1000;
+
+    private static final int MAX_VALIDATION_THREADS = 4;
+
     @Autowired
     private SchemaService schemaService;
 
@@ -112,6 +133,29 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
 
         List<Class<? extends IdentifiableObject>> klasses = getSortedClasses( bundle );
 
+        ValidationContext context = new ValidationContext( bundle.isFailFast() && AtomicMode.ALL == bundle.getAtomicMode(),
+            getObjectCount( bundle ) > VALIDATION_CHUNK_SIZE ? Executors.newFixedThreadPool( getThreadPoolSize() ) : null );
+
+        try
+        {
+            validate( bundle, klasses, validation, context );
+        }
+        finally
+        {
+            context.shutdown();
+        }
+
+        validateAtomicity( bundle, validation );
+        bundle.setObjectBundleStatus( ObjectBundleStatus.VALIDATED );
+
+        log.info( "(" + bundle.getUsername() + ") Import:Validation took " + timer.toString() );
+
+        return validation;
+    }
+
+    private void validate( ObjectBundle bundle, List<Class<? extends IdentifiableObject>> klasses, ObjectBundleValidationReport validation,
+        ValidationContext context )
+    {
         for ( Class<? extends IdentifiableObject> klass : klasses )
         {
             TypeReport typeReport = new TypeReport( klass );
@@ -131,8 +175,8 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
                 typeReport.merge( runValidationHooks( klass, persistedObjects, bundle ) );
                 typeReport.merge( validateSecurity( klass, nonPersistedObjects, bundle, ImportStrategy.CREATE ) );
                 typeReport.merge( validateSecurity( klass, persistedObjects, bundle, ImportStrategy.UPDATE ) );
-                typeReport.merge( validateBySchemas( klass, nonPersistedObjects, bundle ) );
-                typeReport.merge( validateBySchemas( klass, persistedObjects, bundle ) );
+                typeReport.merge( validateBySchemas( klass, nonPersistedObjects, context ) );
+                typeReport.merge( validateBySchemas( klass, persistedObjects, context ) );
                 typeReport.merge( checkUniqueness( klass, nonPersistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
                 typeReport.merge( checkUniqueness( klass, persistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
                 typeReport.merge( checkMandatoryAttributes( klass, nonPersistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
@@ -140,7 +184,7 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
                 typeReport.merge( checkUniqueAttributes( klass, nonPersistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
                 typeReport.merge( checkUniqueAttributes( klass, persistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
 
-                TypeReport checkReferences = checkReferences( klass, allObjects, bundle.getPreheat(), bundle.getPreheatIdentifier(), bundle.isSkipSharing() );
+                TypeReport checkReferences = checkReferences( klass, allObjects, bundle.getPreheat(), bundle.getPreheatIdentifier(), bundle.isSkipSharing(), context );
 
                 if ( !checkReferences.getErrorReports().isEmpty() && AtomicMode.ALL == bundle.getAtomicMode() )
                 {
@@ -157,12 +201,12 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
                 typeReport.merge( runValidationHooks( klass, nonPersistedObjects, bundle ) );
                 typeReport.merge( validateSecurity( klass, nonPersistedObjects, bundle, ImportStrategy.CREATE ) );
                 typeReport.merge( validateForCreate( klass, persistedObjects, bundle ) );
-                typeReport.merge( validateBySchemas( klass, nonPersistedObjects, bundle ) );
+                typeReport.merge( validateBySchemas( klass, nonPersistedObjects, context ) );
                 typeReport.merge( checkUniqueness( klass, nonPersistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
                 typeReport.merge( checkMandatoryAttributes( klass, nonPersistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
                 typeReport.merge( checkUniqueAttributes( klass, nonPersistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
 
-                TypeReport checkReferences = checkReferences( klass, allObjects, bundle.getPreheat(), bundle.getPreheatIdentifier(), bundle.isSkipSharing() );
+                TypeReport checkReferences = checkReferences( klass, allObjects, bundle.getPreheat(), bundle.getPreheatIdentifier(), bundle.isSkipSharing(), context );
 
                 if ( !checkReferences.getErrorReports().isEmpty() && AtomicMode.ALL == bundle.getAtomicMode() )
                 {
@@ -178,12 +222,12 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
                 typeReport.merge( runValidationHooks( klass, persistedObjects, bundle ) );
                 typeReport.merge( validateSecurity( klass, persistedObjects, bundle, ImportStrategy.UPDATE ) );
                 typeReport.merge( validateForUpdate( klass, nonPersistedObjects, bundle ) );
-                typeReport.merge( validateBySchemas( klass, persistedObjects, bundle ) );
+                typeReport.merge( validateBySchemas( klass, persistedObjects, context ) );
                 typeReport.merge( checkUniqueness( klass, persistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
                 typeReport.merge( checkMandatoryAttributes( klass, persistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
                 typeReport.merge( checkUniqueAttributes( klass, persistedObjects, bundle.getPreheat(), bundle.getPreheatIdentifier() ) );
 
-                TypeReport checkReferences = checkReferences( klass, allObjects, bundle.getPreheat(), bundle.getPreheatIdentifier(), bundle.isSkipSharing() );
+                TypeReport checkReferences = checkReferences( klass, allObjects, bundle.getPreheat(), bundle.getPreheatIdentifier(), bundle.isSkipSharing(), context );
 
                 if ( !checkReferences.getErrorReports().isEmpty() && AtomicMode.ALL == bundle.getAtomicMode() )
                 {
@@ -203,14 +247,13 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
             }
 
             validation.addTypeReport( typeReport );
-        }
-
-        validateAtomicity( bundle, validation );
-        bundle.setObjectBundleStatus( ObjectBundleStatus.VALIDATED );
 
-        log.info( "(" + bundle.getUsername() + ") Import:Validation took " + timer.toString() );
-
-        return validation;
+            if ( context.isFailFast() && !typeReport.getErrorReports().isEmpty() )
+            {
+                log.info( "(" + bundle.getUsername() + ") Import:Validation stopped at first error in " + klass.getSimpleName() );
+                break;
+            }
+        }
     }
 
     private void cleanDefaults( Preheat preheat, List<IdentifiableObject> objects )
@@ -500,7 +543,7 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
         return typeReport;
     }
 
-    private TypeReport validateBySchemas( Class<? extends IdentifiableObject> klass, List<IdentifiableObject> objects, ObjectBundle bundle )
+    private TypeReport validateBySchemas( Class<? extends IdentifiableObject> klass, List<IdentifiableObject> objects, ValidationContext context )
     {
         TypeReport typeReport = new TypeReport( klass );
 
@@ -509,13 +552,16 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
             return typeReport;
         }
 
+        List<List<ErrorReport>> errorReports = validateInChunks( objects, schemaValidator::validate, context );
+
         Iterator<IdentifiableObject> iterator = objects.iterator();
         int idx = 0;
+        int position = 0;
 
         while ( iterator.hasNext() )
         {
             IdentifiableObject object = iterator.next();
-            List<ErrorReport> validationErrorReports = schemaValidator.validate( object );
+            List<ErrorReport> validationErrorReports = errorReports.get( position++ );
 
             if ( !validationErrorReports.isEmpty() )
             {
@@ -555,7 +601,8 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
         return klasses;
     }
 
-    private TypeReport checkReferences( Class<? extends IdentifiableObject> klass, List<IdentifiableObject> objects, Preheat preheat, PreheatIdentifier identifier, boolean skipSharing )
+    private TypeReport checkReferences( Class<? extends IdentifiableObject> klass, List<IdentifiableObject> objects, Preheat preheat, PreheatIdentifier identifier, boolean skipSharing,
+        ValidationContext context )
     {
         TypeReport typeReport = new TypeReport( klass );
 
@@ -564,10 +611,12 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
             return typeReport;
         }
 
+        List<List<PreheatErrorReport>> objectErrorReports = validateInChunks( objects, object -> checkReferences( object, preheat, identifier, skipSharing ), context );
+
         for ( int idx = 0; idx < objects.size(); idx++ )
         {
             IdentifiableObject object = objects.get( idx );
-            List<PreheatErrorReport> errorReports = checkReferences( object, preheat, identifier, skipSharing );
+            List<PreheatErrorReport> errorReports = objectErrorReports.get( idx );
 
             if ( errorReports.isEmpty() ) continue;
 
@@ -987,4 +1036,158 @@ public class DefaultObjectBundleValidationService implements ObjectBundleValidat
         return klass != null && (UserCredentials.class.isAssignableFrom( klass ) || EmbeddedObject.class.isAssignableFrom( klass ) ||
             Period.class.isAssignableFrom( klass ) || PeriodType.class.isAssignableFrom( klass ));
     }
+
+    //----------------------------------------------------------------------------------------------------
+    // Parallel validation
+    //----------------------------------------------------------------------------------------------------
+
+    /**
+     * Runs the given check for all objects and returns the error reports of each object, in the order of
+     * the objects. Lists larger than one chunk are checked in chunks on the executor of the context. The
+     * check must only read from the preheat and must not modify other objects than the one checked.
+     */
+    private <T> List<List<T>> validateInChunks( List<IdentifiableObject> objects, Function<IdentifiableObject, List<T>> check, ValidationContext context )
+    {
+        if ( !context.isParallel() || objects.size() <= VALIDATION_CHUNK_SIZE )
+        {
+            return validateChunk( objects, check, context );
+        }
+
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        User contextUser = UserContext.getUser();
+        Serializable dbLocale = UserContext.getUserSetting( UserSettingKey.DB_LOCALE );
+
+        List<Future<List<List<T>>>> futures = new ArrayList<>();
+
+        for ( List<IdentifiableObject> chunk : Lists.partition( objects, VALIDATION_CHUNK_SIZE ) )
+        {
+            futures.add( context.getExecutor().submit( () ->
+            {
+                SecurityContextHolder.setContext( securityContext );
+                UserContext.setUser( contextUser );
+                UserContext.setUserSetting( UserSettingKey.DB_LOCALE, dbLocale );
+
+                try
+                {
+                    return validateChunk( chunk, check, context );
+                }
+                finally
+                {
+                    UserContext.reset();
+                    SecurityContextHolder.clearContext();
+                }
+            } ) );
+        }
+
+        List<List<T>> errorReports = new ArrayList<>( objects.size() );
+
+        try
+        {
+            for ( Future<List<List<T>>> future : futures )
+            {
+                errorReports.addAll( future.get() );
+            }
+        }
+        catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( "Validation of metadata objects was interrupted", ex );
+        }
+        catch ( ExecutionException ex )
+        {
+            throw new RuntimeException( "Validation of metadata objects failed", ex.getCause() );
+        }
+
+        return errorReports;
+    }
+
+    private <T> List<List<T>> validateChunk( List<IdentifiableObject> objects, Function<IdentifiableObject, List<T>> check, ValidationContext context )
+    {
+        List<List<T>> errorReports = new ArrayList<>( objects.size() );
+
+        for ( IdentifiableObject object : objects )
+        {
+            if ( context.isStopped() )
+            {
+                errorReports.add( Collections.emptyList() );
+                continue;
+            }
+
+            List<T> objectErrorReports = check.apply( object );
+
+            if ( !objectErrorReports.isEmpty() )
+            {
+                context.errorFound();
+            }
+
+            errorReports.add( objectErrorReports );
+        }
+
+        return errorReports;
+    }
+
+    private int getObjectCount( ObjectBundle bundle )
+    {
+        return bundle.getObjectMap().values().stream().mapToInt( List::size ).sum();
+    }
+
+    private int getThreadPoolSize()
+    {
+        return Math.max( 1, Math.min( SystemUtils.getCpuCores() - 1, MAX_VALIDATION_THREADS ) );
+    }
+
+    /**
+     * State shared by the workers validating a bundle. When failing fast, the first error found stops
+     * all workers, the remaining objects are then reported without errors.
+     */
+    private static class ValidationContext
+    {
+        private final boolean failFast;
+
+        private final ExecutorService executor;
+
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
+        ValidationContext( boolean failFast, ExecutorService executor )
+        {
+            this.failFast = failFast;
+            this.executor = executor;
+        }
+
+        boolean isFailFast()
+        {
+            return failFast;
+        }
+
+        boolean isParallel()
+        {
+            return executor != null;
+        }
+
+        ExecutorService getExecutor()
+        {
+            return executor;
+        }
+
+        boolean isStopped()
+        {
+            return stopped.get();
+        }
+
+        void errorFound()
+        {
+            if ( failFast )
+            {
+                stopped.set( true );
+            }
+        }
+
+        void shutdown()
+        {
+            if ( executor != null )
+            {
+                executor.shutdownNow();
+            }
+        }
+    }
 }
@@ -104,6 +104,11 @@ public class ObjectBundle
      */
     private final FlushMode flushMode;
 
+    /**
+     * Number of objects to write per flush when flushing in batches.
+     */
+    private final int batchSize;
+
     /**
      * Internal preheat bundle.
      */
@@ -124,6 +129,11 @@ public class ObjectBundle
      */
     private final boolean skipValidation;
 
+    /**
+     * Stop validating at the first error when the atomic mode is ALL.
+     */
+    private final boolean failFast;
+
     /**
      * Job id to use for threaded imports.
      */
@@ -166,9 +176,11 @@ public class ObjectBundle
         this.preheatMode = params.getPreheatMode();
         this.mergeMode = params.getMergeMode();
         this.flushMode = params.getFlushMode();
+        this.batchSize = params.getBatchSize();
         this.skipSharing = params.isSkipSharing();
         this.skipTranslation = params.isSkipTranslation();
         this.skipValidation = params.isSkipValidation();
+        this.failFast = params.isFailFast();
         this.jobId = params.getJobId();
         this.preheat = preheat;
 
@@ -235,6 +247,11 @@ public class ObjectBundle
         return flushMode;
     }
 
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
     public boolean isSkipSharing()
     {
         return skipSharing;
@@ -250,6 +267,11 @@ public class ObjectBundle
         return skipValidation;
     }
 
+    public boolean isFailFast()
+    {
+        return failFast;
+    }
+
     public JobConfiguration getJobId()
     {
         return jobId;
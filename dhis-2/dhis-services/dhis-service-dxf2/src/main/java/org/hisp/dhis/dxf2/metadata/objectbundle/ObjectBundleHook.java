@@ -105,6 +105,43 @@ public interface ObjectBundleHook
      */
     <T extends IdentifiableObject> void postUpdate( T persistedObject, ObjectBundle bundle );
 
+    /**
+     * Run before a batch of objects has been created. Hooks which can handle
+     * the whole batch at once implement this instead of preCreate.
+     *
+     * @param objects Objects to be created
+     * @param bundle Current commit phase bundle
+     */
+    <T extends IdentifiableObject> void preCreateBatch( List<T> objects, ObjectBundle bundle );
+
+    /**
+     * Run after a batch of objects has been created and flushed. Hooks which
+     * can handle the whole batch at once implement this instead of postCreate.
+     *
+     * @param persistedObjects Created objects
+     * @param bundle Current commit phase bundle
+     */
+    <T extends IdentifiableObject> void postCreateBatch( List<T> persistedObjects, ObjectBundle bundle );
+
+    /**
+     * Run before a batch of objects has been updated. Hooks which can handle
+     * the whole batch at once implement this instead of preUpdate. The
+     * persisted objects are found in the preheat of the bundle.
+     *
+     * @param objects Objects with the new state
+     * @param bundle Current commit phase bundle
+     */
+    <T extends IdentifiableObject> void preUpdateBatch( List<T> objects, ObjectBundle bundle );
+
+    /**
+     * Run after a batch of objects has been updated and flushed. Hooks which
+     * can handle the whole batch at once implement this instead of postUpdate.
+     *
+     * @param persistedObjects Updated objects
+     * @param bundle Current commit phase bundle
+     */
+    <T extends IdentifiableObject> void postUpdateBatch( List<T> persistedObjects, ObjectBundle bundle );
+
     /**
      * Run before object has been deleted.
      *
@@ -72,6 +72,8 @@ public class ObjectBundleParams
 
     private FlushMode flushMode = FlushMode.AUTO;
 
+    private int batchSize = 500;
+
     private ImportReportMode importReportMode = ImportReportMode.ERRORS;
 
     private Map<Class<? extends IdentifiableObject>, List<IdentifiableObject>> objects = new HashMap<>();
@@ -82,6 +84,8 @@ public class ObjectBundleParams
 
     private boolean skipValidation;
 
+    private boolean failFast;
+
     private JobConfiguration jobId;
 
     public ObjectBundleParams()
@@ -199,6 +203,17 @@ public class ObjectBundleParams
         return this;
     }
 
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public ObjectBundleParams setBatchSize( int batchSize )
+    {
+        this.batchSize = batchSize;
+        return this;
+    }
+
     public ImportReportMode getImportReportMode()
     {
         return importReportMode;
@@ -243,6 +258,17 @@ public class ObjectBundleParams
         return this;
     }
 
+    public boolean isFailFast()
+    {
+        return failFast;
+    }
+
+    public ObjectBundleParams setFailFast( boolean failFast )
+    {
+        this.failFast = failFast;
+        return this;
+    }
+
     public JobConfiguration getJobId()
     {
         return jobId;
@@ -108,6 +108,30 @@ public class AbstractObjectBundleHook implements ObjectBundleHook
     {
     }
 
+    @Override
+    public <T extends IdentifiableObject> void preCreateBatch( List<T> objects, ObjectBundle bundle )
+    {
+        objects.forEach( object -> preCreate( object, bundle ) );
+    }
+
+    @Override
+    public <T extends IdentifiableObject> void postCreateBatch( List<T> persistedObjects, ObjectBundle bundle )
+    {
+        persistedObjects.forEach( persistedObject -> postCreate( persistedObject, bundle ) );
+    }
+
+    @Override
+    public <T extends IdentifiableObject> void preUpdateBatch( List<T> objects, ObjectBundle bundle )
+    {
+        objects.forEach( object -> preUpdate( object, bundle.getPreheat().get( bundle.getPreheatIdentifier(), object ), bundle ) );
+    }
+
+    @Override
+    public <T extends IdentifiableObject> void postUpdateBatch( List<T> persistedObjects, ObjectBundle bundle )
+    {
+        persistedObjects.forEach( persistedObject -> postUpdate( persistedObject, bundle ) );
+    }
+
     @Override
     public <T extends IdentifiableObject> void preDelete( T persistedObject, ObjectBundle bundle )
     {
@@ -63,22 +63,39 @@ public class VersionedObjectObjectBundleHook extends AbstractObjectBundleHook
     @Override
     public <T extends IdentifiableObject> void postCreate( T persistedObject, ObjectBundle bundle )
     {
-        VersionedObject versionedObject = null;
-        
-        if ( Section.class.isInstance( persistedObject ) )
+        VersionedObject versionedObject = getVersionedObject( persistedObject );
+
+        if ( versionedObject != null )
         {
-            versionedObject = ((Section) persistedObject).getDataSet();
+            versionedObject.increaseVersion();
+            sessionFactory.getCurrentSession().save( versionedObject );
         }
-        else if ( Option.class.isInstance( persistedObject ) )
+    }
+
+    /**
+     * Increases the version of each data set or option set once per batch,
+     * instead of once for every section or option created.
+     */
+    @Override
+    public <T extends IdentifiableObject> void postCreateBatch( List<T> persistedObjects, ObjectBundle bundle )
+    {
+        Set<VersionedObject> versionedObjects = new HashSet<>();
+
+        persistedObjects.forEach( persistedObject ->
         {
-            versionedObject = ((Option) persistedObject).getOptionSet();
-        }
+            VersionedObject versionedObject = getVersionedObject( persistedObject );
 
-        if ( versionedObject != null )
+            if ( versionedObject != null )
+            {
+                versionedObjects.add( versionedObject );
+            }
+        } );
+
+        versionedObjects.forEach( versionedObject ->
         {
             versionedObject.increaseVersion();
             sessionFactory.getCurrentSession().save( versionedObject );
-        }
+        } );
     }
 
     @Override
@@ -124,4 +141,18 @@ public class VersionedObjectObjectBundleHook extends AbstractObjectBundleHook
             } );
         }
     }
+
+    private VersionedObject getVersionedObject( IdentifiableObject persistedObject )
+    {
+        if ( Section.class.isInstance( persistedObject ) )
+        {
+            return ((Section) persistedObject).getDataSet();
+        }
+        else if ( Option.class.isInstance( persistedObject ) )
+        {
+            return ((Option) persistedObject).getOptionSet();
+        }
+
+        return null;
+    }
 }
@@ -67,6 +67,11 @@ public class DefaultMetadataSystemSettingService
         return systemSettingManager.getSystemSetting( SettingKey.REMOTE_INSTANCE_URL ) + API_URL + "/" + versionName + "/data.gz";
     }
 
+    public String getDownloadVersionSnapshotBinaryURL( String versionName )
+    {
+        return systemSettingManager.getSystemSetting( SettingKey.REMOTE_INSTANCE_URL ) + API_URL + "/" + versionName + "/data.bin";
+    }
+
     public String getMetaDataDifferenceURL( String versionName )
     {
         return systemSettingManager.getSystemSetting( SettingKey.REMOTE_INSTANCE_URL ) + BASELINE_URL + versionName;
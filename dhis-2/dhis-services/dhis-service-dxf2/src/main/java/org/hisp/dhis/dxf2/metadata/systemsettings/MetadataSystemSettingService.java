@@ -44,6 +44,8 @@ public interface MetadataSystemSettingService
 
     String getDownloadVersionSnapshotURL( String versionName );
 
+    String getDownloadVersionSnapshotBinaryURL( String versionName );
+
     String getMetaDataDifferenceURL( String versionName );
 
     String getEntireVersionHistory();
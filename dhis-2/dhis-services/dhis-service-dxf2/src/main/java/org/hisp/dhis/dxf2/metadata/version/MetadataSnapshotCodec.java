@@ -0,0 +1,487 @@
+package org.hisp.dhis.dxf2.metadata.version;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.PrettyPrinter;
+
+/**
+ * Binary format for metadata version snapshots, used to transfer snapshots
+ * from the central instance to the instances syncing metadata from it.
+ * <p>
+ * The snapshot JSON is stored as a stream of tokens. Field names and string
+ * values, which are dominated by the repeated UIDs of referenced objects, are
+ * written once and referenced by their index in a dictionary afterwards.
+ * Indexes, lengths and integers are written as variable length integers and
+ * the token stream is deflated. Decoding gives back the exact snapshot JSON,
+ * so that it can be verified against the hash code of the version and stored
+ * and imported like a JSON snapshot.
+ */
+public final class MetadataSnapshotCodec
+{
+    public static final String CONTENT_TYPE = "application/octet-stream";
+
+    private static final byte[] MAGIC = { 'D', 'M', 'S' };
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_LENGTH = MAGIC.length + 2;
+
+    private static final int START_OBJECT = 1;
+
+    private static final int END_OBJECT = 2;
+
+    private static final int START_ARRAY = 3;
+
+    private static final int END_ARRAY = 4;
+
+    private static final int FIELD_NAME = 5;
+
+    private static final int STRING = 6;
+
+    private static final int INTEGER = 7;
+
+    private static final int NUMBER = 8;
+
+    private static final int TRUE = 9;
+
+    private static final int FALSE = 10;
+
+    private static final int NULL = 11;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+        .disable( JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT );
+
+    /**
+     * Separators of the snapshot JSON. Snapshots are written compact, but are
+     * served with spaces after separators when read back from a jsonb column.
+     */
+    private enum Style
+    {
+        COMPACT( ":", "," ),
+        SPACED( ": ", ", " );
+
+        private final String fieldSeparator;
+
+        private final String entrySeparator;
+
+        Style( String fieldSeparator, String entrySeparator )
+        {
+            this.fieldSeparator = fieldSeparator;
+            this.entrySeparator = entrySeparator;
+        }
+    }
+
+    private MetadataSnapshotCodec()
+    {
+    }
+
+    // -------------------------------------------------------------------------
+    // Encode
+    // -------------------------------------------------------------------------
+
+    /**
+     * Encodes the given snapshot JSON.
+     *
+     * @param json the snapshot JSON.
+     * @return the encoded snapshot, or null if the JSON is formatted in a way
+     *         which cannot be reproduced exactly when decoding.
+     * @throws IOException if the JSON is not valid.
+     */
+    public static byte[] encode( String json )
+        throws IOException
+    {
+        for ( Style style : Style.values() )
+        {
+            byte[] encoded = encode( json, style );
+
+            if ( json.equals( decode( encoded ) ) )
+            {
+                return encoded;
+            }
+        }
+
+        return null;
+    }
+
+    private static byte[] encode( String json, Style style )
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( json.length() / 4 + HEADER_LENGTH );
+        bytes.write( MAGIC );
+        bytes.write( FORMAT_VERSION );
+        bytes.write( style.ordinal() );
+
+        Map<String, Integer> dictionary = new HashMap<>();
+
+        try ( JsonParser parser = JSON_FACTORY.createParser( json );
+            OutputStream out = new BufferedOutputStream( new DeflaterOutputStream( bytes ) ) )
+        {
+            JsonToken token;
+
+            while ( (token = parser.nextToken()) != null )
+            {
+                switch ( token )
+                {
+                    case START_OBJECT:
+                        out.write( START_OBJECT );
+                        break;
+                    case END_OBJECT:
+                        out.write( END_OBJECT );
+                        break;
+                    case START_ARRAY:
+                        out.write( START_ARRAY );
+                        break;
+                    case END_ARRAY:
+                        out.write( END_ARRAY );
+                        break;
+                    case FIELD_NAME:
+                        out.write( FIELD_NAME );
+                        writeString( out, dictionary, parser.getCurrentName() );
+                        break;
+                    case VALUE_STRING:
+                        out.write( STRING );
+                        writeString( out, dictionary, parser.getText() );
+                        break;
+                    case VALUE_NUMBER_INT:
+                        if ( parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER )
+                        {
+                            out.write( NUMBER );
+                            writeString( out, dictionary, parser.getText() );
+                        }
+                        else
+                        {
+                            long value = parser.getLongValue();
+                            out.write( INTEGER );
+                            writeVarint( out, (value << 1) ^ (value >> 63) );
+                        }
+                        break;
+                    case VALUE_NUMBER_FLOAT:
+                        out.write( NUMBER );
+                        writeString( out, dictionary, parser.getText() );
+                        break;
+                    case VALUE_TRUE:
+                        out.write( TRUE );
+                        break;
+                    case VALUE_FALSE:
+                        out.write( FALSE );
+                        break;
+                    case VALUE_NULL:
+                        out.write( NULL );
+                        break;
+                    default:
+                        throw new IOException( "Unsupported token in metadata snapshot: " + token );
+                }
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeString( OutputStream out, Map<String, Integer> dictionary, String value )
+        throws IOException
+    {
+        Integer index = dictionary.get( value );
+
+        if ( index != null )
+        {
+            writeVarint( out, index + 1 );
+            return;
+        }
+
+        dictionary.put( value, dictionary.size() );
+
+        byte[] utf8 = value.getBytes( StandardCharsets.UTF_8 );
+
+        writeVarint( out, 0 );
+        writeVarint( out, utf8.length );
+        out.write( utf8 );
+    }
+
+    private static void writeVarint( OutputStream out, long value )
+        throws IOException
+    {
+        while ( (value & ~0x7FL) != 0 )
+        {
+            out.write( (int) ((value & 0x7F) | 0x80) );
+            value >>>= 7;
+        }
+
+        out.write( (int) value );
+    }
+
+    // -------------------------------------------------------------------------
+    // Decode
+    // -------------------------------------------------------------------------
+
+    /**
+     * Decodes the given encoded snapshot.
+     *
+     * @param encoded the encoded snapshot.
+     * @return the snapshot JSON.
+     * @throws IOException if the encoded snapshot is not valid.
+     */
+    public static String decode( byte[] encoded )
+        throws IOException
+    {
+        if ( encoded == null || encoded.length < HEADER_LENGTH || encoded[0] != MAGIC[0] || encoded[1] != MAGIC[1] ||
+            encoded[2] != MAGIC[2] || encoded[3] != FORMAT_VERSION || encoded[4] < 0 || encoded[4] >= Style.values().length )
+        {
+            throw new IOException( "Not a metadata snapshot of format version " + FORMAT_VERSION );
+        }
+
+        StringWriter writer = new StringWriter( encoded.length * 4 );
+        List<String> dictionary = new ArrayList<>();
+
+        try ( InputStream in = new BufferedInputStream( new InflaterInputStream(
+            new ByteArrayInputStream( encoded, HEADER_LENGTH, encoded.length - HEADER_LENGTH ) ) );
+            JsonGenerator generator = JSON_FACTORY.createGenerator( writer ) )
+        {
+            generator.setPrettyPrinter( new SnapshotPrettyPrinter( Style.values()[encoded[4]] ) );
+
+            int tag;
+
+            while ( (tag = in.read()) != -1 )
+            {
+                switch ( tag )
+                {
+                    case START_OBJECT:
+                        generator.writeStartObject();
+                        break;
+                    case END_OBJECT:
+                        generator.writeEndObject();
+                        break;
+                    case START_ARRAY:
+                        generator.writeStartArray();
+                        break;
+                    case END_ARRAY:
+                        generator.writeEndArray();
+                        break;
+                    case FIELD_NAME:
+                        generator.writeFieldName( readString( in, dictionary ) );
+                        break;
+                    case STRING:
+                        generator.writeString( readString( in, dictionary ) );
+                        break;
+                    case INTEGER:
+                        long value = readVarint( in );
+                        generator.writeNumber( (value >>> 1) ^ -(value & 1) );
+                        break;
+                    case NUMBER:
+                        generator.writeNumber( readString( in, dictionary ) );
+                        break;
+                    case TRUE:
+                        generator.writeBoolean( true );
+                        break;
+                    case FALSE:
+                        generator.writeBoolean( false );
+                        break;
+                    case NULL:
+                        generator.writeNull();
+                        break;
+                    default:
+                        throw new IOException( "Unknown token in metadata snapshot: " + tag );
+                }
+            }
+
+            if ( !generator.getOutputContext().inRoot() )
+            {
+                throw new EOFException( "Metadata snapshot is truncated" );
+            }
+        }
+
+        return writer.toString();
+    }
+
+    private static String readString( InputStream in, List<String> dictionary )
+        throws IOException
+    {
+        long reference = readVarint( in );
+
+        if ( reference > 0 )
+        {
+            if ( reference > dictionary.size() )
+            {
+                throw new IOException( "Invalid string reference in metadata snapshot: " + reference );
+            }
+
+            return dictionary.get( (int) reference - 1 );
+        }
+
+        long length = readVarint( in );
+
+        if ( length > Integer.MAX_VALUE )
+        {
+            throw new IOException( "Invalid string length in metadata snapshot: " + length );
+        }
+
+        byte[] utf8 = new byte[(int) length];
+        int offset = 0;
+
+        while ( offset < utf8.length )
+        {
+            int read = in.read( utf8, offset, utf8.length - offset );
+
+            if ( read == -1 )
+            {
+                throw new EOFException( "Metadata snapshot is truncated" );
+            }
+
+            offset += read;
+        }
+
+        String value = new String( utf8, StandardCharsets.UTF_8 );
+        dictionary.add( value );
+
+        return value;
+    }
+
+    private static long readVarint( InputStream in )
+        throws IOException
+    {
+        long value = 0;
+
+        for ( int shift = 0; shift < 64; shift += 7 )
+        {
+            int b = in.read();
+
+            if ( b == -1 )
+            {
+                throw new EOFException( "Metadata snapshot is truncated" );
+            }
+
+            value |= (long) (b & 0x7F) << shift;
+
+            if ( (b & 0x80) == 0 )
+            {
+                return value;
+            }
+        }
+
+        throw new IOException( "Invalid variable length integer in metadata snapshot" );
+    }
+
+    /**
+     * Writes the separators of the given style and no other whitespace.
+     */
+    private static final class SnapshotPrettyPrinter
+        implements PrettyPrinter
+    {
+        private final Style style;
+
+        SnapshotPrettyPrinter( Style style )
+        {
+            this.style = style;
+        }
+
+        @Override
+        public void writeRootValueSeparator( JsonGenerator generator )
+        {
+        }
+
+        @Override
+        public void writeStartObject( JsonGenerator generator )
+            throws IOException
+        {
+            generator.writeRaw( '{' );
+        }
+
+        @Override
+        public void writeEndObject( JsonGenerator generator, int nrOfEntries )
+            throws IOException
+        {
+            generator.writeRaw( '}' );
+        }
+
+        @Override
+        public void writeObjectEntrySeparator( JsonGenerator generator )
+            throws IOException
+        {
+            generator.writeRaw( style.entrySeparator );
+        }
+
+        @Override
+        public void writeObjectFieldValueSeparator( JsonGenerator generator )
+            throws IOException
+        {
+            generator.writeRaw( style.fieldSeparator );
+        }
+
+        @Override
+        public void writeStartArray( JsonGenerator generator )
+            throws IOException
+        {
+            generator.writeRaw( '[' );
+        }
+
+        @Override
+        public void writeEndArray( JsonGenerator generator, int nrOfValues )
+            throws IOException
+        {
+            generator.writeRaw( ']' );
+        }
+
+        @Override
+        public void writeArrayValueSeparator( JsonGenerator generator )
+            throws IOException
+        {
+            generator.writeRaw( style.entrySeparator );
+        }
+
+        @Override
+        public void beforeArrayValues( JsonGenerator generator )
+        {
+        }
+
+        @Override
+        public void beforeObjectEntries( JsonGenerator generator )
+        {
+        }
+    }
+}
@@ -153,6 +153,13 @@ public class MetadataVersionDelegate
     public String downloadMetadataVersionSnapshot(MetadataVersion version )
         throws MetadataVersionServiceException
     {
+        String binarySnapshot = downloadBinaryMetadataVersionSnapshot( version );
+
+        if ( binarySnapshot != null )
+        {
+            return binarySnapshot;
+        }
+
         String downloadVersionSnapshotURL = metadataSystemSettingService.getDownloadVersionSnapshotURL( version.getName() );
         DhisHttpResponse dhisHttpResponse = getDhisHttpResponse( downloadVersionSnapshotURL, DOWNLOAD_TIMEOUT );
 
@@ -182,6 +189,42 @@ public class MetadataVersionDelegate
     // Private Methods
     //----------------------------------------------------------------------------------------
 
+    /**
+     * Downloads the snapshot in the binary format. Returns null if the remote
+     * server does not support the format or the snapshot does not pass the
+     * integrity check, in which case the JSON snapshot should be downloaded.
+     */
+    private String downloadBinaryMetadataVersionSnapshot( MetadataVersion version )
+    {
+        String downloadVersionSnapshotURL = metadataSystemSettingService.getDownloadVersionSnapshotBinaryURL( version.getName() );
+
+        try
+        {
+            DhisHttpResponse dhisHttpResponse = getDhisHttpResponse( downloadVersionSnapshotURL, DOWNLOAD_TIMEOUT );
+
+            if ( dhisHttpResponse == null || dhisHttpResponse.getContent() == null ||
+                !HttpStatus.valueOf( dhisHttpResponse.getStatusCode() ).is2xxSuccessful() )
+            {
+                return null;
+            }
+
+            String versionSnapshot = MetadataSnapshotCodec.decode( dhisHttpResponse.getContent() );
+
+            if ( !metadataVersionService.isMetadataPassingIntegrity( version, versionSnapshot ) )
+            {
+                log.warn( "Binary metadata snapshot of version " + version.getName() + " did not pass the integrity check" );
+                return null;
+            }
+
+            return versionSnapshot;
+        }
+        catch ( MetadataVersionServiceException | IOException ex )
+        {
+            log.warn( "Binary metadata snapshot of version " + version.getName() + " is not available, downloading JSON snapshot: " + ex.getMessage() );
+            return null;
+        }
+    }
+
     private DhisHttpResponse getDhisHttpResponse( String url, int timeout )
     {
         AvailabilityStatus remoteServerAvailable = synchronizationManager.isRemoteServerAvailable();
@@ -29,6 +29,10 @@ package org.hisp.dhis.dxf2.events;
  */
 
 import com.google.common.collect.Lists;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.hisp.dhis.DhisSpringTest;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.dxf2.common.ImportOptions;
@@ -40,19 +44,23 @@ import org.hisp.dhis.importexport.ImportStrategy;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.program.Program;
 import org.hisp.dhis.program.ProgramInstanceService;
+import org.hisp.dhis.trackedentity.TrackedEntityInstanceQueryParams;
 import org.hisp.dhis.trackedentity.TrackedEntityType;
 import org.hisp.dhis.trackedentity.TrackedEntityTypeService;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Morten Olav Hansen <mortenoh@gmail.com>
@@ -60,6 +68,11 @@ import static org.junit.Assert.assertNull;
 public class TrackedEntityInstanceServiceTest
     extends DhisSpringTest
 {
+    private static final Log log = LogFactory.getLog( TrackedEntityInstanceServiceTest.class );
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
     @Autowired
     private TrackedEntityTypeService trackedEntityTypeService;
 
@@ -82,6 +95,8 @@ public class TrackedEntityInstanceServiceTest
 
     private Program programA;
 
+    private TrackedEntityType trackedEntityType;
+
     @Override
     protected void setUpTest() throws Exception
     {
@@ -90,7 +105,7 @@ public class TrackedEntityInstanceServiceTest
 
         organisationUnitB.setParent( organisationUnitA );
 
-        TrackedEntityType trackedEntityType = createTrackedEntityType( 'A' );
+        trackedEntityType = createTrackedEntityType( 'A' );
         trackedEntityTypeService.addTrackedEntityType( trackedEntityType );
 
         maleA = createTrackedEntityInstance( 'A', organisationUnitA );
@@ -134,6 +149,68 @@ public class TrackedEntityInstanceServiceTest
         assertNotEquals( maleA.getUid(), trackedEntityInstanceService.getTrackedEntityInstance( maleB ).getTrackedEntityInstance() );
     }
 
+    @Test
+    public void testGetTrackedEntityInstancesLoadsCollectionsPerPage()
+    {
+        for ( int i = 0; i < 40; i++ )
+        {
+            org.hisp.dhis.trackedentity.TrackedEntityInstance tei = createTrackedEntityInstance( 'E', organisationUnitA );
+            tei.setTrackedEntityType( trackedEntityType );
+            manager.save( tei );
+
+            programInstanceService.enrollTrackedEntityInstance( tei, programA, null, null, organisationUnitA );
+        }
+
+        List<String> uids = manager.getAll( org.hisp.dhis.trackedentity.TrackedEntityInstance.class ).stream()
+            .map( org.hisp.dhis.trackedentity.TrackedEntityInstance::getUid ).sorted().collect( Collectors.toList() );
+
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled( true );
+
+        // One instance at a time, walking the collections of each
+
+        clearSession();
+        statistics.clear();
+        long start = System.nanoTime();
+
+        List<TrackedEntityInstance> singleTeis = new ArrayList<>();
+
+        for ( String uid : uids )
+        {
+            singleTeis.add( trackedEntityInstanceService.getTrackedEntityInstance( uid, TrackedEntityInstanceParams.TRUE ) );
+        }
+
+        long singleTime = System.nanoTime() - start;
+        long singleQueries = statistics.getPrepareStatementCount();
+
+        // One page, loading each collection type for all instances at once
+
+        clearSession();
+        statistics.clear();
+        start = System.nanoTime();
+
+        List<TrackedEntityInstance> pageTeis = trackedEntityInstanceService.getTrackedEntityInstances(
+            new TrackedEntityInstanceQueryParams(), TrackedEntityInstanceParams.TRUE, true );
+
+        long pageTime = System.nanoTime() - start;
+        long pageQueries = statistics.getPrepareStatementCount();
+
+        statistics.setStatisticsEnabled( false );
+
+        log.info( "Single instances: " + singleQueries + " queries in " + singleTime / 1000000 + " ms, " +
+            "page: " + pageQueries + " queries in " + pageTime / 1000000 + " ms" );
+
+        assertEquals( 44, pageTeis.size() );
+        assertEquals( getEnrollmentCount( singleTeis ), getEnrollmentCount( pageTeis ) );
+        assertEquals( 42, getEnrollmentCount( pageTeis ) );
+        assertEquals( uids, pageTeis.stream().map( TrackedEntityInstance::getTrackedEntityInstance ).sorted().collect( Collectors.toList() ) );
+
+        // Number of queries for a page does not grow with the number of instances
+
+        assertTrue( pageQueries < uids.size() );
+        assertTrue( pageQueries < singleQueries );
+    }
+
     @Test
     @Ignore
     public void testUpdatePerson()
@@ -181,4 +258,15 @@ public class TrackedEntityInstanceServiceTest
         assertNull( trackedEntityInstanceService.getTrackedEntityInstance( maleA.getUid() ) );
         assertNull( trackedEntityInstanceService.getTrackedEntityInstance( maleB.getUid() ) );
     }
+
+    private void clearSession()
+    {
+        sessionFactory.getCurrentSession().flush();
+        sessionFactory.getCurrentSession().clear();
+    }
+
+    private int getEnrollmentCount( List<TrackedEntityInstance> teis )
+    {
+        return teis.stream().mapToInt( tei -> tei.getEnrollments().size() ).sum();
+    }
 }
@@ -0,0 +1,288 @@
+package org.hisp.dhis.dxf2.events.event;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.IntegrationTest;
+import org.hisp.dhis.IntegrationTestBase;
+import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.OrganisationUnitSelectionMode;
+import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dxf2.importsummary.ImportStatus;
+import org.hisp.dhis.dxf2.importsummary.ImportSummary;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.program.Program;
+import org.hisp.dhis.program.ProgramInstance;
+import org.hisp.dhis.program.ProgramInstanceService;
+import org.hisp.dhis.program.ProgramStage;
+import org.hisp.dhis.program.ProgramStageDataElement;
+import org.hisp.dhis.program.ProgramStageDataElementService;
+import org.hisp.dhis.program.ProgramType;
+import org.hisp.dhis.user.UserService;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests keyset paging and streaming of events. Runs on PostgreSQL as the
+ * page condition compares row values.
+ */
+@Category( IntegrationTest.class )
+public class EventKeysetPagingTest
+    extends IntegrationTestBase
+{
+    private static final int EVENT_COUNT = 12;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private ProgramStageDataElementService programStageDataElementService;
+
+    @Autowired
+    private ProgramInstanceService programInstanceService;
+
+    @Autowired
+    private IdentifiableObjectManager manager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserService _userService;
+
+    private OrganisationUnit organisationUnitA;
+
+    private DataElement dataElementA;
+
+    private Program programA;
+
+    @Override
+    public boolean emptyDatabaseAfterTest()
+    {
+        return true;
+    }
+
+    @Override
+    protected void setUpTest()
+        throws Exception
+    {
+        userService = _userService;
+
+        organisationUnitA = createOrganisationUnit( 'A' );
+        manager.save( organisationUnitA );
+
+        dataElementA = createDataElement( 'A' );
+        dataElementA.setValueType( ValueType.INTEGER );
+        manager.save( dataElementA );
+
+        ProgramStage programStageA = createProgramStage( 'A', 0 );
+        manager.save( programStageA );
+
+        programA = createProgram( 'A', new HashSet<>(), organisationUnitA );
+        programA.setProgramType( ProgramType.WITHOUT_REGISTRATION );
+        manager.save( programA );
+
+        ProgramStageDataElement programStageDataElement = new ProgramStageDataElement();
+        programStageDataElement.setDataElement( dataElementA );
+        programStageDataElement.setProgramStage( programStageA );
+        programStageDataElementService.addProgramStageDataElement( programStageDataElement );
+
+        programStageA.getProgramStageDataElements().add( programStageDataElement );
+        programStageA.setProgram( programA );
+        programA.getProgramStages().add( programStageA );
+
+        manager.update( programStageA );
+        manager.update( programA );
+
+        ProgramInstance programInstance = new ProgramInstance();
+        programInstance.setProgram( programA );
+        programInstance.setIncidentDate( new Date() );
+        programInstance.setEnrollmentDate( new Date() );
+
+        programInstanceService.addProgramInstance( programInstance );
+        manager.update( programA );
+
+        createUserAndInjectSecurityContext( true );
+
+        for ( int i = 0; i < EVENT_COUNT; i++ )
+        {
+            Event event = new Event();
+            event.setProgram( programA.getUid() );
+            event.setOrgUnit( organisationUnitA.getUid() );
+            event.setEventDate( "2018-01-01" );
+            event.getDataValues().add( new DataValue( dataElementA.getUid(), String.valueOf( i ) ) );
+
+            ImportSummary importSummary = eventService.addEvent( event, null, false );
+            assertEquals( ImportStatus.SUCCESS, importSummary.getStatus() );
+        }
+
+        // Events share last updated timestamps in groups of four, so pages are cut within ties
+
+        jdbcTemplate.update( "update programstageinstance set lastupdated = " +
+            "timestamp '2018-06-01 12:00:00.123456' + (programstageinstanceid % 3) * interval '1 hour'" );
+    }
+
+    @Test
+    public void testKeysetPaging()
+    {
+        List<String> expected = jdbcTemplate.queryForList( "select uid from programstageinstance " +
+            "order by lastupdated desc, programstageinstanceid desc", String.class );
+
+        assertEquals( EVENT_COUNT, expected.size() );
+
+        List<List<String>> pages = getPages( 5 );
+
+        assertEquals( 3, pages.size() );
+        assertEquals( 5, pages.get( 0 ).size() );
+        assertEquals( 5, pages.get( 1 ).size() );
+        assertEquals( 2, pages.get( 2 ).size() );
+        assertEquals( expected, pages.stream().flatMap( List::stream ).collect( Collectors.toList() ) );
+    }
+
+    @Test
+    public void testKeysetPagingFullLastPage()
+    {
+        List<List<String>> pages = getPages( 4 );
+
+        assertEquals( 4, pages.size() );
+        assertEquals( 0, pages.get( 3 ).size() );
+
+        Set<String> events = pages.stream().flatMap( List::stream ).collect( Collectors.toSet() );
+
+        assertEquals( EVENT_COUNT, events.size() );
+    }
+
+    @Test
+    public void testStreamEvents()
+    {
+        EventSearchParams params = createParams( 5, null );
+
+        List<String> events = describe( eventService.getEvents( params ).getEvents() );
+        String nextPageToken = params.getNextPageToken();
+
+        List<Event> streamedEvents = new ArrayList<>();
+        params = createParams( 5, null );
+
+        eventService.streamEvents( params, streamedEvents::add );
+
+        assertEquals( 5, events.size() );
+        assertEquals( events, describe( streamedEvents ) );
+        assertNotNull( nextPageToken );
+        assertEquals( nextPageToken, params.getNextPageToken() );
+
+        events = describe( eventService.getEvents( createParams( 5, nextPageToken ) ).getEvents() );
+
+        streamedEvents.clear();
+        eventService.streamEvents( createParams( 5, nextPageToken ), streamedEvents::add );
+
+        assertEquals( 5, events.size() );
+        assertEquals( events, describe( streamedEvents ) );
+    }
+
+    @Test
+    public void testStreamEventsWithoutKeysetPaging()
+    {
+        EventSearchParams params = new EventSearchParams();
+        params.setProgram( programA );
+        params.setOrgUnit( organisationUnitA );
+        params.setOrgUnitSelectionMode( OrganisationUnitSelectionMode.SELECTED );
+
+        List<String> events = describe( eventService.getEvents( params ).getEvents() );
+
+        List<Event> streamedEvents = new ArrayList<>();
+        eventService.streamEvents( params, streamedEvents::add );
+
+        assertEquals( EVENT_COUNT, events.size() );
+        assertEquals( events, describe( streamedEvents ) );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Gets all pages of events by following the continuation tokens, up to
+     * the first page without a token for the next page.
+     */
+    private List<List<String>> getPages( int pageSize )
+    {
+        List<List<String>> pages = new ArrayList<>();
+        String pageToken = null;
+
+        do
+        {
+            Events events = eventService.getEvents( createParams( pageSize, pageToken ) );
+
+            pages.add( events.getEvents().stream().map( Event::getEvent ).collect( Collectors.toList() ) );
+            pageToken = events.getNextPageToken();
+        }
+        while ( pageToken != null && pages.size() <= EVENT_COUNT );
+
+        assertNull( pageToken );
+
+        return pages;
+    }
+
+    private EventSearchParams createParams( int pageSize, String pageToken )
+    {
+        EventSearchParams params = new EventSearchParams();
+        params.setProgram( programA );
+        params.setOrgUnit( organisationUnitA );
+        params.setOrgUnitSelectionMode( OrganisationUnitSelectionMode.SELECTED );
+        params.setKeysetPaging( true );
+        params.setPageSize( pageSize );
+        params.setPageToken( pageToken );
+
+        return params;
+    }
+
+    /**
+     * Describes events by the fields which are written for each event, so
+     * that events from different queries can be compared.
+     */
+    private List<String> describe( List<Event> events )
+    {
+        return events.stream()
+            .map( event -> event.toString() + event.getLastUpdated() )
+            .collect( Collectors.toList() );
+    }
+}
@@ -0,0 +1,73 @@
+package org.hisp.dhis.dxf2.events.event;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Timestamp;
+
+import org.hisp.dhis.common.IllegalQueryException;
+import org.junit.Test;
+
+public class EventPageTokenTest
+{
+    @Test
+    public void testEncodeDecode()
+    {
+        Timestamp lastUpdated = Timestamp.valueOf( "2018-11-05 14:31:09.123456" );
+
+        EventPageToken token = EventPageToken.decode( new EventPageToken( lastUpdated, 4211, 17 ).encode() );
+
+        assertEquals( lastUpdated, token.getLastUpdated() );
+        assertEquals( 123456000, token.getLastUpdated().getNanos() );
+        assertEquals( 4211, token.getEventId() );
+        assertEquals( 17, token.getCategoryOptionId() );
+    }
+
+    @Test
+    public void testGetAfterCondition()
+    {
+        EventPageToken token = new EventPageToken( Timestamp.valueOf( "2018-11-05 14:31:09.123456" ), 4211, 17 );
+
+        assertEquals( "(psi.lastupdated, psi.programstageinstanceid, cocco.categoryoptionid) < ('2018-11-05 14:31:09.123456', 4211, 17)",
+            token.getAfterCondition( "psi.lastupdated", "psi.programstageinstanceid", "cocco.categoryoptionid" ) );
+    }
+
+    @Test( expected = IllegalQueryException.class )
+    public void testDecodeInvalidToken()
+    {
+        EventPageToken.decode( "bm90LWEtdG9rZW4" );
+    }
+
+    @Test( expected = IllegalQueryException.class )
+    public void testDecodeInvalidEncoding()
+    {
+        EventPageToken.decode( "%%%" );
+    }
+}
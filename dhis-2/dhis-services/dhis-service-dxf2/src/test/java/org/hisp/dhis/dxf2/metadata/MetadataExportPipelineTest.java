@@ -0,0 +1,133 @@
+package org.hisp.dhis.dxf2.metadata;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.Lists;
+import org.hisp.dhis.node.Node;
+import org.hisp.dhis.node.types.SimpleNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataExportPipelineTest
+{
+    private ExecutorService executor;
+
+    @Before
+    public void setUp()
+    {
+        executor = Executors.newFixedThreadPool( 2 );
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testGetSectionsInOrder()
+    {
+        AtomicInteger started = new AtomicInteger();
+
+        List<Callable<List<Node>>> sections = new ArrayList<>();
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            final String name = "section" + i;
+
+            sections.add( () -> {
+                started.incrementAndGet();
+                return Lists.newArrayList( new SimpleNode( name, name ) );
+            } );
+        }
+
+        MetadataExportPipeline pipeline = new MetadataExportPipeline( sections, executor, 2 );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            List<Node> section = pipeline.getSection( i );
+
+            assertEquals( 1, section.size() );
+            assertEquals( "section" + i, section.get( 0 ).getName() );
+            assertTrue( started.get() <= i + 3 );
+        }
+
+        assertEquals( 10, started.get() );
+    }
+
+    @Test( expected = RuntimeException.class )
+    public void testGetFailedSection()
+    {
+        List<Callable<List<Node>>> sections = new ArrayList<>();
+
+        sections.add( () -> {
+            throw new IllegalStateException( "Failed" );
+        } );
+
+        new MetadataExportPipeline( sections, executor, 2 ).getSection( 0 );
+    }
+
+    @Test
+    public void testSharedExecutor()
+    {
+        List<Callable<List<Node>>> sectionsA = new ArrayList<>();
+        List<Callable<List<Node>>> sectionsB = new ArrayList<>();
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            final String name = "section" + i;
+
+            sectionsA.add( () -> Lists.newArrayList( new SimpleNode( name, "A" ) ) );
+            sectionsB.add( () -> Lists.newArrayList( new SimpleNode( name, "B" ) ) );
+        }
+
+        MetadataExportPipeline pipelineA = new MetadataExportPipeline( sectionsA, executor, 2 );
+        MetadataExportPipeline pipelineB = new MetadataExportPipeline( sectionsB, executor, 2 );
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            assertEquals( "A", ((SimpleNode) pipelineA.getSection( i ).get( 0 )).getValue() );
+            assertEquals( "B", ((SimpleNode) pipelineB.getSection( i ).get( 0 )).getValue() );
+        }
+
+        assertFalse( executor.isShutdown() );
+    }
+}
@@ -45,6 +45,7 @@ import org.hisp.dhis.dataset.DataSet;
 import org.hisp.dhis.dataset.DataSetElement;
 import org.hisp.dhis.dataset.Section;
 import org.hisp.dhis.dxf2.metadata.AtomicMode;
+import org.hisp.dhis.dxf2.metadata.FlushMode;
 import org.hisp.dhis.dxf2.metadata.objectbundle.feedback.ObjectBundleValidationReport;
 import org.hisp.dhis.feedback.ErrorCode;
 import org.hisp.dhis.feedback.ErrorReport;
@@ -279,6 +280,30 @@ public class ObjectBundleServiceTest
         assertEquals( 3, validate.getErrorReportsByCode( DataElement.class, ErrorCode.E4000 ).size() );
     }
 
+    @Test
+    public void testCreatePreheatValidationsInvalidObjectsFailFast() throws IOException
+    {
+        Map<Class<? extends IdentifiableObject>, List<IdentifiableObject>> metadata = renderService.fromMetadata(
+            new ClassPathResource( "dxf2/de_validate2.json" ).getInputStream(), RenderFormat.JSON );
+
+        ObjectBundleParams params = new ObjectBundleParams();
+        params.setObjectBundleMode( ObjectBundleMode.VALIDATE );
+        params.setImportStrategy( ImportStrategy.CREATE );
+        params.setAtomicMode( AtomicMode.ALL );
+        params.setFailFast( true );
+        params.setObjects( metadata );
+
+        ObjectBundle bundle = objectBundleService.create( params );
+        ObjectBundleValidationReport validate = objectBundleValidationService.validate( bundle );
+
+        assertFalse( validate.getTypeReportMap().isEmpty() );
+
+        assertTrue( validate.getErrorReportsByCode( DataElement.class, ErrorCode.E5002 ).isEmpty() );
+        assertFalse( validate.getErrorReportsByCode( DataElement.class, ErrorCode.E4000 ).isEmpty() );
+        assertTrue( validate.getErrorReportsByCode( DataElement.class, ErrorCode.E4000 ).size() < 3 );
+        assertTrue( bundle.getObjects( DataElement.class, false ).isEmpty() );
+    }
+
     @Test
     public void testUpdatePreheatValidationsInvalidObjects() throws IOException
     {
@@ -544,6 +569,33 @@ public class ObjectBundleServiceTest
         assertEquals( "PdWlltZnVZe", user.getOrganisationUnit().getUid() );
     }
 
+    @Test
+    public void testCreateSimpleMetadataBatchFlushUID() throws IOException
+    {
+        Map<Class<? extends IdentifiableObject>, List<IdentifiableObject>> metadata = renderService.fromMetadata(
+            new ClassPathResource( "dxf2/simple_metadata.json" ).getInputStream(), RenderFormat.JSON );
+
+        ObjectBundleParams params = new ObjectBundleParams();
+        params.setObjectBundleMode( ObjectBundleMode.COMMIT );
+        params.setImportStrategy( ImportStrategy.CREATE );
+        params.setFlushMode( FlushMode.BATCH );
+        params.setBatchSize( 2 );
+        params.setObjects( metadata );
+
+        ObjectBundle bundle = objectBundleService.create( params );
+        objectBundleValidationService.validate( bundle );
+        objectBundleService.commit( bundle );
+
+        assertEquals( metadata.get( OrganisationUnit.class ).size(), manager.getAll( OrganisationUnit.class ).size() );
+        assertEquals( metadata.get( DataElement.class ).size(), manager.getAll( DataElement.class ).size() );
+        assertEquals( metadata.get( DataSet.class ).size(), manager.getAll( DataSet.class ).size() );
+
+        DataSet dataSet = manager.getAll( DataSet.class ).get( 0 );
+
+        assertEquals( 1, dataSet.getSources().size() );
+        assertEquals( 2, dataSet.getDataSetElements().size() );
+    }
+
     @Test
     public void testCreateDataSetsWithUgaUID() throws IOException
     {
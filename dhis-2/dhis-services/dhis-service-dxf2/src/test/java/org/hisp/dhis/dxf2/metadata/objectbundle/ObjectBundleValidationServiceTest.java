@@ -0,0 +1,228 @@
+package org.hisp.dhis.dxf2.metadata.objectbundle;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.Lists;
+import org.hisp.dhis.DhisSpringTest;
+import org.hisp.dhis.category.CategoryCombo;
+import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.common.IdentifiableObject;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dxf2.metadata.AtomicMode;
+import org.hisp.dhis.dxf2.metadata.objectbundle.feedback.ObjectBundleValidationReport;
+import org.hisp.dhis.feedback.ErrorCode;
+import org.hisp.dhis.feedback.ObjectReport;
+import org.hisp.dhis.feedback.TypeReport;
+import org.hisp.dhis.importexport.ImportStrategy;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests validation of bundles large enough to be validated in parallel chunks.
+ */
+public class ObjectBundleValidationServiceTest
+    extends DhisSpringTest
+{
+    /**
+     * More than two chunks of objects, the last one partial.
+     */
+    private static final int OBJECT_COUNT = 2500;
+
+    /**
+     * Largest number of objects validated in a single chunk.
+     */
+    private static final int SEQUENTIAL_COUNT = 1000;
+
+    @Autowired
+    private ObjectBundleService objectBundleService;
+
+    @Autowired
+    private ObjectBundleValidationService objectBundleValidationService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Test
+    public void testValidateInChunks()
+    {
+        List<DataElement> dataElements = createDataElements();
+
+        Map<Integer, String> objectReports = getObjectReports( validate( dataElements, false ) );
+
+        Map<Integer, String> sequentialObjectReports = new HashMap<>();
+
+        int offset = 0;
+
+        for ( List<DataElement> slice : Lists.partition( dataElements, SEQUENTIAL_COUNT ) )
+        {
+            for ( Map.Entry<Integer, String> entry : getObjectReports( validate( slice, false ) ).entrySet() )
+            {
+                sequentialObjectReports.put( offset + entry.getKey(), entry.getValue() );
+            }
+
+            offset += slice.size();
+        }
+
+        assertEquals( getExpectedErrorCount(), objectReports.size() );
+        assertEquals( sequentialObjectReports, objectReports );
+
+        for ( int i = 0; i < OBJECT_COUNT; i++ )
+        {
+            if ( isInvalidShortName( i ) )
+            {
+                assertTrue( objectReports.get( i ).startsWith( dataElements.get( i ).getUid() ) );
+            }
+        }
+    }
+
+    @Test
+    public void testValidateInChunksFailFast()
+    {
+        ObjectBundleValidationReport validation = validate( createDataElements(), true );
+
+        int errorCount = validation.getObjectReports( DataElement.class ).size();
+
+        assertTrue( errorCount > 0 );
+        assertTrue( errorCount < getExpectedErrorCount() );
+        assertTrue( validation.getErrorReportsByCode( DataElement.class, ErrorCode.E5002 ).isEmpty() );
+        assertFalse( validation.getErrorReportsByCode( DataElement.class, ErrorCode.E4001 ).isEmpty() );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private ObjectBundleValidationReport validate( List<DataElement> dataElements, boolean failFast )
+    {
+        Map<Class<? extends IdentifiableObject>, List<IdentifiableObject>> metadata = new HashMap<>();
+        metadata.put( DataElement.class, new ArrayList<>( dataElements ) );
+
+        ObjectBundleParams params = new ObjectBundleParams();
+        params.setObjectBundleMode( ObjectBundleMode.VALIDATE );
+        params.setImportStrategy( ImportStrategy.CREATE );
+        params.setAtomicMode( AtomicMode.ALL );
+        params.setFailFast( failFast );
+        params.setObjects( metadata );
+
+        ObjectBundle bundle = objectBundleService.create( params );
+
+        return objectBundleValidationService.validate( bundle );
+    }
+
+    /**
+     * Creates data elements where some have a too long short name and some
+     * reference a category combo which does not exist.
+     */
+    private List<DataElement> createDataElements()
+    {
+        CategoryCombo defaultCategoryCombo = categoryService.getDefaultCategoryCombo();
+
+        CategoryCombo missingCategoryCombo = new CategoryCombo();
+        missingCategoryCombo.setUid( "ccMissingAA" );
+
+        List<DataElement> dataElements = new ArrayList<>();
+
+        for ( int i = 0; i < OBJECT_COUNT; i++ )
+        {
+            DataElement dataElement = createDataElement( 'A', defaultCategoryCombo );
+            dataElement.setUid( String.format( "de%09d", i ) );
+            dataElement.setName( "DataElement" + i );
+            dataElement.setShortName( isInvalidShortName( i ) ? "DataElementShortWithAVeryLongNameExceedingFiftyChars" + i : "DataElementShort" + i );
+            dataElement.setCode( "DataElementCode" + i );
+
+            if ( isInvalidReference( i ) )
+            {
+                dataElement.setCategoryCombo( missingCategoryCombo );
+            }
+
+            dataElements.add( dataElement );
+        }
+
+        return dataElements;
+    }
+
+    private boolean isInvalidShortName( int i )
+    {
+        return i % 7 == 3;
+    }
+
+    private boolean isInvalidReference( int i )
+    {
+        return i % 11 == 5;
+    }
+
+    private int getExpectedErrorCount()
+    {
+        int count = 0;
+
+        for ( int i = 0; i < OBJECT_COUNT; i++ )
+        {
+            if ( isInvalidShortName( i ) || isInvalidReference( i ) )
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Describes the object reports of data elements by index, with the uid,
+     * the error codes and the number of errors of each object.
+     */
+    private Map<Integer, String> getObjectReports( ObjectBundleValidationReport validation )
+    {
+        Map<Integer, String> objectReports = new HashMap<>();
+
+        TypeReport typeReport = validation.getTypeReportMap().get( DataElement.class );
+
+        if ( typeReport == null )
+        {
+            return objectReports;
+        }
+
+        for ( ObjectReport objectReport : typeReport.getObjectReports() )
+        {
+            objectReports.put( objectReport.getIndex(), objectReport.getUid() + " " +
+                new TreeSet<>( objectReport.getErrorCodes() ) + " " + objectReport.getErrorReports().size() );
+        }
+
+        return objectReports;
+    }
+}
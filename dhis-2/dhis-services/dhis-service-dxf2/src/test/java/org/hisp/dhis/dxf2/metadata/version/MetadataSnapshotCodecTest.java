@@ -0,0 +1,112 @@
+package org.hisp.dhis.dxf2.metadata.version;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class MetadataSnapshotCodecTest
+{
+    @Test
+    public void testEncodeDecodeCompact()
+        throws IOException
+    {
+        String json = "{\"system\":{\"id\":\"eed3d451-4ff5-4193-b951-ffcc68954299\",\"rev\":\"abc1234\"}," +
+            "\"dataElements\":[{\"id\":\"deabcdefghA\",\"name\":\"Data element \\\"A\\\" é\",\"zeroIsSignificant\":false," +
+            "\"aggregationLevels\":[],\"attributeValues\":[],\"legendSets\":{},\"valueType\":\"NUMBER\",\"code\":null," +
+            "\"sortOrder\":-12,\"created\":1546300800000,\"weight\":1.5e3,\"big\":123456789012345678901234567890," +
+            "\"categoryCombo\":{\"id\":\"bjDvmb4bfuf\"}},{\"id\":\"deabcdefghB\",\"domainType\":\"AGGREGATE\"," +
+            "\"optionSetValue\":true,\"categoryCombo\":{\"id\":\"bjDvmb4bfuf\"}}]}";
+
+        assertEquals( json, MetadataSnapshotCodec.decode( MetadataSnapshotCodec.encode( json ) ) );
+    }
+
+    @Test
+    public void testEncodeDecodeSpaced()
+        throws IOException
+    {
+        String json = "{\"system\": {\"id\": \"abc\"}, \"dataElements\": [{\"id\": \"deabcdefghA\", \"levels\": [1, 2, 3], " +
+            "\"legendSets\": [], \"categoryCombo\": {\"id\": \"bjDvmb4bfuf\"}}]}";
+
+        assertEquals( json, MetadataSnapshotCodec.decode( MetadataSnapshotCodec.encode( json ) ) );
+    }
+
+    @Test
+    public void testEncodeNotReproducible()
+        throws IOException
+    {
+        assertNull( MetadataSnapshotCodec.encode( "{ \"dataElements\" : [ ] }" ) );
+    }
+
+    @Test
+    public void testEncodeSize()
+        throws IOException
+    {
+        StringBuilder json = new StringBuilder( "{\"dataElements\":[" );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            json.append( i > 0 ? "," : "" ).append( "{\"id\":\"deabcd" ).append( 10000 + i )
+                .append( "\",\"name\":\"Data element " ).append( i )
+                .append( "\",\"categoryCombo\":{\"id\":\"bjDvmb4bfuf\"}}" );
+        }
+
+        json.append( "]}" );
+
+        byte[] encoded = MetadataSnapshotCodec.encode( json.toString() );
+
+        assertNotNull( encoded );
+        assertTrue( encoded.length < json.length() / 4 );
+        assertEquals( json.toString(), MetadataSnapshotCodec.decode( encoded ) );
+    }
+
+    @Test( expected = IOException.class )
+    public void testDecodeInvalidHeader()
+        throws IOException
+    {
+        MetadataSnapshotCodec.decode( "{\"dataElements\":[]}".getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    @Test( expected = IOException.class )
+    public void testDecodeTruncated()
+        throws IOException
+    {
+        byte[] encoded = MetadataSnapshotCodec.encode( "{\"dataElements\":[{\"id\":\"deabcdefghA\"},{\"id\":\"deabcdefghB\"}]}" );
+
+        MetadataSnapshotCodec.decode( Arrays.copyOf( encoded, encoded.length - 4 ) );
+    }
+}
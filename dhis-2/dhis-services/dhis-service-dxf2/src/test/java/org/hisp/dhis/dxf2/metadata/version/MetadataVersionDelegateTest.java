@@ -412,6 +412,52 @@ public class MetadataVersionDelegateTest
         assertEquals( response, actualVersionSnapShot );
     }
 
+    @Test
+    public void testShouldDownloadBinaryMetadataVersion()
+        throws Exception
+    {
+        when( metadataSystemSettingService.getRemoteInstanceUserName() ).thenReturn( username );
+        when( metadataSystemSettingService.getRemoteInstancePassword() ).thenReturn( password );
+
+        String binaryUrl = "http://localhost:9080/api/metadata/version/testVersion/data.bin";
+
+        when( metadataSystemSettingService.getDownloadVersionSnapshotBinaryURL( "testVersion" ) ).thenReturn( binaryUrl );
+
+        AvailabilityStatus availabilityStatus = new AvailabilityStatus( true, "test_message", null );
+        DhisHttpResponse dhisHttpResponse = new DhisHttpResponse( httpResponse, null, MetadataSnapshotCodec.encode( response ), HttpStatus.OK.value() );
+
+        when( synchronizationManager.isRemoteServerAvailable() ).thenReturn( availabilityStatus );
+        when( metadataVersionService.isMetadataPassingIntegrity( metadataVersion, response ) ).thenReturn( true );
+        PowerMockito.when( HttpUtils.httpGET( binaryUrl, true, username, password, null, DOWNLOAD_TIMEOUT, true ) )
+            .thenReturn( dhisHttpResponse );
+
+        assertEquals( response, target.downloadMetadataVersionSnapshot( metadataVersion ) );
+    }
+
+    @Test
+    public void testShouldDownloadMetadataVersionWhenBinaryFailsIntegrity()
+        throws Exception
+    {
+        when( metadataSystemSettingService.getRemoteInstanceUserName() ).thenReturn( username );
+        when( metadataSystemSettingService.getRemoteInstancePassword() ).thenReturn( password );
+
+        String binaryUrl = "http://localhost:9080/api/metadata/version/testVersion/data.bin";
+
+        when( metadataSystemSettingService.getDownloadVersionSnapshotBinaryURL( "testVersion" ) ).thenReturn( binaryUrl );
+        when( metadataSystemSettingService.getDownloadVersionSnapshotURL( "testVersion" ) ).thenReturn( downloadUrl );
+
+        AvailabilityStatus availabilityStatus = new AvailabilityStatus( true, "test_message", null );
+
+        when( synchronizationManager.isRemoteServerAvailable() ).thenReturn( availabilityStatus );
+        when( metadataVersionService.isMetadataPassingIntegrity( metadataVersion, response ) ).thenReturn( false );
+        PowerMockito.when( HttpUtils.httpGET( binaryUrl, true, username, password, null, DOWNLOAD_TIMEOUT, true ) )
+            .thenReturn( new DhisHttpResponse( httpResponse, null, MetadataSnapshotCodec.encode( response ), HttpStatus.OK.value() ) );
+        PowerMockito.when( HttpUtils.httpGET( downloadUrl, true, username, password, null, DOWNLOAD_TIMEOUT, true ) )
+            .thenReturn( new DhisHttpResponse( httpResponse, response, HttpStatus.OK.value() ) );
+
+        assertEquals( response, target.downloadMetadataVersionSnapshot( metadataVersion ) );
+    }
+
     @Test
     public void testShouldNotDownloadMetadataVersion()
         throws Exception
@@ -28,6 +28,8 @@ package org.hisp.dhis.fieldfilter;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -44,13 +46,14 @@ import org.hisp.dhis.node.Preset;
 import org.hisp.dhis.node.types.CollectionNode;
 import org.hisp.dhis.node.types.ComplexNode;
 import org.hisp.dhis.node.types.SimpleNode;
+import org.hisp.dhis.node.types.StreamingCollectionNode;
 import org.hisp.dhis.period.PeriodType;
 import org.hisp.dhis.preheat.Preheat;
 import org.hisp.dhis.schema.Property;
+import org.hisp.dhis.schema.PropertyAccessor;
 import org.hisp.dhis.schema.Schema;
 import org.hisp.dhis.schema.SchemaService;
 import org.hisp.dhis.security.acl.AclService;
-import org.hisp.dhis.system.util.ReflectionUtils;
 import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
 import org.hisp.dhis.user.UserCredentials;
@@ -59,6 +62,7 @@ import org.springframework.util.StringUtils;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -88,6 +92,16 @@ public class DefaultFieldFilterService implements FieldFilterService
 
     private ImmutableMap<String, NodeTransformer> transformers = ImmutableMap.of();
 
+    /**
+     * Cache for field maps which have been parsed and resolved against the
+     * schema of the root class, keyed on root class and fields. Cached field
+     * maps are shared between requests and must not be modified.
+     */
+    private final Cache<String, FieldMap> fieldMapCache = Caffeine.newBuilder()
+        .expireAfterAccess( 12, TimeUnit.HOURS )
+        .maximumSize( 10000 )
+        .build();
+
     public DefaultFieldFilterService( FieldParser fieldParser, SchemaService schemaService, AclService aclService,
         CurrentUserService currentUserService )
     {
@@ -140,14 +154,22 @@ public class DefaultFieldFilterService implements FieldFilterService
 
     @Override
     public CollectionNode toCollectionNode( Class<?> wrapper, FieldFilterParams params )
+    {
+        return toCollectionNode( wrapper, params, false );
+    }
+
+    @Override
+    public CollectionNode toStreamingCollectionNode( Class<?> wrapper, FieldFilterParams params )
+    {
+        return toCollectionNode( wrapper, params, true );
+    }
+
+    private CollectionNode toCollectionNode( Class<?> wrapper, FieldFilterParams params, boolean streaming )
     {
         String fields = params.getFields() == null ? "" : Joiner.on( "," ).join( params.getFields() );
 
         Schema rootSchema = schemaService.getDynamicSchema( wrapper );
 
-        CollectionNode collectionNode = new CollectionNode( rootSchema.getCollectionName() );
-        collectionNode.setNamespace( rootSchema.getNamespace() );
-
         List<?> objects = params.getObjects();
 
         if ( params.getSkipSharing() )
@@ -157,7 +179,7 @@ public class DefaultFieldFilterService implements FieldFilterService
 
         if ( params.getObjects().isEmpty() )
         {
-            return collectionNode;
+            return newCollectionNode( rootSchema );
         }
 
         FieldMap fieldMap = new FieldMap();
@@ -172,7 +194,7 @@ public class DefaultFieldFilterService implements FieldFilterService
         }
         else
         {
-            fieldMap = fieldParser.parse( fields );
+            fieldMap = getFieldMap( wrapper, fields );
         }
 
         final FieldMap finalFieldMap = fieldMap;
@@ -182,6 +204,17 @@ public class DefaultFieldFilterService implements FieldFilterService
             params.setUser( currentUserService.getCurrentUser() );
         }
 
+        if ( streaming )
+        {
+            CollectionNode collectionNode = new StreamingCollectionNode( rootSchema.getCollectionName(), objects,
+                object -> buildNode( finalFieldMap, wrapper, object, params.getUser(), params.getDefaults() ) );
+            collectionNode.setNamespace( rootSchema.getNamespace() );
+
+            return collectionNode;
+        }
+
+        CollectionNode collectionNode = newCollectionNode( rootSchema );
+
         objects.forEach( object -> {
             AbstractNode node = buildNode( finalFieldMap, wrapper, object, params.getUser(), params.getDefaults() );
 
@@ -194,6 +227,14 @@ public class DefaultFieldFilterService implements FieldFilterService
         return collectionNode;
     }
 
+    private CollectionNode newCollectionNode( Schema rootSchema )
+    {
+        CollectionNode collectionNode = new CollectionNode( rootSchema.getCollectionName() );
+        collectionNode.setNamespace( rootSchema.getNamespace() );
+
+        return collectionNode;
+    }
+
     private AbstractNode buildNode( FieldMap fieldMap, Class<?> klass, Object object, User user, Defaults defaults )
     {
         Schema schema = schemaService.getDynamicSchema( klass );
@@ -223,8 +264,6 @@ public class DefaultFieldFilterService implements FieldFilterService
             return null;
         }
 
-        updateFields( fieldMap, schema.getKlass() );
-
         if ( fieldMap.containsKey( "access" ) && schema.isIdentifiableObject() )
         {
             ((BaseIdentifiableObject) object).setAccess( aclService.getAccess( (IdentifiableObject) object, user ) );
@@ -242,7 +281,7 @@ public class DefaultFieldFilterService implements FieldFilterService
                 continue;
             }
 
-            Object returnValue = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+            Object returnValue = PropertyAccessor.getValue( object, property );
             Schema propertySchema = schemaService.getDynamicSchema( property.getKlass() );
 
             FieldMap fieldValue = fieldMap.get( fieldKey );
@@ -252,15 +291,6 @@ public class DefaultFieldFilterService implements FieldFilterService
                 continue;
             }
 
-            if ( property.isCollection() )
-            {
-                updateFields( fieldValue, property.getItemKlass() );
-            }
-            else
-            {
-                updateFields( fieldValue, property.getKlass() );
-            }
-
             if ( fieldValue.isEmpty() )
             {
                 List<String> fields = Preset.defaultAssociationPreset().getFields();
@@ -372,6 +402,54 @@ public class DefaultFieldFilterService implements FieldFilterService
         return complexNode;
     }
 
+    /**
+     * Returns the parsed field map for the given root class and fields,
+     * resolved against the schema of the root class. Field maps are cached
+     * and must not be modified.
+     *
+     * @param wrapper the root class.
+     * @param fields the fields.
+     * @return the field map.
+     */
+    FieldMap getFieldMap( Class<?> wrapper, String fields )
+    {
+        return fieldMapCache.get( wrapper.getName() + "-" + fields,
+            key -> resolveFieldMap( fieldParser.parse( fields ), wrapper ) );
+    }
+
+    /**
+     * Resolves the given field map and all nested field maps against the
+     * schemas of the properties they refer to, so that the field map can be
+     * used for any object of the given class without further changes.
+     *
+     * @param fieldMap the parsed field map.
+     * @param klass the class of the objects.
+     * @return the resolved field map.
+     */
+    private FieldMap resolveFieldMap( FieldMap fieldMap, Class<?> klass )
+    {
+        Schema schema = schemaService.getDynamicSchema( klass );
+
+        if ( schema == null )
+        {
+            return fieldMap;
+        }
+
+        updateFields( fieldMap, schema.getKlass() );
+
+        for ( Map.Entry<String, FieldMap> entry : fieldMap.entrySet() )
+        {
+            Property property = schema.getProperty( entry.getKey() );
+
+            if ( property != null && property.isReadable() )
+            {
+                resolveFieldMap( entry.getValue(), property.isCollection() ? property.getItemKlass() : property.getKlass() );
+            }
+        }
+
+        return fieldMap;
+    }
+
     private void updateFields( FieldMap fieldMap, Class<?> klass )
     {
         // we need two run this (at least) two times, since some of the presets might contain other presets
@@ -530,7 +608,7 @@ public class DefaultFieldFilterService implements FieldFilterService
                 continue;
             }
 
-            Object returnValue = ReflectionUtils.invokeMethod( object, property.getGetterMethod() );
+            Object returnValue = PropertyAccessor.getValue( object, property );
 
             SimpleNode simpleNode = new SimpleNode( field, returnValue );
             simpleNode.setAttribute( property.isAttribute() );
@@ -51,4 +51,12 @@ public interface FieldFilterService
      * Perform inclusion/exclusion on a list of objects.
      */
     CollectionNode toCollectionNode( Class<?> wrapper, FieldFilterParams params );
+
+    /**
+     * Perform inclusion/exclusion on a list of objects. The nodes of the objects
+     * are built one at a time while the returned node is serialized, which
+     * keeps memory use low for large lists. The objects must remain readable
+     * until then.
+     */
+    CollectionNode toStreamingCollectionNode( Class<?> wrapper, FieldFilterParams params );
 }
@@ -31,8 +31,10 @@ package org.hisp.dhis.node;
 import org.hisp.dhis.node.config.Config;
 import org.hisp.dhis.node.types.CollectionNode;
 import org.hisp.dhis.node.types.ComplexNode;
+import org.hisp.dhis.node.types.DeferredCollectionNode;
 import org.hisp.dhis.node.types.RootNode;
 import org.hisp.dhis.node.types.SimpleNode;
+import org.hisp.dhis.node.types.StreamingCollectionNode;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
@@ -127,6 +129,12 @@ public abstract class AbstractNodeSerializer implements NodeSerializer
 
     protected void writeCollectionNode( CollectionNode collectionNode ) throws Exception
     {
+        if ( collectionNode instanceof StreamingCollectionNode )
+        {
+            writeStreamingCollectionNode( (StreamingCollectionNode) collectionNode );
+            return;
+        }
+
         if ( !config.getInclusionStrategy().include( collectionNode.getChildren() ) )
         {
             return;
@@ -143,8 +151,42 @@ public abstract class AbstractNodeSerializer implements NodeSerializer
         endWriteCollectionNode( collectionNode );
     }
 
+    /**
+     * Writes the children of a streaming collection node as they are built,
+     * so that they can be discarded once written. Deferred collection nodes
+     * without children are skipped.
+     */
+    protected void writeStreamingCollectionNode( StreamingCollectionNode collectionNode ) throws Exception
+    {
+        if ( isEmpty( collectionNode ) && ( collectionNode instanceof DeferredCollectionNode ||
+            !config.getInclusionStrategy().include( collectionNode.getChildren() ) ) )
+        {
+            return;
+        }
+
+        startWriteCollectionNode( collectionNode );
+
+        for ( Node node : collectionNode.getStreamingChildren() )
+        {
+            dispatcher( node );
+            flushStream();
+        }
+
+        endWriteCollectionNode( collectionNode );
+    }
+
     protected abstract void endWriteCollectionNode( CollectionNode collectionNode ) throws Exception;
 
+    /**
+     * Indicates whether the given collection node has no children, without
+     * building the children of a streaming collection node.
+     */
+    protected boolean isEmpty( CollectionNode collectionNode )
+    {
+        return collectionNode instanceof StreamingCollectionNode ?
+            ((StreamingCollectionNode) collectionNode).isEmpty() : collectionNode.getChildren().isEmpty();
+    }
+
     protected void dispatcher( Node node ) throws Exception
     {
         switch ( node.getType() )
@@ -172,7 +172,7 @@ public class StAXNodeSerializer extends AbstractNodeSerializer
     @Override
     protected void startWriteCollectionNode( CollectionNode collectionNode ) throws Exception
     {
-        if ( collectionNode.isWrapping() && !collectionNode.getChildren().isEmpty() )
+        if ( collectionNode.isWrapping() && !isEmpty( collectionNode ) )
         {
             writeStartElement( collectionNode );
         }
@@ -181,7 +181,7 @@ public class StAXNodeSerializer extends AbstractNodeSerializer
     @Override
     protected void endWriteCollectionNode( CollectionNode collectionNode ) throws Exception
     {
-        if ( collectionNode.isWrapping() && !collectionNode.getChildren().isEmpty() )
+        if ( collectionNode.isWrapping() && !isEmpty( collectionNode ) )
         {
             writer.writeEndElement();
         }
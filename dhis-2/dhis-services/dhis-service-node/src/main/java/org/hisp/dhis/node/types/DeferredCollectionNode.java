@@ -0,0 +1,132 @@
+package org.hisp.dhis.node.types;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.AbstractIterator;
+import org.hisp.dhis.node.Node;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Collection node whose children are built elsewhere, typically on another
+ * thread, and only awaited when the node is serialized. The children are
+ * released once they have been written.
+ * <p>
+ * As the children are not known when the document is assembled, a deferred
+ * node without children is not written at all.
+ */
+public class DeferredCollectionNode extends StreamingCollectionNode
+{
+    private Supplier<List<Node>> supplier;
+
+    private List<Node> nodes;
+
+    /**
+     * @param name the node name.
+     * @param supplier supplies the children, called once when they are
+     *        first needed.
+     */
+    public DeferredCollectionNode( String name, Supplier<List<Node>> supplier )
+    {
+        super( name, Collections.emptyList(), object -> (Node) object );
+        this.supplier = supplier;
+    }
+
+    private List<Node> getNodes()
+    {
+        if ( supplier != null )
+        {
+            nodes = supplier.get();
+            supplier = null;
+        }
+
+        return nodes;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        List<Node> nodes = getNodes();
+
+        return nodes != null ? nodes.isEmpty() : children.isEmpty();
+    }
+
+    @Override
+    public Iterable<Node> getStreamingChildren()
+    {
+        List<Node> nodes = getNodes();
+
+        if ( nodes == null )
+        {
+            return getChildren();
+        }
+
+        this.nodes = null;
+
+        return () -> new AbstractIterator<Node>()
+        {
+            private final Iterator<Node> iterator = nodes.iterator();
+
+            @Override
+            protected Node computeNext()
+            {
+                while ( iterator.hasNext() )
+                {
+                    Node child = addChild( iterator.next() );
+
+                    if ( child != null )
+                    {
+                        children.clear();
+
+                        return child;
+                    }
+                }
+
+                return endOfData();
+            }
+        };
+    }
+
+    @Override
+    public List<Node> getChildren()
+    {
+        List<Node> nodes = getNodes();
+
+        if ( nodes != null )
+        {
+            addChildren( nodes );
+            this.nodes = null;
+        }
+
+        return super.getChildren();
+    }
+}
@@ -0,0 +1,129 @@
+package org.hisp.dhis.node.types;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.AbstractIterator;
+import org.hisp.dhis.node.Node;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Collection node which builds its children from a list of objects while it is
+ * being serialized. Each child is built when it is written and not kept, so
+ * only one child is in memory at a time instead of the full tree.
+ * <p>
+ * Serializers which need all children up front get them from
+ * {@link #getChildren()}, which builds and keeps them like a regular
+ * collection node.
+ */
+public class StreamingCollectionNode extends CollectionNode
+{
+    private final List<?> objects;
+
+    private final Function<Object, Node> nodeBuilder;
+
+    private boolean built = false;
+
+    /**
+     * @param name the node name.
+     * @param objects the objects to build children from.
+     * @param nodeBuilder builds the child of an object, or returns null if
+     *        the object should be skipped.
+     */
+    public StreamingCollectionNode( String name, List<?> objects, Function<Object, Node> nodeBuilder )
+    {
+        super( name );
+        this.objects = objects;
+        this.nodeBuilder = nodeBuilder;
+    }
+
+    /**
+     * Indicates whether there are no objects to build children from.
+     */
+    public boolean isEmpty()
+    {
+        return built ? children.isEmpty() : objects.isEmpty();
+    }
+
+    /**
+     * Returns the children, building each one when iterated to. Children are
+     * not kept unless they were already built by {@link #getChildren()}.
+     */
+    public Iterable<Node> getStreamingChildren()
+    {
+        if ( built )
+        {
+            return getChildren();
+        }
+
+        return () -> new AbstractIterator<Node>()
+        {
+            private final Iterator<?> iterator = objects.iterator();
+
+            @Override
+            protected Node computeNext()
+            {
+                while ( iterator.hasNext() )
+                {
+                    Node child = nodeBuilder.apply( iterator.next() );
+
+                    if ( child != null && child.getName() != null )
+                    {
+                        // Sets the parent, which serializers rely on, without keeping the child
+
+                        addChild( child );
+                        children.clear();
+
+                        return child;
+                    }
+                }
+
+                return endOfData();
+            }
+        };
+    }
+
+    @Override
+    public List<Node> getChildren()
+    {
+        if ( !built )
+        {
+            built = true;
+
+            for ( Object object : objects )
+            {
+                addChild( nodeBuilder.apply( object ) );
+            }
+        }
+
+        return super.getChildren();
+    }
+}
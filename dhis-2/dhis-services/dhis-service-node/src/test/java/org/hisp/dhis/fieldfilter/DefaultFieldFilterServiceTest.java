@@ -0,0 +1,205 @@
+package org.hisp.dhis.fieldfilter;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementGroup;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.schema.Property;
+import org.hisp.dhis.schema.Schema;
+import org.hisp.dhis.schema.SchemaService;
+import org.hisp.dhis.security.acl.AclService;
+import org.hisp.dhis.user.CurrentUserService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultFieldFilterServiceTest
+{
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private SchemaService schemaService;
+
+    @Mock
+    private AclService aclService;
+
+    @Mock
+    private CurrentUserService currentUserService;
+
+    private FieldParser fieldParser;
+
+    private DefaultFieldFilterService fieldFilterService;
+
+    @Before
+    public void setUp()
+    {
+        when( schemaService.getDynamicSchema( DataElement.class ) ).thenReturn( createSchema( DataElement.class, "dataElement", "dataElements",
+            createProperty( "id", String.class, true ), createProperty( "name", String.class, true ),
+            createProperty( "code", String.class, true ), createProperty( "displayName", String.class, false ),
+            createCollectionProperty( "dataElementGroups", DataElementGroup.class ) ) );
+
+        when( schemaService.getDynamicSchema( DataElementGroup.class ) ).thenReturn( createSchema( DataElementGroup.class, "dataElementGroup", "dataElementGroups",
+            createProperty( "id", String.class, true ), createProperty( "name", String.class, true ) ) );
+
+        when( schemaService.getDynamicSchema( OrganisationUnit.class ) ).thenReturn( createSchema( OrganisationUnit.class, "organisationUnit", "organisationUnits",
+            createProperty( "id", String.class, true ), createProperty( "name", String.class, true ) ) );
+
+        fieldParser = spy( new DefaultFieldParser() );
+        fieldFilterService = new DefaultFieldFilterService( fieldParser, schemaService, aclService, currentUserService );
+        fieldFilterService.init();
+    }
+
+    @Test
+    public void testFieldMapCacheHit()
+    {
+        FieldMap fieldMap = fieldFilterService.getFieldMap( DataElement.class, "id,name" );
+
+        assertSame( fieldMap, fieldFilterService.getFieldMap( DataElement.class, "id,name" ) );
+        assertEquals( 2, fieldMap.size() );
+        assertTrue( fieldMap.containsKey( "id" ) );
+        assertTrue( fieldMap.containsKey( "name" ) );
+
+        verify( fieldParser, times( 1 ) ).parse( "id,name" );
+    }
+
+    @Test
+    public void testFieldMapCacheKeys()
+    {
+        FieldMap fieldMapA = fieldFilterService.getFieldMap( DataElement.class, "id,name" );
+        FieldMap fieldMapB = fieldFilterService.getFieldMap( DataElement.class, "id,code" );
+        FieldMap fieldMapC = fieldFilterService.getFieldMap( OrganisationUnit.class, "id,name" );
+
+        assertNotSame( fieldMapA, fieldMapB );
+        assertNotSame( fieldMapA, fieldMapC );
+        assertTrue( fieldMapA.containsKey( "name" ) );
+        assertTrue( fieldMapB.containsKey( "code" ) );
+
+        verify( fieldParser, times( 2 ) ).parse( "id,name" );
+        verify( fieldParser, times( 1 ) ).parse( "id,code" );
+    }
+
+    @Test
+    public void testResolveAllFields()
+    {
+        FieldMap fieldMap = fieldFilterService.getFieldMap( DataElement.class, "*,!code" );
+
+        assertEquals( 4, fieldMap.size() );
+        assertTrue( fieldMap.containsKey( "id" ) );
+        assertTrue( fieldMap.containsKey( "name" ) );
+        assertTrue( fieldMap.containsKey( "displayName" ) );
+        assertTrue( fieldMap.containsKey( "dataElementGroups" ) );
+        assertFalse( fieldMap.containsKey( "code" ) );
+    }
+
+    @Test
+    public void testResolvePersistedFields()
+    {
+        FieldMap fieldMap = fieldFilterService.getFieldMap( DataElement.class, ":persisted" );
+
+        assertEquals( 4, fieldMap.size() );
+        assertTrue( fieldMap.containsKey( "code" ) );
+        assertFalse( fieldMap.containsKey( "displayName" ) );
+    }
+
+    @Test
+    public void testResolveNestedFields()
+    {
+        FieldMap fieldMap = fieldFilterService.getFieldMap( DataElement.class, "id,dataElementGroups[*]" );
+
+        assertEquals( 2, fieldMap.size() );
+
+        FieldMap groupFieldMap = fieldMap.get( "dataElementGroups" );
+
+        assertEquals( 2, groupFieldMap.size() );
+        assertTrue( groupFieldMap.containsKey( "id" ) );
+        assertTrue( groupFieldMap.containsKey( "name" ) );
+
+        verify( schemaService, atLeastOnce() ).getDynamicSchema( DataElementGroup.class );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private Schema createSchema( Class<?> klass, String singular, String plural, Property... properties )
+    {
+        Map<String, Property> propertyMap = new HashMap<>();
+
+        for ( Property property : properties )
+        {
+            propertyMap.put( property.key(), property );
+        }
+
+        Schema schema = new Schema( klass, singular, plural );
+        schema.setPropertyMap( propertyMap );
+
+        return schema;
+    }
+
+    private Property createProperty( String name, Class<?> klass, boolean persisted )
+    {
+        Property property = new Property( klass );
+        property.setName( name );
+        property.setFieldName( name );
+        property.setReadable( true );
+        property.setPersisted( persisted );
+
+        return property;
+    }
+
+    private Property createCollectionProperty( String collectionName, Class<?> itemKlass )
+    {
+        Property property = createProperty( collectionName, Set.class, true );
+        property.setCollection( true );
+        property.setCollectionName( collectionName );
+        property.setItemKlass( itemKlass );
+
+        return property;
+    }
+}
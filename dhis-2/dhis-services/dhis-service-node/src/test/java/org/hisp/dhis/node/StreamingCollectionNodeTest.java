@@ -0,0 +1,193 @@
+package org.hisp.dhis.node;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.DhisSpringTest;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementGroup;
+import org.hisp.dhis.fieldfilter.FieldFilterParams;
+import org.hisp.dhis.fieldfilter.FieldFilterService;
+import org.hisp.dhis.node.serializers.Jackson2JsonNodeSerializer;
+import org.hisp.dhis.node.serializers.StAXNodeSerializer;
+import org.hisp.dhis.node.types.CollectionNode;
+import org.hisp.dhis.node.types.ComplexNode;
+import org.hisp.dhis.node.types.SimpleNode;
+import org.hisp.dhis.node.types.StreamingCollectionNode;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that streaming collection nodes are serialized exactly like the
+ * collection nodes they replace.
+ */
+public class StreamingCollectionNodeTest
+    extends DhisSpringTest
+{
+    private static final List<String> FIELDS = Collections.singletonList( "id,name,aggregationLevels,dataElementGroups[id,name]" );
+
+    @Autowired
+    private FieldFilterService fieldFilterService;
+
+    @Test
+    public void testSerializeNestedCollections() throws Exception
+    {
+        List<Integer> objects = new ArrayList<>();
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            objects.add( i );
+        }
+
+        CollectionNode collectionNode = new CollectionNode( "items" );
+        objects.forEach( object -> collectionNode.addChild( newItemNode( object, false ) ) );
+
+        CollectionNode streamingNode = new StreamingCollectionNode( "items", objects, object -> newItemNode( (Integer) object, true ) );
+
+        assertSerializedEquals( collectionNode, streamingNode );
+    }
+
+    @Test
+    public void testSerializeEmptyCollection() throws Exception
+    {
+        CollectionNode collectionNode = new CollectionNode( "items" );
+
+        CollectionNode streamingNode = new StreamingCollectionNode( "items", new ArrayList<>(), object -> new ComplexNode( "item" ) );
+
+        assertSerializedEquals( collectionNode, streamingNode );
+    }
+
+    @Test
+    public void testToStreamingCollectionNode() throws Exception
+    {
+        DataElementGroup groupA = createDataElementGroup( 'A' );
+        DataElementGroup groupB = createDataElementGroup( 'B' );
+
+        List<DataElement> dataElements = new ArrayList<>();
+
+        for ( char uniqueCharacter = 'A'; uniqueCharacter <= 'E'; uniqueCharacter++ )
+        {
+            dataElements.add( createDataElement( uniqueCharacter ) );
+        }
+
+        // Elements with empty, single and multiple nested collections
+
+        groupA.addDataElement( dataElements.get( 1 ) );
+        groupA.addDataElement( dataElements.get( 2 ) );
+        groupB.addDataElement( dataElements.get( 2 ) );
+        dataElements.get( 2 ).getAggregationLevels().add( 2 );
+        dataElements.get( 3 ).getAggregationLevels().add( 1 );
+        dataElements.get( 3 ).getAggregationLevels().add( 3 );
+
+        CollectionNode collectionNode = fieldFilterService.toCollectionNode( DataElement.class,
+            new FieldFilterParams( dataElements, FIELDS ) );
+
+        CollectionNode streamingNode = fieldFilterService.toStreamingCollectionNode( DataElement.class,
+            new FieldFilterParams( dataElements, FIELDS ) );
+
+        assertTrue( streamingNode instanceof StreamingCollectionNode );
+        assertSerializedEquals( collectionNode, streamingNode );
+    }
+
+    @Test
+    public void testToStreamingCollectionNodeEmpty() throws Exception
+    {
+        CollectionNode collectionNode = fieldFilterService.toCollectionNode( DataElement.class,
+            new FieldFilterParams( new ArrayList<>(), FIELDS ) );
+
+        CollectionNode streamingNode = fieldFilterService.toStreamingCollectionNode( DataElement.class,
+            new FieldFilterParams( new ArrayList<>(), FIELDS ) );
+
+        assertSerializedEquals( collectionNode, streamingNode );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Creates an item with a nested collection of as many values as the
+     * given number, and an empty nested collection.
+     */
+    private Node newItemNode( int number, boolean streaming )
+    {
+        List<Integer> values = new ArrayList<>();
+
+        for ( int i = 0; i < number; i++ )
+        {
+            values.add( i );
+        }
+
+        Function<Object, Node> valueBuilder = value -> new SimpleNode( "value", value );
+
+        ComplexNode itemNode = new ComplexNode( "item" );
+        itemNode.addChild( new SimpleNode( "id", number ) );
+        itemNode.addChild( newCollectionNode( "values", values, valueBuilder, streaming ) );
+        itemNode.addChild( newCollectionNode( "empty", new ArrayList<>(), valueBuilder, streaming ) );
+
+        return itemNode;
+    }
+
+    private CollectionNode newCollectionNode( String name, List<?> objects, Function<Object, Node> builder, boolean streaming )
+    {
+        if ( streaming )
+        {
+            return new StreamingCollectionNode( name, objects, builder );
+        }
+
+        CollectionNode collectionNode = new CollectionNode( name );
+        objects.forEach( object -> collectionNode.addChild( builder.apply( object ) ) );
+
+        return collectionNode;
+    }
+
+    private void assertSerializedEquals( CollectionNode expected, CollectionNode actual ) throws Exception
+    {
+        assertEquals( serialize( new Jackson2JsonNodeSerializer(), expected ), serialize( new Jackson2JsonNodeSerializer(), actual ) );
+        assertEquals( serialize( new StAXNodeSerializer(), expected ), serialize( new StAXNodeSerializer(), actual ) );
+    }
+
+    private String serialize( NodeSerializer serializer, CollectionNode collectionNode ) throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        serializer.serialize( NodeUtils.createMetadata( collectionNode ), outputStream );
+
+        return new String( outputStream.toByteArray(), StandardCharsets.UTF_8 );
+    }
+}
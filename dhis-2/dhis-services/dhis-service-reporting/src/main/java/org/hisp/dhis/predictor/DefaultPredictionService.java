@@ -37,11 +37,22 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -50,6 +61,7 @@ import org.hisp.dhis.analytics.DataQueryParams;
 import org.hisp.dhis.api.util.DateUtils;
 import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.common.DataCube;
 import org.hisp.dhis.common.DimensionItemType;
 import org.hisp.dhis.common.DimensionalItemObject;
 import org.hisp.dhis.common.DimensionalObject;
@@ -57,10 +69,11 @@ import org.hisp.dhis.common.Grid;
 import org.hisp.dhis.common.IdentifiableObjectManager;
 import org.hisp.dhis.common.ListMap;
 import org.hisp.dhis.common.ListMapMap;
-import org.hisp.dhis.common.Map4;
 import org.hisp.dhis.common.MapMap;
 import org.hisp.dhis.common.MapMapMap;
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.commons.util.DebugUtils;
+import org.hisp.dhis.commons.util.SystemUtils;
 import org.hisp.dhis.constant.ConstantService;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataelement.DataElementOperand;
@@ -90,7 +103,11 @@ import org.hisp.dhis.user.User;
 import org.hisp.quick.BatchHandler;
 import org.hisp.quick.BatchHandlerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -137,6 +154,9 @@ public class DefaultPredictionService
     @Autowired
     private BatchHandlerFactory batchHandlerFactory;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     public void setAnalyticsService( AnalyticsService analyticsService )
     {
         this.analyticsService = analyticsService;
@@ -150,24 +170,56 @@ public class DefaultPredictionService
         this.currentUserService = currentUserService;
     }
 
+    /**
+     * Runs the organisation unit batches of all predictions.
+     */
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init()
+    {
+        AtomicInteger threadIndex = new AtomicInteger();
+
+        executor = Executors.newFixedThreadPool( getThreadPoolSize(), runnable -> {
+            Thread thread = new Thread( runnable, "prediction-" + threadIndex.getAndIncrement() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
     // -------------------------------------------------------------------------
     // Prediction business logic
     // -------------------------------------------------------------------------
 
     public final static String NON_AOC = ""; // String that is not an Attribute Option Combo
 
+    private static final int ORG_UNITS_PER_BATCH = 500;
+
     @Override
     public PredictionSummary predictJob( PredictorJobParameters params, JobConfiguration jobId )
     {
         Date startDate = DateUtils.getDateAfterAddition( new Date(), params.getRelativeStart() );
         Date endDate = DateUtils.getDateAfterAddition( new Date(), params.getRelativeEnd() );
 
-        return predictTask( startDate, endDate, params.getPredictors(), params.getPredictorGroups(), jobId );
+        return predictTask( startDate, endDate, params.getPredictors(), params.getPredictorGroups(), params.isIncremental(), jobId );
     }
 
     @Override
     public PredictionSummary predictTask( Date startDate, Date endDate,
         List<String> predictors, List<String> predictorGroups, JobConfiguration jobId )
+    {
+        return predictTask( startDate, endDate, predictors, predictorGroups, false, jobId );
+    }
+
+    @Override
+    public PredictionSummary predictTask( Date startDate, Date endDate,
+        List<String> predictors, List<String> predictorGroups, boolean incremental, JobConfiguration jobId )
     {
         PredictionSummary predictionSummary;
 
@@ -175,7 +227,7 @@ public class DefaultPredictionService
         {
             notifier.notify( jobId, NotificationLevel.INFO, "Making predictions", false );
 
-            predictionSummary = predictInternal( startDate, endDate, predictors, predictorGroups );
+            predictionSummary = predictInternal( startDate, endDate, predictors, predictorGroups, incremental );
 
             notifier.update( jobId, NotificationLevel.INFO, "Prediction done", true )
                 .addJobSummary( jobId, predictionSummary, PredictionSummary.class );
@@ -192,7 +244,8 @@ public class DefaultPredictionService
         return predictionSummary;
     }
 
-    private PredictionSummary predictInternal( Date startDate, Date endDate, List<String> predictors, List<String> predictorGroups )
+    private PredictionSummary predictInternal( Date startDate, Date endDate, List<String> predictors, List<String> predictorGroups,
+        boolean incremental )
     {
         List<Predictor> predictorList = new ArrayList<>();
 
@@ -218,13 +271,43 @@ public class DefaultPredictionService
             }
         }
 
+        // The same predictor may be selected both directly and through groups
+
+        predictorList = new ArrayList<>( new LinkedHashSet<>( predictorList ) );
+
+        List<List<Predictor>> stages = PredictorDependencyGraph.getStages( predictorList, getInputDataElements( predictorList ) );
+
         PredictionSummary predictionSummary = new PredictionSummary();
 
-        log.info( "Running " + predictorList.size() + " predictors from " + startDate.toString() + " to " + endDate.toString() );
+        log.info( "Running " + predictorList.size() + " predictors in " + stages.size() + " stages from " + startDate.toString() + " to " + endDate.toString() );
 
-        for ( Predictor predictor : predictorList )
+        for ( List<Predictor> stage : stages )
         {
-            predict( predictor, startDate, endDate, predictionSummary );
+            // Predictors in a stage do not use each other's outputs, so the
+            // batches of all of them are submitted before waiting for any
+
+            List<PredictorRun> runs = new ArrayList<>();
+
+            try
+            {
+                for ( Predictor predictor : stage )
+                {
+                    runs.add( submit( predictor, startDate, endDate, incremental, predictionSummary ) );
+                }
+
+                for ( PredictorRun run : runs )
+                {
+                    run.await( predictionSummary );
+
+                    predictorService.updateLastRun( run.predictor, new Date( run.startTime ), startDate, endDate );
+                }
+            }
+            catch ( RuntimeException ex )
+            {
+                runs.forEach( PredictorRun::cancel );
+
+                throw ex;
+            }
         }
 
         log.info( "Finished predictors from " + startDate.toString() + " to " + endDate.toString() + ": " + predictionSummary.toString() );
@@ -235,129 +318,408 @@ public class DefaultPredictionService
     @Override
     public void predict( Predictor predictor, Date startDate, Date endDate, PredictionSummary predictionSummary )
     {
-        Expression generator = predictor.getGenerator();
-        Expression skipTest = predictor.getSampleSkipTest();
-        DataElement outputDataElement = predictor.getOutput();
-
-        Set<String> aggregates = new HashSet<>();
-        Set<String> nonAggregates = new HashSet<>();
-        expressionService.getAggregatesAndNonAggregatesInExpression( generator.getExpression(), aggregates, nonAggregates );
-        Map<String, Double> constantMap = constantService.getConstantMap();
-        Set<Period> outputPeriods = getPeriodsBetweenDates( predictor.getPeriodType(), startDate, endDate );
-        Set<Period> existingOutputPeriods = getExistingPeriods( outputPeriods );
-        ListMap<Period, Period> samplePeriodsMap = getSamplePeriodsMap( outputPeriods, predictor );
-        Set<Period> allSamplePeriods = samplePeriodsMap.uniqueValues();
-        Set<Period> existingSamplePeriods = getExistingPeriods( allSamplePeriods );
-        Set<DimensionalItemObject> aggregateDimensionItems = getDimensionItems( aggregates, skipTest );
-        Set<DimensionalItemObject> nonAggregateDimensionItems = getDimensionItems( nonAggregates, null );
-        User currentUser = currentUserService.getCurrentUser();
-        Set<String> defaultOptionComboAsSet = Sets.newHashSet( categoryService.getDefaultCategoryOptionCombo().getUid() );
-        Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> emptyMap4 = new Map4<>();
-        MapMapMap<Period, String, DimensionalItemObject, Double> emptyMapMapMap = new MapMapMap<>();
-        boolean usingAttributeOptions = hasAttributeOptions( aggregateDimensionItems ) || hasAttributeOptions( nonAggregateDimensionItems );
+        PredictorRun run = submit( predictor, startDate, endDate, false, predictionSummary );
+
+        try
+        {
+            run.await( predictionSummary );
+        }
+        catch ( RuntimeException ex )
+        {
+            run.cancel();
 
-        CategoryOptionCombo outputOptionCombo = predictor.getOutputCombo() == null ?
-            categoryService.getDefaultCategoryOptionCombo() : predictor.getOutputCombo();
+            throw ex;
+        }
 
-        Date now = new Date();
+        predictorService.updateLastRun( predictor, new Date( run.startTime ), startDate, endDate );
+    }
+
+    /**
+     * Prepares a predictor and submits a task for each batch of organisation
+     * units at each of its levels to the shared executor. Each task runs in
+     * its own transaction, with its own session and batch handler, in the
+     * security context of the caller.
+     *
+     * @param predictor the predictor.
+     * @param startDate the start date of the output periods.
+     * @param endDate the end date of the output periods.
+     * @param incremental whether to recompute only the predictions whose
+     *        input data changed since the last run.
+     * @param predictionSummary the prediction summary to update.
+     * @return the run of the predictor, to wait for.
+     */
+    private PredictorRun submit( Predictor predictor, Date startDate, Date endDate, boolean incremental,
+        PredictionSummary predictionSummary )
+    {
+        PredictorRun run = new PredictorRun( predictor );
+
+        run.generator = copyOf( predictor.getGenerator() );
+        run.skipTest = copyOf( predictor.getSampleSkipTest() );
+        run.outputDataElementId = predictor.getOutput().getId();
+
+        expressionService.getAggregatesAndNonAggregatesInExpression( run.generator.getExpression(), run.aggregates, run.nonAggregates );
+        run.constantMap = constantService.getConstantMap();
+        run.outputPeriods = getPeriodsBetweenDates( predictor.getPeriodType(), startDate, endDate );
+        run.existingOutputPeriods = getExistingPeriods( run.outputPeriods );
+        run.samplePeriodsMap = getSamplePeriodsMap( run.outputPeriods, predictor );
+        run.allSamplePeriods = run.samplePeriodsMap.uniqueValues();
+        run.existingSamplePeriods = getExistingPeriods( run.allSamplePeriods );
+        Set<DimensionalItemObject> aggregateDimensionItems = getDimensionItems( run.aggregates, run.skipTest );
+        Set<DimensionalItemObject> nonAggregateDimensionItems = getDimensionItems( run.nonAggregates, null );
+        run.defaultOptionComboAsSet = Sets.newHashSet( categoryService.getDefaultCategoryOptionCombo().getUid() );
+        run.usingAttributeOptions = hasAttributeOptions( aggregateDimensionItems ) || hasAttributeOptions( nonAggregateDimensionItems );
+
+        run.outputOptionComboId = predictor.getOutputCombo() == null ?
+            categoryService.getDefaultCategoryOptionCombo().getId() : predictor.getOutputCombo().getId();
+
+        if ( incremental && predictor.getLastRun() != null && !predictor.getLastUpdated().after( predictor.getLastRun() ) )
+        {
+            Set<DimensionalItemObject> inputs = Sets.union( aggregateDimensionItems, nonAggregateDimensionItems );
+
+            run.changedOutputPeriods = getChangedOutputPeriods( run, predictor, inputs );
+        }
+
+        User currentUser = currentUserService.getCurrentUser();
         Set<OrganisationUnit> currentUserOrgUnits = new HashSet<>();
-        String storedBy = "system-process";
 
         if ( currentUser != null )
         {
             currentUserOrgUnits = currentUser.getOrganisationUnits();
-            storedBy = currentUser.getUsername();
+            run.storedBy = currentUser.getUsername();
         }
 
         predictionSummary.incrementPredictors();
 
+        // Output periods are persisted and committed up front, as the batches
+        // write in separate transactions and would otherwise each try to add
+        // the same new periods
+
+        TransactionTemplate newTransaction = new TransactionTemplate( transactionTemplate.getTransactionManager() );
+        newTransaction.setPropagationBehavior( TransactionDefinition.PROPAGATION_REQUIRES_NEW );
+        newTransaction.execute( status -> periodService.reloadPeriods( new ArrayList<>( run.outputPeriods ) ) );
+
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+
         for ( OrganisationUnitLevel orgUnitLevel : predictor.getOrganisationUnitLevels() )
         {
             List<OrganisationUnit> orgUnitsAtLevel = organisationUnitService.getOrganisationUnitsAtOrgUnitLevels(
                 Lists.newArrayList( orgUnitLevel ), currentUserOrgUnits );
 
+            if ( run.changedOutputPeriods != null )
+            {
+                orgUnitsAtLevel = orgUnitsAtLevel.stream()
+                    .filter( orgUnit -> !run.getOutputPeriods( orgUnit ).isEmpty() )
+                    .collect( Collectors.toList() );
+            }
+
             if ( orgUnitsAtLevel.size() == 0 )
             {
                 continue;
             }
 
-            List<List<OrganisationUnit>> orgUnitLists = Lists.partition(orgUnitsAtLevel, 500);
+            // Batches get organisation unit ids, as entities of this session
+            // must not be used by the worker threads
+
+            List<Integer> orgUnitIds = orgUnitsAtLevel.stream()
+                .map( OrganisationUnit::getId )
+                .collect( Collectors.toList() );
+
+            for ( List<Integer> orgUnitIdBatch : Lists.partition( orgUnitIds, ORG_UNITS_PER_BATCH ) )
+            {
+                run.batches.add( executor.submit( () -> {
+                    SecurityContextHolder.setContext( securityContext );
+
+                    try
+                    {
+                        return transactionTemplate.execute( status -> predictOrgUnits( run, orgUnitIdBatch, predictionSummary ) );
+                    }
+                    finally
+                    {
+                        SecurityContextHolder.clearContext();
+                        run.batchDone();
+                    }
+                } ) );
+            }
+        }
+
+        return run;
+    }
+
+    /**
+     * Makes and writes the predictions of a predictor for a batch of
+     * organisation units. The entities used are read in the session of the
+     * batch.
+     *
+     * @param run the run of the predictor.
+     * @param orgUnitIds the organisation unit ids.
+     * @param predictionSummary the prediction summary to update.
+     * @return the number of predictions made.
+     */
+    private Integer predictOrgUnits( PredictorRun run, List<Integer> orgUnitIds, PredictionSummary predictionSummary )
+    {
+        Expression generator = run.generator;
+        DataElement outputDataElement = idObjectManager.get( DataElement.class, run.outputDataElementId );
+        CategoryOptionCombo outputOptionCombo = categoryService.getCategoryOptionCombo( run.outputOptionComboId );
+        List<OrganisationUnit> orgUnits = organisationUnitService.getOrganisationUnits( orgUnitIds );
+        Set<DimensionalItemObject> aggregateDimensionItems = getDimensionItems( run.aggregates, run.skipTest );
+        Set<DimensionalItemObject> nonAggregateDimensionItems = getDimensionItems( run.nonAggregates, null );
+        Map<String, Double> constantMap = run.constantMap;
+        Set<String> defaultOptionComboAsSet = run.defaultOptionComboAsSet;
+        Date now = new Date();
+
+        DataCube<OrganisationUnit, Period, DimensionalItemObject> aggregateData =
+            aggregateDimensionItems.isEmpty() ? new DataCube<>() :
+                getDataValues( aggregateDimensionItems, run.allSamplePeriods, run.existingSamplePeriods, orgUnits );
+
+        DataCube<OrganisationUnit, Period, DimensionalItemObject> nonAggregateData =
+            nonAggregateDimensionItems.isEmpty() ? new DataCube<>() :
+                getDataValues( nonAggregateDimensionItems, run.outputPeriods, run.existingOutputPeriods, orgUnits );
+
+        List<DataValue> predictions = new ArrayList<>();
+
+        for ( OrganisationUnit orgUnit : orgUnits )
+        {
+            // Sample data is held compactly for the whole batch and turned
+            // into maps for one organisation unit at a time
+
+            MapMapMap<Period, String, DimensionalItemObject, Double> aggregateDataMap = aggregateData.getSlice( orgUnit );
+
+            MapMapMap<Period, String, DimensionalItemObject, Double> nonAggregateDataMap = nonAggregateData.getSlice( orgUnit );
+
+            applySkipTest( aggregateDataMap, run.skipTest, constantMap );
 
-            for ( List<OrganisationUnit> orgUnits : orgUnitLists )
+            for ( Period period : run.getOutputPeriods( orgUnit ) )
             {
-                Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> aggregateDataMap4 =
-                    aggregateDimensionItems.isEmpty() ? emptyMap4 :
-                        getDataValues( aggregateDimensionItems, allSamplePeriods, existingSamplePeriods, orgUnits );
+                ListMapMap<String, String, Double> aggregateSampleMap = getAggregateSamples( aggregateDataMap,
+                    run.aggregates, run.samplePeriodsMap.get( period ), constantMap, generator.getMissingValueStrategy() );
 
-                Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> nonAggregateDataMap4 =
-                    nonAggregateDimensionItems.isEmpty() ? emptyMap4 :
-                        getDataValues( nonAggregateDimensionItems, outputPeriods, existingOutputPeriods, orgUnits );
+                MapMap<String, DimensionalItemObject, Double> nonAggregateSampleMap = firstNonNull(
+                    nonAggregateDataMap.get( period ), new MapMap<>() );
 
-                List<DataValue> predictions = new ArrayList<>();
+                Set<String> attributeOptionCombos = run.usingAttributeOptions ?
+                    Sets.union( aggregateSampleMap.keySet(), nonAggregateSampleMap.keySet() ) : defaultOptionComboAsSet;
 
-                for ( OrganisationUnit orgUnit : orgUnits )
+                if ( attributeOptionCombos.isEmpty() && generator.getMissingValueStrategy() == MissingValueStrategy.NEVER_SKIP )
                 {
-                    MapMapMap<Period, String, DimensionalItemObject, Double> aggregateDataMap = aggregateDataMap4.get( orgUnit );
+                    attributeOptionCombos = defaultOptionComboAsSet;
+                }
 
-                    MapMapMap<Period, String, DimensionalItemObject, Double> nonAggregateDataMap =
-                        firstNonNull( nonAggregateDataMap4.get( orgUnit ), emptyMapMapMap );
+                ListMap<String, Double> aggregateSampleMapNonAoc = aggregateSampleMap.get( NON_AOC );
 
-                    applySkipTest( aggregateDataMap, skipTest, constantMap );
+                Map<DimensionalItemObject, Double> nonAggregateSampleMapNonAoc = nonAggregateSampleMap.get( NON_AOC );
 
-                    for ( Period period : outputPeriods )
+                for ( String aoc : attributeOptionCombos )
+                {
+                    if ( NON_AOC.compareTo( aoc ) == 0 )
                     {
-                        ListMapMap<String, String, Double> aggregateSampleMap = getAggregateSamples( aggregateDataMap,
-                            aggregates, samplePeriodsMap.get( period ), constantMap, generator.getMissingValueStrategy() );
+                        continue;
+                    }
 
-                        MapMap<String, DimensionalItemObject, Double> nonAggregateSampleMap = firstNonNull(
-                            nonAggregateDataMap.get( period ), new MapMap<>() );
+                    ListMap<String, Double> aggregateValueMap = ListMap.union( aggregateSampleMap.get( aoc ), aggregateSampleMapNonAoc );
 
-                        Set<String> attributeOptionCombos = usingAttributeOptions ?
-                            Sets.union( aggregateSampleMap.keySet(), nonAggregateSampleMap.keySet() ) : defaultOptionComboAsSet;
+                    Map<DimensionalItemObject, Double> nonAggregateValueMap = combine( nonAggregateSampleMap.get( aoc ), nonAggregateSampleMapNonAoc );
 
-                        if ( attributeOptionCombos.isEmpty() && generator.getMissingValueStrategy() == MissingValueStrategy.NEVER_SKIP )
-                        {
-                            attributeOptionCombos = defaultOptionComboAsSet;
-                        }
+                    Double value = expressionService.getExpressionValue( generator, nonAggregateValueMap,
+                        constantMap, null, period.getDaysInPeriod(), aggregateValueMap );
 
-                        ListMap<String, Double> aggregateSampleMapNonAoc = aggregateSampleMap.get( NON_AOC );
+                    if ( value != null && !value.isNaN() && !value.isInfinite() &&
+                        !dataValueIsZeroAndInsignificant( Double.toString( value ), outputDataElement ) )
+                    {
+                        String valueString = outputDataElement.getValueType().isInteger() ?
+                            Long.toString( Math.round( value ) ) :
+                            Double.toString( MathUtils.roundFraction( value, 4 ) );
+
+                        predictions.add( new DataValue( outputDataElement,
+                            periodService.reloadPeriod( period ), orgUnit,
+                            outputOptionCombo, categoryService.getCategoryOptionCombo( aoc ),
+                            valueString, run.storedBy, now, null ) );
+                    }
+                }
+            }
+        }
 
-                        Map<DimensionalItemObject, Double> nonAggregateSampleMapNonAoc = nonAggregateSampleMap.get( NON_AOC );
+        writePredictions( predictions, outputDataElement, outputOptionCombo,
+            run.outputPeriods, orgUnits, run::getOutputPeriods, run.storedBy, predictionSummary );
 
-                        for ( String aoc : attributeOptionCombos )
-                        {
-                            if ( NON_AOC.compareTo( aoc ) == 0 )
-                            {
-                                continue;
-                            }
-
-                            ListMap<String, Double> aggregateValueMap = ListMap.union( aggregateSampleMap.get( aoc ), aggregateSampleMapNonAoc );
-
-                            Map<DimensionalItemObject, Double> nonAggregateValueMap = combine( nonAggregateSampleMap.get( aoc ), nonAggregateSampleMapNonAoc );
-
-                            Double value = expressionService.getExpressionValue( generator, nonAggregateValueMap,
-                                constantMap, null, period.getDaysInPeriod(), aggregateValueMap );
-
-                            if ( value != null && !value.isNaN() && !value.isInfinite() &&
-                                !dataValueIsZeroAndInsignificant( Double.toString( value ), outputDataElement ) )
-                            {
-                                String valueString = outputDataElement.getValueType().isInteger() ?
-                                    Long.toString( Math.round( value ) ) :
-                                    Double.toString( MathUtils.roundFraction( value, 4 ) );
-
-                                predictions.add( new DataValue( outputDataElement,
-                                    periodService.reloadPeriod( period ), orgUnit,
-                                    outputOptionCombo, categoryService.getCategoryOptionCombo( aoc ),
-                                    valueString, storedBy, now, null ) );
-                            }
-                        }
+        return predictions.size();
+    }
+
+    /**
+     * Finds the output periods of each organisation unit whose predictions
+     * may change because input data was added, updated or deleted since the
+     * last run of the predictor. Data of a date affects the output periods
+     * containing it, through the non-aggregate items, and the output periods
+     * with a sample period containing it. Data of an organisation unit
+     * affects the organisation unit and its ancestors.
+     * <p>
+     * Output periods outside the range of the last run are not covered by it
+     * and are kept as uncovered output periods of the run.
+     * <p>
+     * Only changes of aggregate data values are tracked. Event data is read
+     * from the analytics tables, which may be generated after the event was
+     * changed, so predictors with event inputs are always run in full.
+     *
+     * @param run the run of the predictor.
+     * @param predictor the predictor.
+     * @param inputs the items used by the generator and skip test.
+     * @return the changed output periods by organisation unit uid, or null if
+     *         changes of some input can not be tracked.
+     */
+    private SetMap<String, Period> getChangedOutputPeriods( PredictorRun run, Predictor predictor,
+        Set<DimensionalItemObject> inputs )
+    {
+        Set<DataElement> dataElements = new HashSet<>();
+
+        for ( DimensionalItemObject item : inputs )
+        {
+            if ( item instanceof DataElement )
+            {
+                dataElements.add( (DataElement) item );
+            }
+            else if ( item instanceof DataElementOperand )
+            {
+                dataElements.add( ( (DataElementOperand) item ).getDataElement() );
+            }
+            else
+            {
+                log.debug( "Changes of " + item.getDimensionItem() + " can not be tracked, running predictor " + predictor.getUid() + " in full" );
+
+                return null;
+            }
+        }
+
+        run.uncoveredOutputPeriods = run.outputPeriods.stream()
+            .filter( period -> period.getStartDate().before( predictor.getLastRunStartDate() ) ||
+                period.getEndDate().after( predictor.getLastRunEndDate() ) )
+            .collect( Collectors.toSet() );
+
+        SetMap<String, Date> changedDates = predictorService.getChangedDataDates( dataElements,
+            predictor.getPeriodType(), predictor.getLastRun() );
+
+        Map<Date, Set<Period>> affectedPeriodsByDate = new HashMap<>();
+
+        SetMap<String, Period> changedOutputPeriods = new SetMap<>();
+
+        for ( Map.Entry<String, Set<Date>> entry : changedDates.entrySet() )
+        {
+            Set<Period> affectedPeriods = new HashSet<>();
+
+            for ( Date date : entry.getValue() )
+            {
+                affectedPeriods.addAll( affectedPeriodsByDate.computeIfAbsent( date, d -> getAffectedOutputPeriods( run, d ) ) );
+            }
+
+            if ( !affectedPeriods.isEmpty() )
+            {
+                for ( String uid : entry.getKey().split( "/" ) )
+                {
+                    if ( !uid.isEmpty() )
+                    {
+                        changedOutputPeriods.putValues( uid, affectedPeriods );
                     }
                 }
+            }
+        }
+
+        log.info( "Predictor " + predictor.getUid() + " has changed input data for " + changedOutputPeriods.size() +
+            " organisation units and " + run.uncoveredOutputPeriods.size() + " uncovered output periods since " + predictor.getLastRun() );
+
+        return changedOutputPeriods;
+    }
+
+    /**
+     * Gets the output periods whose predictions use data of the given date.
+     */
+    private Set<Period> getAffectedOutputPeriods( PredictorRun run, Date date )
+    {
+        Set<Period> affectedPeriods = new HashSet<>();
 
-                writePredictions( predictions, outputDataElement, outputOptionCombo,
-                    outputPeriods, orgUnits, storedBy, predictionSummary );
+        for ( Period outputPeriod : run.outputPeriods )
+        {
+            if ( contains( outputPeriod, date ) ||
+                run.samplePeriodsMap.get( outputPeriod ).stream().anyMatch( samplePeriod -> contains( samplePeriod, date ) ) )
+            {
+                affectedPeriods.add( outputPeriod );
             }
         }
+
+        return affectedPeriods;
+    }
+
+    private boolean contains( Period period, Date date )
+    {
+        return !date.before( period.getStartDate() ) && !date.after( period.getEndDate() );
+    }
+
+    /**
+     * Gets the data elements used by the generator and skip test of each
+     * predictor, which are the inputs other predictors may produce.
+     *
+     * @param predictors the predictors.
+     * @return the input data elements of each predictor.
+     */
+    private Map<Predictor, Set<DataElement>> getInputDataElements( List<Predictor> predictors )
+    {
+        Map<Predictor, Set<DataElement>> inputs = new HashMap<>();
+
+        for ( Predictor predictor : predictors )
+        {
+            Set<DimensionalItemObject> items = new HashSet<>( expressionService.getDimensionalItemObjectsInExpression(
+                predictor.getGenerator().getExpression() ) );
+
+            if ( predictor.getSampleSkipTest() != null )
+            {
+                items.addAll( expressionService.getDimensionalItemObjectsInExpression( predictor.getSampleSkipTest().getExpression() ) );
+            }
+
+            Set<DataElement> dataElements = new HashSet<>();
+
+            for ( DimensionalItemObject item : items )
+            {
+                if ( item instanceof DataElement )
+                {
+                    dataElements.add( (DataElement) item );
+                }
+                else if ( item instanceof DataElementOperand )
+                {
+                    dataElements.add( ( (DataElementOperand) item ).getDataElement() );
+                }
+            }
+
+            inputs.put( predictor, dataElements );
+        }
+
+        return inputs;
+    }
+
+    /**
+     * Determines how many threads to use for making predictions.
+     *
+     * @return the number of threads.
+     */
+    private int getThreadPoolSize()
+    {
+        int threadPoolSize = SystemUtils.getCpuCores();
+
+        if ( threadPoolSize > 2 )
+        {
+            threadPoolSize--;
+        }
+
+        return threadPoolSize;
+    }
+
+    /**
+     * Copies an expression of a predictor into a value object which does not
+     * belong to any session, to be used by the worker threads.
+     *
+     * @param expression the expression, or null.
+     * @return the copy, or null if the expression is null.
+     */
+    private Expression copyOf( Expression expression )
+    {
+        return expression == null ? null : new Expression( expression.getExpression(),
+            expression.getDescription(), expression.getMissingValueStrategy() );
     }
 
     private Map<DimensionalItemObject, Double> combine ( Map<DimensionalItemObject, Double> a, Map<DimensionalItemObject, Double> b )
@@ -644,16 +1006,16 @@ public class DefaultPredictionService
      *
      * DimensionalItemObjects may reference aggregate and/or event data.
      *
-     * Returns the values mapped by Period, then attribute option combo UID,
-     * then DimensionalItemObject.
+     * Returns the values by OrganisationUnit, Period, attribute option combo
+     * UID and DimensionalItemObject.
      *
      * @param dimensionItems the dimensionItems.
      * @param allPeriods all data Periods (to fetch event data).
      * @param existingPeriods existing data Periods (to fetch aggregate data).
      * @param orgUnits the roots of the OrganisationUnit trees to include.
-     * @return the map of values
+     * @return the cube of values
      */
-    private Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> getDataValues(
+    private DataCube<OrganisationUnit, Period, DimensionalItemObject> getDataValues(
         Set<DimensionalItemObject> dimensionItems, Set<Period> allPeriods, Set<Period> existingPeriods,
         List<OrganisationUnit> orgUnits)
     {
@@ -661,7 +1023,7 @@ public class DefaultPredictionService
         Set<DataElementOperand> dataElementOperands = new HashSet<>();
         Set<DimensionalItemObject> eventAttributeOptionObjects = new HashSet<>();
         Set<DimensionalItemObject> eventNonAttributeOptionObjects = new HashSet<>();
-        Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> dataValues = new Map4<>();
+        DataCube<OrganisationUnit, Period, DimensionalItemObject> dataValues = new DataCube<>();
 
         for ( DimensionalItemObject o : dimensionItems )
         {
@@ -690,18 +1052,18 @@ public class DefaultPredictionService
 
         if ( !eventAttributeOptionObjects.isEmpty() && !allPeriods.isEmpty() )
         {
-            dataValues.putMap( getEventDataValues( eventAttributeOptionObjects, true, allPeriods, orgUnits ) );
+            dataValues.putAll( getEventDataValues( eventAttributeOptionObjects, true, allPeriods, orgUnits ) );
         }
 
         if ( !eventNonAttributeOptionObjects.isEmpty() && !allPeriods.isEmpty() )
         {
-            dataValues.putMap( getEventDataValues( eventNonAttributeOptionObjects, false, allPeriods, orgUnits ) );
+            dataValues.putAll( getEventDataValues( eventNonAttributeOptionObjects, false, allPeriods, orgUnits ) );
         }
 
         return dataValues;
     }
 
-    private Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> getAggregateDataValues(
+    private DataCube<OrganisationUnit, Period, DimensionalItemObject> getAggregateDataValues(
         Set<DataElement> dataElements, Set<DataElementOperand> dataElementOperands, Set<Period> periods, List<OrganisationUnit> orgUnits )
     {
         DataExportParams params = new DataExportParams();
@@ -720,7 +1082,7 @@ public class DefaultPredictionService
         Map<Integer, OrganisationUnit> orgUnitLookup = orgUnits.stream().collect( Collectors.toMap( OrganisationUnit::getId, ou -> ou ) );
         Map<Integer, CategoryOptionCombo> aocLookup = new HashMap<>();
 
-        Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> dataValues = new Map4<>();
+        DataCube<OrganisationUnit, Period, DimensionalItemObject> dataValues = new DataCube<>();
 
         for ( DeflatedDataValue dv : deflatedDataValues )
         {
@@ -752,11 +1114,11 @@ public class DefaultPredictionService
         return dataValues;
     }
 
-    private void addAggregateDataValue( Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> dataValues,
+    private void addAggregateDataValue( DataCube<OrganisationUnit, Period, DimensionalItemObject> dataValues,
         OrganisationUnit orgUnit, Period p, CategoryOptionCombo attributeOptionCombo, DimensionalItemObject dimensionItem,
         String stringValue )
     {
-        Double value;
+        double value;
 
         try
         {
@@ -767,14 +1129,7 @@ public class DefaultPredictionService
             return; // Ignore any non-numeric values.
         }
 
-        Double valueSoFar = dataValues.getValue( orgUnit, p, attributeOptionCombo.getUid(), dimensionItem );
-
-        if ( valueSoFar != null )
-        {
-            value += valueSoFar;
-        }
-
-        dataValues.putEntry( orgUnit, p, attributeOptionCombo.getUid(), dimensionItem, value );
+        dataValues.addValue( orgUnit, p, attributeOptionCombo.getUid(), dimensionItem, value );
     }
 
     /**
@@ -790,10 +1145,10 @@ public class DefaultPredictionService
      * @param orgUnits the roots of the OrganisationUnit trees to include.
      * @return the map of values
      */
-    private Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> getEventDataValues(
+    private DataCube<OrganisationUnit, Period, DimensionalItemObject> getEventDataValues(
         Set<DimensionalItemObject> dimensionItems, boolean hasAttributeOptions, Set<Period> periods, List<OrganisationUnit> orgUnits )
     {
-        Map4<OrganisationUnit, Period, String, DimensionalItemObject, Double> eventDataValues = new Map4<>();
+        DataCube<OrganisationUnit, Period, DimensionalItemObject> eventDataValues = new DataCube<>();
 
         DataQueryParams.Builder paramsBuilder = DataQueryParams.newBuilder()
             .withPeriods( new ArrayList<Period>( periods ) )
@@ -829,7 +1184,10 @@ public class DefaultPredictionService
             DimensionalItemObject dimensionItem = dimensionItemLookup.get( dx );
             OrganisationUnit orgUnit = orgUnitLookup.get( ou );
 
-            eventDataValues.putEntry( orgUnit, period, ao, dimensionItem, vl );
+            if ( vl != null )
+            {
+                eventDataValues.putValue( orgUnit, period, ao, dimensionItem, vl );
+            }
         }
 
         return eventDataValues;
@@ -844,11 +1202,12 @@ public class DefaultPredictionService
      * @param outputOptionCombo Predictor output category option commbo.
      * @param periods Periods to predict for.
      * @param orgUnits Organisation units to predict for.
+     * @param outputPeriods Periods predicted for each organisation unit.
      * @param summary Prediction summary to update.
      */
     private void writePredictions( List<DataValue> predictions, DataElement outputDataElement,
         CategoryOptionCombo outputOptionCombo, Set<Period> periods, List<OrganisationUnit> orgUnits,
-        String storedBy, PredictionSummary summary )
+        Function<OrganisationUnit, Set<Period>> outputPeriods, String storedBy, PredictionSummary summary )
     {
         DataExportParams params = new DataExportParams();
         params.setDataElementOperands( Sets.newHashSet( new DataElementOperand( outputDataElement, outputOptionCombo ) ) );
@@ -856,7 +1215,14 @@ public class DefaultPredictionService
         params.setOrganisationUnits( new HashSet<>( orgUnits ) );
         params.setReturnParentOrgUnit( true );
 
-        List<DeflatedDataValue> oldValueList = dataValueService.getDeflatedDataValues( params );
+        Map<Integer, OrganisationUnit> orgUnitLookup = orgUnits.stream().collect( Collectors.toMap( OrganisationUnit::getId, o -> o ) );
+        Map<Integer, Period> periodLookup = params.getPeriods().stream().collect( Collectors.toMap( Period::getId, p -> p ) );
+
+        // Values of periods which were not predicted for are left as they are
+
+        List<DeflatedDataValue> oldValueList = dataValueService.getDeflatedDataValues( params ).stream()
+            .filter( d -> outputPeriods.apply( orgUnitLookup.get( d.getSourceId() ) ).contains( periodLookup.get( d.getPeriodId() ) ) )
+            .collect( Collectors.toList() );
 
         Map<String, DeflatedDataValue> oldValues = oldValueList.stream().collect( Collectors.toMap(
             d -> d.getPeriodId() + "-" + d.getSourceId() + "-" + d.getAttributeOptionComboId(), d -> d ) );
@@ -911,8 +1277,6 @@ public class DefaultPredictionService
             }
         }
 
-        Map<Integer, OrganisationUnit> orgUnitLookup = orgUnits.stream().collect( Collectors.toMap( OrganisationUnit::getId, o -> o ) );
-
         for ( DeflatedDataValue oldValue : oldValues.values() )
         {
             summary.incrementDeleted();
@@ -927,4 +1291,129 @@ public class DefaultPredictionService
 
         dataValueBatchHandler.flush();
     }
+
+    /**
+     * A predictor being run: the state prepared once for the predictor and
+     * shared read-only by its organisation unit batches, and the batches
+     * submitted for it. The shared state holds ids and initialized values
+     * only, no entities which would need the session of the preparing thread.
+     */
+    private static class PredictorRun
+    {
+        private final Predictor predictor;
+
+        private final long startTime = System.currentTimeMillis();
+
+        private final AtomicLong endTime = new AtomicLong( startTime );
+
+        private final List<Future<?>> batches = new ArrayList<>();
+
+        private Expression generator;
+
+        private Expression skipTest;
+
+        private int outputDataElementId;
+
+        private int outputOptionComboId;
+
+        private Set<String> aggregates = new HashSet<>();
+
+        private Set<String> nonAggregates = new HashSet<>();
+
+        private Map<String, Double> constantMap;
+
+        private Set<Period> outputPeriods;
+
+        /**
+         * In incremental mode, the output periods which have changed input
+         * data by organisation unit uid, otherwise null.
+         */
+        private SetMap<String, Period> changedOutputPeriods;
+
+        /**
+         * In incremental mode, the output periods not covered by the last run.
+         */
+        private Set<Period> uncoveredOutputPeriods = new HashSet<>();
+
+        private Set<Period> existingOutputPeriods;
+
+        private ListMap<Period, Period> samplePeriodsMap;
+
+        private Set<Period> allSamplePeriods;
+
+        private Set<Period> existingSamplePeriods;
+
+        private Set<String> defaultOptionComboAsSet;
+
+        private boolean usingAttributeOptions;
+
+        private String storedBy = "system-process";
+
+        PredictorRun( Predictor predictor )
+        {
+            this.predictor = predictor;
+        }
+
+        /**
+         * Gets the output periods to predict for an organisation unit.
+         */
+        Set<Period> getOutputPeriods( OrganisationUnit orgUnit )
+        {
+            if ( changedOutputPeriods == null )
+            {
+                return outputPeriods;
+            }
+
+            Set<Period> changed = changedOutputPeriods.get( orgUnit.getUid() );
+
+            return changed == null ? uncoveredOutputPeriods : Sets.union( uncoveredOutputPeriods, changed );
+        }
+
+        void batchDone()
+        {
+            endTime.accumulateAndGet( System.currentTimeMillis(), Math::max );
+        }
+
+        /**
+         * Cancels the batches which have not finished, as the executor is
+         * shared and keeps running them otherwise.
+         */
+        void cancel()
+        {
+            batches.forEach( batch -> batch.cancel( true ) );
+        }
+
+        /**
+         * Waits for all batches of the predictor to finish and records the
+         * time taken in the prediction summary. Rethrows the first failure
+         * of any batch.
+         */
+        void await( PredictionSummary predictionSummary )
+        {
+            for ( Future<?> batch : batches )
+            {
+                try
+                {
+                    batch.get();
+                }
+                catch ( InterruptedException ex )
+                {
+                    Thread.currentThread().interrupt();
+
+                    throw new RuntimeException( "Interrupted while running predictor " + predictor.getUid(), ex );
+                }
+                catch ( ExecutionException ex )
+                {
+                    throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() :
+                        new RuntimeException( ex.getCause() );
+                }
+            }
+
+            long time = endTime.get() - startTime;
+
+            predictionSummary.addPredictorTime( predictor.getUid(), time );
+
+            log.debug( "Ran predictor " + predictor.getUid() + " in " + batches.size() + " batches in " + time + " ms" );
+        }
+    }
 }
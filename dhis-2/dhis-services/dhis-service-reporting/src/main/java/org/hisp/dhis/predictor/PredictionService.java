@@ -44,5 +44,15 @@ public interface PredictionService
     PredictionSummary predictTask( Date startDate, Date endDate,
         List<String> predictors, List<String> predictorGroups, JobConfiguration jobId );
 
+    /**
+     * Makes predictions for the given predictors and predictor groups. In
+     * incremental mode, only predictions whose input data changed since the
+     * last successful run of a predictor are recomputed. Output periods not
+     * covered by the last run, and predictors changed since then, are always
+     * recomputed in full.
+     */
+    PredictionSummary predictTask( Date startDate, Date endDate,
+        List<String> predictors, List<String> predictorGroups, boolean incremental, JobConfiguration jobId );
+
     void predict( Predictor predictor, Date startDate, Date endDate, PredictionSummary predictionSummary );
 }
@@ -35,6 +35,9 @@ import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
 import org.hisp.dhis.common.DxfNamespaces;
 import org.hisp.dhis.dxf2.webmessage.AbstractWebMessageResponse;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author Jim Grace
  */
@@ -55,6 +58,8 @@ public class PredictionSummary extends AbstractWebMessageResponse
 
     private int unchanged = 0;
 
+    private Map<String, Long> predictorTimes = new LinkedHashMap<>();
+
     public PredictionSummary()
     {
     }
@@ -65,31 +70,41 @@ public class PredictionSummary extends AbstractWebMessageResponse
         this.description = description;
     }
 
-    public void incrementInserted()
+    public synchronized void incrementInserted()
     {
         inserted += 1;
     }
 
-    public void incrementPredictors()
+    public synchronized void incrementPredictors()
     {
         predictors += 1;
     }
 
-    public void incrementUpdated()
+    public synchronized void incrementUpdated()
     {
         updated += 1;
     }
 
-    public void incrementDeleted()
+    public synchronized void incrementDeleted()
     {
         deleted += 1;
     }
 
-    public void incrementUnchanged()
+    public synchronized void incrementUnchanged()
     {
         unchanged += 1;
     }
 
+    /**
+     * Records the time in milliseconds taken to run a predictor, from the
+     * start of the predictor until its last batch of organisation units has
+     * finished.
+     */
+    public synchronized void addPredictorTime( String predictorUid, long time )
+    {
+        predictorTimes.put( predictorUid, time );
+    }
+
     public int getPredictions()
     {
         return inserted + updated + unchanged;
@@ -156,6 +171,13 @@ public class PredictionSummary extends AbstractWebMessageResponse
         return unchanged;
     }
 
+    @JsonProperty
+    @JacksonXmlProperty( namespace = DxfNamespaces.DXF_2_0 )
+    public synchronized Map<String, Long> getPredictorTimes()
+    {
+        return new LinkedHashMap<>( predictorTimes );
+    }
+
     @Override
     public String toString()
     {
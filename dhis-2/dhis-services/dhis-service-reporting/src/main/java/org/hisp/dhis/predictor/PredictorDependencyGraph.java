@@ -0,0 +1,127 @@
+package org.hisp.dhis.predictor;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.hisp.dhis.dataelement.DataElement;
+
+/**
+ * Orders predictors by the dependencies between them. A predictor depends on
+ * another predictor when its generator or skip test uses the data element
+ * which the other predictor outputs. Predictors which write the same output
+ * data element and option combo are also dependent, as they would otherwise
+ * overwrite each other's values concurrently.
+ */
+public class PredictorDependencyGraph
+{
+    /**
+     * Groups the given predictors into stages which must run in sequence.
+     * Predictors within a stage do not depend on each other and can run
+     * concurrently. The order of the given list is kept within each stage,
+     * and predictors with the same output run in the order of the list.
+     * <p>
+     * Predictors which depend on each other in a cycle cannot be ordered. They
+     * are run one at a time in the order of the given list.
+     *
+     * @param predictors the predictors.
+     * @param inputs the data elements used by each predictor.
+     * @return the stages of predictors.
+     */
+    public static List<List<Predictor>> getStages( List<Predictor> predictors, Map<Predictor, Set<DataElement>> inputs )
+    {
+        List<List<Predictor>> stages = new ArrayList<>();
+
+        List<Predictor> remaining = new ArrayList<>( predictors );
+
+        while ( !remaining.isEmpty() )
+        {
+            final List<Predictor> pending = remaining;
+
+            List<Predictor> stage = pending.stream()
+                .filter( predictor -> !dependsOnAny( predictor, pending, inputs ) )
+                .filter( predictor -> !sharesOutputWithPrevious( predictor, pending ) )
+                .collect( Collectors.toList() );
+
+            if ( stage.isEmpty() )
+            {
+                stage = Collections.singletonList( pending.get( 0 ) );
+            }
+
+            stages.add( stage );
+
+            remaining = new ArrayList<>( pending );
+            remaining.removeAll( stage );
+        }
+
+        return stages;
+    }
+
+    /**
+     * Indicates whether the given predictor uses the output of any of the
+     * other given predictors. Using its own output, for instance the value
+     * of a previous period, is not a dependency.
+     */
+    private static boolean dependsOnAny( Predictor predictor, List<Predictor> others, Map<Predictor, Set<DataElement>> inputs )
+    {
+        Set<DataElement> predictorInputs = inputs.getOrDefault( predictor, Collections.emptySet() );
+
+        return others.stream().anyMatch( other -> other != predictor && predictorInputs.contains( other.getOutput() ) );
+    }
+
+    /**
+     * Indicates whether any predictor before the given predictor in the given
+     * list writes the same output. A predictor without an output combo writes
+     * the default combo, so it is taken to share the output with any
+     * predictor of the same output data element.
+     */
+    private static boolean sharesOutputWithPrevious( Predictor predictor, List<Predictor> predictors )
+    {
+        for ( Predictor other : predictors )
+        {
+            if ( other == predictor )
+            {
+                return false;
+            }
+
+            if ( other.getOutput().equals( predictor.getOutput() ) && ( other.getOutputCombo() == null ||
+                predictor.getOutputCombo() == null || other.getOutputCombo().getUid().equals( predictor.getOutputCombo().getUid() ) ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -30,18 +30,17 @@ package org.hisp.dhis.validation;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
-import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hisp.dhis.analytics.AnalyticsService;
 import org.hisp.dhis.analytics.DataQueryParams;
 import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.common.DataCube;
 import org.hisp.dhis.common.DimensionalItemObject;
 import org.hisp.dhis.common.DimensionalObject;
 import org.hisp.dhis.common.Grid;
 import org.hisp.dhis.common.MapMap;
-import org.hisp.dhis.common.MapMapMap;
 import org.hisp.dhis.commons.util.DebugUtils;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.dataelement.DataElementOperand;
@@ -59,6 +58,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -117,12 +117,22 @@ public class DataValidationTask
 
     private ValidationRuleExtended ruleX;   // Current rule extended.
 
-    // Data for current period and all rules being evaluated:
-    private MapMapMap<Integer, String, DimensionalItemObject, Double> dataMap;
+    // Data for all periods of current period type and all rules being evaluated:
+    private DataCube<Integer, Period, DimensionalItemObject> dataMap;
 
-    private MapMapMap<Integer, String, DimensionalItemObject, Double> eventMap;
+    private DataCube<Integer, Period, DimensionalItemObject> eventMap;
 
-    private MapMapMap<Integer, String, DimensionalItemObject, Double> slidingWindowEventMap;
+    // Sliding window event data for current period:
+    private DataCube<Integer, Period, DimensionalItemObject> slidingWindowEventMap;
+
+    // Data for current period and organisation unit, by attribute option combo:
+    private MapMap<String, DimensionalItemObject, Double> orgUnitData;
+
+    private MapMap<String, DimensionalItemObject, Double> orgUnitSlidingWindowData;
+
+    private int dataQueries;                // Data queries issued by this task.
+
+    private int periodDataQueries;          // Data queries needed when fetching period by period.
 
     public void init( List<OrganisationUnit> orgUnits, ValidationRunContext context, AnalyticsService analyticsService )
     {
@@ -142,6 +152,8 @@ public class DataValidationTask
         try
         {
             runInternal();
+
+            context.addDataQueries( dataQueries, periodDataQueries );
         }
         catch ( Exception ex )
         {
@@ -167,17 +179,37 @@ public class DataValidationTask
         {
             periodTypeX = ptx;
 
+            if ( context.isAnalysisComplete() )
+            {
+                break loop;
+            }
+
+            getData();
+
             for ( Period p : periodTypeX.getPeriods() )
             {
                 period = p;
 
-                getData();
+                if ( context.isAnalysisComplete() )
+                {
+                    break loop;
+                }
+
+                getSlidingWindowData();
 
                 for ( OrganisationUnit ou : orgUnits )
                 {
                     orgUnit = ou;
                     orgUnitId = ou.getId();
 
+                    // Event data overrides data values, sliding window event
+                    // data is overridden by data values
+
+                    orgUnitData = dataMap.getSlice( orgUnitId, period );
+                    orgUnitData.putMap( eventMap.getSlice( orgUnitId, period ) );
+                    orgUnitSlidingWindowData = slidingWindowEventMap.getSlice( orgUnitId, period );
+                    orgUnitSlidingWindowData.putMap( dataMap.getSlice( orgUnitId, period ) );
+
                     for ( ValidationRuleExtended r : periodTypeX.getRuleXs() )
                     {
                         ruleX = r;
@@ -186,6 +218,12 @@ public class DataValidationTask
                         {
                             break loop;
                         }
+
+                        if ( !context.isValidationNeeded( orgUnit, ruleX.getRule(), period ) )
+                        {
+                            continue;
+                        }
+
                         validationResults = new HashSet<>();
                         validateRule();
                         addValidationResultsToContext();
@@ -250,6 +288,11 @@ public class DataValidationTask
             return;
         }
 
+        if ( !context.isValidationNeeded( orgUnit, ruleX.getRule(), period, getAttributeOptionCombo( optionCombo ) ) )
+        {
+            return;
+        }
+
         boolean violation = isViolation( leftSide, rightSide );
 
         if ( violation && !context.isAnalysisComplete() )
@@ -310,22 +353,27 @@ public class DataValidationTask
     }
 
     /**
-     * Gets the data we will need for this task.
+     * Gets the data we will need for this task for all periods of the current
+     * period type, with one query for the data values and one for each kind
+     * of event data. This replaces the queries for each period.
      */
     private void getData()
     {
         getDataMap();
 
-        slidingWindowEventMap = getEventMapForSlidingWindow( true, periodTypeX.getEventItems() );
-        slidingWindowEventMap
-            .putMap( getEventMapForSlidingWindow( false, periodTypeX.getEventItemsWithoutAttributeOptions() ) );
-
-        slidingWindowEventMap.putMap( dataMap );
-
         eventMap = getEventMap( true, periodTypeX.getEventItems() );
-        eventMap.putMap( getEventMap( false, periodTypeX.getEventItemsWithoutAttributeOptions() ) );
+        eventMap.putAll( getEventMap( false, periodTypeX.getEventItemsWithoutAttributeOptions() ) );
+    }
 
-        dataMap.putMap( eventMap );
+    /**
+     * Gets the sliding window event data for the current period. The window
+     * depends on the period, so this is fetched period by period.
+     */
+    private void getSlidingWindowData()
+    {
+        slidingWindowEventMap = getEventMapForSlidingWindow( true, periodTypeX.getEventItems() );
+        slidingWindowEventMap
+            .putAll( getEventMapForSlidingWindow( false, periodTypeX.getEventItemsWithoutAttributeOptions() ) );
     }
 
     /**
@@ -344,11 +392,11 @@ public class DataValidationTask
         }
         else if ( slidingWindow )
         {
-            return getExpressionValueMap( expression, slidingWindowEventMap );
+            return getExpressionValueMap( expression, orgUnitSlidingWindowData );
         }
         else
         {
-            return getExpressionValueMap( expression, dataMap );
+            return getExpressionValueMap( expression, orgUnitData );
         }
     }
 
@@ -428,18 +476,18 @@ public class DataValidationTask
      * combo.
      *
      * @param expression expression to evaluate.
-     * @param valueMap   Map of value maps, by attribute option combo.
+     * @param valueMap   Map of values of the current organisation unit, by
+     *                   attribute option combo.
      * @return map of values.
      */
     private Map<String, Double> getExpressionValueMap( Expression expression,
-        MapMapMap<Integer, String, DimensionalItemObject, Double> valueMap )
+        MapMap<String, DimensionalItemObject, Double> valueMap )
     {
         Map<String, Double> expressionValueMap = new HashMap<>();
 
-        Map<DimensionalItemObject, Double> nonAocValues = valueMap.get( orgUnitId ) == null
-            ? null : valueMap.get( orgUnitId ).get( NON_AOC );
+        Map<DimensionalItemObject, Double> nonAocValues = valueMap.isEmpty() ? null : valueMap.get( NON_AOC );
 
-        MapMap<String, DimensionalItemObject, Double> aocValues = valueMap.get( orgUnitId );
+        MapMap<String, DimensionalItemObject, Double> aocValues = valueMap.isEmpty() ? null : valueMap;
 
         if ( aocValues == null )
         {
@@ -476,14 +524,28 @@ public class DataValidationTask
     }
 
     /**
-     * Gets data values for this task.
+     * Gets data values for this task for all periods of the current period
+     * type. Values are stored under each period whose start date falls within
+     * the period of the value.
      */
     private void getDataMap()
     {
+        dataMap = new DataCube<>();
+
+        List<Period> periods = periodTypeX.getPeriods().stream()
+            .sorted( Comparator.comparing( Period::getStartDate ) )
+            .collect( Collectors.toList() );
+
+        if ( periods.isEmpty() )
+        {
+            return;
+        }
+
         DataExportParams params = new DataExportParams();
         params.setDataElements( periodTypeX.getDataElements() );
         params.setDataElementOperands( periodTypeX.getDataElementOperands() );
-        params.setIncludedDate( period.getStartDate() );
+        params.setIncludedDate( periods.get( 0 ).getStartDate() );
+        params.setIncludedEndDate( periods.get( periods.size() - 1 ).getStartDate() );
         params.setOrganisationUnits( new HashSet<>( orgUnits ) );
         params.setPeriodTypes( periodTypeX.getAllowedPeriodTypes() );
         params.setCoDimensionConstraints( context.getCoDimensionConstraints() );
@@ -496,9 +558,9 @@ public class DataValidationTask
 
         List<DeflatedDataValue> dataValues = dataValueService.getDeflatedDataValues( params );
 
-        dataMap = new MapMapMap<>();
+        countDataQuery( periods.size() );
 
-        MapMapMap<Integer, String, DimensionalItemObject, Long> checkForDuplicates = new MapMapMap<>();
+        DataCube<Integer, Period, DimensionalItemObject> checkForDuplicates = new DataCube<>();
 
         for ( DeflatedDataValue dv : dataValues )
         {
@@ -520,29 +582,51 @@ public class DataValidationTask
                 continue;
             }
 
-            if ( dataElement != null )
+            for ( Period includedPeriod : periods )
             {
-                addValueToDataMap( orgUnitId, attributeOptionComboUid, dataElement, value, p, checkForDuplicates );
-            }
+                if ( includedPeriod.getStartDate().after( p.getEndDate() ) )
+                {
+                    break;
+                }
 
-            if ( dataElementOperand != null )
-            {
-                addValueToDataMap( orgUnitId, attributeOptionComboUid, dataElementOperand, value, p,
-                    checkForDuplicates );
+                if ( includedPeriod.getStartDate().before( p.getStartDate() ) )
+                {
+                    continue;
+                }
+
+                if ( dataElement != null )
+                {
+                    addValueToDataMap( orgUnitId, attributeOptionComboUid, dataElement, value, p, includedPeriod,
+                        checkForDuplicates );
+                }
+
+                if ( dataElementOperand != null )
+                {
+                    addValueToDataMap( orgUnitId, attributeOptionComboUid, dataElementOperand, value, p,
+                        includedPeriod, checkForDuplicates );
+                }
             }
         }
     }
 
     private void addValueToDataMap( int orgUnitId, String aocUid, DimensionalItemObject dimItemObject,
-        Double value, Period p, MapMapMap<Integer, String, DimensionalItemObject, Long> checkForDuplicates )
+        Double value, Period p, Period includedPeriod, DataCube<Integer, Period, DimensionalItemObject> checkForDuplicates )
     {
-        double existingValue = ObjectUtils.firstNonNull( dataMap.getValue( orgUnitId, aocUid, dimItemObject ), 0.0 );
+        // Values of all periods which include the start of the included period
+        // are stored under the included period
+
+        double existingValue = dataMap.getValue( orgUnitId, includedPeriod, aocUid, dimItemObject );
+
+        if ( Double.isNaN( existingValue ) )
+        {
+            existingValue = 0.0;
+        }
 
         long periodInterval = p.getEndDate().getTime() - p.getStartDate().getTime();
 
-        Long existingPeriodInterval = checkForDuplicates.getValue( orgUnitId, aocUid, dimItemObject );
+        double existingPeriodInterval = checkForDuplicates.getValue( orgUnitId, includedPeriod, aocUid, dimItemObject );
 
-        if ( existingPeriodInterval != null )
+        if ( !Double.isNaN( existingPeriodInterval ) )
         {
             if ( existingPeriodInterval < periodInterval )
             {
@@ -554,28 +638,29 @@ public class DataValidationTask
             }
         }
 
-        dataMap.putEntry( orgUnitId, aocUid, dimItemObject, value + existingValue );
+        dataMap.putValue( orgUnitId, includedPeriod, aocUid, dimItemObject, value + existingValue );
 
-        checkForDuplicates.putEntry( orgUnitId, aocUid, dimItemObject, periodInterval );
+        checkForDuplicates.putValue( orgUnitId, includedPeriod, aocUid, dimItemObject, periodInterval );
     }
 
     /**
-     * Gets aggregated event data for the given parameters.
+     * Gets aggregated event data for the given parameters for all periods of
+     * the current period type.
      *
      * @param hasAttributeOptions whether the event data has attribute options.
      */
-    private MapMapMap<Integer, String, DimensionalItemObject, Double> getEventMap(
+    private DataCube<Integer, Period, DimensionalItemObject> getEventMap(
         boolean hasAttributeOptions, Set<DimensionalItemObject> eventItems )
     {
-        if ( eventItems.isEmpty() )
+        if ( eventItems.isEmpty() || periodTypeX.getPeriods().isEmpty() )
         {
-            return new MapMapMap<>();
+            return new DataCube<>();
         }
 
         DataQueryParams.Builder paramsBuilder = DataQueryParams.newBuilder()
             .withDataDimensionItems( Lists.newArrayList( eventItems ) )
             .withAttributeOptionCombos( Lists.newArrayList() )
-            .withFilterPeriods( Lists.newArrayList( period ) )
+            .withPeriods( Lists.newArrayList( periodTypeX.getPeriods() ) )
             .withOrganisationUnits( orgUnits );
 
         if ( hasAttributeOptions )
@@ -583,7 +668,7 @@ public class DataValidationTask
             paramsBuilder.withAttributeOptionCombos( Lists.newArrayList() );
         }
 
-        return getEventData( paramsBuilder.build(), hasAttributeOptions );
+        return getEventData( paramsBuilder.build(), hasAttributeOptions, periodTypeX.getPeriods().size() );
     }
 
     /**
@@ -591,12 +676,12 @@ public class DataValidationTask
      *
      * @param hasAttributeOptions whether the event data has attribute options.
      */
-    private MapMapMap<Integer, String, DimensionalItemObject, Double> getEventMapForSlidingWindow(
+    private DataCube<Integer, Period, DimensionalItemObject> getEventMapForSlidingWindow(
         boolean hasAttributeOptions, Set<DimensionalItemObject> eventItems )
     {
         if ( eventItems.isEmpty() )
         {
-            return new MapMapMap<>();
+            return new DataCube<>();
         }
 
         // We want to position the sliding window over the most recent data.
@@ -631,24 +716,29 @@ public class DataValidationTask
             paramsBuilder.withAttributeOptionCombos( Lists.newArrayList() );
         }
 
-        return getEventData( paramsBuilder.build(), hasAttributeOptions );
+        return getEventData( paramsBuilder.build(), hasAttributeOptions, 1 );
     }
 
     /**
-     * Gets event data.
+     * Gets event data. When the query has a period dimension, values are
+     * stored under their periods, otherwise under the current period.
      *
      * @param params              event data query parameters.
      * @param hasAttributeOptions whether the event data has attribute options.
+     * @param periodCount         number of periods covered by the query.
      * @return event data.
      */
-    private MapMapMap<Integer, String, DimensionalItemObject, Double> getEventData(
-        DataQueryParams params, boolean hasAttributeOptions )
+    private DataCube<Integer, Period, DimensionalItemObject> getEventData(
+        DataQueryParams params, boolean hasAttributeOptions, int periodCount )
     {
-        MapMapMap<Integer, String, DimensionalItemObject, Double> map = new MapMapMap<>();
+        DataCube<Integer, Period, DimensionalItemObject> map = new DataCube<>();
 
         Grid grid = analyticsService.getAggregatedDataValues( params );
 
+        countDataQuery( periodCount );
+
         int dxInx = grid.getIndexOfHeader( DimensionalObject.DATA_X_DIM_ID );
+        int peInx = grid.getIndexOfHeader( DimensionalObject.PERIOD_DIM_ID );
         int ouInx = grid.getIndexOfHeader( DimensionalObject.ORGUNIT_DIM_ID );
         int aoInx = hasAttributeOptions ? grid.getIndexOfHeader( DimensionalObject.ATTRIBUTEOPTIONCOMBO_DIM_ID ) : 0;
         int vlInx = grid.getWidth() - 1;
@@ -657,6 +747,8 @@ public class DataValidationTask
             .collect( Collectors.toMap( o -> o.getUid(), o -> o ) );
         Map<String, DimensionalItemObject> dxLookup = periodTypeX.getEventItems().stream()
             .collect( Collectors.toMap( d -> d.getDimensionItem(), d -> d ) );
+        Map<String, Period> peLookup = periodTypeX.getPeriods().stream()
+            .collect( Collectors.toMap( p -> p.getIsoDate(), p -> p ) );
 
         for ( List<Object> row : grid.getRows() )
         {
@@ -667,10 +759,27 @@ public class DataValidationTask
 
             OrganisationUnit orgUnit = ouLookup.get( ou );
             DimensionalItemObject eventItem = dxLookup.get( dx );
+            Period p = peInx == -1 ? period : peLookup.get( (String) row.get( peInx ) );
 
-            map.putEntry( orgUnit.getId(), ao, eventItem, vl );
+            if ( vl != null && p != null )
+            {
+                map.putValue( orgUnit.getId(), p, ao, eventItem, vl );
+            }
         }
 
         return map;
     }
+
+    /**
+     * Records a data query.
+     *
+     * @param periodCount number of periods covered by the query, which is the
+     *                    number of queries needed when fetching the data of
+     *                    each period separately.
+     */
+    private void countDataQuery( int periodCount )
+    {
+        dataQueries++;
+        periodDataQueries += periodCount;
+    }
 }
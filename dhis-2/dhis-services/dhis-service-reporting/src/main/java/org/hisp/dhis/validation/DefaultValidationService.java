@@ -31,6 +31,7 @@ package org.hisp.dhis.validation;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -43,7 +44,10 @@ import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.dataelement.DataElementOperand;
 import org.hisp.dhis.dataset.DataSet;
 import org.hisp.dhis.datavalue.DataValue;
+import org.hisp.dhis.datavalue.DataExportParams;
 import org.hisp.dhis.datavalue.DataValueService;
+import org.hisp.dhis.datavalue.DeflatedDataValue;
+import org.hisp.dhis.expression.Expression;
 import org.hisp.dhis.expression.ExpressionService;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
@@ -57,10 +61,10 @@ import org.hisp.dhis.user.CurrentUserService;
 import org.hisp.dhis.user.User;
 import org.hisp.dhis.validation.notification.ValidationNotificationService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * @author Jim Grace
@@ -100,7 +104,7 @@ public class DefaultValidationService
     private ValidationRuleService validationRuleService;
 
     @Autowired
-    private ApplicationContext applicationContext;
+    private ValidationExecutor validationExecutor;
 
     @Autowired
     private ValidationResultService validationResultService;
@@ -126,6 +130,7 @@ public class DefaultValidationService
     @Override
     public Collection<ValidationResult> validationAnalysis( ValidationAnalysisParams parameters)
     {
+        Date startTime = new Date();
         Clock clock = new Clock( log ).startClock().logTime( "Starting validation analysis"
             + ( parameters.getOrgUnit() == null ? "" : " for orgUnit " + parameters.getOrgUnit().getUid()
                 + ( parameters.isIncludeOrgUnitDescendants() ? " with descendants" : "" ) ) + ", "
@@ -133,24 +138,36 @@ public class DefaultValidationService
                 : parameters.getPeriods().size() + " periods" ) + ", "
             + parameters.getRules().size() + " rules"
             + ( parameters.isPersistResults() ? ", persisting results" : "" )
-            + ( parameters.isSendNotifications() ? ", sending notifications" : "" ) );
+            + ( parameters.isSendNotifications() ? ", sending notifications" : "" )
+            + ( parameters.isIncremental() ? ", incremental" : "" ) );
 
         ValidationRunContext context = getValidationContext( parameters );
 
         clock.logTime( "Initialized validation analysis" );
 
-        Collection<ValidationResult> results = Validator.validate( context, applicationContext, analyticsService );
+        Collection<ValidationResult> results = validationExecutor.validate( context, analyticsService );
+
+        Collection<ValidationResult> newResults = results;
 
         if ( context.isPersistResults() )
         {
-            validationResultService.saveValidationResults( context.getValidationResults() );
+            // Results which already exist are skipped by the database, only
+            // the ones created by this run are notified
+
+            newResults = validationResultService.saveNewValidationResults( results );
+
+            if ( isCompleteRun( parameters, context ) )
+            {
+                updateLastRun( context, startTime );
+            }
         }
 
-        clock.logTime( "Finished validation analysis, " +  context.getValidationResults().size() + " results").stop();
+        clock.logTime( "Finished validation analysis, " +  results.size() + " results, " + newResults.size() + " new, "
+            + context.getDataQueries() + " data queries (" + context.getPeriodDataQueries() + " when fetched by period)" ).stop();
 
         if ( context.isSendNotifications() )
         {
-            notificationService.sendNotifications( Sets.newHashSet( results ) );
+            notificationService.sendNotifications( Sets.newHashSet( newResults ) );
         }
 
         return results;
@@ -247,19 +264,37 @@ public class DefaultValidationService
 
         Map<PeriodType, PeriodTypeExtended> periodTypeXMap = new HashMap<>();
 
+        SetMap<ValidationRule, DimensionalItemObject> ruleItems = new SetMap<>();
+
         addPeriodsToContext( periodTypeXMap, parameters.getPeriods() );
-        addRulesToContext( periodTypeXMap, parameters.getRules() );
+        addRulesToContext( periodTypeXMap, parameters.getRules(), ruleItems );
         removeAnyUnneededPeriodTypes( periodTypeXMap );
 
-        ValidationRunContext.Builder builder = ValidationRunContext.newBuilder()
+        List<PeriodTypeExtended> periodTypeXs = new ArrayList<>( periodTypeXMap.values() );
+
+        ValidationRunContext.Builder builder = ValidationRunContext.newBuilder();
+
+        if ( parameters.isIncremental() )
+        {
+            orgUnits = addIncrementalChangesToContext( builder, orgUnits, periodTypeXs, ruleItems );
+        }
+
+        if ( !parameters.isPersistResults() )
+        {
+            // Persisted runs leave it to the database to skip existing results
+
+            builder.withInitialResults( validationResultService
+                .getValidationResults( parameterOrgUnit,
+                    parameters.isIncludeOrgUnitDescendants(), parameters.getRules(), parameters.getPeriods() ) );
+        }
+
+        builder
             .withOrgUnits( orgUnits )
-            .withPeriodTypeXs( new ArrayList<>( periodTypeXMap.values() ) )
+            .withPeriodTypeXs( periodTypeXs )
             .withConstantMap( constantService.getConstantMap() )
-            .withInitialResults( validationResultService
-                .getValidationResults( parameterOrgUnit,
-                    parameters.isIncludeOrgUnitDescendants(), parameters.getRules(), parameters.getPeriods()) )
             .withSendNotifications( parameters.isSendNotifications() )
             .withPersistResults( parameters.isPersistResults() )
+            .withJobConfiguration( parameters.getJobConfiguration() )
             .withAttributeCombo( parameters.getAttributeOptionCombo() )
             .withDefaultAttributeCombo( categoryService.getDefaultCategoryOptionCombo() )
             .withMaxResults( parameters.getMaxResults() );
@@ -320,9 +355,10 @@ public class DefaultValidationService
      *
      * @param periodTypeXMap period type map to extended period types.
      * @param rules                 validation rules to add.
+     * @param ruleItems             map to populate with the dimensional items of each rule.
      */
     private void addRulesToContext( Map<PeriodType, PeriodTypeExtended> periodTypeXMap,
-        Collection<ValidationRule> rules )
+        Collection<ValidationRule> rules, SetMap<ValidationRule, DimensionalItemObject> ruleItems )
     {
         // 1. Find all dimensional object IDs in the expressions of the validation rules.
 
@@ -330,6 +366,8 @@ public class DefaultValidationService
 
         SetMap<PeriodTypeExtended, DimensionalItemId> periodItemIds = new SetMap<>();
 
+        SetMap<ValidationRule, DimensionalItemId> ruleItemIds = new SetMap<>();
+
         for ( ValidationRule rule : rules )
         {
             PeriodTypeExtended periodX = periodTypeXMap.get( rule.getPeriodType() );
@@ -347,6 +385,8 @@ public class DefaultValidationService
 
             periodItemIds.putValues( periodX, ruleIds );
 
+            ruleItemIds.putValues( rule, ruleIds );
+
             allItemIds.addAll( ruleIds );
         }
 
@@ -354,6 +394,14 @@ public class DefaultValidationService
 
         Map<DimensionalItemId, DimensionalItemObject> dimensionItemMap = dimensionService.getDataDimensionalItemObjectMap( allItemIds );
 
+        for ( Map.Entry<ValidationRule, Set<DimensionalItemId>> entry : ruleItemIds.entrySet() )
+        {
+            ruleItems.putValues( entry.getKey(), entry.getValue().stream()
+                .map( dimensionItemMap::get )
+                .filter( item -> item != null )
+                .collect( Collectors.toSet() ) );
+        }
+
         // 3. Save the dimensional objects in the extended period types.
 
         for ( Map.Entry<PeriodTypeExtended, Set<DimensionalItemId>> entry : periodItemIds.entrySet() )
@@ -387,6 +435,211 @@ public class DefaultValidationService
         }
     }
 
+    /**
+     * Prepares an incremental analysis. Finds the data values which were
+     * added, updated or deleted since the last complete run of the rules, and
+     * the periods of the analysis which they affect. Rules which have not been
+     * run since they were last updated, or which refer to anything else than
+     * data elements and data element operands, are always validated.
+     * <p>
+     * If every rule is incremental and every period was covered by the last
+     * run of the rules, only the organisation units with changed data are
+     * validated.
+     *
+     * @param builder the context builder.
+     * @param orgUnits the organisation units of the analysis.
+     * @param periodTypeXs the extended period types of the analysis.
+     * @param ruleItems the dimensional items of each rule.
+     * @return the organisation units to validate.
+     */
+    private List<OrganisationUnit> addIncrementalChangesToContext( ValidationRunContext.Builder builder,
+        List<OrganisationUnit> orgUnits, List<PeriodTypeExtended> periodTypeXs,
+        SetMap<ValidationRule, DimensionalItemObject> ruleItems )
+    {
+        Map<ValidationRule, Set<Integer>> incrementalRules = new HashMap<>();
+        Set<DataElement> dataElements = new HashSet<>();
+        List<Period> periods = new ArrayList<>();
+        Date since = null;
+        boolean allCovered = true;
+
+        for ( PeriodTypeExtended periodTypeX : periodTypeXs )
+        {
+            periods.addAll( periodTypeX.getPeriods() );
+
+            for ( ValidationRuleExtended ruleX : periodTypeX.getRuleXs() )
+            {
+                ValidationRule rule = ruleX.getRule();
+
+                Set<DataElement> ruleDataElements = getIncrementalDataElements( rule, ruleItems.get( rule ) );
+
+                if ( ruleDataElements == null )
+                {
+                    allCovered = false;
+                    continue;
+                }
+
+                allCovered &= periodTypeX.getPeriods().stream()
+                    .allMatch( p -> ValidationRunContext.isCoveredByLastRun( rule, p ) );
+
+                incrementalRules.put( rule, ruleDataElements.stream().map( DataElement::getId ).collect( Collectors.toSet() ) );
+                dataElements.addAll( ruleDataElements );
+                since = since == null || rule.getLastRun().before( since ) ? rule.getLastRun() : since;
+            }
+        }
+
+        SetMap<String, Integer> changedDataElements = new SetMap<>();
+        SetMap<String, Integer> changedAocDataElements = new SetMap<>();
+        Set<Integer> changedOrgUnitIds = new HashSet<>();
+
+        if ( !dataElements.isEmpty() )
+        {
+            DataExportParams exportParams = new DataExportParams()
+                .setDataElements( dataElements )
+                .setLastUpdated( since )
+                .setIncludeDeleted( true );
+
+            Map<Integer, List<Period>> affectedPeriodCache = new HashMap<>();
+
+            for ( DeflatedDataValue dv : dataValueService.getDeflatedDataValues( exportParams ) )
+            {
+                List<Period> affectedPeriods = affectedPeriodCache.computeIfAbsent( dv.getPeriodId(),
+                    id -> getAffectedPeriods( periodService.getPeriod( id ), periods ) );
+
+                for ( Period period : affectedPeriods )
+                {
+                    String key = dv.getSourceId() + "-" + period.getIsoDate();
+
+                    changedDataElements.putValue( key, dv.getDataElementId() );
+                    changedAocDataElements.putValue( key + "-" + dv.getAttributeOptionComboId(), dv.getDataElementId() );
+                    changedOrgUnitIds.add( dv.getSourceId() );
+                }
+            }
+        }
+
+        log.info( "Incremental validation: " + incrementalRules.size() + " incremental rules, changed data in "
+            + changedOrgUnitIds.size() + " org units since " + since );
+
+        builder.withIncrementalChanges( incrementalRules, changedDataElements, changedAocDataElements );
+
+        if ( allCovered )
+        {
+            return orgUnits.stream()
+                .filter( ou -> changedOrgUnitIds.contains( ou.getId() ) )
+                .collect( Collectors.toList() );
+        }
+
+        return orgUnits;
+    }
+
+    /**
+     * Gets the data elements of a rule which is validated incrementally, or
+     * null if the rule must always be validated.
+     *
+     * @param rule the validation rule.
+     * @param items the dimensional items of the rule.
+     * @return the data elements of the rule, or null.
+     */
+    private Set<DataElement> getIncrementalDataElements( ValidationRule rule, Set<DimensionalItemObject> items )
+    {
+        if ( rule.getLastRun() == null || ( rule.getLastUpdated() != null && rule.getLastUpdated().after( rule.getLastRun() ) )
+            || hasUntrackedReferences( rule.getLeftSide() ) || hasUntrackedReferences( rule.getRightSide() ) )
+        {
+            return null;
+        }
+
+        Set<DataElement> dataElements = new HashSet<>();
+
+        for ( DimensionalItemObject item : items == null ? Collections.<DimensionalItemObject>emptySet() : items )
+        {
+            if ( DimensionItemType.DATA_ELEMENT == item.getDimensionItemType() )
+            {
+                dataElements.add( (DataElement) item );
+            }
+            else if ( DimensionItemType.DATA_ELEMENT_OPERAND == item.getDimensionItemType() )
+            {
+                dataElements.add( ( (DataElementOperand) item ).getDataElement() );
+            }
+            else
+            {
+                return null;
+            }
+        }
+
+        return dataElements;
+    }
+
+    /**
+     * Checks whether an expression refers to constants or organisation unit
+     * groups, which may change without any data value changing.
+     *
+     * @param expression the expression.
+     * @return true if the expression has references which are not tracked.
+     */
+    private boolean hasUntrackedReferences( Expression expression )
+    {
+        return expression != null && expression.getExpression() != null
+            && ( expression.getExpression().contains( "C{" ) || expression.getExpression().contains( "OUG{" ) );
+    }
+
+    /**
+     * Gets the periods of the analysis which are affected by a change of data
+     * in the given period. The data of a period is used by the periods
+     * starting within it.
+     *
+     * @param dataPeriod the period of the changed data.
+     * @param periods the periods of the analysis.
+     * @return the affected periods.
+     */
+    private List<Period> getAffectedPeriods( Period dataPeriod, List<Period> periods )
+    {
+        if ( dataPeriod == null )
+        {
+            return Collections.emptyList();
+        }
+
+        return periods.stream()
+            .filter( p -> !p.getStartDate().before( dataPeriod.getStartDate() ) && !p.getStartDate().after( dataPeriod.getEndDate() ) )
+            .collect( Collectors.toList() );
+    }
+
+    /**
+     * Checks whether an analysis validated all organisation units and attribute
+     * option combos for its rules and periods, so that it can be recorded as
+     * the last run of the rules.
+     *
+     * @param parameters the analysis parameters.
+     * @param context the run context.
+     * @return true if the analysis was complete.
+     */
+    private boolean isCompleteRun( ValidationAnalysisParams parameters, ValidationRunContext context )
+    {
+        return parameters.getOrgUnit() == null && parameters.getAttributeOptionCombo() == null
+            && CollectionUtils.isEmpty( context.getCoDimensionConstraints() )
+            && CollectionUtils.isEmpty( context.getCogDimensionConstraints() )
+            && !context.isAnalysisComplete();
+    }
+
+    /**
+     * Records the last run of the rules of an analysis, for each period type.
+     *
+     * @param context the run context.
+     * @param startTime the time the analysis started.
+     */
+    private void updateLastRun( ValidationRunContext context, Date startTime )
+    {
+        for ( PeriodTypeExtended periodTypeX : context.getPeriodTypeXs() )
+        {
+            Date startDate = periodTypeX.getPeriods().stream().map( Period::getStartDate ).min( Date::compareTo ).orElse( null );
+            Date endDate = periodTypeX.getPeriods().stream().map( Period::getEndDate ).max( Date::compareTo ).orElse( null );
+
+            List<ValidationRule> rules = periodTypeX.getRuleXs().stream()
+                .map( ValidationRuleExtended::getRule )
+                .collect( Collectors.toList() );
+
+            validationRuleService.updateLastRun( rules, startTime, startDate, endDate );
+        }
+    }
+
     /**
      * Checks to see if a dimensional item object has values
      * stored in the database by attribute option combo.
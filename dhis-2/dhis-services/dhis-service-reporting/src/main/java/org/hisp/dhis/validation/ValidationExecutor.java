@@ -0,0 +1,434 @@
+package org.hisp.dhis.validation;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.analytics.AnalyticsService;
+import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.commons.util.SystemUtils;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementOperand;
+import org.hisp.dhis.dataset.DataSet;
+import org.hisp.dhis.external.conf.ConfigurationKey;
+import org.hisp.dhis.external.conf.DhisConfigurationProvider;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.system.notification.NotificationLevel;
+import org.hisp.dhis.system.notification.Notifier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates validation rules on a fork/join pool which is shared by all
+ * validation analyses of the application, so that the number of threads
+ * validating at the same time is capped regardless of how many analyses run
+ * concurrently. The cap is set by {@code validation.max_threads} in
+ * dhis.conf, and defaults to one less than the number of CPU cores.
+ * <p>
+ * The organisation units of an analysis are ordered by path, so that
+ * subtrees are adjacent, and split recursively in two halves of about the
+ * same estimated data volume until a part is small enough for one task.
+ * Idle workers steal the halves which are not yet started, which keeps all
+ * workers busy when subtrees differ a lot in size.
+ */
+public class ValidationExecutor
+{
+    private static final Log log = LogFactory.getLog( ValidationExecutor.class );
+
+    /**
+     * Number of tasks to split an analysis into per worker thread, so that
+     * there is work left to steal when estimates are off.
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
+    private static final long TIMEOUT_HOURS = 6;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private Notifier notifier;
+
+    @Autowired
+    private DhisConfigurationProvider config;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init()
+    {
+        int maxThreads = Integer.parseInt( config.getProperty( ConfigurationKey.VALIDATION_MAX_THREADS ) );
+
+        int parallelism = maxThreads > 0 ? maxThreads : getDefaultThreadCount();
+
+        pool = new ForkJoinPool( parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( p );
+            thread.setName( "validation-" + thread.getPoolIndex() );
+            return thread;
+        }, null, false );
+
+        log.info( "Validation executor started with " + parallelism + " threads" );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        pool.shutdownNow();
+    }
+
+    // -------------------------------------------------------------------------
+    // Logic
+    // -------------------------------------------------------------------------
+
+    /**
+     * Evaluates the validation rules of a context for its organisation units.
+     * Returns early with no new results if there are no organisation units
+     * or no validation rules.
+     * <p>
+     * If the calling thread is interrupted, which is how a job is stopped,
+     * the analysis is cancelled and the results found so far are returned.
+     *
+     * @param context the validation run context.
+     * @param analyticsService the analytics service for event data.
+     * @return a collection of any validations that were found.
+     */
+    public Collection<ValidationResult> validate( ValidationRunContext context, AnalyticsService analyticsService )
+    {
+        if ( context.getOrgUnits().isEmpty() || context.getPeriodTypeXs().isEmpty() )
+        {
+            return context.getValidationResults();
+        }
+
+        List<OrganisationUnit> orgUnits = new ArrayList<>( context.getOrgUnits() );
+        orgUnits.sort( Comparator.comparing( OrganisationUnit::getPath, Comparator.nullsFirst( Comparator.naturalOrder() ) ) );
+
+        long[] cumulativeWeights = getCumulativeWeights( orgUnits, context );
+
+        long taskWeight = Math.max( 1, cumulativeWeights[orgUnits.size()] / ( (long) pool.getParallelism() * TASKS_PER_THREAD ) );
+
+        OrgUnitTask rootTask = new OrgUnitTask( new ValidationRun( context, analyticsService, orgUnits,
+            cumulativeWeights, taskWeight ), 0, orgUnits.size() );
+
+        ForkJoinTask<Void> future = pool.submit( rootTask );
+
+        try
+        {
+            future.get( TIMEOUT_HOURS, TimeUnit.HOURS );
+        }
+        catch ( InterruptedException ex )
+        {
+            cancel( context, future, "Validation analysis was stopped" );
+
+            Thread.currentThread().interrupt();
+        }
+        catch ( TimeoutException ex )
+        {
+            cancel( context, future, "Validation analysis timed out after " + TIMEOUT_HOURS + " hours" );
+        }
+        catch ( ExecutionException ex )
+        {
+            context.cancel();
+
+            throw new RuntimeException( "Validation analysis failed", ex.getCause() );
+        }
+
+        reloadAttributeOptionCombos( context.getValidationResults() );
+
+        return context.getValidationResults();
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    /**
+     * Cancels an analysis and waits for the running tasks to stop, which they
+     * do before evaluating their next rule.
+     */
+    private void cancel( ValidationRunContext context, ForkJoinTask<Void> future, String message )
+    {
+        context.cancel();
+
+        future.quietlyJoin();
+
+        log.warn( message + ", " + context.getValidationResults().size() + " results found" );
+
+        if ( context.getJobConfiguration() != null )
+        {
+            notifier.notify( context.getJobConfiguration(), NotificationLevel.WARN, message );
+        }
+    }
+
+    /**
+     * Estimates the data volume of each organisation unit as one plus the
+     * number of data elements of the rules which are collected at the
+     * organisation unit through data sets, and returns the running totals.
+     * Element {@code i} of the result is the total of the first {@code i}
+     * organisation units.
+     *
+     * @param orgUnits the organisation units.
+     * @param context the validation run context.
+     * @return the cumulative weights.
+     */
+    private long[] getCumulativeWeights( List<OrganisationUnit> orgUnits, ValidationRunContext context )
+    {
+        Set<DataElement> dataElements = new HashSet<>();
+
+        for ( PeriodTypeExtended periodTypeX : context.getPeriodTypeXs() )
+        {
+            dataElements.addAll( periodTypeX.getDataElements() );
+
+            for ( DataElementOperand operand : periodTypeX.getDataElementOperands() )
+            {
+                dataElements.add( operand.getDataElement() );
+            }
+        }
+
+        Map<DataSet, Integer> dataSetElementCounts = new HashMap<>();
+
+        for ( DataElement dataElement : dataElements )
+        {
+            for ( DataSet dataSet : dataElement.getDataSets() )
+            {
+                dataSetElementCounts.merge( dataSet, 1, Integer::sum );
+            }
+        }
+
+        Map<Integer, Integer> orgUnitWeights = new HashMap<>();
+
+        for ( Map.Entry<DataSet, Integer> entry : dataSetElementCounts.entrySet() )
+        {
+            for ( OrganisationUnit source : entry.getKey().getSources() )
+            {
+                orgUnitWeights.merge( source.getId(), entry.getValue(), Integer::sum );
+            }
+        }
+
+        long[] cumulativeWeights = new long[orgUnits.size() + 1];
+
+        for ( int i = 0; i < orgUnits.size(); i++ )
+        {
+            cumulativeWeights[i + 1] = cumulativeWeights[i] + 1 + orgUnitWeights.getOrDefault( orgUnits.get( i ).getId(), 0 );
+        }
+
+        return cumulativeWeights;
+    }
+
+    /**
+     * Reload attribute category option combos into this Hibernate context.
+     *
+     * @param results the validation results.
+     */
+    private void reloadAttributeOptionCombos( Collection<ValidationResult> results )
+    {
+        for ( ValidationResult result : results )
+        {
+            result.setAttributeOptionCombo( categoryService
+                .getCategoryOptionCombo( result.getAttributeOptionCombo().getId() ) );
+        }
+    }
+
+    private static int getDefaultThreadCount()
+    {
+        int threadCount = SystemUtils.getCpuCores();
+
+        if ( threadCount > 2 )
+        {
+            threadCount--;
+        }
+
+        return threadCount;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive classes
+    // -------------------------------------------------------------------------
+
+    /**
+     * State shared by the tasks of one analysis.
+     */
+    private class ValidationRun
+    {
+        private final ValidationRunContext context;
+
+        private final AnalyticsService analyticsService;
+
+        private final List<OrganisationUnit> orgUnits;
+
+        private final long[] cumulativeWeights;
+
+        private final long taskWeight;
+
+        private final SecurityContext securityContext = SecurityContextHolder.getContext();
+
+        private final AtomicInteger orgUnitsDone = new AtomicInteger();
+
+        ValidationRun( ValidationRunContext context, AnalyticsService analyticsService,
+            List<OrganisationUnit> orgUnits, long[] cumulativeWeights, long taskWeight )
+        {
+            this.context = context;
+            this.analyticsService = analyticsService;
+            this.orgUnits = orgUnits;
+            this.cumulativeWeights = cumulativeWeights;
+            this.taskWeight = taskWeight;
+        }
+
+        /**
+         * Reports progress to the job, if any, each time another tenth of
+         * the organisation units is done.
+         */
+        void orgUnitsDone( int count )
+        {
+            int total = orgUnits.size();
+            int before = orgUnitsDone.getAndAdd( count );
+            int after = before + count;
+
+            if ( context.getJobConfiguration() != null && before * 10 / total != after * 10 / total )
+            {
+                notifier.notify( context.getJobConfiguration(), "Validated " + after + " of " + total +
+                    " organisation units, " + context.getValidationResults().size() + " results" );
+            }
+        }
+    }
+
+    /**
+     * Validates a range of the ordered organisation units of an analysis,
+     * splitting it in two parts of about the same estimated data volume if
+     * it is too big for one task.
+     */
+    private class OrgUnitTask
+        extends RecursiveAction
+    {
+        private final ValidationRun run;
+
+        private final int from;
+
+        private final int to;
+
+        OrgUnitTask( ValidationRun run, int from, int to )
+        {
+            this.run = run;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ( run.context.isAnalysisComplete() )
+            {
+                return;
+            }
+
+            long weight = run.cumulativeWeights[to] - run.cumulativeWeights[from];
+
+            if ( to - from > 1 && ( weight > run.taskWeight || to - from > ValidationRunContext.ORG_UNITS_PER_TASK ) )
+            {
+                int middle = getMiddle();
+
+                invokeAll( new OrgUnitTask( run, from, middle ), new OrgUnitTask( run, middle, to ) );
+            }
+            else
+            {
+                validate();
+            }
+        }
+
+        /**
+         * Finds the index which splits the range in two parts of about the
+         * same weight, leaving at least one organisation unit in each part.
+         */
+        private int getMiddle()
+        {
+            long half = ( run.cumulativeWeights[from] + run.cumulativeWeights[to] ) / 2;
+
+            int low = from + 1;
+            int high = to - 1;
+
+            while ( low < high )
+            {
+                int mid = ( low + high ) >>> 1;
+
+                if ( run.cumulativeWeights[mid] < half )
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    high = mid;
+                }
+            }
+
+            return low;
+        }
+
+        private void validate()
+        {
+            ValidationTask task = (ValidationTask) applicationContext.getBean( DataValidationTask.NAME );
+            task.init( new ArrayList<>( run.orgUnits.subList( from, to ) ), run.context, run.analyticsService );
+
+            SecurityContextHolder.setContext( run.securityContext );
+
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                SecurityContextHolder.clearContext();
+
+                run.orgUnitsDone( to - from );
+            }
+        }
+    }
+}
@@ -33,17 +33,21 @@ import org.hisp.dhis.category.CategoryOption;
 import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.category.CategoryOptionGroup;
 import org.hisp.dhis.common.MapMapMap;
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.period.Period;
+import org.hisp.dhis.scheduling.JobConfiguration;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class keeps track of a validation analysis. It contains information about the initial params of the analysis,
@@ -53,6 +57,9 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  */
 public class ValidationRunContext
 {
+    /**
+     * The maximum number of organisation units validated by one task.
+     */
     public static final int ORG_UNITS_PER_TASK = 500;
 
     private Queue<ValidationResult> validationResults;
@@ -81,8 +88,35 @@ public class ValidationRunContext
 
     private boolean persistResults = false;
 
+    private JobConfiguration jobConfiguration;
+
+    private volatile boolean cancelled = false;
+
     private MapMapMap<OrganisationUnit, ValidationRule, Period, List<ValidationResult>> initialValidationResults = new MapMapMap<>();
 
+    // -------------------------------------------------------------------------
+    // Incremental analysis
+    // -------------------------------------------------------------------------
+
+    /**
+     * Data element ids of the rules which only need to be validated where
+     * their data changed since their last run. Null if not incremental.
+     */
+    private Map<ValidationRule, Set<Integer>> incrementalRules;
+
+    /**
+     * Ids of data elements with changed data, by organisation unit id and
+     * period ISO date. Periods of the analysis may not be persisted, so they
+     * are identified by ISO date.
+     */
+    private SetMap<String, Integer> changedDataElements = new SetMap<>();
+
+    /**
+     * Ids of data elements with changed data, by organisation unit id, period
+     * ISO date and attribute option combo id.
+     */
+    private SetMap<String, Integer> changedAocDataElements = new SetMap<>();
+
     public ValidationRunContext()
     {
         validationResults = new ConcurrentLinkedQueue<>();
@@ -98,6 +132,21 @@ public class ValidationRunContext
 
     private Map<String, CategoryOptionCombo> aocUidMap = new ConcurrentHashMap<>();
 
+    // -------------------------------------------------------------------------
+    // Statistics
+    // -------------------------------------------------------------------------
+
+    /**
+     * Number of data queries issued by the tasks.
+     */
+    private AtomicInteger dataQueries = new AtomicInteger();
+
+    /**
+     * Number of data queries the tasks would have issued when fetching the
+     * data of each period separately.
+     */
+    private AtomicInteger periodDataQueries = new AtomicInteger();
+
     // -------------------------------------------------------------------------
     // Getter methods
     // -------------------------------------------------------------------------
@@ -152,6 +201,16 @@ public class ValidationRunContext
         return persistResults;
     }
 
+    public JobConfiguration getJobConfiguration()
+    {
+        return jobConfiguration;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
     public Queue<ValidationResult> getValidationResults()
     {
         return validationResults;
@@ -167,6 +226,16 @@ public class ValidationRunContext
         return aocIdMap;
     }
 
+    public int getDataQueries()
+    {
+        return dataQueries.get();
+    }
+
+    public int getPeriodDataQueries()
+    {
+        return periodDataQueries.get();
+    }
+
     public Map<String, CategoryOptionCombo> getAocUidMap()
     {
         return aocUidMap;
@@ -198,14 +267,94 @@ public class ValidationRunContext
 
     }
 
-    public int getNumberOfTasks()
+    /**
+     * Checks whether a rule must be validated for an organisation unit and
+     * period. In an incremental analysis this is only the case where data of
+     * the rule changed since its last run, or where the period was not
+     * covered by its last run.
+     *
+     * @param organisationUnit the organisation unit.
+     * @param validationRule the validation rule.
+     * @param period the period.
+     * @return true if the rule must be validated.
+     */
+    public boolean isValidationNeeded( OrganisationUnit organisationUnit, ValidationRule validationRule, Period period )
+    {
+        return isValidationNeeded( validationRule, period, changedDataElements,
+            organisationUnit.getId() + "-" + period.getIsoDate() );
+    }
+
+    /**
+     * Checks whether a rule must be validated for an organisation unit, period
+     * and attribute option combo.
+     *
+     * @param organisationUnit the organisation unit.
+     * @param validationRule the validation rule.
+     * @param period the period.
+     * @param attributeOptionCombo the attribute option combo.
+     * @return true if the rule must be validated.
+     */
+    public boolean isValidationNeeded( OrganisationUnit organisationUnit, ValidationRule validationRule, Period period,
+        CategoryOptionCombo attributeOptionCombo )
     {
-        return ( orgUnits.size() + ORG_UNITS_PER_TASK - 1 ) / ORG_UNITS_PER_TASK;
+        return isValidationNeeded( validationRule, period, changedAocDataElements,
+            organisationUnit.getId() + "-" + period.getIsoDate() + "-" + attributeOptionCombo.getId() );
+    }
+
+    private boolean isValidationNeeded( ValidationRule validationRule, Period period,
+        SetMap<String, Integer> changes, String key )
+    {
+        Set<Integer> dataElementIds = incrementalRules == null ? null : incrementalRules.get( validationRule );
+
+        if ( dataElementIds == null || !isCoveredByLastRun( validationRule, period ) )
+        {
+            return true;
+        }
+
+        Set<Integer> changedIds = changes.get( key );
+
+        return changedIds != null && !Collections.disjoint( changedIds, dataElementIds );
+    }
+
+    /**
+     * Checks whether the given period was validated by the last run of the
+     * given rule.
+     *
+     * @param validationRule the validation rule.
+     * @param period the period.
+     * @return true if the period was covered by the last run.
+     */
+    public static boolean isCoveredByLastRun( ValidationRule validationRule, Period period )
+    {
+        return validationRule.getLastRunStartDate() != null && validationRule.getLastRunEndDate() != null
+            && !period.getStartDate().before( validationRule.getLastRunStartDate() )
+            && !period.getEndDate().after( validationRule.getLastRunEndDate() );
+    }
+
+    /**
+     * Records data queries issued by a task.
+     *
+     * @param queries the number of queries issued.
+     * @param periodQueries the number of queries needed when fetching the
+     *        data of each period separately.
+     */
+    public void addDataQueries( int queries, int periodQueries )
+    {
+        dataQueries.addAndGet( queries );
+        periodDataQueries.addAndGet( periodQueries );
+    }
+
+    /**
+     * Stops the analysis. Running tasks stop at the next rule they evaluate.
+     */
+    public void cancel()
+    {
+        cancelled = true;
     }
 
     public boolean isAnalysisComplete()
     {
-        return validationResults.size() >= maxResults;
+        return cancelled || validationResults.size() >= maxResults;
     }
 
     // -------------------------------------------------------------------------
@@ -337,6 +486,38 @@ public class ValidationRunContext
             return this;
         }
 
+        /**
+         * Sets the job to report the progress of the analysis to.
+         *
+         * @param jobConfiguration the job configuration used for progress
+         *        notifications, optional.
+         */
+        public Builder withJobConfiguration( JobConfiguration jobConfiguration )
+        {
+            this.context.jobConfiguration = jobConfiguration;
+            return this;
+        }
+
+        /**
+         * Makes the analysis incremental.
+         *
+         * @param incrementalRules data element ids of the rules which only
+         *        need to be validated where their data changed.
+         * @param changedDataElements ids of data elements with changed data,
+         *        by organisation unit id and period ISO date.
+         * @param changedAocDataElements ids of data elements with changed
+         *        data, by organisation unit id, period ISO date and attribute
+         *        option combo id.
+         */
+        public Builder withIncrementalChanges( Map<ValidationRule, Set<Integer>> incrementalRules,
+            SetMap<String, Integer> changedDataElements, SetMap<String, Integer> changedAocDataElements )
+        {
+            this.context.incrementalRules = incrementalRules;
+            this.context.changedDataElements = changedDataElements;
+            this.context.changedAocDataElements = changedAocDataElements;
+            return this;
+        }
+
         public Builder withInitialResults( Collection<ValidationResult> results )
         {
             this.context.validationResults.addAll( results );
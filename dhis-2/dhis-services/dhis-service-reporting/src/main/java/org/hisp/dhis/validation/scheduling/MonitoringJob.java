@@ -146,6 +146,8 @@ public class MonitoringJob
                 .withMaxResults( ValidationService.MAX_SCHEDULED_ALERTS )
                 .withSendNotifications( monitoringJobParameters.isSendNotifications() )
                 .withPersistResults( monitoringJobParameters.isPersistResults() )
+                .withIncremental( monitoringJobParameters.isIncremental() )
+                .withJobConfiguration( jobConfiguration )
                 .build();
 
             validationService.validationAnalysis( parameters );
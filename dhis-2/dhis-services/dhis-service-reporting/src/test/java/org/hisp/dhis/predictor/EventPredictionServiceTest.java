@@ -35,6 +35,7 @@ import static org.junit.Assert.assertEquals;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -87,6 +88,7 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
@@ -172,6 +174,8 @@ public class EventPredictionServiceTest
     private Predictor predictorI;
     private Predictor predictorT;
 
+    private Map<String, Grid> itemGridMap;
+
     @Override
     public void setUpTest()
     {
@@ -325,7 +329,7 @@ public class EventPredictionServiceTest
         predictorService.addPredictor( predictorD );
         predictorService.addPredictor( predictorI );
 
-        Map<String, Grid> itemGridMap = new HashMap<>();
+        itemGridMap = new HashMap<>();
         itemGridMap.put( PROGRAM_TRACKED_ENTITY_ATTRIBUTE_DIMENSION_ITEM, newGrid( PROGRAM_TRACKED_ENTITY_ATTRIBUTE_DIMENSION_ITEM, 1.0, 1.0 ) );
         itemGridMap.put( PROGRAM_DATA_ELEMENT_DIMENSION_ITEM, newGrid( PROGRAM_DATA_ELEMENT_DIMENSION_ITEM, 4.0, 5.0 ) );
         itemGridMap.put( PROGRAM_INDICATOR_A_UID, newGrid( PROGRAM_INDICATOR_A_UID, 8.0, 9.0 ) );
@@ -440,4 +444,28 @@ public class EventPredictionServiceTest
         assertEquals("101", getDataValue( predictorOutputT, periodApr ) );
         assertEquals("302", getDataValue( predictorOutputT, periodMay ) );
     }
+
+    /**
+     * Event data changes are only seen by predictions once analytics has been
+     * generated, so incremental runs must still predict from event inputs.
+     */
+    @Test
+    public void testPredictEventsIncremental()
+    {
+        List<String> predictors = Lists.newArrayList( predictorD.getUid() );
+
+        predictionService.predictTask( getDate( testYear, 4, 1 ), getDate( testYear, 5, 31 ), predictors, null, true, null );
+
+        assertEquals("4", getDataValue( predictorOutputD, periodApr ) );
+        assertEquals("9", getDataValue( predictorOutputD, periodMay ) );
+
+        // Analytics now returns an event change made before the last run
+
+        itemGridMap.put( PROGRAM_DATA_ELEMENT_DIMENSION_ITEM, newGrid( PROGRAM_DATA_ELEMENT_DIMENSION_ITEM, 6.0, 5.0 ) );
+
+        predictionService.predictTask( getDate( testYear, 4, 1 ), getDate( testYear, 5, 31 ), predictors, null, true, null );
+
+        assertEquals("6", getDataValue( predictorOutputD, periodApr ) );
+        assertEquals("11", getDataValue( predictorOutputD, periodMay ) );
+    }
 }
@@ -1047,6 +1047,61 @@ public class PredictionServiceTest
         assertEquals( "20", getDataValue( dataElementY, defaultCombo, sourceA, makeMonth( 2001, 7 ) ) );
     }
 
+    @Test
+    public void testPredictTaskIncremental()
+    {
+        useDataValue( dataElementB, makeMonth( 2001, 6 ), sourceA, 10 );
+        useDataValue( dataElementB, makeMonth( 2001, 6 ), sourceB, 20 );
+        useDataValue( dataElementB, makeMonth( 2001, 7 ), sourceA, 15 );
+
+        dataValueBatchHandler.flush();
+
+        Predictor predictorA = createPredictor( dataElementX, defaultCombo, "A", expressionB, null,
+            periodTypeMonthly, orgUnitLevel1, 1, 0, 0 );
+
+        predictorService.addPredictor( predictorA );
+
+        List<String> predictors = Lists.newArrayList( predictorA.getUid() );
+
+        // Without a previous run, all predictions are made
+
+        summary = predictionService.predictTask( monthStart( 2001, 7 ), monthStart( 2001, 9 ), predictors, null, true, null );
+
+        assertEquals( "Pred 1 Ins 3 Upd 0 Del 0 Unch 0", shortSummary( summary ) );
+
+        // Only the prediction using the changed value is made again
+
+        DataValue dataValue = dataValueService.getDataValue( dataElementB, periodService.reloadPeriod( makeMonth( 2001, 6 ) ), sourceB, defaultCombo );
+        dataValue.setValue( "30" );
+        dataValueService.updateDataValue( dataValue );
+
+        summary = predictionService.predictTask( monthStart( 2001, 7 ), monthStart( 2001, 9 ), predictors, null, true, null );
+
+        assertEquals( "Pred 1 Ins 0 Upd 1 Del 0 Unch 0", shortSummary( summary ) );
+
+        assertEquals( "10.0", getDataValue( dataElementX, defaultCombo, sourceA, makeMonth( 2001, 7 ) ) );
+        assertEquals( "30.0", getDataValue( dataElementX, defaultCombo, sourceB, makeMonth( 2001, 7 ) ) );
+        assertEquals( "15.0", getDataValue( dataElementX, defaultCombo, sourceA, makeMonth( 2001, 8 ) ) );
+
+        // Periods not covered by the previous run are predicted in full
+
+        useDataValue( dataElementB, makeMonth( 2001, 8 ), sourceB, 25 );
+
+        dataValueBatchHandler.flush();
+
+        summary = predictionService.predictTask( monthStart( 2001, 7 ), monthStart( 2001, 10 ), predictors, null, true, null );
+
+        assertEquals( "Pred 1 Ins 1 Upd 0 Del 0 Unch 0", shortSummary( summary ) );
+
+        assertEquals( "25.0", getDataValue( dataElementX, defaultCombo, sourceB, makeMonth( 2001, 9 ) ) );
+
+        // Without incremental mode, all predictions are made
+
+        summary = predictionService.predictTask( monthStart( 2001, 7 ), monthStart( 2001, 10 ), predictors, null, false, null );
+
+        assertEquals( "Pred 1 Ins 0 Upd 0 Del 0 Unch 4", shortSummary( summary ) );
+    }
+
     @Test
     public void testPredictMedian()
     {
@@ -0,0 +1,151 @@
+package org.hisp.dhis.predictor;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hisp.dhis.DhisConvenienceTest;
+import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.dataelement.DataElement;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class PredictorDependencyGraphTest
+    extends DhisConvenienceTest
+{
+    private DataElement deA;
+    private DataElement deB;
+    private DataElement deC;
+    private DataElement deD;
+    private DataElement deE;
+
+    private Map<Predictor, Set<DataElement>> inputs;
+
+    @Before
+    public void before()
+    {
+        deA = createDataElement( 'A' );
+        deB = createDataElement( 'B' );
+        deC = createDataElement( 'C' );
+        deD = createDataElement( 'D' );
+        deE = createDataElement( 'E' );
+
+        inputs = new HashMap<>();
+    }
+
+    @Test
+    public void testIndependentPredictors()
+    {
+        Predictor pA = createPredictor( 'A', deB, deA );
+        Predictor pB = createPredictor( 'B', deD, deC );
+
+        List<List<Predictor>> stages = PredictorDependencyGraph.getStages( Lists.newArrayList( pA, pB ), inputs );
+
+        assertEquals( 1, stages.size() );
+        assertEquals( Lists.newArrayList( pA, pB ), stages.get( 0 ) );
+    }
+
+    @Test
+    public void testDependentPredictors()
+    {
+        Predictor pA = createPredictor( 'A', deB, deA );
+        Predictor pB = createPredictor( 'B', deC, deB );
+        Predictor pC = createPredictor( 'C', deD, deA, deC );
+        Predictor pD = createPredictor( 'D', deE, deE );
+
+        List<List<Predictor>> stages = PredictorDependencyGraph.getStages( Lists.newArrayList( pD, pC, pB, pA ), inputs );
+
+        // pD uses its own output, which is not a dependency
+
+        assertEquals( 3, stages.size() );
+        assertEquals( Lists.newArrayList( pD, pA ), stages.get( 0 ) );
+        assertEquals( Lists.newArrayList( pB ), stages.get( 1 ) );
+        assertEquals( Lists.newArrayList( pC ), stages.get( 2 ) );
+    }
+
+    @Test
+    public void testCyclicPredictors()
+    {
+        Predictor pA = createPredictor( 'A', deB, deA );
+        Predictor pB = createPredictor( 'B', deA, deB );
+        Predictor pC = createPredictor( 'C', deC, deD );
+
+        List<List<Predictor>> stages = PredictorDependencyGraph.getStages( Lists.newArrayList( pA, pB, pC ), inputs );
+
+        assertEquals( 3, stages.size() );
+        assertEquals( Lists.newArrayList( pC ), stages.get( 0 ) );
+        assertEquals( Lists.newArrayList( pA ), stages.get( 1 ) );
+        assertEquals( Lists.newArrayList( pB ), stages.get( 2 ) );
+    }
+
+    @Test
+    public void testSameOutputPredictors()
+    {
+        CategoryOptionCombo cocA = createCategoryOptionCombo( 'A' );
+        CategoryOptionCombo cocB = createCategoryOptionCombo( 'B' );
+
+        Predictor pA = createPredictor( 'A', deC, deA );
+        Predictor pB = createPredictor( 'B', deC, deB );
+        Predictor pC = createPredictor( 'C', deD, deA );
+        Predictor pD = createPredictor( 'D', deD, deB );
+        Predictor pE = createPredictor( 'E', deD, deE );
+
+        pC.setOutputCombo( cocA );
+        pD.setOutputCombo( cocB );
+        pE.setOutputCombo( cocA );
+
+        List<List<Predictor>> stages = PredictorDependencyGraph.getStages( Lists.newArrayList( pA, pB, pC, pD, pE ), inputs );
+
+        // Predictors writing different option combos of an output are independent
+
+        assertEquals( 2, stages.size() );
+        assertEquals( Lists.newArrayList( pA, pC, pD ), stages.get( 0 ) );
+        assertEquals( Lists.newArrayList( pB, pE ), stages.get( 1 ) );
+    }
+
+    private Predictor createPredictor( char uniqueCharacter, DataElement output, DataElement... inputDataElements )
+    {
+        Predictor predictor = new Predictor();
+        predictor.setAutoFields();
+        predictor.setName( "Predictor" + uniqueCharacter );
+        predictor.setOutput( output );
+
+        inputs.put( predictor, Sets.newHashSet( inputDataElements ) );
+
+        return predictor;
+    }
+}
@@ -648,6 +648,66 @@ public class ValidationServiceTest
         assertResultsEquals( reference, results );
     }
 
+    @Test
+    public void testValidateIncremental()
+    {
+        useDataValue( dataElementA, periodA, sourceA, "1" );
+        useDataValue( dataElementB, periodA, sourceA, "2" );
+        useDataValue( dataElementC, periodA, sourceA, "3" );
+        useDataValue( dataElementD, periodA, sourceA, "4" );
+
+        useDataValue( dataElementA, periodA, sourceB, "1" );
+        useDataValue( dataElementB, periodA, sourceB, "2" );
+        useDataValue( dataElementC, periodA, sourceB, "3" );
+        useDataValue( dataElementD, periodA, sourceB, "4" );
+
+        useDataValue( dataElementA, periodB, sourceA, "1" );
+        useDataValue( dataElementB, periodB, sourceA, "2" );
+        useDataValue( dataElementC, periodB, sourceA, "3" );
+        useDataValue( dataElementD, periodB, sourceA, "4" );
+
+        validationRuleService.saveValidationRule( validationRuleA ); // Invalid
+
+        List<ValidationRule> validationRules = Lists.newArrayList( validationRuleA );
+        List<Period> periods = Lists.newArrayList( periodA, periodB );
+
+        // Data is entered an hour before the last run, changes after it are picked up
+
+        Date lastRun = new Date();
+
+        for ( DataValue dataValue : dataValueStore.getAllDataValues() )
+        {
+            dataValue.setLastUpdated( new Date( lastRun.getTime() - 3600000 ) );
+            dataValueStore.updateDataValue( dataValue );
+        }
+
+        validationRuleService.updateLastRun( validationRules, lastRun, periodA.getStartDate(), periodB.getEndDate() );
+
+        ValidationAnalysisParams params = validationService.newParamsBuilder( validationRules, null, periods )
+            .withIncremental( true ).build();
+
+        assertResultsEmpty( validationService.validationAnalysis( params ) );
+
+        DataValue dataValue = dataValueService.getDataValue( dataElementA, periodA, sourceB, optionCombo, optionCombo );
+        dataValue.setValue( "5" );
+        dataValue.setLastUpdated( new Date( lastRun.getTime() + 3600000 ) );
+        dataValueStore.updateDataValue( dataValue );
+
+        Collection<ValidationResult> reference = new HashSet<>();
+
+        reference.add( new ValidationResult( validationRuleA, periodA, sourceB, defaultCombo, 7.0, -1.0, dayInPeriodA ) );
+
+        assertResultsEquals( reference, validationService.validationAnalysis( params ) );
+
+        // Period B was not covered by the last run, so it is fully validated
+
+        validationRuleService.updateLastRun( validationRules, validationRuleA.getLastRun(), periodA.getStartDate(), periodA.getEndDate() );
+
+        reference.add( new ValidationResult( validationRuleA, periodB, sourceA, defaultCombo, 3.0, -1.0, dayInPeriodB ) );
+
+        assertResultsEquals( reference, validationService.validationAnalysis( params ) );
+    }
+
     @Test
     public void testValidateDataSetPeriodSource()
     {
@@ -82,8 +82,8 @@ public class DefaultMergeService implements MergeService
 
             if ( property.isCollection() )
             {
-                Collection<T> sourceObject = ReflectionUtils.invokeMethod( source, property.getGetterMethod() );
-                Collection<T> targetObject = ReflectionUtils.invokeMethod( target, property.getGetterMethod() );
+                Collection<T> sourceObject = PropertyAccessor.getValue( source, property );
+                Collection<T> targetObject = PropertyAccessor.getValue( target, property );
 
                 if ( sourceObject == null )
                 {
@@ -110,15 +110,15 @@ public class DefaultMergeService implements MergeService
                     targetObject.addAll( sourceObject );
                 }
 
-                ReflectionUtils.invokeMethod( target, property.getSetterMethod(), targetObject );
+                PropertyAccessor.setValue( target, property, targetObject );
             }
             else
             {
-                Object sourceObject = ReflectionUtils.invokeMethod( source, property.getGetterMethod() );
+                Object sourceObject = PropertyAccessor.getValue( source, property );
 
                 if ( mergeParams.getMergeMode().isReplace() || ( mergeParams.getMergeMode().isMerge() && sourceObject != null ) )
                 {
-                    ReflectionUtils.invokeMethod( target, property.getSetterMethod(), sourceObject );
+                    PropertyAccessor.setValue( target, property, sourceObject );
                 }
             }
         }
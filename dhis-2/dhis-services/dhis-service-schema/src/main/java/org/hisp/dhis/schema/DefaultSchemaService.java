@@ -31,6 +31,7 @@ package org.hisp.dhis.schema;
 import static java.util.stream.Collectors.toSet;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.hibernate.MappingException;
 import org.hibernate.SessionFactory;
@@ -175,7 +176,7 @@ public class DefaultSchemaService
 
     private Map<String, Schema> pluralSchemaMap = new HashMap<>();
 
-    private Map<Class<?>, Schema> dynamicClassSchemaMap = new HashMap<>();
+    private Map<Class<?>, Schema> dynamicClassSchemaMap = new ConcurrentHashMap<>();
 
     private PropertyIntrospectorService propertyIntrospectorService;
 
@@ -0,0 +1,205 @@
+package org.hisp.dhis.schema;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.system.util.ReflectionUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Reads and writes property values through accessors which are generated once
+ * per getter and setter method, instead of invoking the methods reflectively
+ * for every object. Accessors are lambdas created with the
+ * {@link LambdaMetafactory}, which the JIT compiler can inline like a direct
+ * method call.
+ * <p>
+ * Behaves like {@link ReflectionUtils#invokeMethod(Object, Method, Object...)}:
+ * a null target or method reads as null, protected and private methods are not
+ * invoked, and exceptions thrown by a method are wrapped in an
+ * {@link InvocationTargetException} inside a {@link RuntimeException}. Package
+ * private methods and methods which can not be bound to a lambda, for instance
+ * when declared by a class which is not public, are invoked reflectively.
+ */
+public final class PropertyAccessor
+{
+    private static final Log log = LogFactory.getLog( PropertyAccessor.class );
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final Map<Method, Function<Object, Object>> GETTERS = new ConcurrentHashMap<>();
+
+    private static final Map<Method, BiConsumer<Object, Object>> SETTERS = new ConcurrentHashMap<>();
+
+    private PropertyAccessor()
+    {
+    }
+
+    /**
+     * Gets the value of the given property of an object.
+     *
+     * @param target the object.
+     * @param property the property.
+     * @return the value, or null if the object or getter is null.
+     */
+    @SuppressWarnings( "unchecked" )
+    public static <T> T getValue( Object target, Property property )
+    {
+        Method method = property.getGetterMethod();
+
+        if ( target == null || method == null )
+        {
+            return null;
+        }
+
+        return (T) GETTERS.computeIfAbsent( method, PropertyAccessor::createGetter ).apply( target );
+    }
+
+    /**
+     * Sets the value of the given property of an object. Does nothing if the
+     * object or setter is null.
+     *
+     * @param target the object.
+     * @param property the property.
+     * @param value the value.
+     */
+    public static void setValue( Object target, Property property, Object value )
+    {
+        Method method = property.getSetterMethod();
+
+        if ( target == null || method == null )
+        {
+            return;
+        }
+
+        SETTERS.computeIfAbsent( method, PropertyAccessor::createSetter ).accept( target, value );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    @SuppressWarnings( "unchecked" )
+    private static Function<Object, Object> createGetter( Method method )
+    {
+        if ( !isAccessorMethod( method ) )
+        {
+            return target -> ReflectionUtils.invokeMethod( target, method );
+        }
+
+        try
+        {
+            MethodHandle handle = LOOKUP.unreflect( method );
+
+            CallSite site = LambdaMetafactory.metafactory( LOOKUP, "apply",
+                MethodType.methodType( Function.class ),
+                MethodType.methodType( Object.class, Object.class ),
+                handle, handle.type().wrap() );
+
+            Function<Object, Object> getter = (Function<Object, Object>) site.getTarget().invokeExact();
+
+            return target -> {
+                try
+                {
+                    return getter.apply( target );
+                }
+                catch ( Throwable ex )
+                {
+                    throw new RuntimeException( new InvocationTargetException( ex ) );
+                }
+            };
+        }
+        catch ( Throwable ex )
+        {
+            log.debug( "Using reflection for getter " + method + ": " + ex.getMessage() );
+
+            return target -> ReflectionUtils.invokeMethod( target, method );
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static BiConsumer<Object, Object> createSetter( Method method )
+    {
+        if ( !isAccessorMethod( method ) )
+        {
+            return ( target, value ) -> ReflectionUtils.invokeMethod( target, method, value );
+        }
+
+        try
+        {
+            MethodHandle handle = LOOKUP.unreflect( method );
+
+            CallSite site = LambdaMetafactory.metafactory( LOOKUP, "accept",
+                MethodType.methodType( BiConsumer.class ),
+                MethodType.methodType( void.class, Object.class, Object.class ),
+                handle, MethodType.methodType( void.class, handle.type().wrap().parameterArray() ) );
+
+            BiConsumer<Object, Object> setter = (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+
+            return ( target, value ) -> {
+                try
+                {
+                    setter.accept( target, value );
+                }
+                catch ( Throwable ex )
+                {
+                    throw new RuntimeException( new InvocationTargetException( ex ) );
+                }
+            };
+        }
+        catch ( Throwable ex )
+        {
+            log.debug( "Using reflection for setter " + method + ": " + ex.getMessage() );
+
+            return ( target, value ) -> ReflectionUtils.invokeMethod( target, method, value );
+        }
+    }
+
+    /**
+     * Only public methods are bound to lambdas, all other methods are left to
+     * {@link ReflectionUtils#invokeMethod(Object, Method, Object...)}, which
+     * skips protected and private methods.
+     */
+    private static boolean isAccessorMethod( Method method )
+    {
+        return Modifier.isPublic( method.getModifiers() );
+    }
+}
@@ -0,0 +1,214 @@
+package org.hisp.dhis.schema;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hisp.dhis.DhisSpringTest;
+import org.hisp.dhis.IntegrationTest;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.system.util.ReflectionUtils;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of reading and writing properties through generated accessors
+ * compared with invoking the getters and setters reflectively, which also
+ * verifies that both give the same values. Run with the integration profile.
+ */
+@Category( IntegrationTest.class )
+public class PropertyAccessorBenchmarkTest
+    extends DhisSpringTest
+{
+    private static final Log log = LogFactory.getLog( PropertyAccessorBenchmarkTest.class );
+
+    private static final int OBJECTS = 20000;
+
+    private static final int WARMUP_RUNS = 5;
+
+    private static final int RUNS = 20;
+
+    private static final List<String> GETTER_PROPERTIES = Arrays.asList( "name", "code", "shortName", "valueType", "zeroIsSignificant", "created" );
+
+    @Autowired
+    private SchemaService schemaService;
+
+    @Test
+    public void benchmarkGetters()
+    {
+        List<DataElement> dataElements = createDataElements();
+        List<Property> properties = getProperties( GETTER_PROPERTIES );
+
+        List<Object> expected = null;
+        List<Object> actual = null;
+
+        for ( int i = 0; i < WARMUP_RUNS; i++ )
+        {
+            expected = getValuesReflectively( dataElements, properties );
+            actual = getValues( dataElements, properties );
+        }
+
+        assertEquals( expected, actual );
+
+        long reflectionTime = 0;
+        long accessorTime = 0;
+
+        for ( int i = 0; i < RUNS; i++ )
+        {
+            long start = System.nanoTime();
+            getValuesReflectively( dataElements, properties );
+            reflectionTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            getValues( dataElements, properties );
+            accessorTime += System.nanoTime() - start;
+        }
+
+        log.info( String.format( "Getters %-60s values: %8d, reflection: %8.3f ms, accessors: %8.3f ms", GETTER_PROPERTIES,
+            actual.size(), reflectionTime / RUNS / 1e6, accessorTime / RUNS / 1e6 ) );
+    }
+
+    @Test
+    public void benchmarkSetters()
+    {
+        List<DataElement> dataElements = createDataElements();
+        Property nameProperty = getProperties( Arrays.asList( "name" ) ).get( 0 );
+        Property zeroIsSignificantProperty = getProperties( Arrays.asList( "zeroIsSignificant" ) ).get( 0 );
+
+        for ( int i = 0; i < WARMUP_RUNS; i++ )
+        {
+            setValuesReflectively( dataElements, nameProperty, zeroIsSignificantProperty, "Reflection" + i );
+            setValues( dataElements, nameProperty, zeroIsSignificantProperty, "Accessor" + i );
+        }
+
+        for ( int i = 0; i < OBJECTS; i++ )
+        {
+            assertEquals( "Accessor" + (WARMUP_RUNS - 1) + i, dataElements.get( i ).getName() );
+            assertEquals( i % 2 == 0, dataElements.get( i ).isZeroIsSignificant() );
+        }
+
+        long reflectionTime = 0;
+        long accessorTime = 0;
+
+        for ( int i = 0; i < RUNS; i++ )
+        {
+            long start = System.nanoTime();
+            setValuesReflectively( dataElements, nameProperty, zeroIsSignificantProperty, "Reflection" + i );
+            reflectionTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            setValues( dataElements, nameProperty, zeroIsSignificantProperty, "Accessor" + i );
+            accessorTime += System.nanoTime() - start;
+        }
+
+        log.info( String.format( "Setters %-60s objects: %8d, reflection: %8.3f ms, accessors: %8.3f ms", "[name, zeroIsSignificant]",
+            OBJECTS, reflectionTime / RUNS / 1e6, accessorTime / RUNS / 1e6 ) );
+    }
+
+    private List<Object> getValuesReflectively( List<DataElement> dataElements, List<Property> properties )
+    {
+        List<Object> values = new ArrayList<>( dataElements.size() * properties.size() );
+
+        for ( DataElement dataElement : dataElements )
+        {
+            for ( Property property : properties )
+            {
+                values.add( ReflectionUtils.invokeMethod( dataElement, property.getGetterMethod() ) );
+            }
+        }
+
+        return values;
+    }
+
+    private List<Object> getValues( List<DataElement> dataElements, List<Property> properties )
+    {
+        List<Object> values = new ArrayList<>( dataElements.size() * properties.size() );
+
+        for ( DataElement dataElement : dataElements )
+        {
+            for ( Property property : properties )
+            {
+                values.add( PropertyAccessor.getValue( dataElement, property ) );
+            }
+        }
+
+        return values;
+    }
+
+    private void setValuesReflectively( List<DataElement> dataElements, Property nameProperty, Property zeroIsSignificantProperty, String prefix )
+    {
+        for ( int i = 0; i < dataElements.size(); i++ )
+        {
+            ReflectionUtils.invokeMethod( dataElements.get( i ), nameProperty.getSetterMethod(), prefix + i );
+            ReflectionUtils.invokeMethod( dataElements.get( i ), zeroIsSignificantProperty.getSetterMethod(), i % 2 == 0 );
+        }
+    }
+
+    private void setValues( List<DataElement> dataElements, Property nameProperty, Property zeroIsSignificantProperty, String prefix )
+    {
+        for ( int i = 0; i < dataElements.size(); i++ )
+        {
+            PropertyAccessor.setValue( dataElements.get( i ), nameProperty, prefix + i );
+            PropertyAccessor.setValue( dataElements.get( i ), zeroIsSignificantProperty, i % 2 == 0 );
+        }
+    }
+
+    private List<Property> getProperties( List<String> names )
+    {
+        Schema schema = schemaService.getDynamicSchema( DataElement.class );
+
+        return names.stream().map( schema::getProperty ).collect( Collectors.toList() );
+    }
+
+    private List<DataElement> createDataElements()
+    {
+        List<DataElement> dataElements = new ArrayList<>();
+
+        for ( int i = 0; i < OBJECTS; i++ )
+        {
+            DataElement dataElement = createDataElement( 'A' );
+            dataElement.setUid( String.format( "de%09d", i ) );
+            dataElement.setName( String.format( "DataElement%05d", i ) );
+            dataElement.setShortName( String.format( "DataElementShort%05d", i ) );
+            dataElement.setCode( i % 2 == 0 ? String.format( "DE_%05d", i ) : null );
+            dataElement.setZeroIsSignificant( i % 3 == 0 );
+            dataElements.add( dataElement );
+        }
+
+        return dataElements;
+    }
+}
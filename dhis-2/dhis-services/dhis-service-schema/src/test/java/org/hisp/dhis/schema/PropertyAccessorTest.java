@@ -0,0 +1,162 @@
+package org.hisp.dhis.schema;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.system.util.ReflectionUtils;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PropertyAccessorTest
+{
+    @Test
+    public void testGetSetValue()
+        throws Exception
+    {
+        Property property = new Property( String.class, DataElement.class.getMethod( "getName" ),
+            DataElement.class.getMethod( "setName", String.class ) );
+
+        DataElement dataElement = new DataElement( "DataElementA" );
+
+        assertEquals( "DataElementA", PropertyAccessor.getValue( dataElement, property ) );
+
+        PropertyAccessor.setValue( dataElement, property, "DataElementB" );
+
+        assertEquals( "DataElementB", dataElement.getName() );
+
+        PropertyAccessor.setValue( dataElement, property, null );
+
+        assertNull( dataElement.getName() );
+    }
+
+    @Test
+    public void testGetSetPrimitiveValue()
+        throws Exception
+    {
+        Property property = new Property( boolean.class, DataElement.class.getMethod( "isZeroIsSignificant" ),
+            DataElement.class.getMethod( "setZeroIsSignificant", boolean.class ) );
+
+        DataElement dataElement = new DataElement( "DataElementA" );
+
+        PropertyAccessor.setValue( dataElement, property, true );
+
+        assertTrue( dataElement.isZeroIsSignificant() );
+        assertEquals( Boolean.TRUE, PropertyAccessor.getValue( dataElement, property ) );
+    }
+
+    @Test
+    public void testNullTargetOrMethod()
+        throws Exception
+    {
+        Property property = new Property( String.class, null, null );
+
+        DataElement dataElement = new DataElement( "DataElementA" );
+
+        assertNull( PropertyAccessor.getValue( dataElement, property ) );
+        assertNull( PropertyAccessor.getValue( null, new Property( String.class, DataElement.class.getMethod( "getName" ), null ) ) );
+
+        PropertyAccessor.setValue( dataElement, property, "DataElementB" );
+
+        assertEquals( "DataElementA", dataElement.getName() );
+    }
+
+    @Test
+    public void testNonPublicGetters()
+        throws Exception
+    {
+        Item item = new Item();
+
+        Method protectedGetter = Item.class.getDeclaredMethod( "getProtectedValue" );
+        Method packageGetter = Item.class.getDeclaredMethod( "getPackageValue" );
+
+        assertNull( PropertyAccessor.getValue( item, new Property( String.class, protectedGetter, null ) ) );
+        assertEquals( getOutcome( () -> ReflectionUtils.invokeMethod( item, packageGetter ) ),
+            getOutcome( () -> PropertyAccessor.getValue( item, new Property( String.class, packageGetter, null ) ) ) );
+    }
+
+    @Test
+    public void testGetterExceptionIsWrapped()
+        throws Exception
+    {
+        Property property = new Property( String.class, Item.class.getMethod( "getFailingValue" ), null );
+
+        try
+        {
+            PropertyAccessor.getValue( new Item(), property );
+            fail( "Expected exception from getter" );
+        }
+        catch ( RuntimeException ex )
+        {
+            assertTrue( ex.getCause() instanceof InvocationTargetException );
+            assertTrue( ex.getCause().getCause() instanceof IllegalStateException );
+        }
+    }
+
+    /**
+     * Returns the value of the given call, or the class of the exception
+     * cause if the call fails.
+     */
+    private static Object getOutcome( Supplier<Object> call )
+    {
+        try
+        {
+            return call.get();
+        }
+        catch ( RuntimeException ex )
+        {
+            return ex.getCause() != null ? ex.getCause().getClass() : ex.getClass();
+        }
+    }
+
+    public static class Item
+    {
+        protected String getProtectedValue()
+        {
+            return "protected";
+        }
+
+        String getPackageValue()
+        {
+            return "package";
+        }
+
+        public String getFailingValue()
+        {
+            throw new IllegalStateException( "failing" );
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.hisp.dhis.dataanalysis;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import java.util.List;
+
+import org.hisp.dhis.common.SetMap;
+import org.hisp.dhis.minmax.MinMaxDataElementService;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.scheduling.AbstractJob;
+import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.scheduling.JobType;
+import org.hisp.dhis.scheduling.parameters.MinMaxGenerationJobParameters;
+import org.hisp.dhis.setting.SettingKey;
+import org.hisp.dhis.setting.SystemSettingManager;
+import org.hisp.dhis.system.notification.NotificationLevel;
+import org.hisp.dhis.system.notification.Notifier;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Job which generates min-max values for the data elements of the given data
+ * sets and the hierarchies of the given organisation units.
+ */
+public class MinMaxGenerationJob
+    extends AbstractJob
+{
+    @Autowired
+    private MinMaxDataAnalysisService minMaxDataAnalysisService;
+
+    @Autowired
+    private MinMaxDataElementService minMaxDataElementService;
+
+    @Autowired
+    private OrganisationUnitService organisationUnitService;
+
+    @Autowired
+    private SystemSettingManager systemSettingManager;
+
+    @Autowired
+    private Notifier notifier;
+
+    @Override
+    public JobType getJobType()
+    {
+        return JobType.MIN_MAX_GENERATION;
+    }
+
+    @Override
+    public void execute( JobConfiguration jobConfiguration )
+        throws Exception
+    {
+        MinMaxGenerationJobParameters params = (MinMaxGenerationJobParameters) jobConfiguration.getJobParameters();
+
+        if ( params == null )
+        {
+            throw new Exception( "No job parameters present in min-max generation job" );
+        }
+
+        notifier.clear( jobConfiguration ).notify( jobConfiguration, "Generating min-max values" );
+
+        // The job runs without a session, so the data elements of the data
+        // sets are resolved to ids in a transaction of the service
+
+        SetMap<Integer, Integer> categoryOptionComboIds = minMaxDataElementService.getDataSetCategoryOptionComboIds( params.getDataSets() );
+
+        List<OrganisationUnit> parents = organisationUnitService.getOrganisationUnitsByUid( params.getOrganisationUnits() );
+
+        Double stdDevFactor = params.getStdDevFactor() != null ? params.getStdDevFactor() :
+            (Double) systemSettingManager.getSystemSetting( SettingKey.FACTOR_OF_DEVIATION );
+
+        int generated = 0;
+
+        for ( OrganisationUnit parent : parents )
+        {
+            generated += minMaxDataAnalysisService.generateMinMaxValues( parent, categoryOptionComboIds, stdDevFactor, jobConfiguration );
+        }
+
+        notifier.notify( jobConfiguration, NotificationLevel.INFO, "Min-max generation done, generated " + generated +
+            " values for " + categoryOptionComboIds.size() + " data elements and " + parents.size() + " organisation units", true );
+    }
+}
@@ -41,15 +41,12 @@ import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.common.ValueType;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.datavalue.DeflatedDataValue;
-import org.hisp.dhis.jdbc.batchhandler.MinMaxDataElementBatchHandler;
-import org.hisp.dhis.minmax.MinMaxDataElement;
 import org.hisp.dhis.minmax.MinMaxDataElementService;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.period.Period;
-import org.hisp.dhis.system.util.MathUtils;
-import org.hisp.quick.BatchHandler;
-import org.hisp.quick.BatchHandlerFactory;
-import org.joda.time.DateTime;
+import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.system.notification.Notifier;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import com.google.common.collect.Lists;
 
@@ -61,6 +58,8 @@ public class MinMaxOutlierAnalysisService
 {
     private static final Log log = LogFactory.getLog( MinMaxOutlierAnalysisService.class );
 
+    private static final int DATA_ELEMENTS_PER_BATCH = 50;
+
     // -------------------------------------------------------------------------
     // Dependencies
     // -------------------------------------------------------------------------
@@ -79,12 +78,8 @@ public class MinMaxOutlierAnalysisService
         this.minMaxDataElementService = minMaxDataElementService;
     }
 
-    private BatchHandlerFactory batchHandlerFactory;
-
-    public void setBatchHandlerFactory( BatchHandlerFactory batchHandlerFactory )
-    {
-        this.batchHandlerFactory = batchHandlerFactory;
-    }
+    @Autowired
+    private Notifier notifier;
 
     // -------------------------------------------------------------------------
     // DataAnalysisService implementation
@@ -112,57 +107,53 @@ public class MinMaxOutlierAnalysisService
     @Override
     public void generateMinMaxValues( OrganisationUnit parent, Collection<DataElement> dataElements, Double stdDevFactor )
     {
-        log.info( "Starting min-max value generation, no of data elements: " + dataElements.size() + ", parent: " + parent.getUid() );
+        generateMinMaxValues( parent, minMaxDataElementService.getCategoryOptionComboIds( dataElements ), stdDevFactor, null );
+    }
 
-        //Set<Integer> orgUnitIds = new HashSet<>( IdentifiableObjectUtils.getIdentifiers( organisationUnits ) );
+    @Override
+    public int generateMinMaxValues( OrganisationUnit parent, SetMap<Integer, Integer> categoryOptionComboIds,
+        Double stdDevFactor, JobConfiguration jobConfiguration )
+    {
+        log.info( "Starting min-max value generation, no of data elements: " + categoryOptionComboIds.size() + ", parent: " + parent.getUid() );
 
-        Date from = new DateTime( 1, 1, 1, 1, 1 ).toDate();
+        notify( jobConfiguration, "Generating min-max values for " + categoryOptionComboIds.size() + " data elements" );
 
-        minMaxDataElementService.removeMinMaxDataElements( dataElements, parent );
+        List<List<Integer>> batches = Lists.partition( Lists.newArrayList( categoryOptionComboIds.keySet() ), DATA_ELEMENTS_PER_BATCH );
 
-        log.debug( "Deleted existing min-max values" );
+        int generated = 0;
 
-        List<String> parentPaths = Lists.newArrayList( parent.getPath() );
+        for ( List<Integer> batch : batches )
+        {
+            // Each batch is replaced in its own transaction to avoid holding
+            // locks on the min-max table for the whole run
 
-        BatchHandler<MinMaxDataElement> batchHandler = batchHandlerFactory.createBatchHandler( MinMaxDataElementBatchHandler.class ).init();
+            SetMap<Integer, Integer> batchCategoryOptionComboIds = new SetMap<>();
 
-        for ( DataElement dataElement : dataElements )
-        {
-            if ( dataElement.getValueType().isNumeric() )
-            {
-                Set<CategoryOptionCombo> categoryOptionCombos = dataElement.getCategoryOptionCombos();
-
-                List<DataAnalysisMeasures> measuresList = dataAnalysisStore.getDataAnalysisMeasures( dataElement, categoryOptionCombos, parentPaths, from );
-
-                for ( DataAnalysisMeasures measures : measuresList )
-                {
-                    int min = (int) Math.round( MathUtils.getLowBound( measures.getStandardDeviation(), stdDevFactor, measures.getAverage() ) );
-                    int max = (int) Math.round( MathUtils.getHighBound( measures.getStandardDeviation(), stdDevFactor, measures.getAverage() ) );
-
-                    switch ( dataElement.getValueType() )
-                    {
-                        case INTEGER_POSITIVE:
-                        case INTEGER_ZERO_OR_POSITIVE:
-                            min = Math.max( 0, min ); // Cannot be < 0
-                            break;
-                        case INTEGER_NEGATIVE:
-                            max = Math.min( 0, max ); // Cannot be > 0
-                            break;
-                    }
-
-                    OrganisationUnit orgUnit = new OrganisationUnit();
-                    orgUnit.setId( measures.getOrgUnitId() );
-
-                    CategoryOptionCombo categoryOptionCombo = new CategoryOptionCombo();
-                    categoryOptionCombo.setId( measures.getCategoryOptionComboId() );
-
-                    batchHandler.addObject( new MinMaxDataElement( orgUnit, dataElement, categoryOptionCombo, min, max, true ) );
-                }
-            }
+            batch.forEach( dataElementId -> batchCategoryOptionComboIds.putValues( dataElementId, categoryOptionComboIds.get( dataElementId ) ) );
+
+            generated += minMaxDataElementService.generateMinMaxDataElements( batchCategoryOptionComboIds, parent, stdDevFactor );
+
+            log.debug( "Generated min-max values for batch, total: " + generated );
+
+            notify( jobConfiguration, "Generated " + generated + " min-max values" );
         }
 
-        log.info( "Min-max value generation done" );
+        log.info( "Min-max value generation done, no of values: " + generated );
+
+        notify( jobConfiguration, "Generated " + generated + " min-max values for " + parent.getName() );
+
+        return generated;
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
 
-        batchHandler.flush();
+    private void notify( JobConfiguration jobConfiguration, String message )
+    {
+        if ( jobConfiguration != null )
+        {
+            notifier.notify( jobConfiguration, message );
+        }
     }
 }
@@ -30,15 +30,15 @@ package org.hisp.dhis.dataanalysis;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.hisp.dhis.common.MapMap;
-import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.datavalue.DeflatedDataValue;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.period.Period;
-import org.hisp.dhis.system.util.MathUtils;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -68,50 +68,50 @@ public class StdDevOutlierAnalysisService
     public final List<DeflatedDataValue> analyse( Collection<OrganisationUnit> parents,
         Collection<DataElement> dataElements, Collection<Period> periods, Double stdDevFactor, Date from )
     {
-        log.info( "Starting std dev analysis, no of org units: " + parents.size() + ", factor: " + stdDevFactor + ", from: " + from );
+        return analyse( parents, dataElements, periods, stdDevFactor, from, OutlierDetectionAlgorithm.Z_SCORE, MAX_OUTLIERS );
+    }
 
-        List<DeflatedDataValue> outlierCollection = new ArrayList<>();
+    /**
+     * Finds outlier data values for the given data elements and periods in the
+     * hierarchy of the given parents. All data elements are analysed in a
+     * single query, so the number of queries does not grow with the number
+     * of data elements, category option combos and organisation units.
+     *
+     * @param parents the parent organisation units.
+     * @param dataElements the data elements, of which only numeric ones are analysed.
+     * @param periods the periods to find outliers for.
+     * @param threshold the score above which a data value is an outlier, the
+     *        number of standard deviations for {@link OutlierDetectionAlgorithm#Z_SCORE}.
+     * @param from the from date for which to include data values in the measures.
+     * @param algorithm the outlier detection algorithm.
+     * @param maxResults the maximum number of outliers to return.
+     * @return the outliers, with the highest score first.
+     */
+    public List<DeflatedDataValue> analyse( Collection<OrganisationUnit> parents,
+        Collection<DataElement> dataElements, Collection<Period> periods, Double threshold, Date from,
+        OutlierDetectionAlgorithm algorithm, int maxResults )
+    {
+        log.info( "Starting outlier analysis, no of org units: " + parents.size() + ", algorithm: " + algorithm +
+            ", threshold: " + threshold + ", from: " + from );
 
-        List<String> parentsPaths = parents.stream().map( OrganisationUnit::getPath ).collect( Collectors.toList() );
+        List<DeflatedDataValue> outliers = new ArrayList<>();
 
-        loop : for ( DataElement dataElement : dataElements )
+        if ( threshold == null )
         {
-            // TODO filter periods with data element period type
-
-            if ( dataElement.getValueType().isNumeric() && stdDevFactor != null )
-            {
-                Set<CategoryOptionCombo> categoryOptionCombos = dataElement.getCategoryOptionCombos();
-
-                List<DataAnalysisMeasures> measuresList = dataAnalysisStore.getDataAnalysisMeasures( dataElement, categoryOptionCombos, parentsPaths, from );
-
-                MapMap<Integer, Integer, Integer> lowBoundMapMap = new MapMap<>(); // catOptionComboId, orgUnitId, lowBound
-                MapMap<Integer, Integer, Integer> highBoundMapMap = new MapMap<>(); // catOptionComboId, orgUnitId, highBound
-
-                for ( DataAnalysisMeasures measures : measuresList )
-                {
-                    int lowBound = (int) Math.round( MathUtils.getLowBound( measures.getStandardDeviation(), stdDevFactor, measures.getAverage() ) );
-                    int highBound = (int) Math.round( MathUtils.getHighBound( measures.getStandardDeviation(), stdDevFactor, measures.getAverage() ) );
+            return outliers;
+        }
 
-                    lowBoundMapMap.putEntry( measures.getCategoryOptionComboId(), measures.getOrgUnitId(), lowBound );
-                    highBoundMapMap.putEntry( measures.getCategoryOptionComboId(), measures.getOrgUnitId(), highBound );
-                }
+        List<DataElement> numericDataElements = dataElements.stream()
+            .filter( de -> de.getValueType().isNumeric() )
+            .collect( Collectors.toList() );
 
-                for ( CategoryOptionCombo categoryOptionCombo : categoryOptionCombos )
-                {
-                    Map<Integer, Integer> lowBoundMap = lowBoundMapMap.get( categoryOptionCombo.getId() );
-                    Map<Integer, Integer> highBoundMap = highBoundMapMap.get( categoryOptionCombo.getId() );
+        List<String> parentsPaths = parents.stream().map( OrganisationUnit::getPath ).collect( Collectors.toList() );
 
-                    outlierCollection.addAll( dataAnalysisStore.getDeflatedDataValues( dataElement, categoryOptionCombo, periods,
-                        lowBoundMap, highBoundMap ) );
+        dataAnalysisStore.getOutliers( numericDataElements, periods, parentsPaths, from, algorithm, threshold,
+            Math.min( maxResults, MAX_OUTLIERS ), outliers::add );
 
-                    if ( outlierCollection.size() > MAX_OUTLIERS )
-                    {
-                        break loop;
-                    }
-                }
-            }
-        }
+        log.info( "Outlier analysis done, no of outliers: " + outliers.size() );
 
-        return outlierCollection;
+        return outliers;
     }
 }
@@ -36,6 +36,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -45,6 +46,7 @@ import org.hisp.dhis.commons.collection.PaginatedList;
 import org.hisp.dhis.commons.util.TextUtils;
 import org.hisp.dhis.dataanalysis.DataAnalysisMeasures;
 import org.hisp.dhis.dataanalysis.DataAnalysisStore;
+import org.hisp.dhis.dataanalysis.OutlierDetectionAlgorithm;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.datavalue.DeflatedDataValue;
 import org.hisp.dhis.jdbc.StatementBuilder;
@@ -52,6 +54,7 @@ import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.period.Period;
 import org.hisp.dhis.system.objectmapper.DeflatedDataValueNameMinMaxRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 
 /**
@@ -254,6 +257,97 @@ public class JdbcDataAnalysisStore
         return jdbcTemplate.query( sql, new DeflatedDataValueNameMinMaxRowMapper( lowerBoundMap, upperBoundMap ) );
     }
 
+    @Override
+    public void getOutliers( Collection<DataElement> dataElements, Collection<Period> periods,
+        Collection<String> parentPaths, Date from, OutlierDetectionAlgorithm algorithm, double threshold, int limit,
+        Consumer<DeflatedDataValue> consumer )
+    {
+        if ( dataElements.isEmpty() || periods.isEmpty() || parentPaths.isEmpty() || limit <= 0 )
+        {
+            return;
+        }
+
+        String value = "cast( dv.value as " + statementBuilder.getDoubleColumnType() + " )";
+
+        String matchPaths = "(";
+        for ( String path : parentPaths )
+        {
+            matchPaths += "ou.path like '" + path + "%' or ";
+        }
+        matchPaths = TextUtils.removeLastOr( matchPaths ) + ") ";
+
+        String joins =
+            "from datavalue dv " +
+                "join period pe on dv.periodid = pe.periodid " +
+                "join organisationunit ou on dv.sourceid = ou.organisationunitid ";
+
+        String where =
+            "where dv.dataelementid in (" + getCommaDelimitedString( getIdentifiers( dataElements ) ) + ") " +
+                "and pe.startdate >= '" + DateUtils.getMediumDateString( from ) + "' " +
+                "and " + matchPaths +
+                "and dv.deleted is false ";
+
+        String groupBy = "group by dv.dataelementid, dv.sourceid, dv.categoryoptioncomboid";
+
+        // Measures per data element, org unit and category option combo, with
+        // the deviation scaled so that the score is distance over deviation
+
+        String measures;
+
+        if ( OutlierDetectionAlgorithm.MOD_Z_SCORE == algorithm )
+        {
+            measures =
+                "select md.dataelementid, md.sourceid, md.categoryoptioncomboid, md.middlevalue, " +
+                    statementBuilder.getMedian( "abs( " + value + " - md.middlevalue )" ) + " / 0.6745 as deviation " +
+                    joins +
+                    "join (" +
+                    "select dv.dataelementid, dv.sourceid, dv.categoryoptioncomboid, " +
+                    statementBuilder.getMedian( value ) + " as middlevalue " +
+                    joins + where + groupBy + ") as md " +
+                    "on dv.dataelementid = md.dataelementid and dv.sourceid = md.sourceid " +
+                    "and dv.categoryoptioncomboid = md.categoryoptioncomboid " +
+                    where +
+                    "group by md.dataelementid, md.sourceid, md.categoryoptioncomboid, md.middlevalue";
+        }
+        else
+        {
+            measures =
+                "select dv.dataelementid, dv.sourceid, dv.categoryoptioncomboid, " +
+                    "avg( " + value + " ) as middlevalue, stddev_pop( " + value + " ) as deviation " +
+                    joins + where + groupBy;
+        }
+
+        String sql =
+            "select dv.dataelementid, dv.periodid, dv.sourceid, dv.categoryoptioncomboid, dv.attributeoptioncomboid, dv.value, dv.storedby, dv.lastupdated, " +
+                "dv.created, dv.comment, dv.followup, ou.name as sourcename, de.name as dataelementname, " +
+                "pt.name as periodtypename, pe.startdate, pe.enddate, coc.name as categoryoptioncomboname, " +
+                "round( ms.middlevalue - " + threshold + " * ms.deviation ) as minimumvalue, " +
+                "round( ms.middlevalue + " + threshold + " * ms.deviation ) as maximumvalue " +
+                "from datavalue dv " +
+                "join (" + measures + ") as ms on ( dv.dataelementid = ms.dataelementid and dv.sourceid = ms.sourceid " +
+                "and dv.categoryoptioncomboid = ms.categoryoptioncomboid ) " +
+                "join dataelement de on dv.dataelementid = de.dataelementid " +
+                "join period pe on dv.periodid = pe.periodid " +
+                "join periodtype pt on pe.periodtypeid = pt.periodtypeid " +
+                "join organisationunit ou on dv.sourceid = ou.organisationunitid " +
+                "join categoryoptioncombo coc on dv.categoryoptioncomboid = coc.categoryoptioncomboid " +
+                "where dv.periodid in (" + getCommaDelimitedString( getIdentifiers( periods ) ) + ") " +
+                "and dv.deleted is false " +
+                "and ms.deviation > 0 " +
+                "and abs( " + value + " - ms.middlevalue ) > " + threshold + " * ms.deviation " +
+                "order by abs( " + value + " - ms.middlevalue ) / ms.deviation desc, " +
+                "dv.dataelementid, dv.sourceid, dv.periodid, dv.categoryoptioncomboid, dv.attributeoptioncomboid " +
+                statementBuilder.limitRecord( 0, limit );
+
+        log.debug( "Outlier SQL: " + sql );
+
+        DeflatedDataValueNameMinMaxRowMapper mapper = new DeflatedDataValueNameMinMaxRowMapper( null, null );
+
+        RowCallbackHandler handler = resultSet -> consumer.accept( mapper.mapRow( resultSet ) );
+
+        jdbcTemplate.query( sql, handler );
+    }
+
     @Override
     public List<DeflatedDataValue> getFollowupDataValues( Collection<DataElement> dataElements,
         Collection<CategoryOptionCombo> categoryOptionCombos,
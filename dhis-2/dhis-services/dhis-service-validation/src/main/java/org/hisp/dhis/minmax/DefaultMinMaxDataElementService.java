@@ -28,13 +28,21 @@ package org.hisp.dhis.minmax;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import org.hisp.dhis.common.IdentifiableObjectManager;
+import org.hisp.dhis.common.IdentifiableObjectUtils;
+import org.hisp.dhis.common.SetMap;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.dataset.DataSet;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @author Lars Helge Overland
@@ -55,6 +63,9 @@ public class DefaultMinMaxDataElementService
         this.minMaxDataElementStore = minMaxDataElementStore;
     }
 
+    @Autowired
+    private IdentifiableObjectManager idObjectManager;
+
     // -------------------------------------------------------------------------
     // MinMaxDataElementService implementation
     // -------------------------------------------------------------------------
@@ -138,6 +149,66 @@ public class DefaultMinMaxDataElementService
     {
         minMaxDataElementStore.delete( dataElements, parent );
     }
+
+    @Override
+    public SetMap<Integer, Integer> getCategoryOptionComboIds( Collection<DataElement> dataElements )
+    {
+        return getNumericCategoryOptionComboIds( dataElements.stream()
+            .map( dataElement -> idObjectManager.get( DataElement.class, dataElement.getId() ) )
+            .collect( Collectors.toList() ) );
+    }
+
+    @Override
+    public SetMap<Integer, Integer> getDataSetCategoryOptionComboIds( Collection<String> dataSetUids )
+    {
+        Set<DataElement> dataElements = new HashSet<>();
+
+        idObjectManager.getByUid( DataSet.class, dataSetUids ).forEach( dataSet -> dataElements.addAll( dataSet.getDataElements() ) );
+
+        return getNumericCategoryOptionComboIds( dataElements );
+    }
+
+    @Override
+    public int generateMinMaxDataElements( SetMap<Integer, Integer> categoryOptionComboIds, OrganisationUnit parent, double stdDevFactor )
+    {
+        if ( categoryOptionComboIds.isEmpty() )
+        {
+            return 0;
+        }
+
+        Set<Integer> optionComboIds = new HashSet<>();
+
+        categoryOptionComboIds.values().forEach( optionComboIds::addAll );
+
+        // The path of the parent is computed from its ancestors, which may not
+        // be loaded if the parent does not belong to the current session
+
+        OrganisationUnit parentUnit = idObjectManager.get( OrganisationUnit.class, parent.getId() );
+
+        minMaxDataElementStore.deleteByDataElementIds( categoryOptionComboIds.keySet(), parentUnit );
+
+        return minMaxDataElementStore.generate( categoryOptionComboIds.keySet(), optionComboIds, parentUnit, stdDevFactor );
+    }
+
+    // -------------------------------------------------------------------------
+    // Supportive methods
+    // -------------------------------------------------------------------------
+
+    private SetMap<Integer, Integer> getNumericCategoryOptionComboIds( Collection<DataElement> dataElements )
+    {
+        SetMap<Integer, Integer> categoryOptionComboIds = new SetMap<>();
+
+        for ( DataElement dataElement : dataElements )
+        {
+            if ( dataElement.getValueType().isNumeric() )
+            {
+                categoryOptionComboIds.putValues( dataElement.getId(),
+                    new HashSet<>( IdentifiableObjectUtils.getIdentifiers( dataElement.getCategoryOptionCombos() ) ) );
+            }
+        }
+
+        return categoryOptionComboIds;
+    }
 }
 
 
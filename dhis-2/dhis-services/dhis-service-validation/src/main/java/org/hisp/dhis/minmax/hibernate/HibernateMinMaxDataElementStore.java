@@ -30,9 +30,12 @@ package org.hisp.dhis.minmax.hibernate;
 
 import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.common.Pager;
+import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.commons.util.TextUtils;
 import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.hibernate.HibernateGenericStore;
 import org.hisp.dhis.hibernate.JpaQueryParameters;
+import org.hisp.dhis.jdbc.StatementBuilder;
 import org.hisp.dhis.minmax.MinMaxDataElement;
 import org.hisp.dhis.minmax.MinMaxDataElementQueryParams;
 import org.hisp.dhis.minmax.MinMaxDataElementStore;
@@ -70,6 +73,9 @@ public class HibernateMinMaxDataElementStore
     @Autowired
     private SchemaService schemaService;
 
+    @Autowired
+    private StatementBuilder statementBuilder;
+
     // -------------------------------------------------------------------------
     // MinMaxDataElementStore Implementation
     // -------------------------------------------------------------------------
@@ -176,6 +182,59 @@ public class HibernateMinMaxDataElementStore
             .executeUpdate();
     }
 
+    @Override
+    public void deleteByDataElementIds( Collection<Integer> dataElementIds, OrganisationUnit parent )
+    {
+        String hql = "delete from MinMaxDataElement m where m.dataElement.id in (:dataElementIds) " +
+            "and m.source in (select ou from OrganisationUnit ou where path like :path)";
+
+        getQuery( hql )
+            .setParameterList( "dataElementIds", dataElementIds )
+            .setParameter( "path", parent.getPath() + "%" )
+            .executeUpdate();
+    }
+
+    @Override
+    public int generate( Collection<Integer> dataElementIds, Collection<Integer> categoryOptionComboIds,
+        OrganisationUnit parent, double stdDevFactor )
+    {
+        if ( dataElementIds.isEmpty() || categoryOptionComboIds.isEmpty() )
+        {
+            return 0;
+        }
+
+        String value = "cast( dv.value as " + statementBuilder.getDoubleColumnType() + " )";
+
+        // Bounds are rounded half up like Math.round and clamped to the range
+        // of the value type
+
+        String min = "floor( ms.average - " + stdDevFactor + " * ms.standarddeviation + 0.5 )";
+        String max = "floor( ms.average + " + stdDevFactor + " * ms.standarddeviation + 0.5 )";
+
+        String sql =
+            "insert into minmaxdataelement (minmaxdataelementid, sourceid, dataelementid, categoryoptioncomboid, " +
+                "minimumvalue, maximumvalue, generatedvalue) " +
+            "select " + statementBuilder.getAutoIncrementValue() + ", ms.sourceid, ms.dataelementid, ms.categoryoptioncomboid, " +
+                "cast( case when de.valuetype in ('" + ValueType.INTEGER_POSITIVE.name() + "', '" + ValueType.INTEGER_ZERO_OR_POSITIVE.name() + "') " +
+                "then greatest( 0, " + min + " ) else " + min + " end as integer ), " +
+                "cast( case when de.valuetype = '" + ValueType.INTEGER_NEGATIVE.name() + "' " +
+                "then least( 0, " + max + " ) else " + max + " end as integer ), true " +
+            "from (" +
+                "select dv.dataelementid, dv.sourceid, dv.categoryoptioncomboid, " +
+                "avg( " + value + " ) as average, stddev_pop( " + value + " ) as standarddeviation " +
+                "from datavalue dv " +
+                "join organisationunit ou on dv.sourceid = ou.organisationunitid " +
+                "where dv.dataelementid in (" + TextUtils.getCommaDelimitedString( dataElementIds ) + ") " +
+                "and dv.categoryoptioncomboid in (" + TextUtils.getCommaDelimitedString( categoryOptionComboIds ) + ") " +
+                "and ou.path like '" + parent.getPath() + "%' " +
+                "and dv.deleted is false " +
+                "group by dv.dataelementid, dv.sourceid, dv.categoryoptioncomboid) as ms " +
+            "join dataelement de on ms.dataelementid = de.dataelementid " +
+            "where ms.standarddeviation <> 0";
+
+        return jdbcTemplate.update( sql );
+    }
+
     private Predicate parseFilter( CriteriaBuilder builder, Root root, List<String> filters )
     {
         Predicate conjunction = builder.conjunction();
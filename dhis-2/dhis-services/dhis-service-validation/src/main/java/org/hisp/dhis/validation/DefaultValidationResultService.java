@@ -61,6 +61,15 @@ public class DefaultValidationResultService
         } );
     }
 
+    @Override
+    public List<ValidationResult> saveNewValidationResults( Collection<ValidationResult> validationResults )
+    {
+        validationResults.forEach( validationResult ->
+            validationResult.setPeriod( periodService.reloadPeriod( validationResult.getPeriod() ) ) );
+
+        return validationResultStore.saveIfNotExists( validationResults );
+    }
+
     public List<ValidationResult> getAllValidationResults()
     {
         return validationResultStore.getAll();
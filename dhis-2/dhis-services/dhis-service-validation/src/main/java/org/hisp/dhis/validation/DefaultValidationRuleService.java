@@ -40,6 +40,7 @@ import org.hisp.dhis.expression.ExpressionService;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -206,6 +207,12 @@ public class DefaultValidationRuleService
         return validationRuleStore.getValidationRulesWithNotificationTemplates();
     }
 
+    @Override
+    public void updateLastRun( Collection<ValidationRule> validationRules, Date lastRun, Date startDate, Date endDate )
+    {
+        validationRuleStore.updateLastRun( validationRules, lastRun, startDate, endDate );
+    }
+
     // -------------------------------------------------------------------------
     // ValidationRuleGroup CRUD operations
     // -------------------------------------------------------------------------
@@ -28,6 +28,7 @@ package org.hisp.dhis.validation.hibernate;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.google.common.collect.Lists;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -38,6 +39,7 @@ import org.hisp.dhis.category.CategoryOptionGroupSet;
 import org.hisp.dhis.common.IdentifiableObjectUtils;
 import org.hisp.dhis.common.Pager;
 import org.hisp.dhis.hibernate.HibernateGenericStore;
+import org.hisp.dhis.jdbc.StatementBuilder;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.period.Period;
 import org.hisp.dhis.user.CurrentUserService;
@@ -48,11 +50,15 @@ import org.hisp.dhis.validation.ValidationRule;
 import org.hisp.dhis.validation.comparator.ValidationResultQuery;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 
@@ -65,6 +71,8 @@ public class HibernateValidationResultStore
 {
     private static final Log log = LogFactory.getLog( HibernateValidationResultStore.class );
 
+    private static final int INSERT_BATCH_SIZE = 1000;
+
     @Autowired
     protected CurrentUserService currentUserService;
 
@@ -76,6 +84,9 @@ public class HibernateValidationResultStore
         this.currentUserService = currentUserService;
     }
 
+    @Autowired
+    private StatementBuilder statementBuilder;
+
     @Override
     public List<ValidationResult> getAllUnreportedValidationResults()
     {
@@ -145,10 +156,117 @@ public class HibernateValidationResultStore
         super.save( validationResult );
     }
 
+    @Override
+    public List<ValidationResult> saveIfNotExists( Collection<ValidationResult> validationResults )
+    {
+        List<ValidationResult> inserted = new ArrayList<>();
+
+        if ( validationResults.isEmpty() )
+        {
+            return inserted;
+        }
+
+        // Results saved through the session must be visible to the existence check
+
+        getSession().flush();
+
+        // The existence check skips results stored before, the conflict clause
+        // skips results stored concurrently by other transactions
+
+        String sql =
+            "insert into validationresult (validationresultid, created, leftsidevalue, rightsidevalue, validationruleid, " +
+                "periodid, organisationunitid, attributeoptioncomboid, dayinperiod, notificationsent) " +
+            "select " + statementBuilder.getAutoIncrementValue() + ", cast( ? as timestamp ), " +
+                "cast( ? as " + statementBuilder.getDoubleColumnType() + " ), cast( ? as " + statementBuilder.getDoubleColumnType() + " ), " +
+                "?, ?, ?, ?, ?, false " +
+            "where not exists (" +
+                "select 1 from validationresult where validationruleid = ? and periodid = ? and organisationunitid = ? " +
+                "and attributeoptioncomboid = ? and dayinperiod = ?)" +
+            statementBuilder.getOnConflictDoNothing();
+
+        Date created = new Date();
+
+        for ( List<ValidationResult> batch : Lists.partition( new ArrayList<>( validationResults ), INSERT_BATCH_SIZE ) )
+        {
+            List<Object[]> batchArgs = batch.stream()
+                .map( vr -> new Object[] { new Timestamp( created.getTime() ), vr.getLeftsideValue(), vr.getRightsideValue(),
+                    vr.getValidationRule().getId(), vr.getPeriod().getId(), vr.getOrganisationUnit().getId(),
+                    vr.getAttributeOptionCombo().getId(), vr.getDayInPeriod(),
+                    vr.getValidationRule().getId(), vr.getPeriod().getId(), vr.getOrganisationUnit().getId(),
+                    vr.getAttributeOptionCombo().getId(), vr.getDayInPeriod() } )
+                .collect( Collectors.toList() );
+
+            int[] updateCounts = jdbcTemplate.batchUpdate( sql, batchArgs );
+
+            List<ValidationResult> insertedBatch = new ArrayList<>();
+
+            for ( int i = 0; i < updateCounts.length; i++ )
+            {
+                if ( updateCounts[i] > 0 )
+                {
+                    ValidationResult validationResult = batch.get( i );
+                    validationResult.setCreated( created );
+                    insertedBatch.add( validationResult );
+                }
+            }
+
+            setInsertedIds( insertedBatch, created );
+
+            inserted.addAll( insertedBatch );
+        }
+
+        log.debug( "Inserted " + inserted.size() + " of " + validationResults.size() + " validation results" );
+
+        return inserted;
+    }
+
     // -------------------------------------------------------------------------
     // Supportive methods
     // -------------------------------------------------------------------------
 
+    /**
+     * Reads back the ids of validation results inserted with the given
+     * created time, matching them by their unique key.
+     */
+    private void setInsertedIds( List<ValidationResult> validationResults, Date created )
+    {
+        if ( validationResults.isEmpty() )
+        {
+            return;
+        }
+
+        Map<String, ValidationResult> keyMap = validationResults.stream()
+            .collect( Collectors.toMap( vr -> getKey( vr.getValidationRule().getId(), vr.getPeriod().getId(),
+                vr.getOrganisationUnit().getId(), vr.getAttributeOptionCombo().getId(), vr.getDayInPeriod() ), vr -> vr ) );
+
+        String sql =
+            "select validationresultid, validationruleid, periodid, organisationunitid, attributeoptioncomboid, dayinperiod " +
+            "from validationresult " +
+            "where created = ? " +
+            "and validationruleid in (" + getCommaDelimitedString( validationResults, vr -> vr.getValidationRule().getId() ) + ") " +
+            "and periodid in (" + getCommaDelimitedString( validationResults, vr -> vr.getPeriod().getId() ) + ") " +
+            "and organisationunitid in (" + getCommaDelimitedString( validationResults, vr -> vr.getOrganisationUnit().getId() ) + ")";
+
+        jdbcTemplate.query( sql, rs -> {
+            ValidationResult validationResult = keyMap.get( getKey( rs.getInt( 2 ), rs.getInt( 3 ), rs.getInt( 4 ), rs.getInt( 5 ), rs.getInt( 6 ) ) );
+
+            if ( validationResult != null )
+            {
+                validationResult.setId( rs.getInt( 1 ) );
+            }
+        }, new Timestamp( created.getTime() ) );
+    }
+
+    private static String getKey( int ruleId, int periodId, int orgUnitId, int aocId, int dayInPeriod )
+    {
+        return ruleId + "-" + periodId + "-" + orgUnitId + "-" + aocId + "-" + dayInPeriod;
+    }
+
+    private static String getCommaDelimitedString( List<ValidationResult> validationResults, Function<ValidationResult, Integer> id )
+    {
+        return validationResults.stream().map( id ).distinct().map( String::valueOf ).collect( Collectors.joining( "," ) );
+    }
+
     /**
      * If we should, restrict which validation results the user is entitled
      * to see, based on the user's organisation units and on the user's
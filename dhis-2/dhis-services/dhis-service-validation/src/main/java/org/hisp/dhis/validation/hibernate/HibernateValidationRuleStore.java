@@ -35,7 +35,10 @@ import org.hisp.dhis.validation.ValidationRule;
 import org.hisp.dhis.validation.ValidationRuleStore;
 
 import javax.persistence.criteria.CriteriaBuilder;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @author Chau Thu Tran
@@ -100,4 +103,29 @@ public class HibernateValidationRuleStore
             .addPredicate( root -> builder.isNotEmpty( root.get( "notificationTemplates" ) ) )
             .setUseDistinct( true ) );
     }
+
+    @Override
+    public void updateLastRun( Collection<ValidationRule> validationRules, Date lastRun, Date startDate, Date endDate )
+    {
+        if ( validationRules.isEmpty() )
+        {
+            return;
+        }
+
+        String hql = "update ValidationRule set lastRun = :lastRun, lastRunStartDate = :startDate, lastRunEndDate = :endDate where id in (:ids)";
+
+        getSession().createQuery( hql )
+            .setParameter( "lastRun", lastRun )
+            .setParameter( "startDate", startDate )
+            .setParameter( "endDate", endDate )
+            .setParameterList( "ids", validationRules.stream().map( ValidationRule::getId ).collect( Collectors.toList() ) )
+            .executeUpdate();
+
+        for ( ValidationRule validationRule : validationRules )
+        {
+            validationRule.setLastRun( lastRun );
+            validationRule.setLastRunStartDate( startDate );
+            validationRule.setLastRunEndDate( endDate );
+        }
+    }
 }
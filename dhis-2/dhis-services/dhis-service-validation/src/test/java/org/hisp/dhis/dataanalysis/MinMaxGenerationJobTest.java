@@ -0,0 +1,171 @@
+package org.hisp.dhis.dataanalysis;
+
+/*
+ * Copyright (c) 2004-2018, University of Oslo
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * Neither the name of the HISP project nor the names of its contributors may
+ * be used to endorse or promote products derived from this software without
+ * specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+import com.google.common.collect.Lists;
+import org.hisp.dhis.DhisTest;
+import org.hisp.dhis.analytics.AggregationType;
+import org.hisp.dhis.category.CategoryCombo;
+import org.hisp.dhis.category.CategoryOptionCombo;
+import org.hisp.dhis.category.CategoryService;
+import org.hisp.dhis.common.ValueType;
+import org.hisp.dhis.dataelement.DataElement;
+import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.dataset.DataSet;
+import org.hisp.dhis.dataset.DataSetService;
+import org.hisp.dhis.datavalue.DataValueService;
+import org.hisp.dhis.minmax.MinMaxDataElement;
+import org.hisp.dhis.minmax.MinMaxDataElementService;
+import org.hisp.dhis.organisationunit.OrganisationUnit;
+import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.period.MonthlyPeriodType;
+import org.hisp.dhis.period.Period;
+import org.hisp.dhis.scheduling.JobConfiguration;
+import org.hisp.dhis.scheduling.JobType;
+import org.hisp.dhis.scheduling.parameters.MinMaxGenerationJobParameters;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the job without a surrounding transaction, like the scheduler does.
+ */
+public class MinMaxGenerationJobTest
+    extends DhisTest
+{
+    @Autowired
+    private MinMaxGenerationJob minMaxGenerationJob;
+
+    @Autowired
+    private MinMaxDataElementService minMaxDataElementService;
+
+    @Autowired
+    private DataElementService dataElementService;
+
+    @Autowired
+    private DataSetService dataSetService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private OrganisationUnitService organisationUnitService;
+
+    @Autowired
+    private DataValueService dataValueService;
+
+    private DataElement dataElementA;
+
+    private DataElement dataElementB;
+
+    private DataSet dataSetA;
+
+    private CategoryOptionCombo categoryOptionCombo;
+
+    private OrganisationUnit organisationUnitA;
+
+    private OrganisationUnit organisationUnitB;
+
+    // ----------------------------------------------------------------------
+    // Fixture
+    // ----------------------------------------------------------------------
+
+    @Override
+    public void setUpTest()
+        throws Exception
+    {
+        CategoryCombo categoryCombo = categoryService.getDefaultCategoryCombo();
+
+        categoryOptionCombo = categoryService.getDefaultCategoryOptionCombo();
+
+        dataElementA = createDataElement( 'A', categoryCombo );
+        dataElementB = createDataElement( 'B', ValueType.TEXT, AggregationType.NONE );
+        dataElementB.setCategoryCombo( categoryCombo );
+
+        dataElementService.addDataElement( dataElementA );
+        dataElementService.addDataElement( dataElementB );
+
+        dataSetA = createDataSet( 'A', new MonthlyPeriodType() );
+        dataSetA.addDataSetElement( dataElementA );
+        dataSetA.addDataSetElement( dataElementB );
+
+        dataSetService.addDataSet( dataSetA );
+
+        organisationUnitA = createOrganisationUnit( 'A' );
+        organisationUnitB = createOrganisationUnit( 'B', organisationUnitA );
+
+        organisationUnitService.addOrganisationUnit( organisationUnitA );
+        organisationUnitService.addOrganisationUnit( organisationUnitB );
+
+        Period periodA = createPeriod( new MonthlyPeriodType(), getDate( 2000, 3, 1 ), getDate( 2000, 3, 31 ) );
+        Period periodB = createPeriod( new MonthlyPeriodType(), getDate( 2000, 4, 1 ), getDate( 2000, 4, 30 ) );
+
+        dataValueService.addDataValue( createDataValue( dataElementA, periodA, organisationUnitB, "10", categoryOptionCombo ) );
+        dataValueService.addDataValue( createDataValue( dataElementA, periodB, organisationUnitB, "20", categoryOptionCombo ) );
+        dataValueService.addDataValue( createDataValue( dataElementB, periodA, organisationUnitB, "Text", categoryOptionCombo ) );
+    }
+
+    @Override
+    public boolean emptyDatabaseAfterTest()
+    {
+        return true;
+    }
+
+    // ----------------------------------------------------------------------
+    // Business logic tests
+    // ----------------------------------------------------------------------
+
+    @Test
+    public void testExecute()
+        throws Exception
+    {
+        MinMaxGenerationJobParameters parameters = new MinMaxGenerationJobParameters(
+            Lists.newArrayList( organisationUnitA.getUid() ), Lists.newArrayList( dataSetA.getUid() ), 2.0 );
+
+        JobConfiguration jobConfiguration = new JobConfiguration( "minMaxGeneration", JobType.MIN_MAX_GENERATION,
+            null, parameters, false, true, true );
+
+        minMaxGenerationJob.execute( jobConfiguration );
+
+        // Average 15 and std dev 5 for A, B is not numeric
+
+        MinMaxDataElement minMaxDataElement = minMaxDataElementService.getMinMaxDataElement(
+            organisationUnitB, dataElementA, categoryOptionCombo );
+
+        assertNotNull( minMaxDataElement );
+        assertEquals( 5, minMaxDataElement.getMin() );
+        assertEquals( 25, minMaxDataElement.getMax() );
+        assertTrue( minMaxDataElement.isGenerated() );
+        assertNull( minMaxDataElementService.getMinMaxDataElement( organisationUnitB, dataElementB, categoryOptionCombo ) );
+    }
+}
@@ -59,7 +59,7 @@ public class StdDevOutlierAnalysisServiceTest
     extends DhisSpringTest
 {
     @Resource( name = "org.hisp.dhis.dataanalysis.StdDevOutlierAnalysisService" )
-    private DataAnalysisService stdDevOutlierAnalysisService;
+    private StdDevOutlierAnalysisService stdDevOutlierAnalysisService;
 
     @Autowired
     private DataElementService dataElementService;
@@ -165,8 +165,7 @@ public class StdDevOutlierAnalysisServiceTest
     // Business logic tests
     // ----------------------------------------------------------------------
 
-    @Test
-    public void testGetFindOutliers()
+    private void addDataValues()
     {
         dataValueA = createDataValue( dataElementA, periodI, organisationUnitA, "71", categoryOptionCombo );
         dataValueB = createDataValue( dataElementA, periodJ, organisationUnitA, "-71", categoryOptionCombo );
@@ -189,6 +188,17 @@ public class StdDevOutlierAnalysisServiceTest
             categoryOptionCombo ) );
         dataValueService.addDataValue( dataValueA );
         dataValueService.addDataValue( dataValueB );
+    }
+
+    private List<Period> getAnalysisPeriods()
+    {
+        return Lists.newArrayList( periodI, periodJ, periodA, periodE );
+    }
+
+    @Test
+    public void testGetFindOutliers()
+    {
+        addDataValues();
 
         double stdDevFactor = 2.0;
         List<Period> periods = new ArrayList<>();
@@ -210,4 +220,34 @@ public class StdDevOutlierAnalysisServiceTest
         assertTrue( values.contains( valueA ) );
         assertFalse( values.contains( valueB ) );
     }
+
+    @Test
+    public void testGetFindOutliersModifiedZScore()
+    {
+        addDataValues();
+
+        // Median is 0 and median absolute deviation is 10
+
+        List<DeflatedDataValue> values = stdDevOutlierAnalysisService.analyse(
+            Lists.newArrayList( organisationUnitA ), dataElementsA, getAnalysisPeriods(), 3.5, from,
+            OutlierDetectionAlgorithm.MOD_Z_SCORE, DataAnalysisService.MAX_OUTLIERS );
+
+        assertEquals( 2, values.size() );
+        assertTrue( values.contains( new DeflatedDataValue( dataValueA ) ) );
+        assertTrue( values.contains( new DeflatedDataValue( dataValueB ) ) );
+        assertEquals( -52, values.get( 0 ).getMin().intValue() );
+        assertEquals( 52, values.get( 0 ).getMax().intValue() );
+    }
+
+    @Test
+    public void testGetFindOutliersMaxResults()
+    {
+        addDataValues();
+
+        List<DeflatedDataValue> values = stdDevOutlierAnalysisService.analyse(
+            Lists.newArrayList( organisationUnitA ), dataElementsA, getAnalysisPeriods(), 3.5, from,
+            OutlierDetectionAlgorithm.MOD_Z_SCORE, 1 );
+
+        assertEquals( 1, values.size() );
+    }
 }
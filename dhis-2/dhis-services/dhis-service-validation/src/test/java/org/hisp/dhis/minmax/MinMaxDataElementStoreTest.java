@@ -34,8 +34,12 @@ import org.hisp.dhis.dataelement.DataElement;
 import org.hisp.dhis.category.CategoryOptionCombo;
 import org.hisp.dhis.category.CategoryService;
 import org.hisp.dhis.dataelement.DataElementService;
+import org.hisp.dhis.datavalue.DataValueService;
+import org.hisp.dhis.dbms.DbmsManager;
 import org.hisp.dhis.organisationunit.OrganisationUnit;
 import org.hisp.dhis.organisationunit.OrganisationUnitService;
+import org.hisp.dhis.period.MonthlyPeriodType;
+import org.hisp.dhis.period.Period;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -62,6 +66,12 @@ public class MinMaxDataElementStoreTest
     @Autowired
     private MinMaxDataElementStore minMaxDataElementStore;
 
+    @Autowired
+    private DataValueService dataValueService;
+
+    @Autowired
+    private DbmsManager dbmsManager;
+
     @Test
     public void testBasic()
     {
@@ -185,4 +195,48 @@ public class MinMaxDataElementStoreTest
         assertEquals( 2, result.size() );
 
     }
+
+    @Test
+    public void testGenerate()
+    {
+        OrganisationUnit source1 = createOrganisationUnit( 'A' );
+        OrganisationUnit source2 = createOrganisationUnit( 'B' );
+
+        organisationUnitService.addOrganisationUnit( source1 );
+        organisationUnitService.addOrganisationUnit( source2 );
+
+        DataElement dataElement1 = createDataElement( 'A' );
+        DataElement dataElement2 = createDataElement( 'B' );
+
+        dataElementService.addDataElement( dataElement1 );
+        dataElementService.addDataElement( dataElement2 );
+
+        CategoryOptionCombo optionCombo = categoryService.getDefaultCategoryOptionCombo();
+
+        Period periodA = createPeriod( new MonthlyPeriodType(), getDate( 2018, 1, 1 ), getDate( 2018, 1, 31 ) );
+        Period periodB = createPeriod( new MonthlyPeriodType(), getDate( 2018, 2, 1 ), getDate( 2018, 2, 28 ) );
+
+        dataValueService.addDataValue( createDataValue( dataElement1, periodA, source1, "10", optionCombo ) );
+        dataValueService.addDataValue( createDataValue( dataElement1, periodB, source1, "20", optionCombo ) );
+        dataValueService.addDataValue( createDataValue( dataElement2, periodA, source1, "7", optionCombo ) );
+        dataValueService.addDataValue( createDataValue( dataElement2, periodB, source1, "7", optionCombo ) );
+        dataValueService.addDataValue( createDataValue( dataElement1, periodA, source2, "1", optionCombo ) );
+        dataValueService.addDataValue( createDataValue( dataElement1, periodB, source2, "3", optionCombo ) );
+
+        dbmsManager.flushSession();
+
+        // Average 15 and std dev 5 for A, no deviation for B, B is not in the hierarchy
+
+        assertEquals( 1, minMaxDataElementStore.generate( Lists.newArrayList( dataElement1.getId(), dataElement2.getId() ),
+            Lists.newArrayList( optionCombo.getId() ), source1, 2.0 ) );
+
+        MinMaxDataElement minMaxDataElement = minMaxDataElementStore.get( source1, dataElement1, optionCombo );
+
+        assertNotNull( minMaxDataElement );
+        assertEquals( 5, minMaxDataElement.getMin() );
+        assertEquals( 25, minMaxDataElement.getMax() );
+        assertTrue( minMaxDataElement.isGenerated() );
+        assertNull( minMaxDataElementStore.get( source1, dataElement2, optionCombo ) );
+        assertNull( minMaxDataElementStore.get( source2, dataElement1, optionCombo ) );
+    }
 }
@@ -365,6 +365,34 @@ public class ValidationResultStoreTest
         assertTrue( validationResult.getCreated().getTime() <= afterSave.getTime() );
     }
 
+    @Test
+    public void testSaveIfNotExists()
+    {
+        validationResultStore.save( validationResultAA );
+
+        ValidationResult duplicateAA = new ValidationResult( validationRuleA, periodA, sourceA, optionComboA, 5.0, 6.0, 3 );
+        ValidationResult duplicateAB = new ValidationResult( validationRuleA, periodA, sourceA, optionComboB, 5.0, 6.0, 3 );
+        ValidationResult otherDayAA = new ValidationResult( validationRuleA, periodA, sourceA, optionComboA, 1.0, 2.0, 4 );
+
+        List<ValidationResult> inserted = validationResultStore.saveIfNotExists(
+            Lists.newArrayList( duplicateAA, validationResultAB, duplicateAB, otherDayAA ) );
+
+        assertEquals( 2, inserted.size() );
+        assertTrue( inserted.contains( validationResultAB ) );
+        assertTrue( inserted.contains( otherDayAA ) );
+        assertNotNull( validationResultAB.getCreated() );
+
+        assertEquals( 3, validationResultStore.getAll().size() );
+
+        // Inserted results get the ids of the stored results
+
+        assertTrue( validationResultAB.getId() > 0 );
+        assertTrue( otherDayAA.getId() > 0 );
+        assertEquals( validationResultAB, validationResultStore.get( validationResultAB.getId() ) );
+        assertEquals( otherDayAA, validationResultStore.get( otherDayAA.getId() ) );
+        assertEquals( 0, duplicateAB.getId() );
+    }
+
     @Test
     public void testDeleteValidationResult() throws Exception
     {
@@ -0,0 +1,10 @@
+alter table predictor
+add column if not exists lastrun timestamp;
+
+alter table predictor
+add column if not exists lastrunstartdate timestamp;
+
+alter table predictor
+add column if not exists lastrunenddate timestamp;
+
+create index if not exists in_programstageinstance_lastupdated on programstageinstance (lastupdated);
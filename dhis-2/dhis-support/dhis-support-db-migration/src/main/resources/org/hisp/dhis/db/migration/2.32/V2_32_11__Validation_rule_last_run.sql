@@ -0,0 +1,8 @@
+alter table validationrule
+add column if not exists lastrun timestamp;
+
+alter table validationrule
+add column if not exists lastrunstartdate timestamp;
+
+alter table validationrule
+add column if not exists lastrunenddate timestamp;
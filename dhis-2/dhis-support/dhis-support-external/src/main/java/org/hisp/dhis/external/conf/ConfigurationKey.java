@@ -76,7 +76,10 @@ public enum ConfigurationKey
     FLYWAY_OUT_OF_ORDER_MIGRATION( "flyway.migrate_out_of_order", "false", false ),
     PROGRAM_TEMPORARY_OWNERSHIP_TIMEOUT( "tracker.temporary.ownership.timeout", "3", false ),
     LEADER_TIME_TO_LIVE( "leader.time.to.live.minutes", "2", false ),
+    RESERVED_VALUE_POOL_LOW_WATERMARK( "tracker.reserved_value.pool.low_watermark", "100", false ),
+    RESERVED_VALUE_POOL_HIGH_WATERMARK( "tracker.reserved_value.pool.high_watermark", "500", false ),
     ANALYTICS_CACHE_EXPIRATION( "analytics.cache.expiration", "0" ),
+    VALIDATION_MAX_THREADS( "validation.max_threads", "0", false ),
     AMQP_MODE( "amqp.mode", "EMBEDDED" ),
     AMQP_HOST( "amqp.host", "127.0.0.1" ),
     AMQP_PORT( "amqp.port", "15672" ),
@@ -216,8 +216,25 @@ public interface StatementBuilder
      * @return statement which calculates the number of days between the given dates.
      */
     String getDaysBetweenDates( String fromColumn, String toColumn );
+
+    /**
+     * Returns an aggregate expression which calculates the median of the
+     * given numeric expression.
+     *
+     * @param expression the numeric expression.
+     * @return an aggregate expression which calculates the median.
+     */
+    String getMedian( String expression );
     
     String getAddDate( String dateField, int days );
+
+    /**
+     * Returns a clause to append to insert statements which skips rows
+     * violating a unique constraint instead of failing the statement.
+     *
+     * @return the clause, or an empty string if not supported.
+     */
+    String getOnConflictDoNothing();
     
     String getDropPrimaryKey( String table );
     
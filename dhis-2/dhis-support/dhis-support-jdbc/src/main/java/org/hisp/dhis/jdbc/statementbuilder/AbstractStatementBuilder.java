@@ -159,6 +159,18 @@ public abstract class AbstractStatementBuilder
         return "datediff(" + toColumn + ", " + fromColumn + ")";
     }
 
+    @Override
+    public String getMedian( String expression )
+    {
+        return "median(" + expression + ")";
+    }
+
+    @Override
+    public String getOnConflictDoNothing()
+    {
+        return "";
+    }
+
     @Override
     public String getDropPrimaryKey( String table )
     {
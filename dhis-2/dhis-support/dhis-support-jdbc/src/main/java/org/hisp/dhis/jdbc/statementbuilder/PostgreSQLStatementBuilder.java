@@ -133,6 +133,18 @@ public class PostgreSQLStatementBuilder
         return toColumn + " - " + fromColumn;
     }
 
+    @Override
+    public String getMedian( String expression )
+    {
+        return "percentile_cont(0.5) within group (order by " + expression + ")";
+    }
+
+    @Override
+    public String getOnConflictDoNothing()
+    {
+        return " on conflict do nothing";
+    }
+
     @Override
     public String getDropPrimaryKey( String table )
     {
@@ -39,6 +39,8 @@ public class DhisHttpResponse
 
     private String response;
 
+    private byte[] content;
+
     private int statusCode;
 
     // -------------------------------------------------------------------------
@@ -53,6 +55,12 @@ public class DhisHttpResponse
         this.statusCode = statusCode;
     }
 
+    public DhisHttpResponse( HttpResponse httpResponse, String response, byte[] content, int statusCode )
+    {
+        this( httpResponse, response, statusCode );
+        this.content = content;
+    }
+
     // -------------------------------------------------------------------------
     // Getters and setters
     // -------------------------------------------------------------------------
@@ -77,6 +85,16 @@ public class DhisHttpResponse
         this.response = response;
     }
 
+    public byte[] getContent()
+    {
+        return content;
+    }
+
+    public void setContent( byte[] content )
+    {
+        this.content = content;
+    }
+
     public int getStatusCode()
     {
         return statusCode;
@@ -68,6 +68,8 @@ public class HttpUtils
 
     private static final String CONTENT_TYPE_ZIP = "application/gzip";
 
+    private static final String CONTENT_TYPE_BINARY = "application/octet-stream";
+
     /**
      * <pre>
      * <b>Description : </b>
@@ -292,6 +294,7 @@ public class HttpUtils
     {
         DhisHttpResponse dhisHttpResponse = null;
         String output = null;
+        byte[] binaryOutput = null;
         int statusCode = 0;
         if ( response != null )
         {
@@ -307,6 +310,10 @@ public class HttpUtils
                     InputStream content = gzipDecompressingEntity.getContent();
                     output = IOUtils.toString( content, StandardCharsets.UTF_8 );
                 }
+                else if ( contentType != null && checkIfBinaryContentType( contentType ) )
+                {
+                    binaryOutput = EntityUtils.toByteArray( response.getEntity() );
+                }
                 else
                 {
                     output = EntityUtils.toString( response.getEntity() );
@@ -318,7 +325,7 @@ public class HttpUtils
                 throw new Exception( "No content found in the response received from http POST call to " + requestURL + " with username " + username );
             }
 
-            dhisHttpResponse = new DhisHttpResponse( response, output, statusCode );
+            dhisHttpResponse = new DhisHttpResponse( response, output, binaryOutput, statusCode );
         }
         else
         {
@@ -332,4 +339,9 @@ public class HttpUtils
     {
         return contentType.getValue().contains( CONTENT_TYPE_ZIP );
     }
+
+    private static boolean checkIfBinaryContentType( Header contentType )
+    {
+        return contentType.getValue().contains( CONTENT_TYPE_BINARY );
+    }
 }
@@ -42,6 +42,7 @@ import org.hisp.dhis.dataanalysis.DataAnalysisService;
 import org.hisp.dhis.dataanalysis.FollowupAnalysisService;
 import org.hisp.dhis.dataanalysis.FollowupParams;
 import org.hisp.dhis.dataanalysis.MinMaxOutlierAnalysisService;
+import org.hisp.dhis.dataanalysis.OutlierDetectionAlgorithm;
 import org.hisp.dhis.dataanalysis.StdDevOutlierAnalysisService;
 import org.hisp.dhis.dataanalysis.UpdateFollowUpForDataValuesRequest;
 import org.hisp.dhis.dataanalysis.ValidationRuleExpressionDetails;
@@ -276,9 +277,15 @@ public class DataAnalysisController
         log.info( "Nr of data elements: " + dataElements.size() + " Nr of periods: " + periods.size() +
             "for Standard Deviation Outlier Analysis" );
 
+        OutlierDetectionAlgorithm algorithm = stdDevOutlierAnalysisParams.getAlgorithm() != null ?
+            stdDevOutlierAnalysisParams.getAlgorithm() : OutlierDetectionAlgorithm.Z_SCORE;
+
+        int maxResults = stdDevOutlierAnalysisParams.getMaxResults() != null ?
+            stdDevOutlierAnalysisParams.getMaxResults() : DataAnalysisService.MAX_OUTLIERS;
+
         List<DeflatedDataValue> dataValues = new ArrayList<>( stdDevOutlierAnalysisService
             .analyse( Sets.newHashSet( organisationUnit ), dataElements, periods,
-                stdDevOutlierAnalysisParams.getStandardDeviation(), from ) );
+                stdDevOutlierAnalysisParams.getStandardDeviation(), from, algorithm, maxResults ) );
 
         session.setAttribute( KEY_ANALYSIS_DATA_VALUES, dataValues );
         session.setAttribute( KEY_ORG_UNIT, organisationUnit );
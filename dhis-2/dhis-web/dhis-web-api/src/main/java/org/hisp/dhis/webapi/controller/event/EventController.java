@@ -28,6 +28,7 @@ package org.hisp.dhis.webapi.controller.event;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteSource;
@@ -75,10 +76,12 @@ import org.hisp.dhis.importexport.ImportStrategy;
 import org.hisp.dhis.node.NodeUtils;
 import org.hisp.dhis.node.Preset;
 import org.hisp.dhis.node.types.RootNode;
+import org.hisp.dhis.node.types.SimpleNode;
 import org.hisp.dhis.program.Program;
 import org.hisp.dhis.program.ProgramStageInstanceService;
 import org.hisp.dhis.program.ProgramStatus;
 import org.hisp.dhis.query.Order;
+import org.hisp.dhis.render.DefaultRenderService;
 import org.hisp.dhis.render.RenderService;
 import org.hisp.dhis.scheduling.JobConfiguration;
 import org.hisp.dhis.scheduling.SchedulingManager;
@@ -107,6 +110,7 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -488,6 +492,9 @@ public class EventController
         @RequestParam( required = false ) boolean totalPages,
         @RequestParam( required = false ) Boolean skipPaging,
         @RequestParam( required = false ) Boolean paging,
+        @RequestParam( required = false ) boolean keysetPaging,
+        @RequestParam( required = false ) String pageToken,
+        @RequestParam( required = false ) boolean approximateCount,
         @RequestParam( required = false ) String order,
         @RequestParam( required = false ) String attachment,
         @RequestParam( required = false, defaultValue = "false" ) boolean includeDeleted,
@@ -520,6 +527,10 @@ public class EventController
             idSchemes, page, pageSize, totalPages, skipPaging, getOrderParams( order ), getGridOrderParams( order, dataElementOrders ), false, eventIds, filter, dataElementOrders.keySet(), false,
             includeDeleted );
 
+        params.setKeysetPaging( keysetPaging );
+        params.setPageToken( pageToken );
+        params.setApproximateCount( approximateCount );
+
         Events events = eventService.getEvents( params );
 
         if ( hasHref( fields ) )
@@ -542,6 +553,10 @@ public class EventController
             rootNode.addChild( NodeUtils.createPager( events.getPager() ) );
         }
 
+        if ( events.getNextPageToken() != null )
+        {
+            rootNode.addChild( new SimpleNode( "nextPageToken", events.getNextPageToken() ) );
+        }
 
         if ( !StringUtils.isEmpty( attachment ) )
         {
@@ -554,6 +569,89 @@ public class EventController
         return rootNode;
     }
 
+    /**
+     * Writes events to the response as they are read from a server side
+     * cursor, without building the full list or node tree in memory. Field
+     * filtering is not supported, events are written in full.
+     */
+    @RequestMapping( value = "", method = RequestMethod.GET, params = "streaming=true", produces = { ContextUtils.CONTENT_TYPE_JSON } )
+    public void getEventsStreaming(
+        @RequestParam( required = false ) String program,
+        @RequestParam( required = false ) String programStage,
+        @RequestParam( required = false ) ProgramStatus programStatus,
+        @RequestParam( required = false ) Boolean followUp,
+        @RequestParam( required = false ) String trackedEntityInstance,
+        @RequestParam( required = false ) String orgUnit,
+        @RequestParam( required = false ) OrganisationUnitSelectionMode ouMode,
+        @RequestParam( required = false ) Date startDate,
+        @RequestParam( required = false ) Date endDate,
+        @RequestParam( required = false ) Date dueDateStart,
+        @RequestParam( required = false ) Date dueDateEnd,
+        @RequestParam( required = false ) Date lastUpdated,
+        @RequestParam( required = false ) Date lastUpdatedStartDate,
+        @RequestParam( required = false ) Date lastUpdatedEndDate,
+        @RequestParam( required = false ) EventStatus status,
+        @RequestParam( required = false ) String attributeCc,
+        @RequestParam( required = false ) String attributeCos,
+        @RequestParam( required = false ) Integer page,
+        @RequestParam( required = false ) Integer pageSize,
+        @RequestParam( required = false ) Boolean skipPaging,
+        @RequestParam( required = false ) Boolean paging,
+        @RequestParam( required = false ) boolean keysetPaging,
+        @RequestParam( required = false ) String pageToken,
+        @RequestParam( required = false ) String order,
+        @RequestParam( required = false ) String event,
+        @RequestParam( required = false ) Set<String> filter,
+        @RequestParam( required = false, defaultValue = "false" ) boolean includeDeleted,
+        IdSchemes idSchemes, HttpServletResponse response ) throws IOException, WebMessageException
+    {
+        CategoryOptionCombo attributeOptionCombo = inputUtils.getAttributeOptionCombo( attributeCc, attributeCos, true );
+
+        Set<String> eventIds = TextUtils.splitToArray( event, TextUtils.SEMICOLON );
+
+        Map<String, String> dataElementOrders = getDataElementsFromOrder( order );
+
+        lastUpdatedStartDate = lastUpdatedStartDate != null ? lastUpdatedStartDate : lastUpdated;
+
+        skipPaging = PagerUtils.isSkipPaging( skipPaging, paging );
+
+        EventSearchParams params = eventService.getFromUrl( program, programStage, programStatus, followUp,
+            orgUnit, ouMode, trackedEntityInstance, startDate, endDate, dueDateStart, dueDateEnd, lastUpdatedStartDate, lastUpdatedEndDate, status, attributeOptionCombo,
+            idSchemes, page, pageSize, false, skipPaging, getOrderParams( order ), getGridOrderParams( order, dataElementOrders ), false, eventIds, filter, dataElementOrders.keySet(), false,
+            includeDeleted );
+
+        params.setKeysetPaging( keysetPaging );
+        params.setPageToken( pageToken );
+
+        response.setContentType( ContextUtils.CONTENT_TYPE_JSON );
+
+        try ( JsonGenerator generator = DefaultRenderService.getJsonMapper().getFactory().createGenerator( response.getOutputStream() ) )
+        {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart( "events" );
+
+            eventService.streamEvents( params, e -> {
+                try
+                {
+                    generator.writeObject( e );
+                }
+                catch ( IOException ex )
+                {
+                    throw new UncheckedIOException( ex );
+                }
+            } );
+
+            generator.writeEndArray();
+
+            if ( params.getNextPageToken() != null )
+            {
+                generator.writeStringField( "nextPageToken", params.getNextPageToken() );
+            }
+
+            generator.writeEndObject();
+        }
+    }
+
     @RequestMapping( value = "", method = RequestMethod.GET, produces = { "application/csv", "application/csv+gzip", "text/csv" } )
     public void getCsvEvents(
         @RequestParam( required = false ) String program,
@@ -82,7 +82,7 @@ public class MetadataExportController
         MetadataExportParams params = metadataExportService.getParamsFromMap( contextService.getParameterValuesMap() );
         metadataExportService.validate( params );
 
-        return metadataExportService.getMetadataAsNode( params );
+        return metadataExportService.getMetadataAsStreamingNode( params );
     }
 
     private void setUserContext( User user, TranslateParams translateParams )
@@ -31,6 +31,7 @@ package org.hisp.dhis.webapi.controller.metadata.version;
 import org.apache.commons.lang.StringUtils;
 import org.hisp.dhis.common.DhisApiVersion;
 import org.hisp.dhis.common.cache.CacheStrategy;
+import org.hisp.dhis.dxf2.metadata.version.MetadataSnapshotCodec;
 import org.hisp.dhis.dxf2.metadata.version.exception.MetadataVersionServiceException;
 import org.hisp.dhis.metadata.version.MetadataVersion;
 import org.hisp.dhis.metadata.version.MetadataVersionService;
@@ -268,13 +269,7 @@ public class MetadataVersionController
                 throw new BadRequestException( "Metadata versioning is not enabled for this instance." );
             }
 
-            String versionData = versionService.getVersionData( versionName );
-
-            if ( versionData == null )
-            {
-                throw new MetadataVersionException( "No metadata version snapshot found for the given version " + versionName );
-            }
-            return versionData;
+            return getVersionData( versionName );
         }
         catch ( MetadataVersionServiceException ex )
         {
@@ -299,16 +294,43 @@ public class MetadataVersionController
 
             contextUtils.configureResponse( response, ContextUtils.CONTENT_TYPE_GZIP, CacheStrategy.NO_CACHE, "metadata.json.gz", true );
             response.addHeader( ContextUtils.HEADER_CONTENT_TRANSFER_ENCODING, "binary" );
-            String versionData = versionService.getVersionData( versionName );
+            String versionData = getVersionData( versionName );
+
+            GZIPOutputStream gos = new GZIPOutputStream( response.getOutputStream() );
+            gos.write( versionData.getBytes( StandardCharsets.UTF_8 ) );
+            gos.close();
+        }
+        catch ( MetadataVersionServiceException ex )
+        {
+            throw new MetadataVersionException( "Unable to download version from system: " + versionName + ex.getMessage() );
+        }
+    }
+
+    //endpoint to download metadata in binary format, clients fall back to the gzip format on errors
+    @PreAuthorize( "hasRole('ALL') or hasRole('F_METADATA_MANAGE')" )
+    @RequestMapping( value = MetadataVersionSchemaDescriptor.API_ENDPOINT + "/{versionName}/data.bin", method = RequestMethod.GET, produces = "*/*" )
+    public void downloadBinaryVersion( @PathVariable( "versionName" ) String versionName, HttpServletResponse response )
+        throws MetadataVersionException, IOException, BadRequestException
+    {
+        boolean enabled = isMetadataVersioningEnabled();
+
+        try
+        {
+            if ( !enabled )
+            {
+                throw new BadRequestException( "Metadata versioning is not enabled for this instance." );
+            }
+
+            byte[] versionData = MetadataSnapshotCodec.encode( getVersionData( versionName ) );
 
             if ( versionData == null )
             {
-                throw new MetadataVersionException( "No metadata version snapshot found for the given version " + versionName );
+                throw new MetadataVersionException( "Metadata version snapshot cannot be encoded in binary format for the given version " + versionName );
             }
 
-            GZIPOutputStream gos = new GZIPOutputStream( response.getOutputStream() );
-            gos.write( versionData.getBytes( StandardCharsets.UTF_8 ) );
-            gos.close();
+            contextUtils.configureResponse( response, MetadataSnapshotCodec.CONTENT_TYPE, CacheStrategy.NO_CACHE, "metadata.bin", true );
+            response.addHeader( ContextUtils.HEADER_CONTENT_TRANSFER_ENCODING, "binary" );
+            response.getOutputStream().write( versionData );
         }
         catch ( MetadataVersionServiceException ex )
         {
@@ -327,6 +349,22 @@ public class MetadataVersionController
         return setting.booleanValue();
     }
 
+    /**
+     * Gets the snapshot of the given version.
+     */
+    private String getVersionData( String versionName )
+        throws MetadataVersionException
+    {
+        String versionData = versionService.getVersionData( versionName );
+
+        if ( versionData == null )
+        {
+            throw new MetadataVersionException( "No metadata version snapshot found for the given version " + versionName );
+        }
+
+        return versionData;
+    }
+
     private RootNode getMetadataVersionsAsNode( List<MetadataVersion> versions )
     {
         RootNode rootNode = NodeUtils.createRootNode( "metadataversions" );